@@ -20,6 +20,7 @@ package ca.nanometrics.miniseed;
  * #L%
  */
 
+import ca.nanometrics.miniseed.encoding.SampleAccumulator;
 import org.json.JSONObject;
 
 public interface DataRecord {
@@ -29,6 +30,18 @@ public interface DataRecord {
 
   Samples samples();
 
+  /**
+   * Decode the samples straight into the accumulator, without building an array of samples where
+   * the encoding allows. By default the {@link #samples()} are added.
+   *
+   * @return the given accumulator.
+   * @see ca.nanometrics.miniseed.encoding.Decode#decode(SampleAccumulator)
+   */
+  default <A extends SampleAccumulator> A samples(A accumulator) {
+    accumulator.addAll(samples());
+    return accumulator;
+  }
+
   byte[] toByteArray();
 
   int length();
@@ -36,5 +36,11 @@ public interface DataRecordHeader {
 
   int numberOfSamples();
 
+  /**
+   * The publication version of the data, where a higher value indicates a more refined version of
+   * the same data. For miniseed 2 this is derived from the data quality indicator.
+   */
+  short dataPublicationVersion();
+
   int length();
 }
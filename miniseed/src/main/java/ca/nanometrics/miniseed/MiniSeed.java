@@ -20,6 +20,8 @@ package ca.nanometrics.miniseed;
  * #L%
  */
 
+import ca.nanometrics.miniseed.compression.Compression;
+import ca.nanometrics.miniseed.util.NanoTime;
 import ca.nanometrics.miniseed.v2.DataRecord2;
 import ca.nanometrics.miniseed.v3.DataRecord3;
 import java.io.BufferedInputStream;
@@ -27,16 +29,39 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
+import java.util.zip.CRC32C;
 
 public class MiniSeed {
 
+  /** Orders records by source identifier, then by record start time. */
+  public static final Comparator<DataRecord> SOURCE_IDENTIFIER_TIME_ORDER =
+      Comparator.<DataRecord, String>comparing(
+              record -> record.header().sourceIdentifier().toString())
+          .thenComparingLong(record -> NanoTime.toEpochNanos(record.header().recordStartTime()));
+
   /**
+   * The file may be compressed with any of the {@link Compression} formats, which is detected from
+   * its content rather than its name.
+   *
    * @return a stream of DataRecords read from the given input file.
    * @throws IOException if the given file does not exist or cannot be read.
    */
@@ -45,13 +70,14 @@ public class MiniSeed {
   }
 
   /**
-   * The input stream will be automatically closed when the stream is closed.
+   * The input stream will be automatically closed when the stream is closed. Compressed input is
+   * detected and decompressed as for {@link #stream(File)}.
    *
    * @return a stream of DataRecords read from the given input stream.
    * @throws IOException if the given stream cannot be read
    */
   public static Stream<DataRecord> stream(InputStream input) throws IOException {
-    DataRecordIterator iterator = new DataRecordIterator(input);
+    DataRecordIterator iterator = new DataRecordIterator(input, true);
     return StreamSupport.stream(
             Spliterators.spliteratorUnknownSize(
                 iterator,
@@ -65,25 +91,177 @@ public class MiniSeed {
 
   /**
    * NOTE: The input stream will not be closed by this method, so the caller must close it when the
-   * iteration is complete.
+   * iteration is complete. Compressed input is decompressed as it is read, rather than ahead of the
+   * reader on a separate thread as for {@link #stream(InputStream)}, since nothing would stop the
+   * thread if the iteration is abandoned.
    *
    * @return an iterable of DataRecords loaded from the given input stream
    * @throws IOException if the given stream cannot be read
    */
   public static Iterable<DataRecord> iterable(InputStream input) throws IOException {
-    DataRecordIterator iterator = new DataRecordIterator(input);
+    DataRecordIterator iterator = new DataRecordIterator(input, false);
     return () -> iterator;
   }
 
+  /**
+   * A publisher of the records of the given file, which may be compressed as for {@link
+   * #stream(File)}. Each subscriber reads the file independently, on the given executor, and only
+   * as fast as it requests records. Read errors, including a truncated last record, are passed to
+   * {@link Flow.Subscriber#onError}.
+   */
+  public static Flow.Publisher<DataRecord> publisher(Path file, Executor executor) {
+    return new RecordPublisher(
+        () -> new BufferedInputStream(Files.newInputStream(file)), false, executor);
+  }
+
+  /**
+   * A publisher of the records of the given input stream, as for {@link #publisher(Path,
+   * Executor)}, but which can only be subscribed to once. The input stream is closed when the
+   * subscription completes, fails or is cancelled.
+   */
+  public static Flow.Publisher<DataRecord> publisher(InputStream input, Executor executor) {
+    return new RecordPublisher(() -> input, true, executor);
+  }
+
+  /**
+   * A publisher of the records read from the given channel, such as a socket, as for {@link
+   * #publisher(InputStream, Executor)}. Reads block the executor thread until the channel has data.
+   */
+  public static Flow.Publisher<DataRecord> publisher(
+      ReadableByteChannel channel, Executor executor) {
+    InputStream input = Channels.newInputStream(channel);
+    return new RecordPublisher(() -> input, true, executor);
+  }
+
+  /**
+   * Merge the records of several files into a single stream ordered by {@link
+   * #SOURCE_IDENTIFIER_TIME_ORDER}, without de-duplication.
+   *
+   * @see #merge(List, boolean)
+   */
+  public static Stream<DataRecord> merge(List<Path> files) {
+    return merge(files, false);
+  }
+
+  /**
+   * Merge the records of several files into a single stream ordered by {@link
+   * #SOURCE_IDENTIFIER_TIME_ORDER}. Each file must itself already be in that order, as files
+   * written by a single acquisition path are; the merge only ever holds the next record of each
+   * file, so memory use is proportional to the number of files rather than the number of records.
+   *
+   * <p>Files are opened when the stream is first consumed, and are closed when the stream is
+   * closed.
+   *
+   * @param deduplicate if true, records with the same source identifier and start time whose bytes
+   *     are identical (by CRC-32C) are only returned once.
+   */
+  public static Stream<DataRecord> merge(List<Path> files, boolean deduplicate) {
+    MergeIterator iterator = new MergeIterator(files, deduplicate);
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(iterator::close);
+  }
+
+  private static class MergeIterator implements Iterator<DataRecord> {
+    private final List<Path> files;
+    private final boolean deduplicate;
+    private final List<DataRecordIterator> sources = new ArrayList<>();
+    private final PriorityQueue<Head> heap;
+    private final Set<Long> checksums = new HashSet<>();
+    private DataRecord next;
+    private DataRecord previous;
+    private boolean opened;
+
+    private MergeIterator(List<Path> files, boolean deduplicate) {
+      this.files = List.copyOf(files);
+      this.deduplicate = deduplicate;
+      heap =
+          new PriorityQueue<>(
+              Math.max(1, files.size()),
+              Comparator.comparing(Head::record, SOURCE_IDENTIFIER_TIME_ORDER)
+                  .thenComparingInt(Head::index));
+    }
+
+    private void open() {
+      opened = true;
+      for (Path file : files) {
+        DataRecordIterator source;
+        try {
+          source =
+              new DataRecordIterator(
+                  new BufferedInputStream(new FileInputStream(file.toFile())), true);
+        } catch (IOException e) {
+          close();
+          throw new UncheckedIOException("Could not open " + file, e);
+        }
+        sources.add(source);
+        advance(sources.size() - 1);
+      }
+    }
+
+    private void advance(int index) {
+      DataRecordIterator source = sources.get(index);
+      if (source.hasNext()) {
+        heap.add(new Head(source.next(), index));
+      } else {
+        source.close();
+      }
+    }
+
+    void close() {
+      sources.forEach(DataRecordIterator::close);
+      heap.clear();
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (!opened) {
+        open();
+      }
+      while (next == null && !heap.isEmpty()) {
+        Head head = heap.poll();
+        advance(head.index());
+        if (!deduplicate || isFirstOfItsKind(head.record())) {
+          next = head.record();
+        }
+      }
+      return next != null;
+    }
+
+    private boolean isFirstOfItsKind(DataRecord record) {
+      if (previous == null || SOURCE_IDENTIFIER_TIME_ORDER.compare(previous, record) != 0) {
+        checksums.clear();
+      }
+      previous = record;
+      CRC32C crc = new CRC32C();
+      crc.update(record.toByteArray());
+      return checksums.add(crc.getValue());
+    }
+
+    @Override
+    public DataRecord next() {
+      if (hasNext()) {
+        DataRecord record = next;
+        next = null;
+        return record;
+      }
+      throw new NoSuchElementException();
+    }
+
+    private record Head(DataRecord record, int index) {}
+  }
+
   private static class DataRecordIterator implements Iterator<DataRecord> {
 
     private final InputStream input;
     private final DataRecordReader reader;
     private DataRecord next;
 
-    private DataRecordIterator(InputStream input) throws IOException {
-      this.input = input;
-      if (DataRecord3.isMiniSeed3(input)) {
+    private DataRecordIterator(InputStream input, boolean readAhead) throws IOException {
+      this.input = Compression.decompress(input, readAhead);
+      if (DataRecord3.isMiniSeed3(this.input)) {
         reader = DataRecord3::read;
       } else {
         reader = DataRecord2::read;
@@ -0,0 +1,342 @@
+package ca.nanometrics.miniseed;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.util.NanoTime;
+import ca.nanometrics.miniseed.v3.Repacker;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * A streaming stage that removes duplicate records and resolves overlapping records, such as those
+ * produced by retransmissions or redundant acquisition paths.
+ *
+ * <ul>
+ *   <li>Records whose source identifier, start time, publication version and payload CRC-32C match
+ *       a record seen within the last {@link #DEFAULT_WINDOW window} are dropped as duplicates.
+ *   <li>When records of the same source identifier overlap in time, by more than half a sample
+ *       period, the overlapping samples of the one with the highest {@link
+ *       DataRecordHeader#dataPublicationVersion() publication version} are kept. On a tie, those of
+ *       the record seen first are kept. The other record is trimmed to the samples outside the
+ *       overlap, re-encoded as miniseed 3 by {@link Repacker#trim}, or dropped if its samples
+ *       cannot be re-encoded or are all within the overlap.
+ * </ul>
+ *
+ * <p>Records of each source identifier are expected in start time order (as produced by {@link
+ * MiniSeed#merge}). A record is held back only until a later record of the same source identifier
+ * starts after it ends, so the memory used is bounded by the overlap between records plus the
+ * fingerprint window.
+ *
+ * <p>Not thread safe.
+ */
+public class OverlapResolver {
+  public static final Duration DEFAULT_WINDOW = Duration.ofHours(1);
+  public static final int DEFAULT_MAX_FINGERPRINTS = 1 << 20;
+
+  private final long m_windowNanos;
+  private final int m_maxFingerprints;
+  private final Map<String, List<Pending>> m_pending = new HashMap<>();
+  private final Set<Fingerprint> m_fingerprints = new HashSet<>();
+  private final Deque<Fingerprint> m_fingerprintOrder = new ArrayDeque<>();
+  private long m_latestStartNanos = Long.MIN_VALUE;
+  private long m_duplicates;
+  private long m_superseded;
+  private long m_trimmed;
+
+  public OverlapResolver() {
+    this(DEFAULT_WINDOW, DEFAULT_MAX_FINGERPRINTS);
+  }
+
+  /**
+   * @param window how far behind the latest record start time fingerprints are retained.
+   * @param maxFingerprints the maximum number of fingerprints retained, regardless of the window.
+   */
+  public OverlapResolver(Duration window, int maxFingerprints) {
+    if (window.isNegative()) {
+      throw new IllegalArgumentException("Window must not be negative: " + window);
+    }
+    if (maxFingerprints < 1) {
+      throw new IllegalArgumentException("Max fingerprints must be positive: " + maxFingerprints);
+    }
+    m_windowNanos = window.toNanos();
+    m_maxFingerprints = maxFingerprints;
+  }
+
+  /**
+   * Resolve the given stream of records, closing it when the returned stream is closed.
+   *
+   * @see OverlapResolver
+   */
+  public static Stream<DataRecord> resolve(Stream<DataRecord> records) {
+    return new OverlapResolver().apply(records);
+  }
+
+  /** Resolve the given stream of records, closing it when the returned stream is closed. */
+  public Stream<DataRecord> apply(Stream<DataRecord> records) {
+    Iterator<DataRecord> input = records.iterator();
+    Iterator<DataRecord> output =
+        new Iterator<>() {
+          private Iterator<DataRecord> m_ready = Collections.emptyIterator();
+
+          @Override
+          public boolean hasNext() {
+            while (!m_ready.hasNext()) {
+              if (input.hasNext()) {
+                m_ready = accept(input.next()).iterator();
+              } else {
+                List<DataRecord> remaining = flush();
+                if (remaining.isEmpty()) {
+                  return false;
+                }
+                m_ready = remaining.iterator();
+              }
+            }
+            return true;
+          }
+
+          @Override
+          public DataRecord next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            return m_ready.next();
+          }
+        };
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(output, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(records::close);
+  }
+
+  /**
+   * Offer the next record.
+   *
+   * @return the records, possibly none, that can no longer be superseded and are ready to be passed
+   *     on, in start time order per source identifier.
+   */
+  public List<DataRecord> accept(DataRecord record) {
+    DataRecordHeader header = record.header();
+    String sourceIdentifier = header.sourceIdentifier().toString();
+    long start = NanoTime.toEpochNanos(header.recordStartTime());
+    short version = header.dataPublicationVersion();
+    m_latestStartNanos = Math.max(m_latestStartNanos, start);
+
+    if (!addFingerprint(new Fingerprint(sourceIdentifier, start, version, crc(record.payload())))) {
+      m_duplicates++;
+      return List.of();
+    }
+
+    Pending incoming = Pending.of(record);
+    List<Pending> pending = m_pending.computeIfAbsent(sourceIdentifier, key -> new ArrayList<>());
+    List<DataRecord> ready = new ArrayList<>();
+    List<Pending> kept = new ArrayList<>();
+    for (Pending other : pending) {
+      if (other.end() <= start + other.tolerance(incoming)) {
+        ready.addAll(other.toRecords());
+      } else {
+        kept.add(other);
+      }
+    }
+    // the incoming record loses the overlap to held records of the same or a higher version
+    List<Pending> pieces = List.of(incoming);
+    for (Pending other : kept) {
+      if (other.version() >= version) {
+        pieces = without(pieces, other);
+      }
+    }
+    count(List.of(incoming), pieces);
+    // and held records of a lower version lose the overlap to what remains of it
+    List<Pending> resolved = new ArrayList<>();
+    for (Pending other : kept) {
+      if (other.version() < version) {
+        List<Pending> remaining = List.of(other);
+        for (Pending piece : pieces) {
+          remaining = without(remaining, piece);
+        }
+        count(List.of(other), remaining);
+        resolved.addAll(remaining);
+      } else {
+        resolved.add(other);
+      }
+    }
+    resolved.addAll(pieces);
+    if (resolved.isEmpty()) {
+      m_pending.remove(sourceIdentifier);
+    } else {
+      resolved.sort(Comparator.comparingLong(Pending::start));
+      m_pending.put(sourceIdentifier, resolved);
+    }
+    return ready;
+  }
+
+  /** Release all held records, for example at the end of the input. */
+  public List<DataRecord> flush() {
+    List<DataRecord> ready = new ArrayList<>();
+    for (List<Pending> pending : m_pending.values()) {
+      pending.forEach(p -> ready.addAll(p.toRecords()));
+    }
+    m_pending.clear();
+    return ready;
+  }
+
+  private static List<Pending> without(List<Pending> pieces, Pending winner) {
+    List<Pending> remaining = new ArrayList<>();
+    for (Pending piece : pieces) {
+      remaining.addAll(piece.overlaps(winner) ? piece.without(winner) : List.of(piece));
+    }
+    return remaining;
+  }
+
+  private void count(List<Pending> before, List<Pending> after) {
+    if (after.isEmpty()) {
+      m_superseded++;
+    } else if (!after.equals(before)) {
+      m_trimmed++;
+    }
+  }
+
+  /** The number of records dropped because an identical record had already been seen. */
+  public long duplicates() {
+    return m_duplicates;
+  }
+
+  /** The number of records dropped because they were superseded by an overlapping record. */
+  public long superseded() {
+    return m_superseded;
+  }
+
+  /** The number of records trimmed to the samples outside an overlapping record. */
+  public long trimmed() {
+    return m_trimmed;
+  }
+
+  private boolean addFingerprint(Fingerprint fingerprint) {
+    while (!m_fingerprintOrder.isEmpty()
+        && (m_fingerprintOrder.size() >= m_maxFingerprints
+            || m_fingerprintOrder.peekFirst().startNanos() < m_latestStartNanos - m_windowNanos)) {
+      m_fingerprints.remove(m_fingerprintOrder.removeFirst());
+    }
+    if (m_fingerprints.add(fingerprint)) {
+      m_fingerprintOrder.addLast(fingerprint);
+      return true;
+    }
+    return false;
+  }
+
+  private static int crc(byte[] payload) {
+    CRC32C crc = new CRC32C();
+    crc.update(payload);
+    return (int) crc.getValue();
+  }
+
+  private record Fingerprint(
+      String sourceIdentifier, long startNanos, short version, int payloadCrc) {}
+
+  /**
+   * The samples {@code from}, inclusive, to {@code to}, exclusive, of a record held back, which are
+   * all of its samples unless it has been trimmed by an overlapping record.
+   */
+  private record Pending(DataRecord record, long recordStart, long period, int from, int to) {
+    static Pending of(DataRecord record) {
+      DataRecordHeader header = record.header();
+      long period =
+          header.sampleRate().sampleRateDouble() > 0 ? header.sampleRate().samplePeriodNanos() : 0;
+      return new Pending(
+          record,
+          NanoTime.toEpochNanos(header.recordStartTime()),
+          period,
+          0,
+          header.numberOfSamples());
+    }
+
+    short version() {
+      return record.header().dataPublicationVersion();
+    }
+
+    long start() {
+      return recordStart + from * period;
+    }
+
+    long end() {
+      return recordStart + to * period;
+    }
+
+    /** Half a sample period, within which records are not considered to overlap. */
+    long tolerance(Pending other) {
+      return Math.max(period, other.period) / 2;
+    }
+
+    boolean overlaps(Pending other) {
+      long tolerance = tolerance(other);
+      return start() == other.start()
+          || (start() < other.end() - tolerance && other.start() < end() - tolerance);
+    }
+
+    /**
+     * @return the pieces of this that are outside the given overlapping record, none if this cannot
+     *     be trimmed.
+     */
+    List<Pending> without(Pending other) {
+      if (period == 0 || !Repacker.canTrim(record)) {
+        return List.of();
+      }
+      int head = index(other.start());
+      int tail = index(other.end());
+      List<Pending> pieces = new ArrayList<>(2);
+      if (head > from) {
+        pieces.add(new Pending(record, recordStart, period, from, head));
+      }
+      if (tail < to) {
+        pieces.add(new Pending(record, recordStart, period, tail, to));
+      }
+      return pieces;
+    }
+
+    /** The index of the first sample at or after the given time, within half a sample period. */
+    private int index(long time) {
+      double index = Math.ceil((double) (time - recordStart) / period - 0.5);
+      return (int) Math.max(from, Math.min(to, index));
+    }
+
+    List<DataRecord> toRecords() {
+      if (from == 0 && to == record.header().numberOfSamples()) {
+        return List.of(record);
+      }
+      return List.copyOf(Repacker.trim(record, from, to));
+    }
+  }
+}
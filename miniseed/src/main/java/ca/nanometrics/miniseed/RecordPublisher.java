@@ -0,0 +1,250 @@
+package ca.nanometrics.miniseed;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.MiniSeed.DataRecordReader;
+import ca.nanometrics.miniseed.compression.Compression;
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import ca.nanometrics.miniseed.v2.DataRecord2Header;
+import ca.nanometrics.miniseed.v3.DataRecord3;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the records of an input to each subscriber as they are requested, reading and parsing
+ * them on the given executor.
+ *
+ * <p>Nothing is read ahead of demand, so many publishers can share a small pool of threads without
+ * buffering: a subscription only occupies a thread while it has outstanding demand, and gives up
+ * the thread after {@link #BATCH_SIZE} records so that other subscriptions are not starved. The
+ * input is opened on the executor when records are first requested, and is closed on completion,
+ * error or cancellation. Any failure to open or read the input, including a truncated record, is
+ * passed to {@link Flow.Subscriber#onError}.
+ *
+ * @see MiniSeed#publisher
+ */
+final class RecordPublisher implements Flow.Publisher<DataRecord> {
+  /** The most records sent to a subscriber before its thread is returned to the executor. */
+  static final int BATCH_SIZE = 64;
+
+  interface InputSource {
+    InputStream open() throws IOException;
+  }
+
+  private final InputSource m_source;
+  private final boolean m_singleUse;
+  private final Executor m_executor;
+  private final AtomicBoolean m_subscribed = new AtomicBoolean();
+
+  /**
+   * @param singleUse true if the source can only be opened once, so only one subscriber is allowed.
+   */
+  RecordPublisher(InputSource source, boolean singleUse, Executor executor) {
+    m_source = Objects.requireNonNull(source);
+    m_singleUse = singleUse;
+    m_executor = Objects.requireNonNull(executor);
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super DataRecord> subscriber) {
+    Objects.requireNonNull(subscriber);
+    if (m_singleUse && !m_subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(
+          new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+              // already failed
+            }
+
+            @Override
+            public void cancel() {
+              // already failed
+            }
+          });
+      subscriber.onError(new IllegalStateException("The input can only be subscribed to once"));
+      return;
+    }
+    subscriber.onSubscribe(new RecordSubscription(subscriber));
+  }
+
+  /**
+   * Sends records from a drain task on the executor. A count of pending drain requests ensures only
+   * one drain task runs at a time, so signals to the subscriber are never concurrent, and a request
+   * or cancellation made while the task is running is seen before it exits.
+   */
+  private final class RecordSubscription implements Flow.Subscription, Runnable {
+    private final Flow.Subscriber<? super DataRecord> m_subscriber;
+    private final AtomicLong m_demand = new AtomicLong();
+    private final AtomicInteger m_pending = new AtomicInteger();
+    private volatile boolean m_cancelled;
+    private volatile IllegalArgumentException m_invalidRequest;
+
+    // only accessed by the drain task
+    private int m_missed;
+    private boolean m_done;
+    private InputStream m_input;
+    private DataRecordReader m_reader;
+
+    RecordSubscription(Flow.Subscriber<? super DataRecord> subscriber) {
+      m_subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        m_invalidRequest =
+            new IllegalArgumentException("Number of records requested must be positive: " + n);
+      } else {
+        // demand of Long.MAX_VALUE or more is unbounded
+        m_demand.getAndAccumulate(
+            n, (demand, added) -> demand + added < 0 ? Long.MAX_VALUE : demand + added);
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      m_cancelled = true;
+      schedule();
+    }
+
+    private void schedule() {
+      if (m_pending.getAndIncrement() == 0) {
+        m_missed = 1;
+        try {
+          m_executor.execute(this);
+        } catch (RejectedExecutionException e) {
+          fail(e);
+        }
+      }
+    }
+
+    @Override
+    public void run() {
+      int missed = m_missed;
+      int sent = 0;
+      while (!m_done) {
+        if (m_cancelled) {
+          m_done = true;
+          closeInput();
+          return;
+        }
+        if (m_invalidRequest != null) {
+          fail(m_invalidRequest);
+          return;
+        }
+        if (m_demand.get() > 0) {
+          if (sent == BATCH_SIZE) {
+            // let other subscriptions sharing the executor run, and carry on in a new task
+            m_missed = missed;
+            m_executor.execute(this);
+            return;
+          }
+          DataRecord record;
+          try {
+            record = next();
+          } catch (IOException | RuntimeException e) {
+            fail(e);
+            return;
+          }
+          if (record == null) {
+            m_done = true;
+            closeInput();
+            m_subscriber.onComplete();
+            return;
+          }
+          m_demand.decrementAndGet();
+          sent++;
+          m_subscriber.onNext(record);
+        } else {
+          missed = m_pending.addAndGet(-missed);
+          if (missed == 0) {
+            return;
+          }
+        }
+      }
+    }
+
+    /**
+     * @return the next record, or null at the end of the input.
+     */
+    private DataRecord next() throws IOException {
+      if (m_input == null) {
+        m_input = Compression.decompress(m_source.open());
+        m_reader = DataRecord3.isMiniSeed3(m_input) ? DataRecord3::read : DataRecord2::read;
+      }
+      m_input.mark(1);
+      if (m_input.read() < 0) {
+        return null;
+      }
+      m_input.reset();
+      DataRecord record = m_reader.read(m_input);
+      if (isTruncated(record)) {
+        throw new EOFException(
+            "Truncated record of " + record.header().sourceIdentifier() + " at end of input");
+      }
+      return record;
+    }
+
+    private boolean isTruncated(DataRecord record) {
+      if (record instanceof DataRecord2 v2Record) {
+        DataRecord2Header header = v2Record.header();
+        return v2Record.payload().length
+            < header.dataOnlyBlockette().dataRecordLength() - header.offsetToBeginningOfData();
+      }
+      if (record instanceof DataRecord3 v3Record) {
+        return v3Record.payload().length < v3Record.header().lengthOfDataPayload();
+      }
+      return false;
+    }
+
+    private void fail(Throwable failure) {
+      m_done = true;
+      try {
+        closeInput();
+      } catch (RuntimeException e) {
+        failure.addSuppressed(e);
+      }
+      m_subscriber.onError(failure);
+    }
+
+    /** Close the input, even if it was never read, unless it can be opened again. */
+    private void closeInput() {
+      try {
+        if (m_input != null) {
+          m_input.close();
+        } else if (m_singleUse) {
+          m_source.open().close();
+        }
+      } catch (IOException e) {
+        // nothing more to read
+      }
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package ca.nanometrics.miniseed;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.util.NanoTime;
+import ca.nanometrics.miniseed.v3.DataRecord3;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * A cache of decoded samples, bounded by the total size of the samples, evicting the least recently
+ * used records first.
+ *
+ * <p>Records are keyed either by their {@link Location location} in a file, or by their {@link
+ * Content content}: source identifier, start time and CRC-32C. The cache is split into segments by
+ * key, each with its own lock and an equal share of the maximum size, so concurrent readers of
+ * different records rarely contend. The samples of a record larger than that share, {@link
+ * #maxEntryBytes()}, are never cached, so the cache should be many times larger than the samples of
+ * its largest record. Records are decoded outside the lock, so two threads missing on the same
+ * record at the same time may both decode it.
+ *
+ * <p>Samples returned from the cache are shared, and must not be modified.
+ */
+public class SamplesCache {
+  public static final int DEFAULT_CONCURRENCY = 16;
+
+  private final Segment[] m_segments;
+  private final long m_maxBytes;
+  private final LongAdder m_hits = new LongAdder();
+  private final LongAdder m_misses = new LongAdder();
+  private final LongAdder m_evictions = new LongAdder();
+
+  /** Identifies a record in a cache. */
+  public sealed interface Key permits Location, Content {
+    // marker
+  }
+
+  /** A record at a byte offset in a file. */
+  public record Location(Path file, long offset) implements Key {
+    // simple record
+  }
+
+  /** A record identified by its source identifier, start time and the CRC-32C of its bytes. */
+  public record Content(String sourceIdentifier, long startTimeNanos, long crc) implements Key {
+    public static Content of(DataRecord record) {
+      long crc;
+      if (record instanceof DataRecord3 v3Record) {
+        crc = v3Record.header().crc();
+      } else {
+        CRC32C crc32c = new CRC32C();
+        crc32c.update(record.toByteArray());
+        crc = crc32c.getValue();
+      }
+      return new Content(
+          record.header().sourceIdentifier().toString(),
+          NanoTime.toEpochNanos(record.header().recordStartTime()),
+          crc);
+    }
+  }
+
+  /** Counters and size of a cache. */
+  public record Statistics(long hits, long misses, long evictions, int entries, long bytes) {
+    public double hitRate() {
+      long requests = hits + misses;
+      return requests == 0 ? 0 : (double) hits / requests;
+    }
+  }
+
+  /**
+   * @param maxBytes the maximum total size of the cached samples, as arrays of their sample type.
+   *     Samples larger than {@code maxBytes / }{@value #DEFAULT_CONCURRENCY} are not cached.
+   */
+  public SamplesCache(long maxBytes) {
+    this(maxBytes, DEFAULT_CONCURRENCY);
+  }
+
+  /**
+   * @param maxBytes the maximum total size of the cached samples, as arrays of their sample type.
+   * @param concurrency the number of segments, rounded up to a power of two. Each segment holds an
+   *     equal share of {@code maxBytes}, and samples larger than that share are not cached, so a
+   *     higher concurrency lowers the size of the largest samples that can be cached.
+   */
+  public SamplesCache(long maxBytes, int concurrency) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Maximum size must be positive: " + maxBytes);
+    }
+    if (concurrency <= 0) {
+      throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+    }
+    m_maxBytes = maxBytes;
+    int segments = Integer.highestOneBit(concurrency);
+    if (segments < concurrency) {
+      segments <<= 1;
+    }
+    m_segments = new Segment[segments];
+    for (int i = 0; i < segments; i++) {
+      m_segments[i] = new Segment(Math.max(1, maxBytes / segments));
+    }
+  }
+
+  /**
+   * @return the samples of the record, decoded if they are not already cached by content.
+   */
+  public Samples samples(DataRecord record) {
+    return samples(Content.of(record), record::samples);
+  }
+
+  /**
+   * @return the samples of the record at the given offset in the given file, decoded if they are
+   *     not already cached.
+   */
+  public Samples samples(Path file, long offset, DataRecord record) {
+    return samples(new Location(file, offset), record::samples);
+  }
+
+  /**
+   * @return the cached samples for the key, or the samples from the decoder, which are then cached.
+   */
+  public Samples samples(Key key, Supplier<Samples> decoder) {
+    Segment segment = segment(key);
+    Samples samples = segment.get(key);
+    if (samples != null) {
+      m_hits.increment();
+      return samples;
+    }
+    m_misses.increment();
+    samples = decoder.get();
+    return segment.put(key, samples);
+  }
+
+  /** Remove the samples cached for the key, if any. */
+  public void invalidate(Key key) {
+    segment(key).remove(key);
+  }
+
+  /** Remove all cached samples. The counters are not reset. */
+  public void clear() {
+    for (Segment segment : m_segments) {
+      segment.clear();
+    }
+  }
+
+  public long maxBytes() {
+    return m_maxBytes;
+  }
+
+  /**
+   * @return the size of the largest samples that can be cached: the share of the maximum size of
+   *     each segment.
+   */
+  public long maxEntryBytes() {
+    return m_segments[0].m_maxBytes;
+  }
+
+  public Statistics statistics() {
+    int entries = 0;
+    long bytes = 0;
+    for (Segment segment : m_segments) {
+      synchronized (segment) {
+        entries += segment.m_entries.size();
+        bytes += segment.m_bytes;
+      }
+    }
+    return new Statistics(m_hits.sum(), m_misses.sum(), m_evictions.sum(), entries, bytes);
+  }
+
+  /**
+   * @return the size of the samples as arrays of their sample type.
+   */
+  static long sizeOf(Samples samples) {
+    return switch (samples.type()) {
+      case INTEGER -> (long) samples.intSamples().length * Integer.BYTES;
+      case FLOAT -> (long) samples.floatSamples().length * Float.BYTES;
+      case DOUBLE -> (long) samples.doubleSamples().length * Double.BYTES;
+      case TEXT -> (long) samples.text().length() * Character.BYTES;
+      case NONE -> 0;
+    };
+  }
+
+  private Segment segment(Key key) {
+    int hash = key.hashCode();
+    return m_segments[(hash ^ (hash >>> 16)) & (m_segments.length - 1)];
+  }
+
+  private final class Segment {
+    private final long m_maxBytes;
+    // access order, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Key, Samples> m_entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long m_bytes;
+
+    Segment(long maxBytes) {
+      m_maxBytes = maxBytes;
+    }
+
+    synchronized Samples get(Key key) {
+      return m_entries.get(key);
+    }
+
+    synchronized Samples put(Key key, Samples samples) {
+      Samples existing = m_entries.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      long size = sizeOf(samples);
+      if (size > m_maxBytes) {
+        return samples;
+      }
+      m_entries.put(key, samples);
+      m_bytes += size;
+      Iterator<Map.Entry<Key, Samples>> iterator = m_entries.entrySet().iterator();
+      while (m_bytes > m_maxBytes) {
+        Map.Entry<Key, Samples> eldest = iterator.next();
+        m_bytes -= sizeOf(eldest.getValue());
+        iterator.remove();
+        m_evictions.increment();
+      }
+      return samples;
+    }
+
+    synchronized void remove(Key key) {
+      Samples removed = m_entries.remove(key);
+      if (removed != null) {
+        m_bytes -= sizeOf(removed);
+      }
+    }
+
+    synchronized void clear() {
+      m_entries.clear();
+      m_bytes = 0;
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package ca.nanometrics.miniseed.compression;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compression formats of miniseed input, detected by the magic number at the start of the input.
+ *
+ * <p>gzip is read with the JDK. xz and zstd need the optional {@code org.tukaani:xz} and {@code
+ * io.airlift:aircompressor} dependencies respectively, which are only loaded when input in that
+ * format is read. Concatenated gzip members, xz streams and zstd frames are all read as a single
+ * input, as written by tools that compress files in parallel. The frames of zstd input are also
+ * decompressed in parallel.
+ */
+public enum Compression {
+  NONE(new byte[0], ""),
+  GZIP(new byte[] {(byte) 0x1f, (byte) 0x8b}, ".gz"),
+  XZ(new byte[] {(byte) 0xfd, '7', 'z', 'X', 'Z', 0}, ".xz"),
+  ZSTD(new byte[] {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd}, ".zst");
+
+  private static final int MAX_MAGIC_LENGTH = 6;
+  private static final int GZIP_BUFFER_SIZE = 1 << 16;
+  private static final int FRAMES_AHEAD =
+      Math.max(ReadAheadInputStream.CHUNKS_AHEAD, 2 * ForkJoinPool.getCommonPoolParallelism());
+
+  private final byte[] m_magic;
+  private final String m_extension;
+
+  Compression(byte[] magic, String extension) {
+    m_magic = magic;
+    m_extension = extension;
+  }
+
+  /** The conventional file name extension, including the leading dot. */
+  public String extension() {
+    return m_extension;
+  }
+
+  /**
+   * @param input a stream that supports {@link InputStream#mark}, which is reset to where it was.
+   * @return the compression of the given input.
+   * @throws IllegalArgumentException if the input does not support mark.
+   */
+  public static Compression detect(InputStream input) throws IOException {
+    if (!input.markSupported()) {
+      throw new IllegalArgumentException("Input must support mark to detect compression");
+    }
+    input.mark(MAX_MAGIC_LENGTH);
+    byte[] start;
+    try {
+      start = input.readNBytes(MAX_MAGIC_LENGTH);
+    } finally {
+      input.reset();
+    }
+    for (Compression compression : values()) {
+      if (compression != NONE && compression.matches(start)) {
+        return compression;
+      }
+    }
+    return NONE;
+  }
+
+  /**
+   * @return the decompressed content of the given input, which supports {@link InputStream#mark},
+   *     or the input itself if it is not compressed. Decompression runs on a separate thread, ahead
+   *     of the reader, so that decompressing and decoding the records overlap. Closing the returned
+   *     stream closes the input and stops the thread.
+   * @throws IOException if the input is compressed in a format whose optional dependency is not on
+   *     the class path, or its header cannot be read.
+   */
+  public static InputStream decompress(InputStream input) throws IOException {
+    return decompress(input, true);
+  }
+
+  /**
+   * @param readAhead whether to decompress on a separate thread, ahead of the reader, as for {@link
+   *     #decompress(InputStream)}. Without it, no thread is started, so the returned stream does
+   *     not need to be closed to release one, and it is decompressed as it is read.
+   * @return the decompressed content of the given input, as for {@link #decompress(InputStream)}.
+   */
+  public static InputStream decompress(InputStream input, boolean readAhead) throws IOException {
+    InputStream buffered = input.markSupported() ? input : new BufferedInputStream(input);
+    Compression compression = detect(buffered);
+    if (compression == NONE) {
+      return buffered;
+    }
+    if (!readAhead) {
+      return new BufferedInputStream(new WaitingInputStream(compression.open(buffered)));
+    }
+    return new BufferedInputStream(compression.readAhead(buffered));
+  }
+
+  /**
+   * @return the given file name without the extension of this compression, if it has it.
+   */
+  public String stripExtension(String fileName) {
+    if (this != NONE
+        && fileName.endsWith(m_extension)
+        && fileName.length() > m_extension.length()) {
+      return fileName.substring(0, fileName.length() - m_extension.length());
+    }
+    return fileName;
+  }
+
+  /**
+   * @return the given file name without the extension of any compression.
+   */
+  public static String stripAnyExtension(String fileName) {
+    for (Compression compression : values()) {
+      String stripped = compression.stripExtension(fileName);
+      if (!stripped.equals(fileName)) {
+        return stripped;
+      }
+    }
+    return fileName;
+  }
+
+  private boolean matches(byte[] start) {
+    if (start.length < m_magic.length) {
+      return false;
+    }
+    for (int i = 0; i < m_magic.length; i++) {
+      if (start[i] != m_magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private InputStream readAhead(InputStream compressed) throws IOException {
+    String name = name().toLowerCase();
+    if (this != ZSTD) {
+      return new ReadAheadInputStream(open(compressed), name);
+    }
+    try {
+      return new ReadAheadInputStream(
+          compressed,
+          ZstdDecompression.frames(compressed, ForkJoinPool.commonPool()),
+          FRAMES_AHEAD,
+          name);
+    } catch (NoClassDefFoundError e) {
+      throw missingDependency(e);
+    }
+  }
+
+  private InputStream open(InputStream compressed) throws IOException {
+    try {
+      return switch (this) {
+        case GZIP -> new GZIPInputStream(compressed, GZIP_BUFFER_SIZE);
+        case XZ -> XzDecompression.open(compressed);
+        case ZSTD -> ZstdDecompression.open(compressed);
+        case NONE -> compressed;
+      };
+    } catch (NoClassDefFoundError e) {
+      throw missingDependency(e);
+    }
+  }
+
+  private IOException missingDependency(NoClassDefFoundError e) {
+    return new IOException(
+        "Reading "
+            + name().toLowerCase()
+            + " compressed input requires "
+            + (this == XZ ? "org.tukaani:xz" : "io.airlift:aircompressor")
+            + " on the class path",
+        e);
+  }
+
+  /**
+   * Waits for input in {@link #available()}, as {@link ReadAheadInputStream} does, so that it only
+   * returns 0 at the end of the input. Decompressing streams otherwise return 0 whenever their
+   * buffer is empty.
+   */
+  private static final class WaitingInputStream extends PushbackInputStream {
+    WaitingInputStream(InputStream input) {
+      super(input);
+    }
+
+    @Override
+    public int available() throws IOException {
+      int available = super.available();
+      if (available > 0) {
+        return available;
+      }
+      int next = read();
+      if (next < 0) {
+        return 0;
+      }
+      unread(next);
+      return 1;
+    }
+  }
+}
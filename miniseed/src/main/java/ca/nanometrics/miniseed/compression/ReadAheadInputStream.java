@@ -0,0 +1,201 @@
+package ca.nanometrics.miniseed.compression;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads a source stream on a separate thread, up to {@link #CHUNKS_AHEAD} chunks ahead of the
+ * reader, so that the work of producing the bytes (such as decompression) overlaps with the work of
+ * consuming them.
+ *
+ * <p>The chunks are queued as futures, so a source split into independent parts can produce several
+ * chunks at once, on other threads, while the reader still receives them in order.
+ *
+ * <p>{@link #available()} waits for the next chunk, so it only returns 0 at the end of the source.
+ * A failure reading the source is rethrown to the reader once the chunks read before it have been
+ * consumed. The thread ends at the end of the source, or when the stream is closed.
+ */
+final class ReadAheadInputStream extends InputStream {
+  static final int CHUNK_SIZE = 1 << 16;
+  static final int CHUNKS_AHEAD = 8;
+
+  private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+  private static final Future<byte[]> END = CompletableFuture.completedFuture(new byte[0]);
+
+  /** The chunks of a source, in order. */
+  interface Chunks {
+    /**
+     * @return the next chunk, which may still be being produced, or null at the end of the source.
+     */
+    Future<byte[]> next() throws IOException;
+  }
+
+  private final Closeable m_source;
+  private final Chunks m_sourceChunks;
+  private final BlockingQueue<Future<byte[]>> m_chunks;
+  private final Thread m_thread;
+  private byte[] m_chunk = new byte[0];
+  private int m_position;
+  private boolean m_end;
+
+  ReadAheadInputStream(InputStream source, String name) {
+    this(source, chunksOf(source), CHUNKS_AHEAD, name);
+  }
+
+  /**
+   * @param source closed when this stream is closed.
+   * @param chunks the chunks of the source, which are only requested from the read-ahead thread.
+   * @param chunksAhead the number of chunks to queue ahead of the reader.
+   */
+  ReadAheadInputStream(Closeable source, Chunks chunks, int chunksAhead, String name) {
+    m_source = source;
+    m_sourceChunks = chunks;
+    m_chunks = new ArrayBlockingQueue<>(chunksAhead);
+    m_thread = new Thread(this::fill, name + "-read-ahead-" + THREAD_NUMBER.incrementAndGet());
+    m_thread.setDaemon(true);
+    m_thread.start();
+  }
+
+  /**
+   * @return the given stream read in chunks of {@link #CHUNK_SIZE}.
+   */
+  static Chunks chunksOf(InputStream source) {
+    return () -> {
+      byte[] chunk = source.readNBytes(CHUNK_SIZE);
+      return chunk.length == 0 ? null : CompletableFuture.completedFuture(chunk);
+    };
+  }
+
+  private void fill() {
+    Future<byte[]> last = END;
+    try {
+      for (Future<byte[]> chunk = m_sourceChunks.next();
+          chunk != null;
+          chunk = m_sourceChunks.next()) {
+        m_chunks.put(chunk);
+      }
+    } catch (InterruptedException e) {
+      // the reader has closed the stream
+      return;
+    } catch (IOException | RuntimeException e) {
+      last = CompletableFuture.failedFuture(e);
+    }
+    try {
+      m_chunks.put(last);
+    } catch (InterruptedException e) {
+      // the reader has closed the stream
+    }
+  }
+
+  /**
+   * @return true if there are bytes left in the current chunk, after waiting for the next chunk if
+   *     necessary, or false at the end of the source.
+   */
+  private boolean nextChunk() throws IOException {
+    while (m_position == m_chunk.length) {
+      if (m_end) {
+        return false;
+      }
+      Future<byte[]> chunk;
+      try {
+        chunk = m_chunks.take();
+        if (chunk == END) {
+          m_end = true;
+          return false;
+        }
+        m_chunk = chunk.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for input");
+      } catch (ExecutionException e) {
+        m_end = true;
+        throw failure(e.getCause());
+      } catch (CancellationException e) {
+        m_end = true;
+        throw new IOException("Input was closed", e);
+      }
+      m_position = 0;
+    }
+    return true;
+  }
+
+  private static IOException failure(Throwable cause) {
+    if (cause instanceof IOException e) {
+      return e;
+    }
+    if (cause instanceof UncheckedIOException e) {
+      return e.getCause();
+    }
+    return new IOException(cause);
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!nextChunk()) {
+      return -1;
+    }
+    return m_chunk[m_position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    Objects.checkFromIndexSize(offset, length, bytes.length);
+    if (length == 0) {
+      return 0;
+    }
+    if (!nextChunk()) {
+      return -1;
+    }
+    int read = Math.min(length, m_chunk.length - m_position);
+    System.arraycopy(m_chunk, m_position, bytes, offset, read);
+    m_position += read;
+    return read;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return nextChunk() ? m_chunk.length - m_position : 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    m_thread.interrupt();
+    m_end = true;
+    m_position = m_chunk.length;
+    for (Future<byte[]> chunk = m_chunks.poll(); chunk != null; chunk = m_chunks.poll()) {
+      chunk.cancel(false);
+    }
+    m_source.close();
+  }
+}
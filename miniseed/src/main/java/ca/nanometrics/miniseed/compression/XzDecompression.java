@@ -0,0 +1,36 @@
+package ca.nanometrics.miniseed.compression;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.tukaani.xz.XZInputStream;
+
+/** Isolates the optional xz dependency, so it is only loaded when xz input is read. */
+final class XzDecompression {
+  private XzDecompression() {
+    // static methods only
+  }
+
+  static InputStream open(InputStream compressed) throws IOException {
+    return new XZInputStream(compressed);
+  }
+}
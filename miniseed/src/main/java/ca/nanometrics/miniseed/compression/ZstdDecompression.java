@@ -0,0 +1,104 @@
+package ca.nanometrics.miniseed.compression;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import io.airlift.compress.zstd.ZstdDecompressor;
+import io.airlift.compress.zstd.ZstdInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/** Isolates the optional zstd dependency, so it is only loaded when zstd input is read. */
+final class ZstdDecompression {
+  /**
+   * Frames up to this size, compressed and decompressed, are decompressed in memory, in parallel.
+   * From the first larger frame on, the rest of the input is decompressed as a stream.
+   */
+  static final int MAX_FRAME_SIZE = 1 << 24;
+
+  private ZstdDecompression() {
+    // static methods only
+  }
+
+  static InputStream open(InputStream compressed) {
+    return new ZstdInputStream(compressed);
+  }
+
+  /**
+   * @return the decompressed chunks of the given input, one per frame, each decompressed on the
+   *     given executor. Input written as a single frame gains nothing, but files written by
+   *     parallel compressors, such as {@code zstd -T0} or {@code pzstd}, are made of many frames.
+   */
+  static ReadAheadInputStream.Chunks frames(InputStream compressed, Executor executor) {
+    // fail here, rather than on the executor, if the dependency is not on the class path
+    Objects.requireNonNull(ZstdDecompressor.class);
+    ZstdFrameSplitter frames = new ZstdFrameSplitter(compressed);
+    return new ReadAheadInputStream.Chunks() {
+      private ReadAheadInputStream.Chunks m_rest;
+
+      @Override
+      public Future<byte[]> next() throws IOException {
+        if (m_rest != null) {
+          return m_rest.next();
+        }
+        ZstdFrameSplitter.Frame frame = frames.next(MAX_FRAME_SIZE);
+        if (frame == null) {
+          return null;
+        }
+        if (!frame.complete() || frame.contentSize() > MAX_FRAME_SIZE) {
+          m_rest =
+              ReadAheadInputStream.chunksOf(
+                  open(
+                      new SequenceInputStream(
+                          new ByteArrayInputStream(frame.bytes()), compressed)));
+          return m_rest.next();
+        }
+        return CompletableFuture.supplyAsync(() -> decompress(frame), executor);
+      }
+    };
+  }
+
+  private static byte[] decompress(ZstdFrameSplitter.Frame frame) {
+    byte[] compressed = frame.bytes();
+    try {
+      if (frame.contentSize() < 0) {
+        return open(new ByteArrayInputStream(compressed)).readAllBytes();
+      }
+      byte[] content = new byte[(int) frame.contentSize()];
+      int size =
+          new ZstdDecompressor()
+              .decompress(compressed, 0, compressed.length, content, 0, content.length);
+      if (size != content.length) {
+        throw new IOException(
+            "zstd frame decompressed to " + size + " bytes, expected " + content.length);
+      }
+      return content;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
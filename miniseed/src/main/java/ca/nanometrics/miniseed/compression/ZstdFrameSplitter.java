@@ -0,0 +1,140 @@
+package ca.nanometrics.miniseed.compression;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits a zstd stream into its frames, without decompressing them, by following the frame header
+ * and the size in each block header to the last block of the frame. Each frame decompresses
+ * independently of the others, so they can be decompressed in parallel.
+ *
+ * <p>Skippable frames are skipped. A frame larger than the limit given to {@link #next(int)} is
+ * returned incomplete, with the bytes read so far, so that the rest of the input can be
+ * decompressed as a stream instead.
+ */
+final class ZstdFrameSplitter {
+  private static final int MAGIC = 0xfd2fb528;
+  private static final int SKIPPABLE_MAGIC = 0x184d2a50;
+  private static final int SKIPPABLE_MAGIC_MASK = 0xfffffff0;
+  private static final int[] DICTIONARY_ID_SIZES = {0, 1, 2, 4};
+  private static final int BLOCK_HEADER_SIZE = 3;
+  private static final int BLOCK_TYPE_RLE = 1;
+  private static final int BLOCK_TYPE_RESERVED = 3;
+  private static final int CHECKSUM_SIZE = 4;
+
+  /**
+   * @param bytes the compressed frame, or its start if the frame is incomplete.
+   * @param contentSize the decompressed size recorded in the frame header, or -1 if it is not.
+   * @param complete false if the frame is larger than the limit, and so only partly read.
+   */
+  record Frame(byte[] bytes, long contentSize, boolean complete) {}
+
+  private final InputStream m_input;
+
+  ZstdFrameSplitter(InputStream input) {
+    m_input = input;
+  }
+
+  /**
+   * @param maxLength the number of compressed bytes after which the frame is returned incomplete.
+   * @return the next frame, or null at the end of the input.
+   * @throws IOException if the input is not zstd, or ends within a frame.
+   */
+  Frame next(int maxLength) throws IOException {
+    byte[] magic;
+    while (true) {
+      magic = m_input.readNBytes(4);
+      if (magic.length == 0) {
+        return null;
+      }
+      if (magic.length < 4) {
+        throw new EOFException("Truncated zstd frame magic number");
+      }
+      int value = (int) littleEndian(magic, 4);
+      if ((value & SKIPPABLE_MAGIC_MASK) == SKIPPABLE_MAGIC) {
+        m_input.skipNBytes(littleEndian(readFully(4), 4));
+      } else if (value == MAGIC) {
+        break;
+      } else {
+        throw new IOException(String.format("Not a zstd frame, magic number 0x%08x", value));
+      }
+    }
+    ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    frame.write(magic);
+    int descriptor = readFully(1)[0] & 0xff;
+    frame.write(descriptor);
+    if ((descriptor & 0x08) != 0) {
+      throw new IOException("Reserved bit set in zstd frame header");
+    }
+    int contentSizeFlag = descriptor >>> 6;
+    boolean singleSegment = (descriptor & 0x20) != 0;
+    boolean checksum = (descriptor & 0x04) != 0;
+    frame.write(readFully(singleSegment ? 0 : 1));
+    frame.write(readFully(DICTIONARY_ID_SIZES[descriptor & 0x03]));
+    int contentSizeLength = contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeFlag;
+    byte[] contentSizeBytes = readFully(contentSizeLength);
+    frame.write(contentSizeBytes);
+    long contentSize =
+        contentSizeLength == 0
+            ? -1
+            : littleEndian(contentSizeBytes, contentSizeLength)
+                + (contentSizeLength == 2 ? 256 : 0);
+    boolean last;
+    do {
+      byte[] header = readFully(BLOCK_HEADER_SIZE);
+      frame.write(header);
+      int value = (int) littleEndian(header, BLOCK_HEADER_SIZE);
+      last = (value & 1) != 0;
+      int type = (value >>> 1) & 0x03;
+      if (type == BLOCK_TYPE_RESERVED) {
+        throw new IOException("Reserved zstd block type");
+      }
+      frame.write(readFully(type == BLOCK_TYPE_RLE ? 1 : value >>> 3));
+      if (frame.size() > maxLength && !last) {
+        return new Frame(frame.toByteArray(), contentSize, false);
+      }
+    } while (!last);
+    if (checksum) {
+      frame.write(readFully(CHECKSUM_SIZE));
+    }
+    return new Frame(frame.toByteArray(), contentSize, true);
+  }
+
+  private byte[] readFully(int length) throws IOException {
+    byte[] bytes = m_input.readNBytes(length);
+    if (bytes.length < length) {
+      throw new EOFException("Truncated zstd frame");
+    }
+    return bytes;
+  }
+
+  private static long littleEndian(byte[] bytes, int length) {
+    long value = 0;
+    for (int i = length - 1; i >= 0; i--) {
+      value = (value << 8) | (bytes[i] & 0xff);
+    }
+    return value;
+  }
+}
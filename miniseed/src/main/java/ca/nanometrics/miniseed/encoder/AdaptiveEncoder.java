@@ -0,0 +1,211 @@
+package ca.nanometrics.miniseed.encoder;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.Sample;
+import ca.nanometrics.miniseed.encoder.steim.Steim1Block;
+import ca.nanometrics.miniseed.encoder.steim.Steim1BlockProvider;
+import ca.nanometrics.miniseed.encoder.steim.Steim1DataFrame;
+import ca.nanometrics.miniseed.encoder.steim.Steim1Encoder;
+import ca.nanometrics.miniseed.encoder.steim.Steim1FirstDataFrame;
+import ca.nanometrics.miniseed.encoder.steim.SteimBlock;
+import ca.nanometrics.miniseed.encoder.steim.SteimBlockObserver;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.endian.Endian;
+import ca.nanometrics.miniseed.endian.LittleEndian;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Encodes integer samples into fixed size blocks, choosing the encoding of each block that fits the
+ * most samples: Steim1, 16 bit integers or 32 bit integers.
+ *
+ * <p>Samples are buffered until there are enough to fill a block with any of the encodings. The
+ * number of samples that fit in a Steim1 block is then counted from the byte widths of the
+ * differences between samples, packing words the same way as {@link Steim1Encoder}, without
+ * encoding them; the integer encodings fit a fixed number of samples, if the samples are in range.
+ * The block is encoded with the {@link Steim1Encoder} or as little endian integers, and passed to
+ * the observers with its {@link DataEncoding}, to be used as the data encoding of its record.
+ */
+public class AdaptiveEncoder {
+  private static final int WORDS_FOR_LOOKAHEAD = 1;
+  private static final int MAX_SAMPLES_PER_WORD = 4;
+
+  private final int m_blockLength;
+  private final int m_steim1Words;
+  private final int[] m_samples;
+  private int m_numSamples;
+  private int m_previousSample;
+  private final Steim1Encoder m_steim1Encoder;
+  private final List<SteimBlock> m_steim1Blocks = new ArrayList<>(1);
+  private final Collection<EncodedBlockObserver> m_observers;
+
+  public AdaptiveEncoder(
+      String description, int numFramesPerBlock, Collection<EncodedBlockObserver> observers) {
+    SteimBlockObserver steim1Observer = m_steim1Blocks::add;
+    m_steim1Encoder =
+        new Steim1Encoder(
+            description, new Steim1BlockProvider(numFramesPerBlock), Set.of(steim1Observer));
+    m_blockLength = numFramesPerBlock * Steim1Block.NUMBER_BYTES_PER_FRAME;
+    m_steim1Words =
+        Steim1FirstDataFrame.NUM_DATA_WORDS
+            + (numFramesPerBlock - 1) * Steim1DataFrame.NUM_DATA_WORDS;
+    m_samples = new int[(m_steim1Words + WORDS_FOR_LOOKAHEAD) * MAX_SAMPLES_PER_WORD];
+    m_observers = new ArrayList<>();
+    if (observers != null) {
+      m_observers.addAll(observers);
+    }
+  }
+
+  public boolean addObserver(EncodedBlockObserver observer) {
+    return m_observers.add(observer);
+  }
+
+  public boolean removeObserver(EncodedBlockObserver observer) {
+    return m_observers.remove(observer);
+  }
+
+  public void addSample(Sample sample) {
+    m_samples[m_numSamples++] = sample.sample();
+    if (m_numSamples == m_samples.length) {
+      encodeBlock();
+    }
+  }
+
+  /**
+   * Encode all buffered samples, emitting blocks as necessary.
+   *
+   * @return true if there was a block to flush, false otherwise
+   */
+  public boolean flush() {
+    if (m_numSamples == 0) {
+      return false;
+    }
+    while (m_numSamples > 0) {
+      encodeBlock();
+    }
+    return true;
+  }
+
+  private void encodeBlock() {
+    int steim1 = steim1Samples();
+    int integer16 = integer16Samples();
+    int integer32 = Math.min(m_numSamples, m_blockLength / Integer.BYTES);
+    if (steim1 >= integer16 && steim1 >= integer32) {
+      encodeSteim1(steim1);
+    } else if (integer16 >= integer32) {
+      encodeIntegers(DataEncoding.INTEGER_16BIT, integer16);
+    } else {
+      encodeIntegers(DataEncoding.INTEGER_32BIT, integer32);
+    }
+  }
+
+  /**
+   * @return the number of buffered samples that fit in a Steim1 block.
+   */
+  int steim1Samples() {
+    int previous = m_previousSample;
+    int index = 0;
+    for (int word = 0; word < m_steim1Words && index < m_numSamples; word++) {
+      if (fitsInWord(previous, index, 4, Byte.MIN_VALUE, Byte.MAX_VALUE)) {
+        index += 4;
+      } else if (fitsInWord(previous, index, 2, Short.MIN_VALUE, Short.MAX_VALUE)) {
+        index += 2;
+      } else {
+        index++;
+      }
+      previous = m_samples[index - 1];
+    }
+    return index;
+  }
+
+  private boolean fitsInWord(int previous, int index, int count, int min, int max) {
+    if (index + count > m_numSamples) {
+      return false;
+    }
+    for (int i = index; i < index + count; i++) {
+      int difference = m_samples[i] - previous;
+      if (difference < min || difference > max) {
+        return false;
+      }
+      previous = m_samples[i];
+    }
+    return true;
+  }
+
+  /**
+   * @return the number of buffered samples that fit in a block of 16 bit integers.
+   */
+  int integer16Samples() {
+    int count = Math.min(m_numSamples, m_blockLength / Short.BYTES);
+    for (int i = 0; i < count; i++) {
+      if (m_samples[i] < Short.MIN_VALUE || m_samples[i] > Short.MAX_VALUE) {
+        return i;
+      }
+    }
+    return count;
+  }
+
+  private void encodeSteim1(int count) {
+    for (int i = 0; i < count; i++) {
+      m_steim1Encoder.addSample(new Sample(m_samples[i]));
+    }
+    m_steim1Encoder.flush(new Sample(m_samples[count - 1]));
+    if (m_steim1Blocks.size() != 1 || m_steim1Blocks.get(0).getNumSamples() != count) {
+      throw new IllegalStateException(
+          String.format(
+              "Expected one Steim1 block of %d samples, but encoded %s", count, m_steim1Blocks));
+    }
+    SteimBlock block = m_steim1Blocks.remove(0);
+    consume(count);
+    notifyBlockComplete(new EncodedBlock(DataEncoding.STEIM1, block.getBytes(), count));
+  }
+
+  private void encodeIntegers(DataEncoding encoding, int count) {
+    Endian writer = LittleEndian.get();
+    byte[] bytes = new byte[m_blockLength];
+    for (int i = 0; i < count; i++) {
+      if (encoding == DataEncoding.INTEGER_16BIT) {
+        writer.writeShort(bytes, i * Short.BYTES, (short) m_samples[i]);
+      } else {
+        writer.writeInt(bytes, i * Integer.BYTES, m_samples[i]);
+      }
+    }
+    consume(count);
+    // the next Steim1 block continues from the last sample of this block
+    m_steim1Encoder.flush(new Sample(m_previousSample));
+    notifyBlockComplete(new EncodedBlock(encoding, bytes, count));
+  }
+
+  private void consume(int count) {
+    m_previousSample = m_samples[count - 1];
+    m_numSamples -= count;
+    System.arraycopy(m_samples, count, m_samples, 0, m_numSamples);
+  }
+
+  private void notifyBlockComplete(EncodedBlock block) {
+    for (EncodedBlockObserver observer : m_observers) {
+      observer.blockComplete(block);
+    }
+  }
+}
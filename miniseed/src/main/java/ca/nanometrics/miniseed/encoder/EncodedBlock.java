@@ -0,0 +1,34 @@
+package ca.nanometrics.miniseed.encoder;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+
+/**
+ * A block of encoded samples, the payload of one data record.
+ *
+ * @param encoding the encoding of the bytes, to be used as the data encoding of the record.
+ * @param bytes the encoded samples, padded to the block size.
+ * @param numberOfSamples the number of samples encoded in the bytes.
+ */
+public record EncodedBlock(DataEncoding encoding, byte[] bytes, int numberOfSamples) {
+  // simple record
+}
@@ -227,6 +227,13 @@ public abstract class AbstractSteim1DataFrame implements SteimDataFrame {
     return codeBitsAsBytes;
   }
 
+  /** Count the control code of each data word of the completed frame, by two bit value. */
+  void countControlCodes(long[] controlCodeWords) {
+    for (SteimWord dataWord : m_dataWords) {
+      controlCodeWords[dataWord.getTwoBitNibbleCode()]++;
+    }
+  }
+
   public byte[] getDataAsByteArray() {
     ByteArrayOutputStream outputStream = new ByteArrayOutputStream(NUMBER_BYTES_PER_FRAME);
     try {
@@ -33,6 +33,13 @@ public class Steim1Block implements SteimBlock {
 
   public static final int MIN_NUM_FRAMES = 1;
   public static final int MAX_NUM_FRAMES = 63;
+
+  /**
+   * The most frames in a block for a miniseed 3 record, which has no limit on the number of frames
+   * other than its 32 bit payload length; this keeps the payload of a record within a 1 GiB array.
+   */
+  public static final int MAX_NUM_FRAMES_MINISEED3 = 1 << 24;
+
   public static final int DEFAULT_NUM_DATA_FRAMES = 7;
   public static final int NUMBER_ELEMENTS_PER_FRAME = 16;
   public static final int NUMBER_BYTES_PER_FRAME = NUMBER_ELEMENTS_PER_FRAME * 4;
@@ -48,23 +55,42 @@ public class Steim1Block implements SteimBlock {
   private final Steim1DataFrameProvider m_dataFrameProvider;
   private final Deque<SteimDataFrame> m_dataFrames;
   private final int m_maxNumDataFrames;
+  private final boolean m_padded;
   private boolean m_isFinished;
   private int m_finalNumSamples;
   private int m_numFramesCreated;
   private byte[] m_finalByteBlock;
+  // data words of the completed frames, by two bit control code
+  private final long[] m_controlCodeWords = new long[Steim1ControlCode.values().length];
+  private int m_numFramesCounted;
 
   public Steim1Block(
       String description,
       Steim1DataFrameProvider steim1DataFrameProvider,
       Sample lastSample,
       int numDataFrames) {
+    this(description, steim1DataFrameProvider, lastSample, numDataFrames, true);
+  }
+
+  /**
+   * @param padded if true, a block that is completed before it is full is padded with empty frames
+   *     to {@code numDataFrames}, as required for a fixed length miniseed 2 record; otherwise it
+   *     holds only the frames with samples, as a miniseed 3 record may have any payload length.
+   */
+  public Steim1Block(
+      String description,
+      Steim1DataFrameProvider steim1DataFrameProvider,
+      Sample lastSample,
+      int numDataFrames,
+      boolean padded) {
     m_description = description;
     m_maxNumDataFrames = numDataFrames;
+    m_padded = padded;
     if (steim1DataFrameProvider == null) {
       throw new IllegalArgumentException("Must provide data frame provider");
     }
     m_dataFrameProvider = steim1DataFrameProvider;
-    m_dataFrames = new ArrayDeque<>(numDataFrames);
+    m_dataFrames = new ArrayDeque<>(Math.min(numDataFrames, MAX_NUM_FRAMES));
     m_dataFrames.add(m_dataFrameProvider.getFirstDataFrame(getNextFrameDescription(), lastSample));
     m_isFinished = false;
   }
@@ -96,6 +122,7 @@ public class Steim1Block implements SteimBlock {
       throw new IllegalStateException(
           "Last sample of current frame was absent, this block has been padded");
     }
+    countControlCodes(getCurrentFrame());
     SteimDataFrame newFrame =
         m_dataFrameProvider.getFrame(getNextFrameDescription(), lastSample.get());
     m_dataFrames.add(newFrame);
@@ -109,7 +136,7 @@ public class Steim1Block implements SteimBlock {
 
   @Override
   public Optional<Sample> getLastSample() throws IllegalStateException {
-    if (!isFull()) {
+    if (!isFull() && !m_isFinished) {
       throw new IllegalStateException(
           String.format(NO_LAST_SAMPLE_WHEN_NOT_FULL_MESSAGE, m_description, getPercentFull()));
     }
@@ -137,9 +164,14 @@ public class Steim1Block implements SteimBlock {
     return m_isFinished ? m_finalNumSamples : getCurrentNumSamples();
   }
 
+  @Override
+  public int getNumFrames() {
+    return m_isFinished ? m_dataFrames.size() : m_maxNumDataFrames;
+  }
+
   @Override
   public byte[] getBytes() throws IllegalStateException {
-    if (!isFull()) {
+    if (!isFull() && !m_isFinished) {
       throw new IllegalStateException(
           String.format(
               CANNOT_FORM_BYTE_BLOCK_WHEN_BLOCK_IS_NOT_FULL, m_description, getPercentFull()));
@@ -174,7 +206,7 @@ public class Steim1Block implements SteimBlock {
           .setSteimBlockLastSample(getLastNonEmptySample());
     }
 
-    while (m_dataFrames.size() < m_maxNumDataFrames) {
+    while (m_padded && m_dataFrames.size() < m_maxNumDataFrames) {
       m_dataFrames.add(Steim1DataFrameProvider.FILLER_FULL_FRAME_WITH_NO_SAMPLES);
     }
     finish();
@@ -189,7 +221,8 @@ public class Steim1Block implements SteimBlock {
 
   @Override
   public boolean isEmpty() {
-    return getCurrentNumSamples() == 0;
+    // frames are filled in order, so only the first needs to be checked
+    return m_dataFrames.getFirst().getNumSamples() == 0;
   }
 
   private void finish() {
@@ -199,10 +232,30 @@ public class Steim1Block implements SteimBlock {
         firstDataFrame.setSteimBlockLastSampleAndFinish(getLastNonEmptySample());
       }
       m_finalNumSamples = getCurrentNumSamples();
+      m_dataFrames.stream().skip(m_numFramesCounted).toList().forEach(this::countControlCodes);
       m_isFinished = true;
     }
   }
 
+  /**
+   * @return the number of data words with the control code in the frames completed so far, which is
+   *     all frames once the block is complete. Words of padding have no data.
+   */
+  public long words(Steim1ControlCode controlCode) {
+    return m_controlCodeWords[controlCode.getTwoBitControlCodeValue()];
+  }
+
+  private void countControlCodes(SteimDataFrame frame) {
+    if (frame instanceof AbstractSteim1DataFrame steim1Frame) {
+      steim1Frame.countControlCodes(m_controlCodeWords);
+    } else {
+      // a filler frame
+      m_controlCodeWords[Steim1ControlCode.NO_DATA.getTwoBitControlCodeValue()] +=
+          Steim1DataFrame.NUM_DATA_WORDS;
+    }
+    m_numFramesCounted++;
+  }
+
   private int getCurrentNumSamples() {
     int numSamples = 0;
     for (SteimDataFrame frame : m_dataFrames) {
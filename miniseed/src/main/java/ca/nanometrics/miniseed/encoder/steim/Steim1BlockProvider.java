@@ -26,25 +26,44 @@ public class Steim1BlockProvider {
   private static final String INVALID_NUM_FRAMES_FORMAT_STRING =
       "Cannot use %d number of frames per block, must be in [%d,%d]";
   private int m_numFramesPerBlock;
+  private final int m_maxNumFramesPerBlock;
+  private final boolean m_padded;
   private final Steim1DataFrameProvider m_frameProvider = new Steim1DataFrameProvider();
 
+  /** Provides blocks of a fixed number of frames, up to {@link Steim1Block#MAX_NUM_FRAMES}. */
   public Steim1BlockProvider(int numFramesPerBlock) {
+    this(numFramesPerBlock, Steim1Block.MAX_NUM_FRAMES, true);
+  }
+
+  private Steim1BlockProvider(int numFramesPerBlock, int maxNumFramesPerBlock, boolean padded) {
+    m_maxNumFramesPerBlock = maxNumFramesPerBlock;
+    m_padded = padded;
     setNumFramesPerBlock(numFramesPerBlock);
   }
 
+  /**
+   * Provides blocks for miniseed 3 records, of up to {@link Steim1Block#MAX_NUM_FRAMES_MINISEED3}
+   * frames. A block completed early by a flush is not padded with empty frames, so a caller may use
+   * very large blocks and flush them after a given number of samples or duration.
+   */
+  public static Steim1BlockProvider forMiniSeed3(int maxNumFramesPerBlock) {
+    return new Steim1BlockProvider(
+        maxNumFramesPerBlock, Steim1Block.MAX_NUM_FRAMES_MINISEED3, false);
+  }
+
   public SteimBlock getBlock(String description, Sample lastSample) {
-    return new Steim1Block(description, m_frameProvider, lastSample, m_numFramesPerBlock);
+    return new Steim1Block(description, m_frameProvider, lastSample, m_numFramesPerBlock, m_padded);
   }
 
   public void setNumFramesPerBlock(int numFramesPerBlock) {
     if (!(numFramesPerBlock >= Steim1Block.MIN_NUM_FRAMES
-        && numFramesPerBlock <= Steim1Block.MAX_NUM_FRAMES)) {
+        && numFramesPerBlock <= m_maxNumFramesPerBlock)) {
       throw new IllegalArgumentException(
           String.format(
               INVALID_NUM_FRAMES_FORMAT_STRING,
               numFramesPerBlock,
               Steim1Block.MIN_NUM_FRAMES,
-              Steim1Block.MAX_NUM_FRAMES));
+              m_maxNumFramesPerBlock));
     }
     m_numFramesPerBlock = numFramesPerBlock;
   }
@@ -21,9 +21,10 @@ package ca.nanometrics.miniseed.encoder.steim;
  */
 
 import ca.nanometrics.miniseed.Sample;
+import ca.nanometrics.miniseed.jfr.SteimBlockEvent;
+import ca.nanometrics.miniseed.metrics.MiniSeedMetrics;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,6 +36,7 @@ public class Steim1Encoder implements SteimEncoder {
   private final Collection<SteimBlockObserver> m_observers;
   private final Steim1BlockProvider m_blockProvider;
   private int m_numBlocksCreated = 0;
+  private final SteimEncoderStatistics m_statistics = new SteimEncoderStatistics();
 
   public Steim1Encoder(
       String description, Steim1BlockProvider provider, Collection<SteimBlockObserver> observers) {
@@ -78,7 +80,7 @@ public class Steim1Encoder implements SteimEncoder {
     }
 
     SteimBlock returnBlock = getCompletedBlockAndAdvanceCurrent();
-    notifyBlocksComplete(Collections.singletonList(returnBlock));
+    notifyBlockComplete(returnBlock, SteimEncoderStatistics.Completion.FULL, overflow.get().size());
     for (Sample overflowSample : overflow.get()) {
       addSampleWithNoOverflow(overflowSample);
     }
@@ -96,34 +98,40 @@ public class Steim1Encoder implements SteimEncoder {
 
   @Override
   public boolean flush(Sample initializingSample) {
+    return flush(initializingSample, SteimEncoderStatistics.Completion.FLUSH);
+  }
+
+  private boolean flush(Sample initializingSample, SteimEncoderStatistics.Completion completion) {
     if (m_currentSteimBlock.isEmpty()) {
       advanceCurrentBlock(initializingSample);
       return false;
     }
 
-    List<SteimBlock> completedBlocks = new ArrayList<>(2);
-
-    Optional<Sample> overflow = m_currentSteimBlock.forceComplete();
-    completedBlocks.add(m_currentSteimBlock);
+    SteimBlock completedBlock = m_currentSteimBlock;
+    Optional<Sample> overflow = completedBlock.forceComplete();
+    SteimBlock overflowBlock = null;
 
     if (overflow.isPresent()) {
-      advanceCurrentBlock(m_currentSteimBlock.getLastSample().orElse(null));
+      advanceCurrentBlock(completedBlock.getLastSample().orElse(null));
       // Essentially create a new block and add a single sample to that block
       m_currentSteimBlock.addSample(overflow.get());
       // Guaranteed to not overflow, as this is a new block
       m_currentSteimBlock.forceComplete();
-      completedBlocks.add(m_currentSteimBlock);
+      overflowBlock = m_currentSteimBlock;
     }
 
     advanceCurrentBlock(initializingSample);
-    notifyBlocksComplete(completedBlocks);
+    notifyBlockComplete(completedBlock, completion, overflow.isPresent() ? 1 : 0);
+    if (overflowBlock != null) {
+      notifyBlockComplete(overflowBlock, completion, 0);
+    }
     return true;
   }
 
   @Override
   public void setNumFramesPerBlockAndFlush(int numFramesPerBlock) {
     m_blockProvider.setNumFramesPerBlock(numFramesPerBlock);
-    flush(null);
+    flush(null, SteimEncoderStatistics.Completion.FRAMES_PER_BLOCK_CHANGED);
   }
 
   private void advanceCurrentBlock(Sample initializingSample) {
@@ -133,11 +141,23 @@ public class Steim1Encoder implements SteimEncoder {
             initializingSample == null ? NO_PREVIOUS_SAMPLE : initializingSample);
   }
 
-  private void notifyBlocksComplete(List<SteimBlock> steimBlocks) {
-    for (SteimBlock steimBlock : steimBlocks) {
-      for (SteimBlockObserver observer : m_observers) {
-        observer.steimBlockComplete(steimBlock);
-      }
+  private void notifyBlockComplete(
+      SteimBlock steimBlock, SteimEncoderStatistics.Completion completion, int overflowSamples) {
+    m_statistics.addBlock(steimBlock);
+    m_statistics.addControlCodes(steimBlock);
+    m_statistics.addCompletion(completion);
+    m_statistics.addOverflowSamples(overflowSamples);
+    MiniSeedMetrics.global().encoderBlockCompleted(steimBlock.getNumSamples());
+    SteimBlockEvent event = new SteimBlockEvent();
+    if (event.shouldCommit()) {
+      event.description = m_description;
+      event.samples = steimBlock.getNumSamples();
+      event.frames = steimBlock.getNumFrames();
+      event.commit();
+    }
+    for (SteimBlockObserver observer : m_observers) {
+      observer.steimBlockComplete(steimBlock);
+      observer.steimBlockCompletion(completion, overflowSamples);
     }
   }
 
@@ -167,6 +187,11 @@ public class Steim1Encoder implements SteimEncoder {
     return m_currentSteimBlock.getPercentFull();
   }
 
+  @Override
+  public SteimEncoderStatistics statistics() {
+    return m_statistics.copy();
+  }
+
   public SteimBlock getCurrentBlock() {
     return m_currentSteimBlock;
   }
@@ -48,6 +48,11 @@ public interface SteimBlock {
 
   int getNumSamples();
 
+  /**
+   * @return - The number of frames in this SteimBlock once complete.
+   */
+  int getNumFrames();
+
   /**
    * @return - A byte[] containing only the encoded samples. No header is attached.
    */
@@ -22,4 +22,16 @@ package ca.nanometrics.miniseed.encoder.steim;
 
 public interface SteimBlockObserver {
   void steimBlockComplete(SteimBlock steimBlock);
+
+  /**
+   * Called by {@link Steim1Encoder} after {@link #steimBlockComplete} with why the block was
+   * completed.
+   *
+   * @param overflowSamples the number of samples that did not fit in the block and were carried
+   *     into the next one.
+   */
+  default void steimBlockCompletion(
+      SteimEncoderStatistics.Completion completion, int overflowSamples) {
+    // most observers only need the block
+  }
 }
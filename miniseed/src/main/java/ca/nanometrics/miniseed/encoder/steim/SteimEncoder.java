@@ -43,4 +43,12 @@ public interface SteimEncoder {
   boolean isCurrentBlockEmpty();
 
   int getCurrentBlockPercentFull();
+
+  /**
+   * @return a snapshot of the statistics of the blocks completed by this encoder so far, or empty
+   *     statistics if the encoder does not count them.
+   */
+  default SteimEncoderStatistics statistics() {
+    return new SteimEncoderStatistics();
+  }
 }
@@ -0,0 +1,204 @@
+package ca.nanometrics.miniseed.encoder.steim;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the blocks produced by a Steim encoder: samples in, bytes out, frames, the
+ * control codes of the data words, and why blocks were completed.
+ *
+ * <p>All are counted from the counters of the encoder and its blocks, without reading the encoded
+ * bytes: a {@link Steim1Block} counts the control code of each data word as each of its frames is
+ * completed.
+ *
+ * <p>The counters may be updated by the encoding thread while they are read by another. Each
+ * counter is read atomically, but not all of them together, so a snapshot taken during encoding may
+ * count a block in one counter and not yet in another.
+ */
+public final class SteimEncoderStatistics {
+  /** Why a block was completed. */
+  public enum Completion {
+    /** The block was filled with samples. */
+    FULL,
+    /** The block was padded out by {@link SteimEncoder#flush}. */
+    FLUSH,
+    /** The block was padded out by {@link SteimEncoder#setNumFramesPerBlockAndFlush}. */
+    FRAMES_PER_BLOCK_CHANGED
+  }
+
+  private final LongAdder m_blocks = new LongAdder();
+  private final LongAdder m_frames = new LongAdder();
+  private final LongAdder m_samples = new LongAdder();
+  private final LongAdder m_overflowSamples = new LongAdder();
+  private final LongAdder[] m_controlCodes = adders(Steim1ControlCode.values().length);
+  private final LongAdder[] m_completions = adders(Completion.values().length);
+
+  public SteimEncoderStatistics() {
+    // all counters start at zero
+  }
+
+  private SteimEncoderStatistics(SteimEncoderStatistics other) {
+    m_blocks.add(other.m_blocks.sum());
+    m_frames.add(other.m_frames.sum());
+    m_samples.add(other.m_samples.sum());
+    m_overflowSamples.add(other.m_overflowSamples.sum());
+    for (int i = 0; i < m_controlCodes.length; i++) {
+      m_controlCodes[i].add(other.m_controlCodes[i].sum());
+    }
+    for (int i = 0; i < m_completions.length; i++) {
+      m_completions[i].add(other.m_completions[i].sum());
+    }
+  }
+
+  private static LongAdder[] adders(int length) {
+    LongAdder[] adders = new LongAdder[length];
+    for (int i = 0; i < length; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+
+  /**
+   * @return a snapshot of these statistics, not affected by later updates.
+   */
+  public SteimEncoderStatistics copy() {
+    return new SteimEncoderStatistics(this);
+  }
+
+  /** Count the samples and frames of a completed block. */
+  public void addBlock(SteimBlock block) {
+    m_blocks.increment();
+    m_frames.add(block.getNumFrames());
+    m_samples.add(block.getNumSamples());
+  }
+
+  /**
+   * Count the control codes of the data words of a completed block. Only a {@link Steim1Block}
+   * counts its control codes; other blocks add none.
+   */
+  public void addControlCodes(SteimBlock block) {
+    if (block instanceof Steim1Block steim1Block) {
+      for (Steim1ControlCode controlCode : Steim1ControlCode.values()) {
+        m_controlCodes[controlCode.getTwoBitControlCodeValue()].add(steim1Block.words(controlCode));
+      }
+    }
+  }
+
+  public void addCompletion(Completion completion) {
+    m_completions[completion.ordinal()].increment();
+  }
+
+  public void addOverflowSamples(int count) {
+    m_overflowSamples.add(count);
+  }
+
+  public long blocks() {
+    return m_blocks.sum();
+  }
+
+  public long frames() {
+    return m_frames.sum();
+  }
+
+  public long samples() {
+    return m_samples.sum();
+  }
+
+  /**
+   * @return the size of the samples as 32 bit integers.
+   */
+  public long bytesIn() {
+    return samples() * Integer.BYTES;
+  }
+
+  public long bytesOut() {
+    return frames() * Steim1Block.NUMBER_BYTES_PER_FRAME;
+  }
+
+  /**
+   * @return bytes in per byte out, or 0 if no blocks have been encoded.
+   */
+  public double compressionRatio() {
+    long bytesOut = bytesOut();
+    return bytesOut == 0 ? 0 : (double) bytesIn() / bytesOut;
+  }
+
+  /**
+   * @return the mean number of samples per frame, or 0 if no blocks have been encoded.
+   */
+  public double samplesPerFrame() {
+    long frames = frames();
+    return frames == 0 ? 0 : (double) samples() / frames;
+  }
+
+  /**
+   * @return the number of data words with the given control code, counted by {@link
+   *     #addControlCodes}. Data words with no data are padding.
+   */
+  public long words(Steim1ControlCode controlCode) {
+    return m_controlCodes[controlCode.getTwoBitControlCodeValue()].sum();
+  }
+
+  /**
+   * @return the number of differences encoded with the width of the given control code.
+   */
+  public long differences(Steim1ControlCode controlCode) {
+    if (controlCode == Steim1ControlCode.NO_DATA) {
+      return 0;
+    }
+    return words(controlCode)
+        * (Steim1DataWord.STEIM_ONE_MAX_DIFFERENCE_WIDTH / controlCode.getNumBytesPerDifference());
+  }
+
+  public long completions(Completion completion) {
+    return m_completions[completion.ordinal()].sum();
+  }
+
+  /**
+   * @return the number of samples that did not fit in a block and were carried into the next one.
+   */
+  public long overflowSamples() {
+    return m_overflowSamples.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "SteimEncoderStatistics [blocks="
+        + blocks()
+        + ", frames="
+        + frames()
+        + ", samples="
+        + samples()
+        + ", bytesOut="
+        + bytesOut()
+        + ", compressionRatio="
+        + compressionRatio()
+        + ", controlCodes="
+        + Arrays.toString(m_controlCodes)
+        + ", completions="
+        + Arrays.toString(m_completions)
+        + ", overflowSamples="
+        + overflowSamples()
+        + "]";
+  }
+}
@@ -0,0 +1,50 @@
+package ca.nanometrics.miniseed.encoder.steim;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Aggregates {@link SteimEncoderStatistics} of the blocks it observes, including the control code
+ * histogram. One observer may be shared by several encoders, and read from a thread other than the
+ * ones encoding.
+ */
+public class SteimStatisticsObserver implements SteimBlockObserver {
+  private final SteimEncoderStatistics m_statistics = new SteimEncoderStatistics();
+
+  @Override
+  public void steimBlockComplete(SteimBlock steimBlock) {
+    m_statistics.addBlock(steimBlock);
+    m_statistics.addControlCodes(steimBlock);
+  }
+
+  @Override
+  public void steimBlockCompletion(
+      SteimEncoderStatistics.Completion completion, int overflowSamples) {
+    m_statistics.addCompletion(completion);
+    m_statistics.addOverflowSamples(overflowSamples);
+  }
+
+  /**
+   * @return a snapshot of the statistics of the blocks observed so far.
+   */
+  public SteimEncoderStatistics statistics() {
+    return m_statistics.copy();
+  }
+}
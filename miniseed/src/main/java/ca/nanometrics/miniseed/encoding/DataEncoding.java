@@ -28,8 +28,11 @@ import ca.nanometrics.miniseed.encoding.integers.Decode16BitIntegers;
 import ca.nanometrics.miniseed.encoding.integers.Decode32BitIntegers;
 import ca.nanometrics.miniseed.encoding.steim.DecodeSteim1;
 import ca.nanometrics.miniseed.encoding.steim.DecodeSteim2;
+import ca.nanometrics.miniseed.endian.ByteBufferReader;
 import ca.nanometrics.miniseed.endian.EndianReader;
 import ca.nanometrics.miniseed.endian.LittleEndianReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import javax.annotation.Nullable;
 
 /**
@@ -58,7 +61,7 @@ public enum DataEncoding {
   OPAQUE(100, true, Samples.Type.NONE);
 
   private static DecoderFactory unsupported(DataEncoding encoding) {
-    return (endianFactory, bytes, numSamples, length) -> {
+    return (reader, numSamples, length) -> {
       throw new UnsupportedOperationException("Unsupported data encoding: " + encoding);
     };
   }
@@ -88,10 +91,46 @@ public enum DataEncoding {
   @Nullable
   public Decode decoder(
       EndianReaderFactory readerFactory, byte[] bytes, int numSamples, int length) {
+    return decoder(
+        isLittleEndianOnly() ? new LittleEndianReader(bytes) : readerFactory.apply(this, bytes),
+        numSamples,
+        length);
+  }
+
+  /**
+   * Decode directly from a buffer, such as a direct or memory mapped buffer, without copying it to
+   * a byte array. The remaining bytes of the buffer are the payload, read big endian for Steim and
+   * little endian otherwise, as in miniseed 3.
+   */
+  @Nullable
+  public Decode decoder(ByteBuffer payload, int numSamples) {
+    return decoder(
+        new ByteBufferReader(payload, isSteim() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN),
+        numSamples,
+        payload.remaining());
+  }
+
+  /**
+   * Decode with the given reader, which must read in the byte order of the payload.
+   *
+   * @param length the length of the payload in bytes.
+   */
+  @Nullable
+  public Decode decoder(EndianReader reader, int numSamples, int length) {
     DecoderFactory decoderFactory = factory(this);
-    return decoderFactory == null
-        ? null
-        : decoderFactory.create(readerFactory, bytes, numSamples, length);
+    return decoderFactory == null ? null : decoderFactory.create(reader, numSamples, length);
+  }
+
+  /** Integer and floating point samples are always little endian. */
+  private boolean isLittleEndianOnly() {
+    return this == INTEGER_16BIT
+        || this == INTEGER_32BIT
+        || this == FLOAT_32BIT
+        || this == FLOAT_64BIT;
+  }
+
+  private boolean isSteim() {
+    return this == STEIM1 || this == STEIM2 || this == STEIM3;
   }
 
   public static DataEncoding fromCode(int code) {
@@ -105,21 +144,14 @@ public enum DataEncoding {
 
   static DecoderFactory factory(DataEncoding encoding) {
     return switch (encoding) {
-      case TEXT -> (endianFactory, bytes, numSamples, length) ->
-          new DecodeText(endianFactory.apply(encoding, bytes), numSamples, length);
-      case INTEGER_16BIT -> (endianFactory, bytes, numSamples, length) ->
-          new Decode16BitIntegers(new LittleEndianReader(bytes), numSamples, length);
+      case TEXT -> DecodeText::new;
+      case INTEGER_16BIT -> Decode16BitIntegers::new;
       case INTEGER_24BIT -> unsupported(encoding);
-      case INTEGER_32BIT -> (endianFactory, bytes, numSamples, length) ->
-          new Decode32BitIntegers(new LittleEndianReader(bytes), numSamples, length);
-      case FLOAT_32BIT -> (endianFactory, bytes, numSamples, length) ->
-          new Decode32BitFloats(new LittleEndianReader(bytes), numSamples, length);
-      case FLOAT_64BIT -> (endianFactory, bytes, numSamples, length) ->
-          new Decode64BitDoubles(new LittleEndianReader(bytes), numSamples, length);
-      case STEIM1 -> (endianFactory, bytes, numSamples, length) ->
-          new DecodeSteim1(endianFactory.apply(encoding, bytes), numSamples, length);
-      case STEIM2 -> (endianFactory, bytes, numSamples, length) ->
-          new DecodeSteim2(endianFactory.apply(encoding, bytes), numSamples, length);
+      case INTEGER_32BIT -> Decode32BitIntegers::new;
+      case FLOAT_32BIT -> Decode32BitFloats::new;
+      case FLOAT_64BIT -> Decode64BitDoubles::new;
+      case STEIM1 -> DecodeSteim1::new;
+      case STEIM2 -> DecodeSteim2::new;
       case GEOSCOPE_MULTIPLEXED_24BIT_INTEGER -> unsupported(encoding);
       case GEOSCOPE_MULTIPLEXED_16BIT_GAIN_RANGED_3BITEXPONENT -> unsupported(encoding);
       case GEOSCOPE_MULTIPLEXED_16BIT_GAIN_RANGED_4BITEXPONENT -> unsupported(encoding);
@@ -136,7 +168,7 @@ public enum DataEncoding {
 
   @FunctionalInterface
   interface DecoderFactory {
-    Decode create(EndianReaderFactory endianFactory, byte[] bytes, int numSamples, int length);
+    Decode create(EndianReader reader, int numSamples, int length);
   }
 
   @FunctionalInterface
@@ -22,6 +22,7 @@ package ca.nanometrics.miniseed.encoding;
 
 import ca.nanometrics.miniseed.Samples;
 import ca.nanometrics.miniseed.endian.EndianReader;
+import java.util.Arrays;
 
 public abstract class Decode extends DecoderEncoder {
   private final int m_initialSample = 0;
@@ -35,6 +36,48 @@ public abstract class Decode extends DecoderEncoder {
 
   public abstract Samples decode();
 
+  /**
+   * Decode only the samples from {@code firstSample} to {@code firstSample + count - 1}. Decoders
+   * that can stop early or seek override this; by default all samples are decoded and the range is
+   * copied.
+   *
+   * @throws IllegalArgumentException if the range is not within the expected number of samples.
+   */
+  public Samples decode(int firstSample, int count) {
+    checkRange(firstSample, count);
+    Samples samples = decode();
+    int end = firstSample + count;
+    return switch (samples.type()) {
+      case INTEGER -> Samples.build(Arrays.copyOfRange(samples.intSamples(), firstSample, end));
+      case FLOAT -> Samples.build(Arrays.copyOfRange(samples.floatSamples(), firstSample, end));
+      case DOUBLE -> Samples.build(Arrays.copyOfRange(samples.doubleSamples(), firstSample, end));
+      default -> throw new UnsupportedOperationException(
+          "Cannot decode a range of " + samples.type() + " samples");
+    };
+  }
+
+  /**
+   * Decode the samples straight into the given accumulator, in order, without building an array of
+   * samples. Decoders of numeric encodings override this; by default all samples are decoded, and
+   * verified, and then added.
+   *
+   * @return the given accumulator.
+   * @throws UnsupportedOperationException if the samples are not numeric.
+   */
+  public <A extends SampleAccumulator> A decode(A accumulator) {
+    accumulator.addAll(decode());
+    return accumulator;
+  }
+
+  protected void checkRange(int firstSample, int count) {
+    if (firstSample < 0 || count < 0 || firstSample + count > expectedNumberOfSamples()) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Cannot decode %s samples from sample %s of %s samples",
+              count, firstSample, expectedNumberOfSamples()));
+    }
+  }
+
   public boolean isDecoderSteim() {
     return false;
   }
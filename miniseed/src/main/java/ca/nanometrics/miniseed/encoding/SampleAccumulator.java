@@ -0,0 +1,66 @@
+package ca.nanometrics.miniseed.encoding;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.Samples;
+
+/**
+ * Receives the samples of a record one at a time, in order, as they are decoded by {@link
+ * Decode#decode(SampleAccumulator)}, so that running values can be computed without the samples
+ * being stored in an array. Samples that must be verified, such as Steim samples, are only added
+ * once the whole record has been verified.
+ *
+ * @see SampleStatistics
+ */
+public interface SampleAccumulator {
+  /** Add an integer sample, from an integer or Steim encoding. */
+  void add(int sample);
+
+  /** Add a floating point sample, from a 32 or 64 bit floating point encoding. */
+  void add(double sample);
+
+  /**
+   * Add all of the decoded samples, in order.
+   *
+   * @throws UnsupportedOperationException if the samples are not numeric.
+   */
+  default void addAll(Samples samples) {
+    switch (samples.type()) {
+      case INTEGER -> {
+        for (int sample : samples.intSamples()) {
+          add(sample);
+        }
+      }
+      case FLOAT -> {
+        for (float sample : samples.floatSamples()) {
+          add(sample);
+        }
+      }
+      case DOUBLE -> {
+        for (double sample : samples.doubleSamples()) {
+          add(sample);
+        }
+      }
+      default -> throw new UnsupportedOperationException(
+          "Cannot accumulate " + samples.type() + " samples");
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package ca.nanometrics.miniseed.encoding;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Running statistics of samples: count, minimum, maximum, sum and sum of squares, from which the
+ * mean and RMS are derived, and the number of clipped samples, those at or beyond the given clip
+ * limits.
+ *
+ * <p>Statistics of several records, or several channels, can be combined with {@link
+ * #add(SampleStatistics)}. Not thread safe.
+ */
+public class SampleStatistics implements SampleAccumulator {
+  private final double m_clipMinimum;
+  private final double m_clipMaximum;
+  private long m_count;
+  private double m_minimum = Double.POSITIVE_INFINITY;
+  private double m_maximum = Double.NEGATIVE_INFINITY;
+  private double m_sum;
+  private double m_sumOfSquares;
+  private long m_clipped;
+
+  /** Statistics without clip limits, so no samples are counted as clipped. */
+  public SampleStatistics() {
+    this(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+  }
+
+  /**
+   * @param clipMinimum samples at or below this value are counted as clipped.
+   * @param clipMaximum samples at or above this value are counted as clipped.
+   */
+  public SampleStatistics(double clipMinimum, double clipMaximum) {
+    if (!(clipMinimum < clipMaximum)) {
+      throw new IllegalArgumentException(
+          "Clip minimum must be less than clip maximum: " + clipMinimum + ", " + clipMaximum);
+    }
+    m_clipMinimum = clipMinimum;
+    m_clipMaximum = clipMaximum;
+  }
+
+  @Override
+  public void add(int sample) {
+    add((double) sample);
+  }
+
+  @Override
+  public void add(double sample) {
+    m_count++;
+    if (sample < m_minimum) {
+      m_minimum = sample;
+    }
+    if (sample > m_maximum) {
+      m_maximum = sample;
+    }
+    m_sum += sample;
+    m_sumOfSquares += sample * sample;
+    if (sample <= m_clipMinimum || sample >= m_clipMaximum) {
+      m_clipped++;
+    }
+  }
+
+  /** Add the samples counted by the given statistics, which should have the same clip limits. */
+  public void add(SampleStatistics other) {
+    m_count += other.m_count;
+    m_minimum = Math.min(m_minimum, other.m_minimum);
+    m_maximum = Math.max(m_maximum, other.m_maximum);
+    m_sum += other.m_sum;
+    m_sumOfSquares += other.m_sumOfSquares;
+    m_clipped += other.m_clipped;
+  }
+
+  public long count() {
+    return m_count;
+  }
+
+  /** The smallest sample, or NaN if there are none. */
+  public double minimum() {
+    return m_count == 0 ? Double.NaN : m_minimum;
+  }
+
+  /** The largest sample, or NaN if there are none. */
+  public double maximum() {
+    return m_count == 0 ? Double.NaN : m_maximum;
+  }
+
+  public double sum() {
+    return m_sum;
+  }
+
+  public double sumOfSquares() {
+    return m_sumOfSquares;
+  }
+
+  /** The mean of the samples, or NaN if there are none. */
+  public double mean() {
+    return m_count == 0 ? Double.NaN : m_sum / m_count;
+  }
+
+  /** The root mean square of the samples, or NaN if there are none. */
+  public double rms() {
+    return m_count == 0 ? Double.NaN : Math.sqrt(m_sumOfSquares / m_count);
+  }
+
+  /** The number of samples at or beyond the clip limits. */
+  public long clipped() {
+    return m_clipped;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "count=%d min=%s max=%s mean=%s rms=%s clipped=%d",
+        m_count, minimum(), maximum(), mean(), rms(), m_clipped);
+  }
+}
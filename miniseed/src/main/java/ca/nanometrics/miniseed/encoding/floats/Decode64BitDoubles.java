@@ -21,6 +21,7 @@ package ca.nanometrics.miniseed.encoding.floats;
  */
 
 import ca.nanometrics.miniseed.Samples;
+import ca.nanometrics.miniseed.encoding.SampleAccumulator;
 import ca.nanometrics.miniseed.endian.EndianReader;
 
 public class Decode64BitDoubles extends DecodeFloatingPoint {
@@ -40,6 +41,15 @@ public class Decode64BitDoubles extends DecodeFloatingPoint {
     return Samples.build(samples);
   }
 
+  @Override
+  public <A extends SampleAccumulator> A decode(A accumulator) {
+    verifyHaveEnoughDataForNumberOfSamples();
+    for (int i = 0; i < expectedNumberOfSamples(); i++) {
+      accumulator.add(getReader().readDouble());
+    }
+    return accumulator;
+  }
+
   @Override
   protected int bytesPerSample() {
     return NUMBER_OF_BYTES_PER_SAMPLE;
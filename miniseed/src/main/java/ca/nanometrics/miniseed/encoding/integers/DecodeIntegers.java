@@ -22,6 +22,7 @@ package ca.nanometrics.miniseed.encoding.integers;
 
 import ca.nanometrics.miniseed.Samples;
 import ca.nanometrics.miniseed.encoding.Decode;
+import ca.nanometrics.miniseed.encoding.SampleAccumulator;
 import ca.nanometrics.miniseed.endian.EndianReader;
 
 public abstract class DecodeIntegers extends Decode {
@@ -40,6 +41,28 @@ public abstract class DecodeIntegers extends Decode {
     return Samples.build(samples);
   }
 
+  /** Seeks directly to the first sample of the range. */
+  @Override
+  public Samples decode(int firstSample, int count) {
+    checkRange(firstSample, count);
+    verifyHaveEnoughDataForNumberOfSamples();
+    getReader().setOffset(getReader().getOffset() + firstSample * bytesPerSample());
+    int[] samples = new int[count];
+    for (int i = 0; i < count; i++) {
+      samples[i] = readNextSample();
+    }
+    return Samples.build(samples);
+  }
+
+  @Override
+  public <A extends SampleAccumulator> A decode(A accumulator) {
+    verifyHaveEnoughDataForNumberOfSamples();
+    for (int i = 0; i < expectedNumberOfSamples(); i++) {
+      accumulator.add(readNextSample());
+    }
+    return accumulator;
+  }
+
   protected abstract int readNextSample();
 
   protected abstract int bytesPerSample();
@@ -22,6 +22,7 @@ package ca.nanometrics.miniseed.encoding.steim;
 
 import ca.nanometrics.miniseed.Samples;
 import ca.nanometrics.miniseed.encoding.Decode;
+import ca.nanometrics.miniseed.encoding.SampleAccumulator;
 import ca.nanometrics.miniseed.endian.EndianReader;
 
 public abstract class DecodeSteim extends Decode {
@@ -51,14 +52,64 @@ public abstract class DecodeSteim extends Decode {
 
   @Override
   public Samples decode() {
-    SamplesBuilder builder = new SamplesBuilder(name(), expectedNumberOfSamples());
+    return decode(0, expectedNumberOfSamples(), true);
+  }
+
+  /**
+   * Decode a range of samples, verified against the last sample of the record.
+   *
+   * @see #decode(int, int, boolean)
+   */
+  @Override
+  public Samples decode(int firstSample, int count) {
+    return decode(firstSample, count, true);
+  }
+
+  /**
+   * Decode only the samples from {@code firstSample} to {@code firstSample + count - 1}.
+   *
+   * @param verify if true, the differences of the rest of the record are still read, without being
+   *     stored, to verify the number of samples and the last sample of the record. If false,
+   *     decoding stops after the frame containing the last sample of the range, and the samples are
+   *     not verified.
+   * @throws IllegalArgumentException if the range is not within the expected number of samples.
+   */
+  public Samples decode(int firstSample, int count, boolean verify) {
+    checkRange(firstSample, count);
+    SamplesBuilder builder =
+        new SamplesBuilder(name(), expectedNumberOfSamples(), firstSample, count);
+    readFirstAndFinal(builder);
+    readFirstDifference(builder);
+    int numberOfFrames = getNumberOfFrames();
+    for (int i = 0; i < numberOfFrames && (verify || !builder.isRangeComplete()); i++) {
+      decodeFrame(builder);
+    }
+    return verify ? builder.build() : builder.buildUnverified();
+  }
+
+  /**
+   * Decode all samples straight into the accumulator, without storing them. The record is decoded
+   * twice: first without adding the samples, to verify the number of samples and the last sample of
+   * the record, then adding each sample to the accumulator as it is decoded, so that a record that
+   * fails verification adds nothing.
+   */
+  @Override
+  public <A extends SampleAccumulator> A decode(A accumulator) {
+    int offset = getReader().getOffset();
+    decodeFrames(new SamplesBuilder(name(), expectedNumberOfSamples(), null)).verify();
+    getReader().setOffset(offset);
+    decodeFrames(new SamplesBuilder(name(), expectedNumberOfSamples(), accumulator));
+    return accumulator;
+  }
+
+  private SamplesBuilder decodeFrames(SamplesBuilder builder) {
     readFirstAndFinal(builder);
     readFirstDifference(builder);
     int numberOfFrames = getNumberOfFrames();
     for (int i = 0; i < numberOfFrames; i++) {
       decodeFrame(builder);
     }
-    return builder.build();
+    return builder;
   }
 
   @Override
@@ -126,16 +177,38 @@ public abstract class DecodeSteim extends Decode {
 
   static class SamplesBuilder {
     private final String m_name;
+    private final int m_expectedNumberOfSamples;
+    private final int m_firstSample;
+    private final int m_count;
     private final int[] m_intSamples;
+    private final SampleAccumulator m_accumulator;
     private int m_numberOfProcessedSamples;
     private int m_initialSample;
     private int m_finalSample;
     private int m_sampleXminus1;
     private int m_lastSample;
 
-    SamplesBuilder(final String name, int expectedNumberOfSamples) {
+    /** Builds only the samples from firstSample to firstSample + count - 1. */
+    SamplesBuilder(final String name, int expectedNumberOfSamples, int firstSample, int count) {
+      m_name = name;
+      m_expectedNumberOfSamples = expectedNumberOfSamples;
+      m_firstSample = firstSample;
+      m_count = count;
+      m_intSamples = new int[count];
+      m_accumulator = null;
+    }
+
+    /**
+     * Adds all samples to the accumulator instead of storing them, or only counts them and tracks
+     * the last sample if the accumulator is null.
+     */
+    SamplesBuilder(final String name, int expectedNumberOfSamples, SampleAccumulator accumulator) {
       m_name = name;
-      m_intSamples = new int[expectedNumberOfSamples];
+      m_expectedNumberOfSamples = expectedNumberOfSamples;
+      m_firstSample = 0;
+      m_count = 0;
+      m_intSamples = null;
+      m_accumulator = accumulator;
     }
 
     public Samples build() {
@@ -143,6 +216,21 @@ public abstract class DecodeSteim extends Decode {
       return Samples.build(m_intSamples);
     }
 
+    public Samples buildUnverified() {
+      if (!isRangeComplete()) {
+        throw new IllegalStateException(
+            String.format(
+                "While decoding %s, the number of samples decoded was %s, but samples up to %s"
+                    + " were requested",
+                m_name, m_numberOfProcessedSamples, m_firstSample + m_count));
+      }
+      return Samples.build(m_intSamples);
+    }
+
+    boolean isRangeComplete() {
+      return m_numberOfProcessedSamples >= m_firstSample + m_count;
+    }
+
     public int getInitialSample() {
       return m_initialSample;
     }
@@ -173,27 +261,32 @@ public abstract class DecodeSteim extends Decode {
         m_lastSample = getSampleXminus1();
       }
 
-      if (m_numberOfProcessedSamples < m_intSamples.length) {
+      if (m_numberOfProcessedSamples < m_expectedNumberOfSamples) {
         m_lastSample = diff + m_lastSample;
-        m_intSamples[m_numberOfProcessedSamples] = m_lastSample;
+        int index = m_numberOfProcessedSamples - m_firstSample;
+        if (m_accumulator != null) {
+          m_accumulator.add(m_lastSample);
+        } else if (index >= 0 && index < m_count) {
+          m_intSamples[index] = m_lastSample;
+        }
         m_numberOfProcessedSamples++;
       }
     }
 
     protected void verify() {
-      if (m_numberOfProcessedSamples != m_intSamples.length) {
+      if (m_numberOfProcessedSamples != m_expectedNumberOfSamples) {
         throw new IllegalStateException(
             String.format(
                 "While decoding %s, the number of samples decoded was %s, but the number of samples"
                     + " expected was %s",
-                m_name, m_numberOfProcessedSamples, m_intSamples.length));
+                m_name, m_numberOfProcessedSamples, m_expectedNumberOfSamples));
       }
-      if (m_finalSample != m_intSamples[m_numberOfProcessedSamples - 1]) {
+      if (m_finalSample != m_lastSample) {
         throw new IllegalStateException(
             String.format(
                 "While decoding %s, the last sample decoded was %s, but the last sample expected"
                     + " was: ",
-                m_name, m_intSamples[m_numberOfProcessedSamples - 1], getFinalSample()));
+                m_name, m_lastSample, getFinalSample()));
       }
     }
   }
@@ -0,0 +1,138 @@
+package ca.nanometrics.miniseed.endian;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads from a {@link ByteBuffer} in an explicit byte order, so that data can be decoded directly
+ * from a direct or memory mapped buffer without first being copied to a byte array.
+ *
+ * <p>Offsets are relative to the position of the buffer when the reader is created, and the
+ * position of the given buffer is not changed.
+ */
+public class ByteBufferReader implements EndianReader {
+  /** The buffer from which to read, starting at index 0. */
+  private final ByteBuffer m_buffer;
+  /** The current read offset in the buffer. */
+  private int m_offset;
+
+  /** Construct a reader of the remaining bytes of the given buffer, in the given byte order. */
+  public ByteBufferReader(ByteBuffer buffer, ByteOrder order) {
+    m_buffer = buffer.slice().order(order);
+  }
+
+  public ByteOrder order() {
+    return m_buffer.order();
+  }
+
+  @Override
+  public int getOffset() {
+    return m_offset;
+  }
+
+  @Override
+  public void setOffset(int offset) {
+    m_offset = offset;
+  }
+
+  @Override
+  public int read(byte[] buffer) {
+    return read(buffer, 0, buffer.length);
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) {
+    m_buffer.get(m_offset, buffer, offset, length);
+    m_offset += length;
+    return length;
+  }
+
+  @Override
+  public int readInt() {
+    int value = m_buffer.getInt(m_offset);
+    m_offset += INT_SIZE;
+    return value;
+  }
+
+  @Override
+  public long readUInt() {
+    return Integer.toUnsignedLong(readInt());
+  }
+
+  @Override
+  public byte readByte() {
+    byte value = m_buffer.get(m_offset);
+    m_offset += BYTE_SIZE;
+    return value;
+  }
+
+  @Override
+  public short readUByte() {
+    return (short) (readByte() & 0xff);
+  }
+
+  @Override
+  public short readShort() {
+    short value = m_buffer.getShort(m_offset);
+    m_offset += SHORT_SIZE;
+    return value;
+  }
+
+  @Override
+  public int readUShort() {
+    return Short.toUnsignedInt(readShort());
+  }
+
+  @Override
+  public long readLong() {
+    long value = m_buffer.getLong(m_offset);
+    m_offset += LONG_SIZE;
+    return value;
+  }
+
+  @Override
+  public int readInt24() {
+    int first = m_buffer.get(m_offset);
+    int second = m_buffer.get(m_offset + 1) & 0xff;
+    int third = m_buffer.get(m_offset + 2);
+    m_offset += INT24_SIZE;
+    // the most significant byte is sign extended
+    return m_buffer.order() == ByteOrder.BIG_ENDIAN
+        ? first << 16 | second << 8 | third & 0xff
+        : third << 16 | second << 8 | first & 0xff;
+  }
+
+  @Override
+  public float readFloat() {
+    float value = m_buffer.getFloat(m_offset);
+    m_offset += FLOAT_SIZE;
+    return value;
+  }
+
+  @Override
+  public double readDouble() {
+    double value = m_buffer.getDouble(m_offset);
+    m_offset += DOUBLE_SIZE;
+    return value;
+  }
+}
@@ -20,6 +20,8 @@ package ca.nanometrics.miniseed.endian;
  * #L%
  */
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 
 public sealed interface Endian permits BigEndian, LittleEndian {
@@ -33,6 +35,15 @@ public sealed interface Endian permits BigEndian, LittleEndian {
 
   EndianReader createReader(byte[] bytes);
 
+  /**
+   * @return a reader of the remaining bytes of the given buffer in this byte order, without copying
+   *     them.
+   */
+  default EndianReader createReader(ByteBuffer buffer) {
+    return new ByteBufferReader(
+        buffer, type() == Type.BIG ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+  }
+
   default byte readByte(byte[] buffer, int index) {
     return buffer[index];
   }
@@ -0,0 +1,44 @@
+package ca.nanometrics.miniseed.jfr;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** The samples of a data record decoded. Disabled unless enabled in the recording settings. */
+@Name("ca.nanometrics.miniseed.Decode")
+@Label("Decode")
+@Description("The payload of a miniseed data record decoded to samples")
+@Category("MiniSEED")
+@Enabled(false)
+@StackTrace(false)
+public class DecodeEvent extends Event {
+  @Label("Encoding")
+  public String encoding;
+
+  @Label("Samples")
+  public int samples;
+}
@@ -0,0 +1,49 @@
+package ca.nanometrics.miniseed.jfr;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A data record read from a stream. Disabled unless enabled in the recording settings. */
+@Name("ca.nanometrics.miniseed.RecordRead")
+@Label("Record Read")
+@Description("A miniseed data record read from an input stream")
+@Category("MiniSEED")
+@Enabled(false)
+@StackTrace(false)
+public class RecordReadEvent extends Event {
+  @Label("Format Version")
+  public int formatVersion;
+
+  @Label("Bytes")
+  @DataAmount
+  public int bytes;
+
+  @Label("Source Identifier")
+  public String sourceIdentifier;
+}
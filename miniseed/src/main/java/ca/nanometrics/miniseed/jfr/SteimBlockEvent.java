@@ -0,0 +1,50 @@
+package ca.nanometrics.miniseed.jfr;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Steim block completed by an encoder. Instant event, disabled unless enabled in the recording
+ * settings.
+ */
+@Name("ca.nanometrics.miniseed.SteimBlock")
+@Label("Steim Block Complete")
+@Description("A block of Steim encoded samples completed by an encoder")
+@Category("MiniSEED")
+@Enabled(false)
+@StackTrace(false)
+public class SteimBlockEvent extends Event {
+  @Label("Description")
+  public String description;
+
+  @Label("Samples")
+  public int samples;
+
+  @Label("Frames")
+  public int frames;
+}
@@ -0,0 +1,37 @@
+package ca.nanometrics.miniseed.metrics;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Map;
+
+/**
+ * Receives the values of all metrics periodically, to publish them to a monitoring system, for
+ * example as Prometheus gauges or StatsD counters, without this library depending on one.
+ *
+ * @see MiniSeedMetrics#exportEvery(MetricsExporter, java.time.Duration)
+ */
+@FunctionalInterface
+public interface MetricsExporter {
+  /**
+   * @param metrics the value of each metric, by name, as in {@link MiniSeedMetrics#snapshot()}.
+   */
+  void export(Map<String, Long> metrics);
+}
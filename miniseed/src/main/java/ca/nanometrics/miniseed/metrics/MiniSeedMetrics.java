@@ -0,0 +1,296 @@
+package ca.nanometrics.miniseed.metrics;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters of records read, bytes read, CRC validations and failures, and Steim blocks encoded, and
+ * histograms of decode times per encoding, to tell whether reading is bound by I/O, parsing or
+ * decoding.
+ *
+ * <p>The library updates the {@link #global()} metrics as records are read, decoded and encoded.
+ * Counters are striped {@link LongAdder}s, so updating them from many threads does not contend. The
+ * metrics can be published through JMX with {@link #registerMBean()}, or to any monitoring system
+ * with {@link #exportEvery(MetricsExporter, Duration)}.
+ */
+public final class MiniSeedMetrics {
+  public static final String OBJECT_NAME = "ca.nanometrics.miniseed:type=Metrics";
+
+  private static final DataEncoding[] ENCODINGS = DataEncoding.values();
+  private static final MiniSeedMetrics GLOBAL = new MiniSeedMetrics();
+
+  private final LongAdder m_recordsRead = new LongAdder();
+  private final LongAdder m_bytesRead = new LongAdder();
+  private final LongAdder m_crcValidations = new LongAdder();
+  private final LongAdder m_crcFailures = new LongAdder();
+  private final LongAdder m_encoderBlocks = new LongAdder();
+  private final LongAdder m_encoderSamples = new LongAdder();
+  // created on first use, as most encodings are never decoded, and reset in place, so a concurrent
+  // update is not lost to a replaced entry
+  private final AtomicReferenceArray<Decoding> m_decodings =
+      new AtomicReferenceArray<>(ENCODINGS.length);
+
+  /** The metrics updated by the library. */
+  public static MiniSeedMetrics global() {
+    return GLOBAL;
+  }
+
+  public void recordRead(int bytes) {
+    m_recordsRead.increment();
+    m_bytesRead.add(bytes);
+  }
+
+  public void decoded(DataEncoding encoding, int samples, long nanos) {
+    Decoding decoding = decoding(encoding);
+    decoding.m_samples.add(samples);
+    decoding.m_time.record(nanos);
+  }
+
+  public void crcValidated(boolean valid) {
+    m_crcValidations.increment();
+    if (!valid) {
+      m_crcFailures.increment();
+    }
+  }
+
+  public void encoderBlockCompleted(int samples) {
+    m_encoderBlocks.increment();
+    m_encoderSamples.add(samples);
+  }
+
+  public long recordsRead() {
+    return m_recordsRead.sum();
+  }
+
+  public long bytesRead() {
+    return m_bytesRead.sum();
+  }
+
+  public long crcValidations() {
+    return m_crcValidations.sum();
+  }
+
+  public long crcFailures() {
+    return m_crcFailures.sum();
+  }
+
+  public long encoderBlocksCompleted() {
+    return m_encoderBlocks.sum();
+  }
+
+  public long encoderSamples() {
+    return m_encoderSamples.sum();
+  }
+
+  public long samplesDecoded(DataEncoding encoding) {
+    Decoding decoding = m_decodings.get(encoding.ordinal());
+    return decoding == null ? 0 : decoding.m_samples.sum();
+  }
+
+  /**
+   * @return the histogram that records of the encoding are decoded into, which is only included in
+   *     the {@link #snapshot()} once a record has been decoded.
+   */
+  public LatencyHistogram decodeTime(DataEncoding encoding) {
+    return decoding(encoding).m_time;
+  }
+
+  private Decoding decoding(DataEncoding encoding) {
+    Decoding decoding = m_decodings.get(encoding.ordinal());
+    if (decoding == null) {
+      m_decodings.compareAndSet(encoding.ordinal(), null, new Decoding());
+      decoding = m_decodings.get(encoding.ordinal());
+    }
+    return decoding;
+  }
+
+  /**
+   * @return the value of each metric by name, sorted by name. Decode metrics are only included for
+   *     encodings that have been decoded, with durations in nanoseconds, for example {@code
+   *     decode.STEIM1.p99}.
+   */
+  public Map<String, Long> snapshot() {
+    Map<String, Long> metrics = new TreeMap<>();
+    metrics.put("records.read", recordsRead());
+    metrics.put("bytes.read", bytesRead());
+    metrics.put("crc.validations", crcValidations());
+    metrics.put("crc.failures", crcFailures());
+    metrics.put("encoder.blocks", encoderBlocksCompleted());
+    metrics.put("encoder.samples", encoderSamples());
+    for (DataEncoding encoding : ENCODINGS) {
+      Decoding decoding = m_decodings.get(encoding.ordinal());
+      LatencyHistogram.Snapshot time = decoding == null ? null : decoding.m_time.snapshot();
+      if (time != null && time.count() > 0) {
+        String prefix = "decode." + encoding.name() + ".";
+        metrics.put(prefix + "records", time.count());
+        metrics.put(prefix + "samples", decoding.m_samples.sum());
+        metrics.put(prefix + "totalNanos", decoding.m_time.totalNanos());
+        metrics.put(prefix + "p50", time.p50());
+        metrics.put(prefix + "p90", time.p90());
+        metrics.put(prefix + "p99", time.p99());
+        metrics.put(prefix + "max", time.maximum());
+      }
+    }
+    return metrics;
+  }
+
+  public void reset() {
+    m_recordsRead.reset();
+    m_bytesRead.reset();
+    m_crcValidations.reset();
+    m_crcFailures.reset();
+    m_encoderBlocks.reset();
+    m_encoderSamples.reset();
+    for (int i = 0; i < ENCODINGS.length; i++) {
+      Decoding decoding = m_decodings.get(i);
+      if (decoding != null) {
+        decoding.m_samples.reset();
+        decoding.m_time.reset();
+      }
+    }
+  }
+
+  /**
+   * Register these metrics with the platform MBean server as {@value #OBJECT_NAME}, if not already
+   * registered.
+   */
+  public ObjectName registerMBean() {
+    return registerMBean(OBJECT_NAME);
+  }
+
+  /**
+   * Register these metrics with the platform MBean server under the given name, if not already
+   * registered.
+   *
+   * @throws IllegalArgumentException if the name is not a valid object name.
+   */
+  public ObjectName registerMBean(String objectName) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName name = new ObjectName(objectName);
+      try {
+        server.registerMBean(new MBean(), name);
+      } catch (InstanceAlreadyExistsException e) {
+        // already registered
+      }
+      return name;
+    } catch (JMException e) {
+      throw new IllegalArgumentException("Could not register metrics as " + objectName, e);
+    }
+  }
+
+  /**
+   * Export a {@link #snapshot()} to the exporter at a fixed period, on a daemon thread, until the
+   * returned handle is closed, which exports one final time. An exception thrown by the exporter is
+   * passed to the uncaught exception handler of the thread, and exporting continues.
+   */
+  public Closeable exportEvery(MetricsExporter exporter, Duration period) {
+    if (period.isNegative() || period.isZero()) {
+      throw new IllegalArgumentException("Export period must be positive: " + period);
+    }
+    ScheduledExecutorService executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "miniseed-metrics-exporter");
+              thread.setDaemon(true);
+              return thread;
+            });
+    Runnable export =
+        () -> {
+          try {
+            exporter.export(snapshot());
+          } catch (RuntimeException e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+          }
+        };
+    long nanos = period.toNanos();
+    executor.scheduleAtFixedRate(export, nanos, nanos, TimeUnit.NANOSECONDS);
+    return () -> {
+      if (!executor.isShutdown()) {
+        executor.shutdownNow();
+        export.run();
+      }
+    };
+  }
+
+  private static final class Decoding {
+    private final LongAdder m_samples = new LongAdder();
+    private final LatencyHistogram m_time = new LatencyHistogram();
+  }
+
+  private final class MBean implements MiniSeedMetricsMXBean {
+    @Override
+    public long getRecordsRead() {
+      return recordsRead();
+    }
+
+    @Override
+    public long getBytesRead() {
+      return bytesRead();
+    }
+
+    @Override
+    public long getCrcValidations() {
+      return crcValidations();
+    }
+
+    @Override
+    public long getCrcFailures() {
+      return crcFailures();
+    }
+
+    @Override
+    public long getEncoderBlocksCompleted() {
+      return encoderBlocksCompleted();
+    }
+
+    @Override
+    public long getEncoderSamples() {
+      return encoderSamples();
+    }
+
+    @Override
+    public Map<String, Long> getMetrics() {
+      return snapshot();
+    }
+
+    @Override
+    public void reset() {
+      MiniSeedMetrics.this.reset();
+    }
+  }
+}
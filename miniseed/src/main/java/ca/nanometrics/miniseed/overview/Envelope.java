@@ -0,0 +1,33 @@
+package ca.nanometrics.miniseed.overview;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The minimum, maximum and mean of the samples in a span of time, and the number of samples. A span
+ * without samples has a count of zero and NaN values.
+ */
+public record Envelope(double minimum, double maximum, double mean, long count) {
+  public static final Envelope EMPTY = new Envelope(Double.NaN, Double.NaN, Double.NaN, 0);
+
+  public boolean isEmpty() {
+    return count == 0;
+  }
+}
@@ -0,0 +1,135 @@
+package ca.nanometrics.miniseed.overview;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.SourceIdentifier;
+import ca.nanometrics.miniseed.encoding.SampleAccumulator;
+import ca.nanometrics.miniseed.util.NanoTime;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Builds an {@link OverviewPyramid} per channel from a stream of records, in any order. The samples
+ * of each record are decoded straight into buckets of the base width, aligned to the epoch, without
+ * building arrays of samples; the coarser levels are derived from the base level by {@link
+ * #build()}.
+ *
+ * <p>Memory use is proportional to the time covered by the samples of each channel divided by the
+ * base width, so the base width should be chosen for the longest span expected: 1 second buckets
+ * for a month of data are about 2.6 million buckets per channel. Buckets are held in chunks only
+ * where there are samples, so gaps, and records with a wildly wrong start time, cost little. Not
+ * thread safe.
+ */
+public class OverviewBuilder {
+  public static final Duration DEFAULT_BUCKET_WIDTH = Duration.ofSeconds(1);
+
+  private final long m_bucketNanos;
+  private final Map<SourceIdentifier, ChannelBuilder> m_channels = new LinkedHashMap<>();
+
+  public OverviewBuilder() {
+    this(DEFAULT_BUCKET_WIDTH);
+  }
+
+  /**
+   * @param bucketWidth the width of the buckets of the finest level of the pyramid.
+   */
+  public OverviewBuilder(Duration bucketWidth) {
+    if (bucketWidth.isNegative() || bucketWidth.isZero()) {
+      throw new IllegalArgumentException("Bucket width must be positive: " + bucketWidth);
+    }
+    m_bucketNanos = bucketWidth.toNanos();
+  }
+
+  /**
+   * @return the pyramid of each channel in the records, with buckets of the given width.
+   */
+  public static Map<SourceIdentifier, OverviewPyramid> build(
+      Stream<DataRecord> records, Duration bucketWidth) {
+    OverviewBuilder builder = new OverviewBuilder(bucketWidth);
+    records.forEach(builder::add);
+    return builder.build();
+  }
+
+  /**
+   * Add the samples of the record to the pyramid of its channel. Records without a sample rate,
+   * such as log records, are ignored.
+   */
+  public void add(DataRecord record) {
+    if (record.header().sampleRate().sampleRateDouble() <= 0
+        || record.header().numberOfSamples() == 0) {
+      return;
+    }
+    m_channels.computeIfAbsent(record.header().sourceIdentifier(), ChannelBuilder::new).add(record);
+  }
+
+  /**
+   * @return the pyramid of each channel added so far, in the order the channels were first seen.
+   */
+  public Map<SourceIdentifier, OverviewPyramid> build() {
+    Map<SourceIdentifier, OverviewPyramid> pyramids = new LinkedHashMap<>();
+    m_channels.forEach((source, channel) -> pyramids.put(source, channel.build()));
+    return pyramids;
+  }
+
+  /** The base level of one channel, indexed by bucket number since the epoch. */
+  private final class ChannelBuilder implements SampleAccumulator {
+    private final SourceIdentifier m_source;
+    private final OverviewPyramid.Level m_base = new OverviewPyramid.Level();
+    private OverviewPyramid.Level.Chunk m_chunk;
+    private long m_recordStart;
+    private double m_samplePeriodNanos;
+    private long m_sampleIndex;
+
+    ChannelBuilder(SourceIdentifier source) {
+      m_source = source;
+    }
+
+    void add(DataRecord record) {
+      m_recordStart = NanoTime.toEpochNanos(record.header().recordStartTime());
+      m_samplePeriodNanos =
+          NanoTime.secondsToNanos(1 / record.header().sampleRate().sampleRateDouble());
+      m_sampleIndex = 0;
+      record.samples(this);
+    }
+
+    @Override
+    public void add(int sample) {
+      add((double) sample);
+    }
+
+    @Override
+    public void add(double sample) {
+      long time = m_recordStart + Math.round(m_sampleIndex++ * m_samplePeriodNanos);
+      long bucket = Math.floorDiv(time, m_bucketNanos);
+      if (m_chunk == null || !m_chunk.contains(bucket)) {
+        m_chunk = m_base.chunk(bucket);
+      }
+      m_chunk.add(bucket, sample);
+    }
+
+    OverviewPyramid build() {
+      return OverviewPyramid.fromBaseLevel(m_source.toString(), m_bucketNanos, m_base.copy());
+    }
+  }
+}
@@ -0,0 +1,455 @@
+package ca.nanometrics.miniseed.overview;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.util.NanoTime;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Min/max/mean envelopes of one channel at power-of-two multiples of a base bucket width, so that a
+ * plot of any span of time can be drawn from a few thousand buckets instead of every sample.
+ *
+ * <p>The buckets of level {@code n} are {@code 2^n} base buckets wide, aligned to the epoch. Levels
+ * are added until one bucket covers the whole channel. Buckets without samples are empty. Each
+ * level is stored in chunks of {@link Level#CHUNK_SIZE} buckets, only where there are samples, so a
+ * gap, or a record with a wildly wrong start time, costs one chunk per level rather than a bucket
+ * per base width of the time between.
+ *
+ * <p>The pyramids of all the channels of a miniseed file are stored in a sidecar file next to it,
+ * see {@link #sidecar(Path)}, in a compact big-endian binary format of 20 bytes per bucket of each
+ * chunk: the minimum, maximum and mean as 32 bit floats, and the number of samples. Values are
+ * stored as floats, which is enough precision for display, not for analysis.
+ */
+public final class OverviewPyramid {
+  public static final String SIDECAR_EXTENSION = ".overview";
+
+  private static final int MAGIC = 0x4D534F56; // "MSOV"
+  private static final int VERSION = 2;
+
+  private final String m_sourceIdentifier;
+  private final long m_bucketNanos;
+  private final List<Level> m_levels;
+
+  private OverviewPyramid(String sourceIdentifier, long bucketNanos, List<Level> levels) {
+    m_sourceIdentifier = sourceIdentifier;
+    m_bucketNanos = bucketNanos;
+    m_levels = List.copyOf(levels);
+  }
+
+  static OverviewPyramid fromBaseLevel(String sourceIdentifier, long bucketNanos, Level base) {
+    List<Level> levels = new ArrayList<>();
+    levels.add(base);
+    for (Level level = base; level.first() != level.last(); ) {
+      level = level.halve();
+      levels.add(level);
+    }
+    return new OverviewPyramid(sourceIdentifier, bucketNanos, levels);
+  }
+
+  /**
+   * @return the path of the sidecar file of the pyramids of the given miniseed file.
+   */
+  public static Path sidecar(Path dataFile) {
+    return dataFile.resolveSibling(dataFile.getFileName() + SIDECAR_EXTENSION);
+  }
+
+  public String sourceIdentifier() {
+    return m_sourceIdentifier;
+  }
+
+  public int levels() {
+    return m_levels.size();
+  }
+
+  public Duration bucketWidth(int level) {
+    return Duration.ofNanos(bucketNanos(level));
+  }
+
+  /** The number of buckets of the given level that contain samples. */
+  public int bucketCount(int level) {
+    return m_levels.get(level).count();
+  }
+
+  /** The start of the first bucket containing samples. */
+  public OffsetDateTime startTime() {
+    return NanoTime.epochNanosToDateTime(m_levels.get(0).first() * m_bucketNanos);
+  }
+
+  /** The end of the last bucket containing samples. */
+  public OffsetDateTime endTime() {
+    return NanoTime.epochNanosToDateTime((m_levels.get(0).last() + 1) * m_bucketNanos);
+  }
+
+  /**
+   * The envelope of each of {@code buckets} equal divisions of the time from start to end, for
+   * example one per pixel of a plot, from the coarsest level with buckets no wider than a division.
+   * A bucket of that level spanning the boundary of two divisions is included in both, so the
+   * envelopes are never narrower than the samples.
+   *
+   * @throws IllegalArgumentException if the number of buckets is not positive, or end is not after
+   *     start.
+   */
+  public List<Envelope> query(OffsetDateTime start, OffsetDateTime end, int buckets) {
+    if (buckets < 1) {
+      throw new IllegalArgumentException("Number of buckets must be positive: " + buckets);
+    }
+    long startNanos = NanoTime.toEpochNanos(start);
+    long span = NanoTime.toEpochNanos(end) - startNanos;
+    if (span <= 0) {
+      throw new IllegalArgumentException("End " + end + " must be after start " + start);
+    }
+    int levelNumber = level(span / (double) buckets);
+    Level level = m_levels.get(levelNumber);
+    long width = bucketNanos(levelNumber);
+    List<Envelope> envelopes = new ArrayList<>(buckets);
+    for (int i = 0; i < buckets; i++) {
+      long from = startNanos + Math.round(span * (double) i / buckets);
+      long to = startNanos + Math.round(span * (double) (i + 1) / buckets);
+      envelopes.add(
+          to > from
+              ? level.envelope(Math.floorDiv(from, width), Math.floorDiv(to - 1, width))
+              : Envelope.EMPTY);
+    }
+    return envelopes;
+  }
+
+  /**
+   * @return the coarsest level with buckets no wider than the given width, or the base level.
+   */
+  int level(double widthNanos) {
+    int level = 0;
+    while (level + 1 < m_levels.size() && bucketNanos(level + 1) <= widthNanos) {
+      level++;
+    }
+    return level;
+  }
+
+  private long bucketNanos(int level) {
+    return m_bucketNanos << level;
+  }
+
+  /** Write the pyramids of the channels of a miniseed file to its sidecar file. */
+  public static void write(Collection<OverviewPyramid> pyramids, Path file) throws IOException {
+    try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(file))) {
+      write(pyramids, output);
+    }
+  }
+
+  public static void write(Collection<OverviewPyramid> pyramids, OutputStream output)
+      throws IOException {
+    DataOutputStream data = new DataOutputStream(output);
+    data.writeInt(MAGIC);
+    data.writeByte(VERSION);
+    data.writeInt(pyramids.size());
+    for (OverviewPyramid pyramid : pyramids) {
+      pyramid.write(data);
+    }
+    data.flush();
+  }
+
+  private void write(DataOutputStream data) throws IOException {
+    data.writeUTF(m_sourceIdentifier);
+    data.writeLong(m_bucketNanos);
+    data.writeInt(m_levels.size());
+    for (Level level : m_levels) {
+      level.write(data);
+    }
+  }
+
+  /**
+   * @return the pyramids of a sidecar file, by source identifier, in the order they were written.
+   */
+  public static Map<String, OverviewPyramid> read(Path file) throws IOException {
+    try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+      return read(input);
+    }
+  }
+
+  /**
+   * @return the pyramids of a sidecar file, by source identifier, in the order they were written.
+   * @throws IOException if the input is not an overview sidecar of a supported version, or is
+   *     truncated.
+   */
+  public static Map<String, OverviewPyramid> read(InputStream input) throws IOException {
+    DataInputStream data = new DataInputStream(input);
+    int magic = data.readInt();
+    if (magic != MAGIC) {
+      throw new IOException(String.format("Not an overview pyramid: 0x%08x", magic));
+    }
+    int version = data.readUnsignedByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported overview pyramid version: " + version);
+    }
+    int numberOfPyramids = data.readInt();
+    if (numberOfPyramids < 0) {
+      throw new IOException("Invalid number of overview pyramids: " + numberOfPyramids);
+    }
+    Map<String, OverviewPyramid> pyramids = new LinkedHashMap<>();
+    for (int i = 0; i < numberOfPyramids; i++) {
+      OverviewPyramid pyramid = readPyramid(data);
+      pyramids.put(pyramid.sourceIdentifier(), pyramid);
+    }
+    return pyramids;
+  }
+
+  private static OverviewPyramid readPyramid(DataInputStream data) throws IOException {
+    String sourceIdentifier = data.readUTF();
+    long bucketNanos = data.readLong();
+    int numberOfLevels = data.readInt();
+    if (bucketNanos <= 0
+        || numberOfLevels < 1
+        || numberOfLevels > Long.numberOfLeadingZeros(bucketNanos)) {
+      throw new IOException(
+          String.format(
+              "Invalid overview pyramid of %s: %s levels of %s ns buckets",
+              sourceIdentifier, numberOfLevels, bucketNanos));
+    }
+    List<Level> levels = new ArrayList<>(numberOfLevels);
+    for (int i = 0; i < numberOfLevels; i++) {
+      levels.add(Level.read(data));
+    }
+    return new OverviewPyramid(sourceIdentifier, bucketNanos, levels);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %s levels of %s to %s from %s to %s",
+        m_sourceIdentifier,
+        levels(),
+        bucketWidth(0),
+        bucketWidth(levels() - 1),
+        startTime(),
+        endTime());
+  }
+
+  /**
+   * The buckets of one level, numbered since the epoch, in chunks of {@link #CHUNK_SIZE} buckets
+   * aligned to the epoch. Only chunks with samples are held.
+   */
+  static final class Level {
+    static final int CHUNK_SIZE = 1024;
+
+    private final NavigableMap<Long, Chunk> m_chunks = new TreeMap<>();
+
+    /**
+     * @return the chunk holding the given bucket, added empty if there is none yet.
+     */
+    Chunk chunk(long bucket) {
+      return m_chunks.computeIfAbsent(chunkStart(bucket), Chunk::new);
+    }
+
+    private static long chunkStart(long bucket) {
+      return Math.floorDiv(bucket, CHUNK_SIZE) * CHUNK_SIZE;
+    }
+
+    /** The first bucket containing samples. */
+    long first() {
+      Chunk chunk = m_chunks.firstEntry().getValue();
+      int index = 0;
+      while (chunk.m_count[index] == 0) {
+        index++;
+      }
+      return chunk.m_first + index;
+    }
+
+    /** The last bucket containing samples. */
+    long last() {
+      Chunk chunk = m_chunks.lastEntry().getValue();
+      int index = CHUNK_SIZE - 1;
+      while (chunk.m_count[index] == 0) {
+        index--;
+      }
+      return chunk.m_first + index;
+    }
+
+    /** The number of buckets containing samples. */
+    int count() {
+      int count = 0;
+      for (Chunk chunk : m_chunks.values()) {
+        for (long samples : chunk.m_count) {
+          if (samples > 0) {
+            count++;
+          }
+        }
+      }
+      return count;
+    }
+
+    /**
+     * @return a copy of this level, which does not change as this does.
+     */
+    Level copy() {
+      Level level = new Level();
+      for (Chunk chunk : m_chunks.values()) {
+        Chunk copy = level.chunk(chunk.m_first);
+        System.arraycopy(chunk.m_minimum, 0, copy.m_minimum, 0, CHUNK_SIZE);
+        System.arraycopy(chunk.m_maximum, 0, copy.m_maximum, 0, CHUNK_SIZE);
+        System.arraycopy(chunk.m_sum, 0, copy.m_sum, 0, CHUNK_SIZE);
+        System.arraycopy(chunk.m_count, 0, copy.m_count, 0, CHUNK_SIZE);
+      }
+      return level;
+    }
+
+    /**
+     * @return the next level, with buckets twice as wide.
+     */
+    Level halve() {
+      Level level = new Level();
+      Chunk target = null;
+      for (Chunk chunk : m_chunks.values()) {
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+          if (chunk.m_count[i] > 0) {
+            long bucket = Math.floorDiv(chunk.m_first + i, 2);
+            if (target == null || !target.contains(bucket)) {
+              target = level.chunk(bucket);
+            }
+            target.add(
+                bucket, chunk.m_minimum[i], chunk.m_maximum[i], chunk.m_sum[i], chunk.m_count[i]);
+          }
+        }
+      }
+      return level;
+    }
+
+    /**
+     * @return the envelope of the buckets numbered from {@code from} to {@code to} inclusive.
+     */
+    Envelope envelope(long from, long to) {
+      double minimum = Double.POSITIVE_INFINITY;
+      double maximum = Double.NEGATIVE_INFINITY;
+      double sum = 0;
+      long count = 0;
+      for (Chunk chunk : m_chunks.subMap(chunkStart(from), true, chunkStart(to), true).values()) {
+        int start = (int) Math.max(0, from - chunk.m_first);
+        int end = (int) Math.min(CHUNK_SIZE, to - chunk.m_first + 1);
+        for (int i = start; i < end; i++) {
+          if (chunk.m_count[i] > 0) {
+            minimum = Math.min(minimum, chunk.m_minimum[i]);
+            maximum = Math.max(maximum, chunk.m_maximum[i]);
+            sum += chunk.m_sum[i];
+            count += chunk.m_count[i];
+          }
+        }
+      }
+      return count == 0 ? Envelope.EMPTY : new Envelope(minimum, maximum, sum / count, count);
+    }
+
+    void write(DataOutputStream data) throws IOException {
+      data.writeInt(m_chunks.size());
+      for (Chunk chunk : m_chunks.values()) {
+        data.writeLong(chunk.m_first);
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+          long count = chunk.m_count[i];
+          data.writeFloat(count > 0 ? (float) chunk.m_minimum[i] : Float.NaN);
+          data.writeFloat(count > 0 ? (float) chunk.m_maximum[i] : Float.NaN);
+          data.writeFloat(count > 0 ? (float) (chunk.m_sum[i] / count) : Float.NaN);
+          data.writeLong(count);
+        }
+      }
+    }
+
+    static Level read(DataInputStream data) throws IOException {
+      int chunks = data.readInt();
+      if (chunks < 1) {
+        throw new IOException("Invalid number of overview chunks: " + chunks);
+      }
+      Level level = new Level();
+      for (int c = 0; c < chunks; c++) {
+        long first = data.readLong();
+        if (chunkStart(first) != first || level.m_chunks.containsKey(first)) {
+          throw new IOException("Invalid overview chunk start: " + first);
+        }
+        Chunk chunk = level.chunk(first);
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+          float minimum = data.readFloat();
+          float maximum = data.readFloat();
+          float mean = data.readFloat();
+          long count = data.readLong();
+          if (count > 0) {
+            chunk.add(first + i, minimum, maximum, (double) mean * count, count);
+          }
+        }
+      }
+      if (level.count() == 0) {
+        throw new IOException("Overview level without samples");
+      }
+      return level;
+    }
+
+    /** {@link #CHUNK_SIZE} consecutive buckets, which accumulate samples. */
+    static final class Chunk {
+      private final long m_first;
+      private final double[] m_minimum = new double[CHUNK_SIZE];
+      private final double[] m_maximum = new double[CHUNK_SIZE];
+      private final double[] m_sum = new double[CHUNK_SIZE];
+      private final long[] m_count = new long[CHUNK_SIZE];
+
+      private Chunk(long first) {
+        m_first = first;
+        Arrays.fill(m_minimum, Double.POSITIVE_INFINITY);
+        Arrays.fill(m_maximum, Double.NEGATIVE_INFINITY);
+      }
+
+      boolean contains(long bucket) {
+        return bucket >= m_first && bucket - m_first < CHUNK_SIZE;
+      }
+
+      void add(long bucket, double sample) {
+        int index = (int) (bucket - m_first);
+        if (sample < m_minimum[index]) {
+          m_minimum[index] = sample;
+        }
+        if (sample > m_maximum[index]) {
+          m_maximum[index] = sample;
+        }
+        m_sum[index] += sample;
+        m_count[index]++;
+      }
+
+      void add(long bucket, double minimum, double maximum, double sum, long count) {
+        int index = (int) (bucket - m_first);
+        m_minimum[index] = Math.min(m_minimum[index], minimum);
+        m_maximum[index] = Math.max(m_maximum[index], maximum);
+        m_sum[index] += sum;
+        m_count[index] += count;
+      }
+    }
+  }
+}
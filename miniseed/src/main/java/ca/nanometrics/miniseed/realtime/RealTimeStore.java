@@ -0,0 +1,138 @@
+package ca.nanometrics.miniseed.realtime;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.DataRecordHeader;
+import ca.nanometrics.miniseed.Samples;
+import ca.nanometrics.miniseed.SourceIdentifier;
+import ca.nanometrics.miniseed.util.NanoTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the most recent samples of each channel, decoded from incoming records, for real-time
+ * consumers such as displays and triggers.
+ *
+ * <p>Each source identifier has a ring buffer of sample values and their times in epoch
+ * nanoseconds, sized when its first record arrives to hold the retention period at that record's
+ * sample rate. Records of a source identifier must be added by a single thread, typically the
+ * ingest thread; any number of threads may take snapshots at the same time without locks, and
+ * without ever blocking ingest.
+ *
+ * <p>Records are expected in time order per channel; samples are appended as they arrive. Integer
+ * samples are stored as doubles, which represent them exactly.
+ */
+public class RealTimeStore {
+  private final Duration m_retention;
+  private final Map<SourceIdentifier, SampleRing> m_rings = new ConcurrentHashMap<>();
+
+  /**
+   * @param retention how much data to keep for each channel.
+   */
+  public RealTimeStore(Duration retention) {
+    if (retention.isNegative() || retention.isZero()) {
+      throw new IllegalArgumentException("Retention must be positive: " + retention);
+    }
+    m_retention = retention;
+  }
+
+  /**
+   * Decode the record and append its samples to the ring of its source identifier.
+   *
+   * @throws IllegalArgumentException if the record does not contain numeric samples.
+   */
+  public void add(DataRecord record) {
+    DataRecordHeader header = record.header();
+    if (header.numberOfSamples() == 0) {
+      return;
+    }
+    double sampleRate = header.sampleRate().sampleRateDouble();
+    if (sampleRate <= 0) {
+      throw new IllegalArgumentException("Cannot store samples with sample rate " + sampleRate);
+    }
+    double[] values = values(record.samples());
+    SampleRing ring =
+        m_rings.computeIfAbsent(
+            header.sourceIdentifier(), sourceIdentifier -> new SampleRing(capacity(sampleRate)));
+    ring.write(NanoTime.toEpochNanos(header.recordStartTime()), sampleRate, values);
+  }
+
+  /**
+   * @return all retained samples of the source identifier, or empty if none have been added.
+   */
+  public Optional<Snapshot> snapshot(SourceIdentifier sourceIdentifier) {
+    return snapshot(sourceIdentifier, Long.MIN_VALUE);
+  }
+
+  /**
+   * @return the retained samples of the source identifier at or after the given time, or empty if
+   *     none have been added.
+   */
+  public Optional<Snapshot> snapshot(SourceIdentifier sourceIdentifier, long sinceNanos) {
+    SampleRing ring = m_rings.get(sourceIdentifier);
+    return ring == null ? Optional.empty() : Optional.of(ring.read(sinceNanos));
+  }
+
+  /**
+   * @return the samples of the source identifier within the given duration of its latest sample, or
+   *     empty if none have been added.
+   */
+  public Optional<Snapshot> latest(SourceIdentifier sourceIdentifier, Duration duration) {
+    SampleRing ring = m_rings.get(sourceIdentifier);
+    return ring == null ? Optional.empty() : Optional.of(ring.latest(duration.toNanos()));
+  }
+
+  public Set<SourceIdentifier> sourceIdentifiers() {
+    return Set.copyOf(m_rings.keySet());
+  }
+
+  /** Stop retaining samples of the source identifier. */
+  public void remove(SourceIdentifier sourceIdentifier) {
+    m_rings.remove(sourceIdentifier);
+  }
+
+  private int capacity(double sampleRate) {
+    double samples = Math.ceil(sampleRate * m_retention.toNanos() / NanoTime.NS_PER_SEC);
+    return (int) Math.max(1, Math.min(samples, Integer.MAX_VALUE - 8));
+  }
+
+  private static double[] values(Samples samples) {
+    return switch (samples.type()) {
+      case INTEGER -> Arrays.stream(samples.intSamples()).asDoubleStream().toArray();
+      case DOUBLE -> samples.doubleSamples();
+      case FLOAT -> {
+        float[] floats = samples.floatSamples();
+        double[] values = new double[floats.length];
+        for (int i = 0; i < floats.length; i++) {
+          values[i] = floats[i];
+        }
+        yield values;
+      }
+      default -> throw new IllegalArgumentException(
+          "Cannot store " + samples.type() + " samples in real time store");
+    };
+  }
+}
@@ -0,0 +1,158 @@
+package ca.nanometrics.miniseed.realtime;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * A fixed capacity ring of samples and their times, written by a single thread and read by any
+ * number of threads without locks.
+ *
+ * <p>Consistency uses a sequence lock: the writer makes the sequence odd before writing and even
+ * again after, and a reader copies the samples it asks for, then retries if the sequence was odd or
+ * has changed since it started. Readers never block the writer; a reader only retries if a write
+ * happened during its copy.
+ */
+final class SampleRing {
+  private static final VarHandle SEQUENCE;
+
+  static {
+    try {
+      SEQUENCE = MethodHandles.lookup().findVarHandle(SampleRing.class, "m_sequence", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final long[] m_times;
+  private final double[] m_values;
+  // even when the ring is consistent, odd while it is being written; accessed through SEQUENCE
+  private long m_sequence;
+  // total number of samples ever written; only changed by the writer, inside a write
+  private long m_written;
+
+  SampleRing(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    m_times = new long[capacity];
+    m_values = new double[capacity];
+  }
+
+  int capacity() {
+    return m_values.length;
+  }
+
+  /**
+   * Append samples at regular times. Must only be called by the single writer thread.
+   *
+   * @param startNanos the time of the first sample, in epoch nanoseconds.
+   * @param sampleRate samples per second.
+   */
+  void write(long startNanos, double sampleRate, double[] values) {
+    long sequence = (long) SEQUENCE.getOpaque(this);
+    SEQUENCE.setOpaque(this, sequence + 1);
+    VarHandle.storeStoreFence();
+    int capacity = m_values.length;
+    // only the last capacity samples survive, so do not write the others
+    int first = Math.max(0, values.length - capacity);
+    long written = m_written;
+    for (int i = first; i < values.length; i++) {
+      int index = (int) (written % capacity);
+      m_times[index] = startNanos + Math.round(i * 1e9 / sampleRate);
+      m_values[index] = values[i];
+      written++;
+    }
+    m_written = written;
+    SEQUENCE.setRelease(this, sequence + 2);
+  }
+
+  /**
+   * @return the samples with a time at or after the given time, in the order written.
+   */
+  Snapshot read(long sinceNanos) {
+    return read(lastNanos -> sinceNanos);
+  }
+
+  /**
+   * @return the samples within the given duration of the last sample, in the order written.
+   */
+  Snapshot latest(long durationNanos) {
+    return read(lastNanos -> lastNanos - durationNanos);
+  }
+
+  /**
+   * Copies the samples from the first with a time at or after the time given by {@code since}, from
+   * the time of the last sample, found by binary search since samples are written in time order.
+   * Only those samples are copied, straight into the arrays of the snapshot.
+   */
+  private Snapshot read(LongUnaryOperator since) {
+    int capacity = m_values.length;
+    while (true) {
+      long sequence = (long) SEQUENCE.getAcquire(this);
+      if ((sequence & 1) != 0) {
+        Thread.onSpinWait();
+        continue;
+      }
+      long written = m_written;
+      int size = (int) Math.min(written, capacity);
+      int start = (int) ((written - size) % capacity);
+      int first = size == 0 ? 0 : first(start, size, since.applyAsLong(time(start, size - 1)));
+      int length = size - first;
+      int from = (start + first) % capacity;
+      int head = Math.min(length, capacity - from);
+      long[] times = new long[length];
+      double[] values = new double[length];
+      System.arraycopy(m_times, from, times, 0, head);
+      System.arraycopy(m_values, from, values, 0, head);
+      System.arraycopy(m_times, 0, times, head, length - head);
+      System.arraycopy(m_values, 0, values, head, length - head);
+      VarHandle.loadLoadFence();
+      if ((long) SEQUENCE.getAcquire(this) == sequence) {
+        return new Snapshot(times, values);
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  /**
+   * @return the index, from the oldest sample, of the first sample at or after the given time.
+   */
+  private int first(int start, int size, long sinceNanos) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (time(start, middle) < sinceNanos) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private long time(int start, int index) {
+    return m_times[(start + index) % m_times.length];
+  }
+}
@@ -0,0 +1,48 @@
+package ca.nanometrics.miniseed.realtime;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A consistent copy of the recent samples of a channel, in the order they were received.
+ *
+ * @param times the time of each sample, in epoch nanoseconds.
+ * @param values the value of each sample.
+ */
+public record Snapshot(long[] times, double[] values) {
+  public int size() {
+    return values.length;
+  }
+
+  public boolean isEmpty() {
+    return values.length == 0;
+  }
+
+  /**
+   * @return the time of the last sample, in epoch nanoseconds.
+   * @throws IllegalStateException if the snapshot is empty.
+   */
+  public long endTimeNanos() {
+    if (isEmpty()) {
+      throw new IllegalStateException("Snapshot is empty");
+    }
+    return times[times.length - 1];
+  }
+}
@@ -0,0 +1,406 @@
+package ca.nanometrics.miniseed.sds;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.DataRecordHeader;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.util.NanoTime;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Queries the records of a SeisComP Data Structure (SDS) archive, as laid out by {@link SdsPaths},
+ * by source identifier and time window.
+ *
+ * <p>A query resolves the day files of the matching channels that may hold records in the window,
+ * including the previous day's file since a record may start before midnight and end after it. The
+ * files are read on a fixed pool of threads, each file is trimmed to the records whose time span
+ * overlaps the window, and the channels are merged into a single stream ordered by record start
+ * time, and then by source identifier. Records are not cut, so the first and last record of each
+ * channel may extend beyond the window.
+ *
+ * <p>The day files of each channel are read one at a time, with the next one read ahead while the
+ * current one is consumed, so that the files of different channels are read in parallel. Memory use
+ * is bounded by two day files per channel queried, regardless of the length of the window.
+ *
+ * <p>The reader may be used by several threads at once. Closing it stops its threads.
+ */
+public class SdsArchiveReader implements Closeable {
+  private static final AtomicInteger READER_NUMBER = new AtomicInteger();
+
+  private final Path m_root;
+  private final ExecutorService m_executor;
+
+  public SdsArchiveReader(Path root) {
+    this(root, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param root the root directory of the archive.
+   * @param threads the number of files read in parallel.
+   */
+  public SdsArchiveReader(Path root, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+    }
+    m_root = root;
+    int reader = READER_NUMBER.incrementAndGet();
+    AtomicInteger threadNumber = new AtomicInteger();
+    m_executor =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              Thread thread =
+                  new Thread(
+                      runnable, "sds-reader-" + reader + "-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * The records of the matching channels whose time span overlaps the window from {@code start},
+   * inclusive, to {@code end}, exclusive. Files are read when the stream is consumed, and reading
+   * stops when the stream is closed.
+   *
+   * @param sourceGlob {@code NET.STA.LOC.CHAN}, where each code may contain the wildcards {@code *}
+   *     and {@code ?}, and an empty location code matches the empty location, e.g. {@code
+   *     NX.*.*.HH?}.
+   * @throws IllegalArgumentException if the glob does not have four codes, or the window is empty.
+   * @throws UncheckedIOException from the stream if a file cannot be read.
+   */
+  public Stream<DataRecord> query(String sourceGlob, OffsetDateTime start, OffsetDateTime end)
+      throws IOException {
+    QueryIterator iterator =
+        new QueryIterator(
+            resolve(sourceGlob, start, end),
+            NanoTime.toEpochNanos(start),
+            NanoTime.toEpochNanos(end));
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(iterator::close);
+  }
+
+  /**
+   * @return the day files of the channels matching the glob which may hold records overlapping the
+   *     window, ordered by channel and then by day.
+   * @see #query(String, OffsetDateTime, OffsetDateTime)
+   */
+  public List<Path> dayFiles(String sourceGlob, OffsetDateTime start, OffsetDateTime end)
+      throws IOException {
+    return resolve(sourceGlob, start, end).stream().map(DayFile::path).toList();
+  }
+
+  private List<DayFile> resolve(String sourceGlob, OffsetDateTime start, OffsetDateTime end)
+      throws IOException {
+    if (!start.isBefore(end)) {
+      throw new IllegalArgumentException("Start must be before end: " + start + ", " + end);
+    }
+    String[] codes = sourceGlob.split("\\.", -1);
+    if (codes.length != 4) {
+      throw new IllegalArgumentException("Expected NET.STA.LOC.CHAN: " + sourceGlob);
+    }
+    Pattern network = glob(codes[0]);
+    Pattern station = glob(codes[1]);
+    Pattern location = glob(codes[2]);
+    Pattern channel = glob(codes[3]);
+    LocalDate firstDay = start.atZoneSameInstant(ZoneOffset.UTC).toLocalDate().minusDays(1);
+    LocalDate lastDay = end.atZoneSameInstant(ZoneOffset.UTC).toLocalDate();
+
+    List<DayFile> files = new ArrayList<>();
+    for (int year = firstDay.getYear(); year <= lastDay.getYear(); year++) {
+      for (Path channelDirectory :
+          matching(
+              matching(
+                  matching(List.of(m_root.resolve(String.format("%04d", year))), network), station),
+              channel,
+              '.' + SdsPaths.DATA_TYPE)) {
+        for (Path file : list(channelDirectory)) {
+          DayFile dayFile = DayFile.parse(file);
+          if (dayFile != null
+              && dayFile.day().getYear() == year
+              && !dayFile.day().isBefore(firstDay)
+              && !dayFile.day().isAfter(lastDay)
+              && location.matcher(dayFile.location()).matches()) {
+            files.add(dayFile);
+          }
+        }
+      }
+    }
+    files.sort(Comparator.comparing(DayFile::channelKey).thenComparing(DayFile::day));
+    return files;
+  }
+
+  private static List<Path> matching(List<Path> directories, Pattern pattern) throws IOException {
+    return matching(directories, pattern, "");
+  }
+
+  /** The sub-directories of the given directories whose name, less the suffix, matches. */
+  private static List<Path> matching(List<Path> directories, Pattern pattern, String suffix)
+      throws IOException {
+    List<Path> result = new ArrayList<>();
+    for (Path directory : directories) {
+      for (Path child : list(directory)) {
+        String name = child.getFileName().toString();
+        if (Files.isDirectory(child)
+            && name.endsWith(suffix)
+            && pattern.matcher(name.substring(0, name.length() - suffix.length())).matches()) {
+          result.add(child);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static List<Path> list(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return List.of();
+    }
+    try (Stream<Path> children = Files.list(directory)) {
+      return children.toList();
+    }
+  }
+
+  static Pattern glob(String glob) {
+    StringBuilder regex = new StringBuilder();
+    for (char c : glob.toCharArray()) {
+      switch (c) {
+        case '*' -> regex.append(".*");
+        case '?' -> regex.append('.');
+        default -> regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString());
+  }
+
+  /** Stops the threads of this reader, interrupting any files being read. */
+  @Override
+  public void close() {
+    m_executor.shutdownNow();
+  }
+
+  /** A day file and the codes of its name, {@code NET.STA.LOC.CHAN.D.YEAR.DOY}. */
+  private record DayFile(Path path, String channelKey, String location, LocalDate day) {
+    static DayFile parse(Path path) {
+      String[] parts = path.getFileName().toString().split("\\.", -1);
+      if (parts.length != 7 || !SdsPaths.DATA_TYPE.equals(parts[4])) {
+        return null;
+      }
+      try {
+        LocalDate day = LocalDate.ofYearDay(Integer.parseInt(parts[5]), Integer.parseInt(parts[6]));
+        return new DayFile(
+            path, String.join(".", parts[0], parts[1], parts[2], parts[3]), parts[2], day);
+      } catch (RuntimeException e) {
+        return null;
+      }
+    }
+  }
+
+  /** The records of a day file, being read on the executor. */
+  private record Pending(DayFile file, Future<List<DataRecord>> records) {}
+
+  private record Head(DataRecord record, long startNanos, int channel) {}
+
+  /**
+   * Merges the records of the channels by start time, holding the next record of each channel, as
+   * {@link MiniSeed#merge(List)} merges files.
+   */
+  private class QueryIterator implements Iterator<DataRecord> {
+    private final List<List<DayFile>> m_channelFiles;
+    private final long m_startNanos;
+    private final long m_endNanos;
+    private final List<ChannelReader> m_channels = new ArrayList<>();
+    private final PriorityQueue<Head> m_heap =
+        new PriorityQueue<>(
+            Comparator.comparingLong(Head::startNanos)
+                .thenComparing(head -> head.record().header().sourceIdentifier().toString())
+                .thenComparingInt(Head::channel));
+    private boolean m_opened;
+    private boolean m_closed;
+
+    QueryIterator(List<DayFile> files, long startNanos, long endNanos) {
+      m_channelFiles =
+          List.copyOf(
+              files.stream()
+                  .collect(
+                      Collectors.groupingBy(
+                          DayFile::channelKey, LinkedHashMap::new, Collectors.toList()))
+                  .values());
+      m_startNanos = startNanos;
+      m_endNanos = endNanos;
+    }
+
+    private void open() {
+      m_opened = true;
+      // all channels are created first, so their first files are read in parallel
+      for (List<DayFile> files : m_channelFiles) {
+        m_channels.add(new ChannelReader(files));
+      }
+      for (int channel = 0; channel < m_channels.size(); channel++) {
+        advance(channel);
+      }
+    }
+
+    private void advance(int channel) {
+      DataRecord record = m_channels.get(channel).next();
+      if (record != null) {
+        m_heap.add(
+            new Head(record, NanoTime.toEpochNanos(record.header().recordStartTime()), channel));
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (!m_opened && !m_closed) {
+        open();
+      }
+      return !m_heap.isEmpty();
+    }
+
+    @Override
+    public DataRecord next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Head head = m_heap.poll();
+      advance(head.channel());
+      return head.record();
+    }
+
+    private List<DataRecord> read(Path file) throws IOException {
+      try (Stream<DataRecord> records = MiniSeed.stream(file.toFile())) {
+        // a file appended to out of order is sorted, so each channel is in time order
+        return records
+            .filter(this::overlaps)
+            .sorted(MiniSeed.SOURCE_IDENTIFIER_TIME_ORDER)
+            .toList();
+      }
+    }
+
+    private boolean overlaps(DataRecord record) {
+      DataRecordHeader header = record.header();
+      long start = NanoTime.toEpochNanos(header.recordStartTime());
+      long end =
+          header.sampleRate().sampleRateDouble() > 0
+              ? start + header.numberOfSamples() * header.sampleRate().samplePeriodNanos()
+              : start;
+      return start < m_endNanos && (end > m_startNanos || start >= m_startNanos);
+    }
+
+    /** The records of a channel, read a day file at a time. */
+    private class ChannelReader {
+      private final Deque<DayFile> m_files;
+      private Pending m_next;
+      private Iterator<DataRecord> m_records = List.<DataRecord>of().iterator();
+
+      ChannelReader(List<DayFile> files) {
+        m_files = new ArrayDeque<>(files);
+        readAhead();
+      }
+
+      /**
+       * @return the next record of the channel, or null once all of its files have been read.
+       */
+      DataRecord next() {
+        while (!m_records.hasNext()) {
+          if (m_next == null) {
+            return null;
+          }
+          List<DataRecord> records = result(m_next);
+          readAhead();
+          m_records = records.iterator();
+        }
+        return m_records.next();
+      }
+
+      private void readAhead() {
+        DayFile file = m_files.poll();
+        m_next =
+            file == null ? null : new Pending(file, m_executor.submit(() -> read(file.path())));
+      }
+
+      void close() {
+        if (m_next != null) {
+          m_next.records().cancel(true);
+          m_next = null;
+        }
+        m_files.clear();
+        m_records = List.<DataRecord>of().iterator();
+      }
+    }
+
+    void close() {
+      m_closed = true;
+      m_channels.forEach(ChannelReader::close);
+      m_heap.clear();
+    }
+  }
+
+  private static List<DataRecord> result(Pending pending) {
+    try {
+      return pending.records().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading " + pending.file().path(), e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException ioException) {
+        throw new UncheckedIOException("Could not read " + pending.file().path(), ioException);
+      }
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (cause instanceof Error error) {
+        throw error;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package ca.nanometrics.miniseed.sds;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.v3.RecordChannelWriter;
+import ca.nanometrics.miniseed.v3.RecordChannelWriter.FlushPolicy;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Appends records to the day files of a SeisComP Data Structure (SDS) archive, as laid out by
+ * {@link SdsPaths}, routing each record by its source identifier and the UTC day of its start time.
+ *
+ * <p>Files are kept open in a least recently used cache of at most {@code maxOpenFiles} channels,
+ * so writing many records of the same channel does not open and close the file for each record.
+ * Records of each file are batched by a {@link RecordChannelWriter} with a buffer of {@code
+ * bufferSize} bytes, and written when the buffer is full, when the file is evicted from the cache,
+ * and when the writer is flushed or closed. Memory use is therefore bounded by {@code maxOpenFiles
+ * * bufferSize}, regardless of the number of channels.
+ *
+ * <p>Records are appended to existing files, and are written in the order they are given for each
+ * file. A record is written to the file of the day it starts, even if it ends on the next day.
+ *
+ * <p>Not thread safe.
+ */
+public class SdsArchiveWriter implements Closeable, Flushable {
+  public static final int DEFAULT_MAX_OPEN_FILES = 256;
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+  private final Path m_root;
+  private final int m_maxOpenFiles;
+  private final int m_bufferSize;
+  /** Open files in access order, least recently used first. */
+  private final Map<Path, RecordChannelWriter> m_open = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long m_recordsWritten;
+  private long m_filesOpened;
+
+  public SdsArchiveWriter(Path root) {
+    this(root, DEFAULT_MAX_OPEN_FILES, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param root the root directory of the archive, which is created if required.
+   * @param maxOpenFiles the maximum number of day files kept open.
+   * @param bufferSize the number of bytes of records pending for a file that triggers a write.
+   */
+  public SdsArchiveWriter(Path root, int maxOpenFiles, int bufferSize) {
+    if (maxOpenFiles < 1) {
+      throw new IllegalArgumentException(
+          "Maximum number of open files must be positive: " + maxOpenFiles);
+    }
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+    }
+    m_root = root;
+    m_maxOpenFiles = maxOpenFiles;
+    m_bufferSize = bufferSize;
+  }
+
+  /**
+   * Append the given record to its day file.
+   *
+   * @throws IllegalArgumentException if the source identifier of the record would place its day
+   *     file outside the archive.
+   */
+  public void write(DataRecord record) throws IOException {
+    Path file =
+        SdsPaths.dayFile(
+            m_root, record.header().sourceIdentifier(), record.header().recordStartTime());
+    writer(file).write(record.toByteArray());
+    m_recordsWritten++;
+  }
+
+  private RecordChannelWriter writer(Path file) throws IOException {
+    RecordChannelWriter writer = m_open.get(file);
+    if (writer == null) {
+      if (m_open.size() >= m_maxOpenFiles) {
+        evictLeastRecentlyUsed();
+      }
+      Files.createDirectories(file.getParent());
+      writer =
+          new RecordChannelWriter(
+              FileChannel.open(
+                  file,
+                  StandardOpenOption.CREATE,
+                  StandardOpenOption.WRITE,
+                  StandardOpenOption.APPEND),
+              m_bufferSize,
+              FlushPolicy.WHEN_FULL);
+      m_open.put(file, writer);
+      m_filesOpened++;
+    }
+    return writer;
+  }
+
+  private void evictLeastRecentlyUsed() throws IOException {
+    Iterator<RecordChannelWriter> iterator = m_open.values().iterator();
+    RecordChannelWriter eldest = iterator.next();
+    iterator.remove();
+    eldest.close();
+  }
+
+  /** Write the pending records of all open files, leaving the files open. */
+  @Override
+  public void flush() throws IOException {
+    for (RecordChannelWriter writer : m_open.values()) {
+      writer.flush();
+    }
+  }
+
+  /** Write the pending records of all open files and close them. */
+  @Override
+  public void close() throws IOException {
+    IOException failure = null;
+    for (RecordChannelWriter writer : m_open.values()) {
+      try {
+        writer.close();
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    m_open.clear();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** The number of records written, including any still pending. */
+  public long recordsWritten() {
+    return m_recordsWritten;
+  }
+
+  /** The number of times a day file has been opened, including reopening evicted files. */
+  public long filesOpened() {
+    return m_filesOpened;
+  }
+
+  /** The number of day files currently open. */
+  public int openFiles() {
+    return m_open.size();
+  }
+}
@@ -0,0 +1,110 @@
+package ca.nanometrics.miniseed.sds;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.SourceIdentifier;
+import java.io.File;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Paths of day files in a SeisComP Data Structure (SDS) archive, {@code
+ * YEAR/NET/STA/CHAN.TYPE/NET.STA.LOC.CHAN.TYPE.YEAR.DOY}, with the waveform data type {@code D}.
+ */
+public final class SdsPaths {
+  /** The SDS data type of waveform data. */
+  public static final String DATA_TYPE = "D";
+
+  private SdsPaths() {
+    // static methods only
+  }
+
+  /**
+   * @return the day file, relative to the root of the archive, holding data of the given source
+   *     starting at the given time, on the day of that time in UTC.
+   */
+  public static Path dayFile(Path root, SourceIdentifier source, OffsetDateTime time) {
+    return dayFile(root, source, time.atZoneSameInstant(ZoneOffset.UTC).toLocalDate());
+  }
+
+  /**
+   * @return the day file of the given source and UTC day, relative to the root of the archive.
+   * @throws IllegalArgumentException if a code of the source is not a valid path element, such as
+   *     {@code ..} or a code containing a path separator, or the network, station or channel code
+   *     is empty, so the day file would not be inside the archive.
+   */
+  public static Path dayFile(Path root, SourceIdentifier source, LocalDate day) {
+    String year = String.format("%04d", day.getYear());
+    String network = checkCode("network", source.network(), false);
+    String station = checkCode("station", source.station(), false);
+    String location =
+        checkCode("location", source.location() == null ? "" : source.location(), true);
+    String channel = checkCode("channel", channel(source), false);
+    Path file =
+        root.resolve(year)
+            .resolve(network)
+            .resolve(station)
+            .resolve(channel + '.' + DATA_TYPE)
+            .resolve(
+                String.join(
+                    ".",
+                    network,
+                    station,
+                    location,
+                    channel,
+                    DATA_TYPE,
+                    year,
+                    String.format("%03d", day.getDayOfYear())));
+    if (!file.normalize().startsWith(root.normalize())) {
+      throw new IllegalArgumentException(
+          String.format("Day file of %s is outside the archive %s: %s", source, root, file));
+    }
+    return file;
+  }
+
+  private static String checkCode(String name, String code, boolean mayBeEmpty) {
+    if ((code.isEmpty() && !mayBeEmpty)
+        || code.equals(".")
+        || code.equals("..")
+        || code.indexOf('/') >= 0
+        || code.indexOf('\\') >= 0
+        || code.contains(File.separator)) {
+      throw new IllegalArgumentException(
+          String.format("Invalid %s code for an SDS archive: '%s'", name, code));
+    }
+    return code;
+  }
+
+  /**
+   * @return the SDS channel code: the band, source and subsource codes without separators when each
+   *     is a single character, as for all SEED channels, or the FDSN channel code otherwise.
+   */
+  static String channel(SourceIdentifier source) {
+    if (source.band().length() <= 1
+        && source.source().length() <= 1
+        && source.subsource().length() <= 1) {
+      return source.band() + source.source() + source.subsource();
+    }
+    return source.channel();
+  }
+}
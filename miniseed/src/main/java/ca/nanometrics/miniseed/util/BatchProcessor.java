@@ -0,0 +1,201 @@
+package ca.nanometrics.miniseed.util;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * Processes many small, independent items, typically files, with one thread per item, where the
+ * time of each item is dominated by latency (opening the file, the first read, walking directories)
+ * rather than throughput, so that many requests are in flight at once to keep the storage busy.
+ *
+ * <p>Items are taken from the stream on the calling thread, for example as a directory is walked,
+ * and each is processed on its own thread while the stream is still being consumed. At most {@code
+ * maxConcurrency} items are processed at once, which bounds the number of files open at a time; the
+ * calling thread waits for a permit before taking the next item.
+ *
+ * <p>Virtual threads are used when the runtime supports them (Java 21 or later), found by
+ * reflection as this library targets Java 17; otherwise each item gets a platform thread from a
+ * pool that grows to at most {@code maxConcurrency} threads.
+ */
+public class BatchProcessor {
+  public static final int DEFAULT_MAX_CONCURRENCY = 256;
+
+  private static final AtomicInteger BATCH_NUMBER = new AtomicInteger();
+
+  private final int m_maxConcurrency;
+
+  /** Processes one item, returning a value for the {@link BatchResult}. */
+  @FunctionalInterface
+  public interface Task<T, R> {
+    R process(T item) throws Exception;
+  }
+
+  /** The outcome of one item: a value if it succeeded, or the exception it failed with. */
+  public record Outcome<T, R>(T item, @Nullable R value, @Nullable Exception failure) {
+    public boolean succeeded() {
+      return failure == null;
+    }
+  }
+
+  /** The outcomes of all items of a batch, in the order they completed. */
+  public record BatchResult<T, R>(List<Outcome<T, R>> outcomes) {
+    public long succeeded() {
+      return outcomes.stream().filter(Outcome::succeeded).count();
+    }
+
+    public long failed() {
+      return outcomes.size() - succeeded();
+    }
+
+    /** The values of the items that succeeded. */
+    public List<R> values() {
+      return outcomes.stream().filter(Outcome::succeeded).map(Outcome::value).toList();
+    }
+
+    /** The items that failed, with their exceptions. */
+    public List<Outcome<T, R>> failures() {
+      return outcomes.stream().filter(outcome -> !outcome.succeeded()).toList();
+    }
+  }
+
+  public BatchProcessor() {
+    this(DEFAULT_MAX_CONCURRENCY);
+  }
+
+  /**
+   * @param maxConcurrency the most items processed at once.
+   */
+  public BatchProcessor(int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("Max concurrency must be positive: " + maxConcurrency);
+    }
+    m_maxConcurrency = maxConcurrency;
+  }
+
+  /**
+   * Process every item of the stream, returning once all have completed. An exception from one item
+   * is recorded in its outcome and does not stop the others.
+   *
+   * <p>If the stream itself fails, for example walking a directory that cannot be read, no more
+   * items are started, but those already started are left to complete before the exception is
+   * rethrown, so none is left half done.
+   *
+   * @throws InterruptedException if interrupted while waiting, in which case items being processed
+   *     are interrupted and no more are started.
+   */
+  public <T, R> BatchResult<T, R> process(Stream<T> items, Task<T, R> task)
+      throws InterruptedException {
+    Semaphore permits = new Semaphore(m_maxConcurrency);
+    Queue<Outcome<T, R>> outcomes = new ConcurrentLinkedQueue<>();
+    ExecutorService executor = newThreadPerTaskExecutor();
+    RuntimeException sourceFailure = null;
+    try {
+      try {
+        submitAll(items, task, permits, outcomes, executor);
+      } catch (RuntimeException e) {
+        sourceFailure = e;
+      }
+      // all items have completed once every permit is free again
+      permits.acquire(m_maxConcurrency);
+    } finally {
+      executor.shutdownNow();
+    }
+    if (sourceFailure != null) {
+      throw sourceFailure;
+    }
+    return new BatchResult<>(new ArrayList<>(outcomes));
+  }
+
+  private static <T, R> void submitAll(
+      Stream<T> items,
+      Task<T, R> task,
+      Semaphore permits,
+      Queue<Outcome<T, R>> outcomes,
+      ExecutorService executor)
+      throws InterruptedException {
+    Iterator<T> iterator = items.iterator();
+    while (iterator.hasNext()) {
+      T item = iterator.next();
+      permits.acquire();
+      executor.execute(
+          () -> {
+            try {
+              outcomes.add(new Outcome<>(item, task.process(item), null));
+            } catch (Exception e) {
+              outcomes.add(new Outcome<>(item, null, e));
+            } finally {
+              permits.release();
+            }
+          });
+    }
+  }
+
+  /**
+   * @return true if items are processed on virtual threads.
+   */
+  public static boolean isUsingVirtualThreads() {
+    ExecutorService executor = newVirtualThreadPerTaskExecutor();
+    if (executor == null) {
+      return false;
+    }
+    executor.shutdown();
+    return true;
+  }
+
+  private ExecutorService newThreadPerTaskExecutor() {
+    ExecutorService executor = newVirtualThreadPerTaskExecutor();
+    if (executor != null) {
+      return executor;
+    }
+    int batch = BATCH_NUMBER.incrementAndGet();
+    AtomicInteger threadNumber = new AtomicInteger();
+    // the semaphore limits the number of tasks, so the pool never grows beyond that
+    return Executors.newCachedThreadPool(
+        runnable -> {
+          Thread thread =
+              new Thread(runnable, "batch-" + batch + "-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  @Nullable
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      // before Java 19, or a preview feature that is not enabled on Java 19 and 20
+      return null;
+    }
+  }
+}
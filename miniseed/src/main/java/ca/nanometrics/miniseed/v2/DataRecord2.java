@@ -24,6 +24,10 @@ import ca.nanometrics.miniseed.DataRecord;
 import ca.nanometrics.miniseed.DataRecordHeader;
 import ca.nanometrics.miniseed.Samples;
 import ca.nanometrics.miniseed.encoding.Decode;
+import ca.nanometrics.miniseed.encoding.SampleAccumulator;
+import ca.nanometrics.miniseed.jfr.DecodeEvent;
+import ca.nanometrics.miniseed.jfr.RecordReadEvent;
+import ca.nanometrics.miniseed.metrics.MiniSeedMetrics;
 import ca.nanometrics.miniseed.v2.blockettes.DataOnlyBlockette_1000;
 import com.google.auto.value.AutoBuilder;
 import java.io.ByteArrayOutputStream;
@@ -57,7 +61,35 @@ public class DataRecord2 implements DataRecord {
 
   @Override
   public Samples samples() {
-    return getDecoder().decode();
+    DecodeEvent event = new DecodeEvent();
+    event.begin();
+    long start = System.nanoTime();
+    Samples samples = getDecoder().decode();
+    decoded(event, start);
+    return samples;
+  }
+
+  @Override
+  public <A extends SampleAccumulator> A samples(A accumulator) {
+    DecodeEvent event = new DecodeEvent();
+    event.begin();
+    long start = System.nanoTime();
+    getDecoder().decode(accumulator);
+    decoded(event, start);
+    return accumulator;
+  }
+
+  private void decoded(DecodeEvent event, long start) {
+    MiniSeedMetrics.global()
+        .decoded(
+            header().dataOnlyBlockette().encodingFormat(),
+            header().numberOfSamples(),
+            System.nanoTime() - start);
+    if (event.shouldCommit()) {
+      event.encoding = header().dataOnlyBlockette().encodingFormat().name();
+      event.samples = header().numberOfSamples();
+      event.commit();
+    }
   }
 
   private Decode getDecoder() {
@@ -118,12 +150,22 @@ public class DataRecord2 implements DataRecord {
   public abstract static class Builder {
 
     public DataRecord2 read(InputStream input) throws IOException {
+      RecordReadEvent event = new RecordReadEvent();
+      event.begin();
       DataRecord2Header header = DataRecord2Header.builder().read(input).build();
       header(header);
       payload(
           input.readNBytes(
               header.dataOnlyBlockette().dataRecordLength() - header.offsetToBeginningOfData()));
-      return build();
+      DataRecord2 record = build();
+      MiniSeedMetrics.global().recordRead(record.length());
+      if (event.shouldCommit()) {
+        event.formatVersion = 2;
+        event.bytes = record.length();
+        event.sourceIdentifier = header.sourceIdentifier().toString();
+        event.commit();
+      }
+      return record;
     }
 
     public abstract Builder header(DataRecord2Header header);
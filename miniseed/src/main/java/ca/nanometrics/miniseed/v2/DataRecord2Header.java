@@ -87,6 +87,11 @@ public record DataRecord2Header(
         .withDayOfYear(dayOfYear);
   }
 
+  @Override
+  public short dataPublicationVersion() {
+    return qualityIndicator.dataPublicationVersion();
+  }
+
   public DataOnlyBlockette_1000 dataOnlyBlockette() {
     return (DataOnlyBlockette_1000) blockettes().get(DataOnlyBlockette_1000.TYPE);
   }
@@ -118,6 +123,16 @@ public record DataRecord2Header(
       return m_code;
     }
 
+    /** The equivalent miniseed 3 data publication version. */
+    public short dataPublicationVersion() {
+      return switch (this) {
+        case RAW -> (short) 1;
+        case UNKNOWN -> (short) 2;
+        case QUALITY_CONTROLLED -> (short) 3;
+        case MODIFIED -> (short) 4;
+      };
+    }
+
     public static QualityIndicator fromCode(char code) {
       for (QualityIndicator value : values()) {
         if (value.m_code == code) {
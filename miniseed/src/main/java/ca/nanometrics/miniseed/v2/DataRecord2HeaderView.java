@@ -0,0 +1,318 @@
+package ca.nanometrics.miniseed.v2;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.DataRecordHeader;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.endian.BigEndian;
+import ca.nanometrics.miniseed.endian.Endian;
+import ca.nanometrics.miniseed.endian.LittleEndian;
+import ca.nanometrics.miniseed.util.NanoTime;
+import ca.nanometrics.miniseed.v2.DataRecord2Header.ActivityFlags;
+import ca.nanometrics.miniseed.v2.DataRecord2Header.DataQualityFlags;
+import ca.nanometrics.miniseed.v2.DataRecord2Header.IOFlags;
+import ca.nanometrics.miniseed.v2.DataRecord2Header.QualityIndicator;
+import ca.nanometrics.miniseed.v2.blockettes.DataExtensionBlockette_1001;
+import ca.nanometrics.miniseed.v2.blockettes.DataOnlyBlockette_1000;
+import ca.nanometrics.miniseed.v2.blockettes.SampleRateBlockette_100;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * A flyweight view of a miniseed 2 record header, which keeps only the raw bytes and the detected
+ * byte order, and decodes each field from the bytes when it is accessed. Unlike {@link
+ * DataRecord2Header}, nothing is decoded up front, so scanning records for a few fields does not
+ * pay for the flags, source identifier, sample rate and blockettes of every record.
+ *
+ * <p>A view can be moved to another record with {@link #wrap}, so one instance can scan a whole
+ * buffer of records without allocating. It reflects any later changes to the bytes, and must not be
+ * retained once it has been moved; use {@link #toHeader()} for a header that can be kept.
+ *
+ * <p>Not thread safe.
+ */
+public final class DataRecord2HeaderView implements DataRecordHeader {
+  private static final int OFFSET_YEAR = 20;
+  private static final int OFFSET_DAY_OF_YEAR = 22;
+
+  private byte[] m_bytes;
+  private int m_offset;
+  private Endian m_endian;
+
+  /** An empty view, which must be {@link #wrap wrapped} around a record before it is used. */
+  public DataRecord2HeaderView() {
+    // nothing wrapped yet
+  }
+
+  /**
+   * @return a view of the header of the record at the given offset in the given bytes.
+   */
+  public static DataRecord2HeaderView of(byte[] bytes, int offset) {
+    return new DataRecord2HeaderView().wrap(bytes, offset);
+  }
+
+  /**
+   * Move this view to the header of the record at the given offset in the given bytes.
+   *
+   * @return this view.
+   * @throws IllegalArgumentException if there are too few bytes for a fixed header.
+   */
+  public DataRecord2HeaderView wrap(byte[] bytes, int offset) {
+    if (offset < 0 || bytes.length - offset < DataRecord2Header.FIXED_HEADER_SIZE) {
+      throw new IllegalArgumentException(
+          "Expected at least "
+              + DataRecord2Header.FIXED_HEADER_SIZE
+              + " header bytes at offset "
+              + offset
+              + ", but got "
+              + Math.max(0, bytes.length - offset));
+    }
+    m_bytes = bytes;
+    m_offset = offset;
+    // as for DataRecord2Header, the byte order is the one giving a plausible year and day
+    Endian bigEndian = BigEndian.get();
+    short year = bigEndian.readShort(bytes, offset + OFFSET_YEAR);
+    short dayOfYear = bigEndian.readShort(bytes, offset + OFFSET_DAY_OF_YEAR);
+    m_endian =
+        year >= 1900 && year <= 2100 && dayOfYear >= 1 && dayOfYear <= 366
+            ? bigEndian
+            : LittleEndian.get();
+    return this;
+  }
+
+  public Endian endian() {
+    return m_endian;
+  }
+
+  public int sequenceNumber() {
+    int sequenceNumber = 0;
+    for (int i = 0; i < 6; i++) {
+      byte digit = m_bytes[m_offset + i];
+      if (digit >= '0' && digit <= '9') {
+        sequenceNumber = sequenceNumber * 10 + digit - '0';
+      } else if (digit != ' ') {
+        throw new IllegalStateException("Invalid sequence number digit: " + (char) digit);
+      }
+    }
+    return sequenceNumber;
+  }
+
+  public QualityIndicator qualityIndicator() {
+    return QualityIndicator.fromCode((char) m_bytes[m_offset + 6]);
+  }
+
+  @Override
+  public Scnl sourceIdentifier() {
+    return Scnl.builder()
+        .network(network())
+        .station(station())
+        .location(location())
+        .channel(channel())
+        .build();
+  }
+
+  public String station() {
+    return field(8, 5);
+  }
+
+  public String location() {
+    return field(13, 2);
+  }
+
+  public String channel() {
+    return field(15, 3);
+  }
+
+  public String network() {
+    return field(18, 2);
+  }
+
+  private String field(int offset, int length) {
+    return new String(m_bytes, m_offset + offset, length, StandardCharsets.UTF_8).trim();
+  }
+
+  public int year() {
+    return m_endian.readUShort(m_bytes, m_offset + OFFSET_YEAR);
+  }
+
+  public int dayOfYear() {
+    return m_endian.readUShort(m_bytes, m_offset + OFFSET_DAY_OF_YEAR);
+  }
+
+  public byte hour() {
+    return m_bytes[m_offset + 24];
+  }
+
+  public byte minute() {
+    return m_bytes[m_offset + 25];
+  }
+
+  public byte second() {
+    return m_bytes[m_offset + 26];
+  }
+
+  public short hundredMicroseconds() {
+    return m_endian.readShort(m_bytes, m_offset + 28);
+  }
+
+  @Override
+  public OffsetDateTime recordStartTime() {
+    return OffsetDateTime.of(
+            year(),
+            1,
+            1,
+            hour(),
+            minute(),
+            second(),
+            hundredMicroseconds() * 100_000,
+            ZoneOffset.UTC)
+        .withDayOfYear(dayOfYear());
+  }
+
+  /** The record start time in nanoseconds since the epoch, without building a date/time. */
+  public long recordStartTimeNanos() {
+    long seconds =
+        LocalDate.ofYearDay(year(), dayOfYear()).toEpochDay() * 86_400
+            + hour() * 3_600
+            + minute() * 60
+            + second();
+    return seconds * NanoTime.NS_PER_SEC + hundredMicroseconds() * 100_000L;
+  }
+
+  @Override
+  public int numberOfSamples() {
+    return m_endian.readUShort(m_bytes, m_offset + 30);
+  }
+
+  @Override
+  public V2SampleRate sampleRate() {
+    return FractionalSampleRate.get(
+        m_endian.readShort(m_bytes, m_offset + 32), m_endian.readShort(m_bytes, m_offset + 34));
+  }
+
+  public ActivityFlags activityFlags() {
+    return ActivityFlags.fromByte(m_bytes[m_offset + 36]);
+  }
+
+  public IOFlags ioFlags() {
+    return IOFlags.fromByte(m_bytes[m_offset + 37]);
+  }
+
+  public DataQualityFlags dataQualityFlags() {
+    return DataQualityFlags.fromByte(m_bytes[m_offset + 38]);
+  }
+
+  public int numberOfBlockettesThatFollow() {
+    return m_endian.readUByte(m_bytes, m_offset + 39);
+  }
+
+  public long timeCorrection() {
+    return m_endian.readUInt(m_bytes, m_offset + 40);
+  }
+
+  public int offsetToBeginningOfData() {
+    return m_endian.readUShort(m_bytes, m_offset + 44);
+  }
+
+  public int offsetToFirstDataBlockette() {
+    return m_endian.readUShort(m_bytes, m_offset + 46);
+  }
+
+  @Override
+  public short dataPublicationVersion() {
+    return qualityIndicator().dataPublicationVersion();
+  }
+
+  /** The encoding of the payload, from the data only blockette (1000). */
+  public DataEncoding encoding() {
+    return DataEncoding.fromCode(m_bytes[dataOnlyBlocketteOffset() + 4]);
+  }
+
+  /** The length of the whole record in bytes, from the data only blockette (1000). */
+  public int recordLength() {
+    return 1 << m_bytes[dataOnlyBlocketteOffset() + 6];
+  }
+
+  /** The length of the fixed header and blockettes, as for {@link DataRecord2Header#length()}. */
+  @Override
+  public int length() {
+    int length = DataRecord2Header.FIXED_HEADER_SIZE;
+    if (hasBlockettes()) {
+      int offset = m_offset + offsetToFirstDataBlockette();
+      for (int i = 0; i < numberOfBlockettesThatFollow(); i++) {
+        int blocketteLength = blocketteLength(offset);
+        length += blocketteLength;
+        offset += blocketteLength;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * @return a header with every field decoded, which is independent of the bytes.
+   */
+  public DataRecord2Header toHeader() {
+    try {
+      return DataRecord2Header.builder()
+          .read(new ByteArrayInputStream(m_bytes, m_offset, m_bytes.length - m_offset))
+          .build();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private boolean hasBlockettes() {
+    return numberOfBlockettesThatFollow() > 0 && offsetToFirstDataBlockette() > 0;
+  }
+
+  /** Blockettes follow each other, as read by {@link DataRecord2Header.Builder#read}. */
+  private int dataOnlyBlocketteOffset() {
+    if (hasBlockettes()) {
+      int offset = m_offset + offsetToFirstDataBlockette();
+      for (int i = 0; i < numberOfBlockettesThatFollow(); i++) {
+        if (m_endian.readUShort(m_bytes, offset) == DataOnlyBlockette_1000.TYPE) {
+          return offset;
+        }
+        offset += blocketteLength(offset);
+      }
+    }
+    throw new IllegalStateException("Missing data only SEED blockette");
+  }
+
+  private int blocketteLength(int offset) {
+    int type = m_endian.readUShort(m_bytes, offset);
+    return switch (type) {
+      case DataOnlyBlockette_1000.TYPE -> DataOnlyBlockette_1000.LENGTH;
+      case DataExtensionBlockette_1001.TYPE -> DataExtensionBlockette_1001.LENGTH;
+      case SampleRateBlockette_100.TYPE -> SampleRateBlockette_100.LENGTH;
+      default -> throw new IllegalStateException("Unknown blockette type " + type);
+    };
+  }
+
+  @Override
+  public String toString() {
+    return "DataRecord2HeaderView[" + sourceIdentifier() + " " + recordStartTime() + "]";
+  }
+}
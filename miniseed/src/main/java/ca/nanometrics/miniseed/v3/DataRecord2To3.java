@@ -0,0 +1,279 @@
+package ca.nanometrics.miniseed.v3;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.endian.Endian;
+import ca.nanometrics.miniseed.endian.LittleEndian;
+import ca.nanometrics.miniseed.v2.DataRecord2Header;
+import ca.nanometrics.miniseed.v2.Scnl;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * Translates miniseed 2 record headers directly into miniseed 3 record bytes.
+ *
+ * <p>This produces the same record as building a {@link DataRecord3Header} from the miniseed 2
+ * header fields with the {@link ExtraHeader#FDSN_RESERVED_HEADERS}, but without the intermediate
+ * date/time, source identifier and JSON objects: the fixed header is written from the miniseed 2
+ * header fields and raw flag bytes, the FDSN source identifier bytes are cached per channel, and
+ * the extra headers are written straight to bytes.
+ */
+public final class DataRecord2To3 {
+  private static final int MAX_CACHED_IDENTIFIERS = 1 << 16;
+  private static final Map<Scnl, byte[]> IDENTIFIERS = new ConcurrentHashMap<>();
+
+  // offsets of the flag bytes in the miniseed 2 fixed header
+  private static final int ACTIVITY_FLAGS = 36;
+  private static final int IO_FLAGS = 37;
+  private static final int DATA_QUALITY_FLAGS = 38;
+
+  private static final byte[] FDSN_SEQUENCE = ascii("{\"FDSN\":{\"Sequence\":");
+  private static final byte[] EVENT = ascii(",\"Event\":{");
+  private static final byte[] BEGIN = ascii("\"Begin\":true");
+  private static final byte[] END = ascii("\"End\":true");
+  private static final byte[] IN_PROGRESS = ascii("\"InProgress\":true");
+  private static final byte[] TIME = ascii(",\"Time\":{");
+  private static final byte[] LEAP_SECOND = ascii("\"LeapSecond\":");
+  private static final byte[] CORRECTION = ascii("\"Correction\":");
+  private static final byte[] FLAGS = ascii(",\"Flags\":{");
+  private static final byte[] STATION_VOLUME_PARITY_ERROR =
+      ascii("\"StationVolumeParityError\":true");
+  private static final byte[] LONG_RECORD_READ = ascii("\"LongRecordRead\":true");
+  private static final byte[] SHORT_RECORD_READ = ascii("\"ShortRecordRead\":true");
+  private static final byte[] START_OF_TIME_SERIES = ascii("\"StartOfTimeSeries\":true");
+  private static final byte[] END_OF_TIME_SERIES = ascii("\"EndOfTimeSeries\":true");
+  private static final byte[] AMPLIFIER_SATURATION = ascii("\"AmplifierSaturation\":true");
+  private static final byte[] DIGITIZER_CLIPPING = ascii("\"DigitizerClipping\":true");
+  private static final byte[] SPIKES = ascii("\"Spikes\":true");
+  private static final byte[] GLITCHES = ascii("\"Glitches\":true");
+  private static final byte[] MISSING_DATA = ascii("\"MissingData\":true");
+  private static final byte[] TELEMETRY_SYNC_ERROR = ascii("\"TelemetrySyncError\":true");
+  private static final byte[] FILTER_CHARGING = ascii("\"FilterCharging\":true");
+  private static final byte[] COMMA = ascii(",");
+  private static final byte[] CLOSE = ascii("}");
+
+  private DataRecord2To3() {
+    // static methods only
+  }
+
+  /**
+   * @return the bytes of a complete miniseed 3 record, including its CRC, with the given payload.
+   */
+  public static byte[] toRecord(DataRecord2Header header, DataEncoding encoding, byte[] payload) {
+    byte[] identifier = sourceIdentifier(header.sourceIdentifier());
+    byte[] extraHeaders = extraHeaders(header);
+    int headerLength =
+        DataRecord3Header.FIXED_HEADER_SIZE + identifier.length + extraHeaders.length;
+    byte[] record = new byte[headerLength + payload.length];
+    writeHeader(record, header, encoding, identifier, extraHeaders, payload.length);
+    System.arraycopy(payload, 0, record, headerLength, payload.length);
+    CRC32C crc = new CRC32C();
+    crc.update(record);
+    LittleEndian.get().writeInt(record, 28, (int) crc.getValue());
+    return record;
+  }
+
+  /**
+   * @return the bytes of the miniseed 3 header, with a zero CRC, for a payload of the given length.
+   */
+  public static byte[] toHeader(
+      DataRecord2Header header, DataEncoding encoding, int payloadLength) {
+    byte[] identifier = sourceIdentifier(header.sourceIdentifier());
+    byte[] extraHeaders = extraHeaders(header);
+    byte[] bytes =
+        new byte[DataRecord3Header.FIXED_HEADER_SIZE + identifier.length + extraHeaders.length];
+    writeHeader(bytes, header, encoding, identifier, extraHeaders, payloadLength);
+    return bytes;
+  }
+
+  private static void writeHeader(
+      byte[] bytes,
+      DataRecord2Header header,
+      DataEncoding encoding,
+      byte[] identifier,
+      byte[] extraHeaders,
+      int payloadLength) {
+    Endian writer = LittleEndian.get();
+    byte[] v2 = header.byteArray().byteArray();
+    bytes[0] = 'M';
+    bytes[1] = 'S';
+    bytes[2] = 3;
+    bytes[3] = flags(v2);
+    writer.writeInt(bytes, 4, header.hundredMicroseconds() * 100_000);
+    writer.writeShort(bytes, 8, (short) header.year());
+    writer.writeShort(bytes, 10, (short) header.dayOfYear());
+    bytes[12] = header.hour();
+    bytes[13] = header.minute();
+    bytes[14] = header.second();
+    bytes[15] = encoding.code();
+    writer.writeDouble(bytes, 16, header.sampleRate().sampleRateDouble());
+    writer.writeInt(bytes, 24, header.numberOfSamples());
+    // bytes 28-31: CRC
+    bytes[32] = (byte) header.dataPublicationVersion();
+    bytes[33] = (byte) identifier.length;
+    writer.writeShort(bytes, 34, (short) extraHeaders.length);
+    writer.writeInt(bytes, 36, payloadLength);
+    int offset = DataRecord3Header.FIXED_HEADER_SIZE;
+    System.arraycopy(identifier, 0, bytes, offset, identifier.length);
+    offset += identifier.length;
+    System.arraycopy(extraHeaders, 0, bytes, offset, extraHeaders.length);
+  }
+
+  /**
+   * Calibration present, time tag questionable and clock locked, as in {@link
+   * DataRecord3Header.Flags}.
+   */
+  static byte flags(byte[] v2) {
+    int flags = v2[ACTIVITY_FLAGS] & 0x01;
+    if ((v2[DATA_QUALITY_FLAGS] & 0x80) != 0) {
+      flags |= 0x02;
+    }
+    if ((v2[IO_FLAGS] & 0x20) != 0) {
+      flags |= 0x04;
+    }
+    return (byte) flags;
+  }
+
+  static byte[] sourceIdentifier(Scnl scnl) {
+    byte[] bytes = IDENTIFIERS.get(scnl);
+    if (bytes == null) {
+      bytes =
+          UriSourceIdentifier.builder()
+              .network(scnl.network())
+              .station(scnl.station())
+              .location(scnl.location())
+              .channel(scnl.channel())
+              .build()
+              .toString()
+              .getBytes(StandardCharsets.US_ASCII);
+      if (IDENTIFIERS.size() >= MAX_CACHED_IDENTIFIERS) {
+        IDENTIFIERS.clear();
+      }
+      IDENTIFIERS.put(scnl, bytes);
+    }
+    return bytes;
+  }
+
+  /**
+   * @return the FDSN reserved extra headers of the given miniseed 2 header as JSON bytes,
+   *     equivalent to adding each of {@link ExtraHeader#FDSN_RESERVED_HEADERS} to a JSON object.
+   */
+  static byte[] extraHeaders(DataRecord2Header header) {
+    byte[] v2 = header.byteArray().byteArray();
+    int activity = v2[ACTIVITY_FLAGS];
+    int io = v2[IO_FLAGS];
+    int quality = v2[DATA_QUALITY_FLAGS];
+    JsonWriter json = new JsonWriter();
+    json.raw(FDSN_SEQUENCE).number(header.sequenceNumber());
+
+    json.beginGroup(EVENT);
+    json.flag(activity, 0x04, BEGIN);
+    json.flag(activity, 0x08, END);
+    json.flag(activity, 0x40, IN_PROGRESS);
+    json.endGroup();
+
+    json.raw(TIME);
+    if ((activity & 0x10) != 0) {
+      json.raw(LEAP_SECOND).number(1).raw(COMMA);
+    } else if ((activity & 0x20) != 0) {
+      json.raw(LEAP_SECOND).number(-1).raw(COMMA);
+    }
+    json.raw(CORRECTION).number(header.timeCorrection()).raw(CLOSE);
+
+    json.beginGroup(FLAGS);
+    json.flag(io, 0x01, STATION_VOLUME_PARITY_ERROR);
+    json.flag(io, 0x02, LONG_RECORD_READ);
+    json.flag(io, 0x04, SHORT_RECORD_READ);
+    json.flag(io, 0x08, START_OF_TIME_SERIES);
+    json.flag(io, 0x10, END_OF_TIME_SERIES);
+    json.flag(quality, 0x01, AMPLIFIER_SATURATION);
+    json.flag(quality, 0x02, DIGITIZER_CLIPPING);
+    json.flag(quality, 0x04, SPIKES);
+    json.flag(quality, 0x08, GLITCHES);
+    json.flag(quality, 0x10, MISSING_DATA);
+    json.flag(quality, 0x20, TELEMETRY_SYNC_ERROR);
+    json.flag(quality, 0x40, FILTER_CHARGING);
+    json.endGroup();
+
+    return json.raw(CLOSE).raw(CLOSE).toByteArray();
+  }
+
+  private static byte[] ascii(String string) {
+    return string.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /** Writes JSON directly as bytes, omitting a group entirely if none of its flags are set. */
+  private static final class JsonWriter {
+    private byte[] m_bytes = new byte[256];
+    private int m_length;
+    private int m_groupStart = -1;
+    private boolean m_groupEmpty;
+
+    JsonWriter raw(byte[] bytes) {
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, m_bytes, m_length, bytes.length);
+      m_length += bytes.length;
+      return this;
+    }
+
+    JsonWriter number(long value) {
+      return raw(ascii(Long.toString(value)));
+    }
+
+    void beginGroup(byte[] name) {
+      m_groupStart = m_length;
+      m_groupEmpty = true;
+      raw(name);
+    }
+
+    void flag(int flags, int mask, byte[] entry) {
+      if ((flags & mask) != 0) {
+        if (!m_groupEmpty) {
+          raw(COMMA);
+        }
+        raw(entry);
+        m_groupEmpty = false;
+      }
+    }
+
+    void endGroup() {
+      if (m_groupEmpty) {
+        m_length = m_groupStart;
+      } else {
+        raw(CLOSE);
+      }
+    }
+
+    private void ensureCapacity(int length) {
+      if (m_length + length > m_bytes.length) {
+        m_bytes = Arrays.copyOf(m_bytes, Math.max(m_bytes.length * 2, m_length + length));
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(m_bytes, m_length);
+    }
+  }
+}
@@ -25,19 +25,25 @@ import ca.nanometrics.miniseed.DataRecord;
 import ca.nanometrics.miniseed.Samples;
 import ca.nanometrics.miniseed.encoding.DataEncoding;
 import ca.nanometrics.miniseed.encoding.Decode;
+import ca.nanometrics.miniseed.encoding.SampleAccumulator;
 import ca.nanometrics.miniseed.endian.BigEndianReader;
 import ca.nanometrics.miniseed.endian.LittleEndianReader;
+import ca.nanometrics.miniseed.jfr.CrcValidationEvent;
+import ca.nanometrics.miniseed.jfr.DecodeEvent;
+import ca.nanometrics.miniseed.jfr.RecordReadEvent;
+import ca.nanometrics.miniseed.metrics.MiniSeedMetrics;
 import com.google.auto.value.AutoBuilder;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.zip.CRC32C;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 public class DataRecord3 implements DataRecord {
+  private static final int CRC_OFFSET = 28;
   private final DataRecord3Header m_header;
   private final byte[] m_payload;
 
@@ -110,14 +116,9 @@ public class DataRecord3 implements DataRecord {
   @Override
   public byte[] toByteArray() {
     byte[] headerBytes = m_header.toByteArray();
-    try (ByteArrayOutputStream outputStream =
-        new ByteArrayOutputStream(headerBytes.length + m_payload.length)) {
-      outputStream.write(headerBytes);
-      outputStream.write(m_payload);
-      return outputStream.toByteArray();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    byte[] bytes = Arrays.copyOf(headerBytes, headerBytes.length + m_payload.length);
+    System.arraycopy(m_payload, 0, bytes, headerBytes.length, m_payload.length);
+    return bytes;
   }
 
   @Override
@@ -127,7 +128,33 @@ public class DataRecord3 implements DataRecord {
 
   @Override
   public Samples samples() {
-    return getDecoder().decode();
+    DecodeEvent event = new DecodeEvent();
+    event.begin();
+    long start = System.nanoTime();
+    Samples samples = getDecoder().decode();
+    decoded(event, start);
+    return samples;
+  }
+
+  @Override
+  public <A extends SampleAccumulator> A samples(A accumulator) {
+    DecodeEvent event = new DecodeEvent();
+    event.begin();
+    long start = System.nanoTime();
+    getDecoder().decode(accumulator);
+    decoded(event, start);
+    return accumulator;
+  }
+
+  private void decoded(DecodeEvent event, long start) {
+    MiniSeedMetrics.global()
+        .decoded(
+            header().dataPayloadEncoding(), header().numberOfSamples(), System.nanoTime() - start);
+    if (event.shouldCommit()) {
+      event.encoding = header().dataPayloadEncoding().name();
+      event.samples = header().numberOfSamples();
+      event.commit();
+    }
   }
 
   private Decode getDecoder() {
@@ -140,7 +167,7 @@ public class DataRecord3 implements DataRecord {
                   default -> new LittleEndianReader(bytes);
                 },
             m_payload,
-            (int) header().numberOfSamples(),
+            header().numberOfSamples(),
             (int) header().lengthOfDataPayload());
   }
 
@@ -156,10 +183,20 @@ public class DataRecord3 implements DataRecord {
   @AutoBuilder
   public abstract static class Builder {
     public DataRecord3 read(InputStream input) throws IOException {
+      RecordReadEvent event = new RecordReadEvent();
+      event.begin();
       DataRecord3Header header = DataRecord3Header.builder().read(input).build();
       header(header);
       payload(input.readNBytes((int) header.lengthOfDataPayload()));
-      return build();
+      DataRecord3 record = build();
+      MiniSeedMetrics.global().recordRead(record.length());
+      if (event.shouldCommit()) {
+        event.formatVersion = 3;
+        event.bytes = record.length();
+        event.sourceIdentifier = header.sourceIdentifier().toString();
+        event.commit();
+      }
+      return record;
     }
 
     public abstract Builder header(DataRecord3Header header);
@@ -184,11 +221,21 @@ public class DataRecord3 implements DataRecord {
     }
 
     private static void validateCrc(DataRecord3Header header, byte[] payload) {
-      DataRecord3Header zeroCrcHeader = header.toBuilder().crc(0).build();
+      // the CRC is calculated with the CRC field itself zeroed
+      byte[] zeroCrcHeader = header.toByteArray().clone();
+      Arrays.fill(zeroCrcHeader, CRC_OFFSET, CRC_OFFSET + 4, (byte) 0);
+      CrcValidationEvent event = new CrcValidationEvent();
+      event.begin();
       CRC32C crc = new CRC32C();
-      crc.update(zeroCrcHeader.toByteArray());
+      crc.update(zeroCrcHeader);
       crc.update(payload);
       long crcValue = crc.getValue();
+      MiniSeedMetrics.global().crcValidated(crcValue == header.crc());
+      if (event.shouldCommit()) {
+        event.bytes = zeroCrcHeader.length + payload.length;
+        event.valid = crcValue == header.crc();
+        event.commit();
+      }
       if (crcValue != header.crc()) {
         throw new IllegalArgumentException(
             "CRC mismatch: expected " + header.crc() + ", but got " + crcValue);
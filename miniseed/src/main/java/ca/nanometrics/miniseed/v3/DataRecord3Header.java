@@ -112,7 +112,7 @@ public record DataRecord3Header(
   }
 
   public int lengthOfIdentifier() {
-    return sourceIdentifier.toString().length();
+    return Byte.toUnsignedInt(byteArray.byteArray()[33]);
   }
 
   public int lengthOfExtraHeaders() {
@@ -187,9 +187,8 @@ public record DataRecord3Header(
       int lengthOfExtraHeaders = reader.readUShort(bytes, 34);
       lengthOfDataPayload(reader.readUInt(bytes, 36));
 
-      sourceIdentifier(
-          SourceIdentifier.parse(
-              new String(input.readNBytes(lengthOfIdentifier), StandardCharsets.US_ASCII)));
+      byte[] identifier = input.readNBytes(lengthOfIdentifier);
+      sourceIdentifier(SourceIdentifierCache.intern(identifier, 0, identifier.length));
       if (lengthOfExtraHeaders != 0) {
         String string =
             new String(input.readNBytes(lengthOfExtraHeaders), StandardCharsets.US_ASCII);
@@ -293,7 +292,8 @@ public record DataRecord3Header(
 
     private byte[] buildByteArray() {
       Endian writer = LittleEndian.get();
-      int lengthOfIdentifier = sourceIdentifier().toString().length();
+      String identifier = sourceIdentifier().toString();
+      int lengthOfIdentifier = identifier.length();
       String extraHeaderFieldsJson =
           extraHeaderFieldsString() == null
               ? (extraHeaderFields() == null ? "" : extraHeaderFields().toString())
@@ -317,7 +317,7 @@ public record DataRecord3Header(
       bytes[33] = (byte) lengthOfIdentifier;
       writer.writeShort(bytes, 34, (short) lengthOfExtraHeaders);
       writer.writeInt(bytes, 36, (int) lengthOfDataPayload());
-      writeString(bytes, 40, sourceIdentifier().toString());
+      writeString(bytes, 40, identifier);
       if (lengthOfExtraHeaders > 0) {
         writeString(bytes, 40 + lengthOfIdentifier, extraHeaderFieldsJson);
       }
@@ -0,0 +1,151 @@
+package ca.nanometrics.miniseed.v3;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Writes records to a channel in batches, passing the header and payload arrays of many records to
+ * a single {@link GatheringByteChannel#write(ByteBuffer[], int, int) gathering write}, instead of
+ * copying each record into a new array and writing it on its own.
+ *
+ * <p>Records are immutable, so their arrays are held without copying until they are written. With
+ * {@link FlushPolicy#WHEN_FULL}, pending records are written when they reach the buffer size or
+ * {@link #MAX_BUFFERS} arrays, and when the writer is flushed or closed.
+ *
+ * <p>Not thread safe.
+ */
+public class RecordChannelWriter implements Closeable, Flushable {
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+  /** The most arrays passed to one gathering write, the limit of most operating systems. */
+  public static final int MAX_BUFFERS = 1024;
+
+  /** When pending records are written to the channel. */
+  public enum FlushPolicy {
+    /** Write when the pending records fill the buffer, and when flushed or closed. */
+    WHEN_FULL,
+    /** Write each record as it is added, when latency matters more than throughput. */
+    EVERY_RECORD
+  }
+
+  private final GatheringByteChannel m_channel;
+  private final int m_bufferSize;
+  private final FlushPolicy m_flushPolicy;
+  private final ByteBuffer[] m_buffers = new ByteBuffer[MAX_BUFFERS];
+  private int m_numBuffers;
+  private long m_pendingBytes;
+  private long m_recordsWritten;
+  private long m_bytesWritten;
+  private long m_writes;
+
+  public RecordChannelWriter(GatheringByteChannel channel) {
+    this(channel, DEFAULT_BUFFER_SIZE, FlushPolicy.WHEN_FULL);
+  }
+
+  /**
+   * @param channel the channel to write to, which is closed when this writer is closed.
+   * @param bufferSize the number of bytes of pending records that triggers a write.
+   * @param flushPolicy when pending records are written.
+   */
+  public RecordChannelWriter(
+      GatheringByteChannel channel, int bufferSize, FlushPolicy flushPolicy) {
+    if (bufferSize < 1) {
+      throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+    }
+    m_channel = channel;
+    m_bufferSize = bufferSize;
+    m_flushPolicy = flushPolicy;
+  }
+
+  /** Add the given record, writing pending records if required by the flush policy. */
+  public void write(DataRecord3 record) throws IOException {
+    add(record.header().toByteArray(), record.payload());
+  }
+
+  /**
+   * Add the bytes of a complete record, such as from {@link DataRecord2To3#toRecord}, writing
+   * pending records if required by the flush policy. The array must not be modified afterwards.
+   */
+  public void write(byte[] record) throws IOException {
+    add(record);
+  }
+
+  private void add(byte[]... arrays) throws IOException {
+    if (m_numBuffers + arrays.length > MAX_BUFFERS) {
+      flush();
+    }
+    for (byte[] array : arrays) {
+      if (array.length > 0) {
+        m_buffers[m_numBuffers++] = ByteBuffer.wrap(array);
+        m_pendingBytes += array.length;
+      }
+    }
+    m_recordsWritten++;
+    if (m_flushPolicy == FlushPolicy.EVERY_RECORD || m_pendingBytes >= m_bufferSize) {
+      flush();
+    }
+  }
+
+  /** Write all pending records to the channel. */
+  @Override
+  public void flush() throws IOException {
+    int offset = 0;
+    while (offset < m_numBuffers) {
+      m_bytesWritten += m_channel.write(m_buffers, offset, m_numBuffers - offset);
+      m_writes++;
+      while (offset < m_numBuffers && !m_buffers[offset].hasRemaining()) {
+        m_buffers[offset++] = null;
+      }
+    }
+    m_numBuffers = 0;
+    m_pendingBytes = 0;
+  }
+
+  /** Write all pending records and close the channel. */
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      m_channel.close();
+    }
+  }
+
+  /** The number of records added, including any still pending. */
+  public long recordsWritten() {
+    return m_recordsWritten;
+  }
+
+  /** The number of bytes written to the channel. */
+  public long bytesWritten() {
+    return m_bytesWritten;
+  }
+
+  /** The number of gathering writes made to the channel. */
+  public long writes() {
+    return m_writes;
+  }
+}
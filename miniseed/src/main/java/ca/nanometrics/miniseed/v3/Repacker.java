@@ -0,0 +1,511 @@
+package ca.nanometrics.miniseed.v3;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.Sample;
+import ca.nanometrics.miniseed.Samples;
+import ca.nanometrics.miniseed.SourceIdentifier;
+import ca.nanometrics.miniseed.encoder.steim.Steim1Block;
+import ca.nanometrics.miniseed.encoder.steim.Steim1BlockProvider;
+import ca.nanometrics.miniseed.encoder.steim.Steim1Encoder;
+import ca.nanometrics.miniseed.encoder.steim.SteimBlock;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.endian.LittleEndian;
+import ca.nanometrics.miniseed.util.NanoTime;
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import ca.nanometrics.miniseed.v2.DataRecord2Header;
+import ca.nanometrics.miniseed.v2.blockettes.DataOnlyBlockette_1000;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.annotation.Nullable;
+import org.json.JSONObject;
+
+/**
+ * A streaming stage that repacks records into miniseed 3 records of a target length, by
+ * concatenating the samples of contiguous records of the same channel and re-encoding them.
+ *
+ * <p>Records of a channel are contiguous when each starts within half a sample period of the end of
+ * the previous one and they have the same sample rate, flags, publication version, encoding and
+ * extra headers, other than the FDSN sequence number, which is dropped. A gap or any such change
+ * ends the current output record, so repacking never hides a gap or applies a flag to samples it
+ * did not apply to.
+ *
+ * <ul>
+ *   <li>Integer samples are encoded as Steim1, with as many frames as fit in the target record
+ *       length, which is not limited to the 63 frames of a miniseed 2 record. The last record
+ *       before a gap or change only has the frames it needs.
+ *   <li>Floating point samples keep their 32 or 64 bit encoding.
+ *   <li>No output record spans more than the maximum duration.
+ *   <li>Records without numeric samples or without a sample rate are passed on unchanged, converted
+ *       to miniseed 3 if necessary.
+ * </ul>
+ *
+ * <p>Records of each source identifier are expected in start time order (as produced by {@link
+ * ca.nanometrics.miniseed.MiniSeed#merge}). Output records are passed on as they are completed, so
+ * records of different source identifiers may be interleaved differently from the input.
+ *
+ * <p>Not thread safe.
+ */
+public class Repacker {
+  public static final int DEFAULT_RECORD_LENGTH = 4096;
+  public static final Duration DEFAULT_MAX_DURATION = Duration.ofHours(1);
+
+  /** The smallest target record length, which fits a fixed header and one Steim frame. */
+  public static final int MIN_RECORD_LENGTH = 128;
+
+  private final int m_recordLength;
+  private final long m_maxDurationNanos;
+  private final Map<String, Channel> m_channels = new HashMap<>();
+  private long m_recordsRead;
+  private long m_recordsWritten;
+
+  public Repacker() {
+    this(DEFAULT_RECORD_LENGTH, DEFAULT_MAX_DURATION);
+  }
+
+  /**
+   * @param recordLength the target length in bytes of each output record. Records are never longer,
+   *     unless the header alone leaves no room for one Steim frame or sample.
+   * @param maxDuration the maximum time spanned by the samples of each output record.
+   */
+  public Repacker(int recordLength, Duration maxDuration) {
+    if (recordLength < MIN_RECORD_LENGTH) {
+      throw new IllegalArgumentException(
+          "Record length must be at least " + MIN_RECORD_LENGTH + ": " + recordLength);
+    }
+    if (maxDuration.isNegative() || maxDuration.isZero()) {
+      throw new IllegalArgumentException("Max duration must be positive: " + maxDuration);
+    }
+    m_recordLength = recordLength;
+    m_maxDurationNanos = maxDuration.toNanos();
+  }
+
+  /**
+   * Repack the given stream of records into records of the {@link #DEFAULT_RECORD_LENGTH default
+   * length}, closing it when the returned stream is closed.
+   *
+   * @see Repacker
+   */
+  public static Stream<DataRecord3> repack(Stream<DataRecord> records) {
+    return new Repacker().apply(records);
+  }
+
+  /** Repack the given stream of records, closing it when the returned stream is closed. */
+  public Stream<DataRecord3> apply(Stream<DataRecord> records) {
+    Iterator<DataRecord> input = records.iterator();
+    Iterator<DataRecord3> output =
+        new Iterator<>() {
+          private Iterator<DataRecord3> m_ready = Collections.emptyIterator();
+
+          @Override
+          public boolean hasNext() {
+            while (!m_ready.hasNext()) {
+              if (input.hasNext()) {
+                m_ready = accept(input.next()).iterator();
+              } else {
+                List<DataRecord3> remaining = flush();
+                if (remaining.isEmpty()) {
+                  return false;
+                }
+                m_ready = remaining.iterator();
+              }
+            }
+            return true;
+          }
+
+          @Override
+          public DataRecord3 next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            return m_ready.next();
+          }
+        };
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(output, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(records::close);
+  }
+
+  /**
+   * Offer the next record.
+   *
+   * @return the records, possibly none, completed by this record.
+   */
+  public List<DataRecord3> accept(DataRecord record) {
+    m_recordsRead++;
+    Template template = Template.of(record);
+    String key = template.sourceIdentifier().toString();
+    long start = NanoTime.toEpochNanos(record.header().recordStartTime());
+    List<DataRecord3> ready = new ArrayList<>();
+    Channel channel = m_channels.get(key);
+    if (channel != null && !channel.continues(template, start)) {
+      channel.flush(ready);
+      m_channels.remove(key);
+      channel = null;
+    }
+    if (template.encoding() == null) {
+      ready.add(toMiniSeed3(record));
+    } else {
+      if (channel == null) {
+        channel = new Channel(template, start);
+        m_channels.put(key, channel);
+      }
+      channel.add(record.samples(), ready);
+    }
+    m_recordsWritten += ready.size();
+    return ready;
+  }
+
+  /**
+   * Complete the records of all channels, as at the end of the input.
+   *
+   * @return the remaining records.
+   */
+  public List<DataRecord3> flush() {
+    List<DataRecord3> ready = new ArrayList<>();
+    for (Channel channel : m_channels.values()) {
+      channel.flush(ready);
+    }
+    m_channels.clear();
+    m_recordsWritten += ready.size();
+    return ready;
+  }
+
+  /**
+   * @return whether the samples of the given record can be re-encoded, and so {@link #trim
+   *     trimmed}.
+   */
+  public static boolean canTrim(DataRecord record) {
+    return Template.of(record).encoding() != null;
+  }
+
+  /**
+   * The samples of the given record from {@code fromSample}, inclusive, to {@code toSample},
+   * exclusive, re-encoded as by {@link #accept} into records no longer than the given record, and
+   * starting at the time of the first of them.
+   *
+   * @throws IllegalArgumentException if the samples of the record cannot be re-encoded.
+   * @throws IndexOutOfBoundsException if the range is not within the samples of the record.
+   */
+  public static List<DataRecord3> trim(DataRecord record, int fromSample, int toSample) {
+    Template template = Template.of(record);
+    if (template.encoding() == null) {
+      throw new IllegalArgumentException(
+          "Samples of " + template.sourceIdentifier() + " cannot be re-encoded");
+    }
+    Objects.checkFromToIndex(fromSample, toSample, record.header().numberOfSamples());
+    Repacker repacker =
+        new Repacker(
+            Math.max(MIN_RECORD_LENGTH, record.length()), Duration.ofNanos(Long.MAX_VALUE));
+    long start =
+        NanoTime.toEpochNanos(record.header().recordStartTime())
+            + Math.round(fromSample * (NanoTime.NS_PER_SEC / template.sampleRate()));
+    Channel channel = repacker.new Channel(template, start);
+    List<DataRecord3> ready = new ArrayList<>();
+    channel.add(slice(record.samples(), fromSample, toSample), ready);
+    channel.flush(ready);
+    return ready;
+  }
+
+  private static Samples slice(Samples samples, int from, int to) {
+    return switch (samples.type()) {
+      case INTEGER -> Samples.build(Arrays.copyOfRange(samples.intSamples(), from, to));
+      case FLOAT -> Samples.build(Arrays.copyOfRange(samples.floatSamples(), from, to));
+      case DOUBLE -> Samples.build(Arrays.copyOfRange(samples.doubleSamples(), from, to));
+      default -> throw new IllegalArgumentException("Samples are not numeric: " + samples.type());
+    };
+  }
+
+  /** The number of records offered so far. */
+  public long recordsRead() {
+    return m_recordsRead;
+  }
+
+  /** The number of records passed on so far. */
+  public long recordsWritten() {
+    return m_recordsWritten;
+  }
+
+  private static DataRecord3 toMiniSeed3(DataRecord record) {
+    if (record instanceof DataRecord3 v3Record) {
+      return v3Record;
+    }
+    DataRecord2Header header = ((DataRecord2) record).header();
+    DataOnlyBlockette_1000 dataOnly = header.dataOnlyBlockette();
+    DataEncoding encoding = dataOnly == null ? DataEncoding.OPAQUE : dataOnly.encodingFormat();
+    try {
+      return DataRecord3.read(
+          new ByteArrayInputStream(DataRecord2To3.toRecord(header, encoding, record.payload())));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * The header fields shared by all records repacked together.
+   *
+   * @param encoding the encoding of the repacked records, or null if the records cannot be
+   *     repacked.
+   */
+  private record Template(
+      SourceIdentifier sourceIdentifier,
+      double sampleRate,
+      DataRecord3Header.Flags flags,
+      short publicationVersion,
+      @Nullable JSONObject extraHeaders,
+      @Nullable DataEncoding encoding) {
+
+    static Template of(DataRecord record) {
+      if (record instanceof DataRecord3 v3Record) {
+        DataRecord3Header header = v3Record.header();
+        double sampleRate = header.sampleRate().sampleRateDouble();
+        return new Template(
+            header.sourceIdentifier(),
+            sampleRate,
+            header.flags(),
+            header.dataPublicationVersion(),
+            withoutSequence(header.extraHeaderFields()),
+            encoding(header.dataPayloadEncoding(), sampleRate));
+      }
+      if (record instanceof DataRecord2 v2Record) {
+        DataRecord2Header header = v2Record.header();
+        byte[] identifier = DataRecord2To3.sourceIdentifier(header.sourceIdentifier());
+        double sampleRate = header.sampleRate().sampleRateDouble();
+        DataOnlyBlockette_1000 dataOnly = header.dataOnlyBlockette();
+        return new Template(
+            SourceIdentifierCache.intern(identifier, 0, identifier.length),
+            sampleRate,
+            DataRecord3Header.Flags.builder()
+                .fromByte(DataRecord2To3.flags(header.byteArray().byteArray())),
+            header.dataPublicationVersion(),
+            withoutSequence(
+                new JSONObject(
+                    new String(DataRecord2To3.extraHeaders(header), StandardCharsets.US_ASCII))),
+            dataOnly == null ? null : encoding(dataOnly.encodingFormat(), sampleRate));
+      }
+      throw new IllegalArgumentException("Unsupported record type: " + record.getClass());
+    }
+
+    @Nullable
+    private static DataEncoding encoding(DataEncoding encoding, double sampleRate) {
+      if (sampleRate <= 0) {
+        return null;
+      }
+      if (encoding == DataEncoding.FLOAT_32BIT || encoding == DataEncoding.FLOAT_64BIT) {
+        return encoding;
+      }
+      if (encoding.sampleType() == Samples.Type.INTEGER) {
+        return DataEncoding.STEIM1;
+      }
+      return null;
+    }
+
+    @Nullable
+    private static JSONObject withoutSequence(@Nullable JSONObject extraHeaders) {
+      if (extraHeaders == null) {
+        return null;
+      }
+      JSONObject copy = new JSONObject(extraHeaders.toString());
+      JSONObject fdsn = copy.optJSONObject("FDSN");
+      if (fdsn != null) {
+        fdsn.remove("Sequence");
+        if (fdsn.isEmpty()) {
+          copy.remove("FDSN");
+        }
+      }
+      return copy.isEmpty() ? null : copy;
+    }
+
+    boolean matches(Template other) {
+      return sourceIdentifier.equals(other.sourceIdentifier)
+          && sampleRate == other.sampleRate
+          && flags.equals(other.flags)
+          && publicationVersion == other.publicationVersion
+          && encoding == other.encoding
+          && (extraHeaders == null
+              ? other.extraHeaders == null
+              : other.extraHeaders != null && extraHeaders.similar(other.extraHeaders));
+    }
+
+    int headerLength() {
+      return DataRecord3Header.FIXED_HEADER_SIZE
+          + sourceIdentifier.toString().length()
+          + (extraHeaders == null ? 0 : extraHeaders.toString().length());
+    }
+  }
+
+  /** The contiguous samples of one channel not yet passed on in a complete record. */
+  private final class Channel {
+    private final Template m_template;
+    private final String m_extraHeaders;
+    private final long m_startNanos;
+    private final double m_periodNanos;
+    private final int m_maxSamples;
+    private final int m_bytesPerSample;
+    private final List<SteimBlock> m_blocks = new ArrayList<>();
+    @Nullable private final Steim1Encoder m_encoder;
+    @Nullable private final double[] m_values;
+    private int m_numValues;
+    private int m_lastSample;
+    private long m_numSamples;
+    private long m_numSamplesWritten;
+
+    Channel(Template template, long startNanos) {
+      m_template = template;
+      m_extraHeaders = template.extraHeaders() == null ? null : template.extraHeaders().toString();
+      m_startNanos = startNanos;
+      m_periodNanos = NanoTime.NS_PER_SEC / template.sampleRate();
+      m_maxSamples =
+          (int) Math.max(1, Math.min(Integer.MAX_VALUE, m_maxDurationNanos / m_periodNanos));
+      int payloadLength = m_recordLength - template.headerLength();
+      if (template.encoding() == DataEncoding.STEIM1) {
+        int frames = payloadLength / Steim1Block.NUMBER_BYTES_PER_FRAME;
+        m_encoder =
+            new Steim1Encoder(
+                "repack " + template.sourceIdentifier(),
+                Steim1BlockProvider.forMiniSeed3(
+                    Math.max(1, Math.min(Steim1Block.MAX_NUM_FRAMES_MINISEED3, frames))),
+                Set.of(m_blocks::add));
+        m_values = null;
+        m_bytesPerSample = 0;
+      } else {
+        m_encoder = null;
+        m_bytesPerSample = template.encoding() == DataEncoding.FLOAT_32BIT ? 4 : 8;
+        m_values =
+            new double[Math.max(1, Math.min(m_maxSamples, payloadLength / m_bytesPerSample))];
+      }
+    }
+
+    boolean continues(Template template, long startNanos) {
+      long expected = m_startNanos + Math.round(m_numSamples * m_periodNanos);
+      return m_template.matches(template) && Math.abs(startNanos - expected) <= m_periodNanos / 2;
+    }
+
+    void add(Samples samples, List<DataRecord3> ready) {
+      if (m_encoder != null) {
+        for (int sample : samples.intSamples()) {
+          if (m_numSamples - m_numSamplesWritten >= m_maxSamples) {
+            m_encoder.flush(new Sample(m_lastSample));
+          }
+          m_encoder.addSample(new Sample(sample));
+          m_lastSample = sample;
+          m_numSamples++;
+          writeBlocks(ready);
+        }
+      } else {
+        for (double value : doubles(samples)) {
+          m_values[m_numValues++] = value;
+          m_numSamples++;
+          if (m_numValues == m_values.length) {
+            writeValues(ready);
+          }
+        }
+      }
+    }
+
+    void flush(List<DataRecord3> ready) {
+      if (m_encoder != null) {
+        if (!m_encoder.isCurrentBlockEmpty()) {
+          m_encoder.flush(null);
+          writeBlocks(ready);
+        }
+      } else if (m_numValues > 0) {
+        writeValues(ready);
+      }
+    }
+
+    private double[] doubles(Samples samples) {
+      switch (samples.type()) {
+        case DOUBLE:
+          return samples.doubleSamples();
+        case FLOAT:
+          float[] floats = samples.floatSamples();
+          double[] doubles = new double[floats.length];
+          for (int i = 0; i < floats.length; i++) {
+            doubles[i] = floats[i];
+          }
+          return doubles;
+        default:
+          throw new IllegalArgumentException(
+              "Expected floating point samples, but got " + samples.type());
+      }
+    }
+
+    private void writeBlocks(List<DataRecord3> ready) {
+      for (SteimBlock block : m_blocks) {
+        ready.add(record(block.getBytes(), block.getNumSamples()));
+      }
+      m_blocks.clear();
+    }
+
+    private void writeValues(List<DataRecord3> ready) {
+      byte[] payload = new byte[m_numValues * m_bytesPerSample];
+      LittleEndian writer = LittleEndian.get();
+      for (int i = 0; i < m_numValues; i++) {
+        if (m_bytesPerSample == 4) {
+          writer.writeFloat(payload, i * 4, (float) m_values[i]);
+        } else {
+          writer.writeDouble(payload, i * 8, m_values[i]);
+        }
+      }
+      ready.add(record(payload, m_numValues));
+      m_numValues = 0;
+    }
+
+    private DataRecord3 record(byte[] payload, int numSamples) {
+      long start = m_startNanos + Math.round(m_numSamplesWritten * m_periodNanos);
+      m_numSamplesWritten += numSamples;
+      DataRecord3Header header =
+          DataRecord3Header.builder()
+              .sourceIdentifier(m_template.sourceIdentifier())
+              .recordStartTime(NanoTime.epochNanosToDateTime(start))
+              .numberOfSamples(numSamples)
+              .sampleRate(new DataRecord3Header.Float64SampleRate(m_template.sampleRate()))
+              .dataPayloadEncoding(m_template.encoding())
+              .lengthOfDataPayload(payload.length)
+              .dataPublicationVersion(m_template.publicationVersion())
+              .flags(m_template.flags())
+              .extraHeaderFields(m_template.extraHeaders())
+              .extraHeaderFieldsString(m_extraHeaders)
+              .build();
+      return DataRecord3.builder().header(header).payload(payload).build();
+    }
+  }
+}
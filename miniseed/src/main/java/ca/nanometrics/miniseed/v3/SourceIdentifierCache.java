@@ -0,0 +1,77 @@
+package ca.nanometrics.miniseed.v3;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.SourceIdentifier;
+import ca.nanometrics.miniseed.util.ByteArray;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns source identifiers by the raw bytes of the identifier in the record header, so records of
+ * the same channel share one immutable identifier instance instead of parsing a new one per record.
+ *
+ * <p>The cache is bounded; when it reaches {@link #MAX_SIZE} entries it is cleared, which is cheap
+ * and only happens when reading data from a very large number of channels.
+ */
+public final class SourceIdentifierCache {
+  public static final int MAX_SIZE = 1 << 16;
+
+  private static final Map<ByteArray, SourceIdentifier> CACHE = new ConcurrentHashMap<>();
+
+  private SourceIdentifierCache() {
+    // static methods only
+  }
+
+  /**
+   * @return the identifier encoded in the given bytes of a record header, shared with any other
+   *     record with the same identifier bytes.
+   * @throws IllegalArgumentException if the bytes are not a valid source identifier.
+   */
+  public static SourceIdentifier intern(byte[] bytes, int offset, int length) {
+    ByteArray key = new ByteArray(Arrays.copyOfRange(bytes, offset, offset + length));
+    SourceIdentifier identifier = CACHE.get(key);
+    if (identifier == null) {
+      identifier =
+          SourceIdentifier.parse(new String(bytes, offset, length, StandardCharsets.US_ASCII));
+      if (CACHE.size() >= MAX_SIZE) {
+        CACHE.clear();
+      }
+      SourceIdentifier existing = CACHE.putIfAbsent(key, identifier);
+      if (existing != null) {
+        identifier = existing;
+      }
+    }
+    return identifier;
+  }
+
+  /** The number of identifiers currently cached. */
+  public static int size() {
+    return CACHE.size();
+  }
+
+  /** Remove all cached identifiers. */
+  public static void clear() {
+    CACHE.clear();
+  }
+}
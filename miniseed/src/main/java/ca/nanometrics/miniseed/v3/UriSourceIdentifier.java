@@ -24,41 +24,119 @@ import ca.nanometrics.miniseed.SourceIdentifier;
 import com.google.auto.value.AutoBuilder;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Objects;
 import java.util.function.IntPredicate;
 import javax.annotation.Nullable;
 
 /**
  * As defined at <a href="http://docs.fdsn.org/projects/source-identifiers/en/v1.0/index.html">FDSN
  * Source Identifiers</a>
+ *
+ * <p>Instances are immutable, and the string form, channel and hash code are computed once on
+ * construction, since identifiers are formatted and hashed for every record. Use {@link
+ * SourceIdentifierCache} to share instances between records of the same channel.
  */
-public record UriSourceIdentifier(
-    String network,
-    String station,
-    @Nullable String location,
-    String band,
-    String source,
-    String subsource)
-    implements SourceIdentifier {
+public final class UriSourceIdentifier implements SourceIdentifier {
 
   public static final String SCHEME = "FDSN";
   public static final String EMPTY = "";
+  private static final char SEPARATOR = '_';
+
+  private final String m_network;
+  private final String m_station;
+  @Nullable private final String m_location;
+  private final String m_band;
+  private final String m_source;
+  private final String m_subsource;
+  private final String m_channel;
+  private final String m_string;
+  private final int m_hashCode;
+
+  public UriSourceIdentifier(
+      String network,
+      String station,
+      @Nullable String location,
+      String band,
+      String source,
+      String subsource) {
+    m_network = Objects.requireNonNull(network);
+    m_station = Objects.requireNonNull(station);
+    m_location = location;
+    m_band = Objects.requireNonNull(band);
+    m_source = Objects.requireNonNull(source);
+    m_subsource = Objects.requireNonNull(subsource);
+    m_channel = band + SEPARATOR + source + SEPARATOR + subsource;
+    m_string =
+        SCHEME
+            + ':'
+            + network
+            + SEPARATOR
+            + station
+            + SEPARATOR
+            + (location == null ? EMPTY : location)
+            + SEPARATOR
+            + m_channel;
+    m_hashCode = m_string.hashCode();
+  }
+
+  @Override
+  public String network() {
+    return m_network;
+  }
+
+  @Override
+  public String station() {
+    return m_station;
+  }
+
+  @Override
+  @Nullable
+  public String location() {
+    return m_location;
+  }
+
+  @Override
+  public String band() {
+    return m_band;
+  }
+
+  @Override
+  public String source() {
+    return m_source;
+  }
+
+  @Override
+  public String subsource() {
+    return m_subsource;
+  }
 
   @Override
   public String channel() {
-    return String.format("%s_%s_%s", band, source, subsource);
+    return m_channel;
   }
 
   @Override
   public String toString() {
-    return String.format(
-        "%s:%s_%s_%s_%s_%s_%s",
-        SCHEME,
-        network(),
-        station(),
-        location() == null ? EMPTY : location(),
-        band(),
-        source(),
-        subsource());
+    return m_string;
+  }
+
+  @Override
+  public int hashCode() {
+    return m_hashCode;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (!(obj instanceof UriSourceIdentifier other)) {
+      return false;
+    }
+    // the string form is unique for each combination of codes, since codes cannot contain '_'
+    return m_hashCode == other.m_hashCode
+        && m_string.equals(other.m_string)
+        && Objects.equals(m_location, other.m_location);
   }
 
   public static Builder builder() {
@@ -0,0 +1,99 @@
+package ca.nanometrics.miniseed;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MiniSeedTest {
+  private byte[] m_record1;
+  private byte[] m_record2;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    try (InputStream input =
+        getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+      byte[] bytes = input.readAllBytes();
+      m_record1 = Arrays.copyOfRange(bytes, 0, 512);
+      m_record2 = Arrays.copyOfRange(bytes, 512, 1024);
+    }
+  }
+
+  @Test
+  void testMergeOrdersByTime() throws IOException {
+    Path later = file(m_record2);
+    Path earlier = file(m_record1);
+    try (Stream<DataRecord> merged = MiniSeed.merge(List.of(later, earlier))) {
+      assertThat(sequenceNumbers(merged), contains(1, 2));
+    }
+  }
+
+  @Test
+  void testMergeKeepsDuplicates() throws IOException {
+    try (Stream<DataRecord> merged =
+        MiniSeed.merge(List.of(file(m_record1, m_record2), file(m_record1)))) {
+      assertThat(sequenceNumbers(merged), contains(1, 1, 2));
+    }
+  }
+
+  @Test
+  void testMergeDeduplicates() throws IOException {
+    try (Stream<DataRecord> merged =
+        MiniSeed.merge(
+            List.of(file(m_record1, m_record2), file(m_record1), file(m_record2)), true)) {
+      assertThat(sequenceNumbers(merged), contains(1, 2));
+    }
+  }
+
+  @Test
+  void testMergeNoFiles() {
+    try (Stream<DataRecord> merged = MiniSeed.merge(List.of())) {
+      assertThat(merged.toList(), is(empty()));
+    }
+  }
+
+  private static List<Integer> sequenceNumbers(Stream<DataRecord> records) {
+    return records.map(record -> ((DataRecord2) record).header().sequenceNumber()).toList();
+  }
+
+  private static Path file(byte[]... records) throws IOException {
+    Path file = Files.createTempFile("miniseed", ".mseed");
+    file.toFile().deleteOnExit();
+    for (byte[] record : records) {
+      Files.write(file, record, StandardOpenOption.APPEND);
+    }
+    return file;
+  }
+}
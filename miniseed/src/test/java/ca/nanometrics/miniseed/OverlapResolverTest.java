@@ -0,0 +1,201 @@
+package ca.nanometrics.miniseed;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OverlapResolverTest {
+  private static final int QUALITY_INDICATOR_OFFSET = 6;
+  private static final int START_TIME_OFFSET = 20;
+
+  private DataRecord2 m_record1;
+  private DataRecord2 m_record2;
+  private DataRecord2 m_record1Modified;
+  private byte[] m_record2Bytes;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    try (InputStream input =
+        getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+      byte[] bytes = input.readAllBytes();
+      m_record1 = read(Arrays.copyOfRange(bytes, 0, 512));
+      m_record2 = read(Arrays.copyOfRange(bytes, 512, 1024));
+      byte[] modified = Arrays.copyOfRange(bytes, 0, 512);
+      modified[QUALITY_INDICATOR_OFFSET] = 'M';
+      m_record1Modified = read(modified);
+      m_record2Bytes = Arrays.copyOfRange(bytes, 512, 1024);
+    }
+  }
+
+  @Test
+  void testDuplicatesDropped() {
+    OverlapResolver resolver = new OverlapResolver();
+    List<DataRecord> resolved =
+        resolver.apply(Stream.of(m_record1, m_record1, m_record2, m_record1)).toList();
+    assertThat(resolved, contains(m_record1, m_record2));
+    assertThat(resolver.duplicates(), is(2L));
+    assertThat(resolver.superseded(), is(0L));
+  }
+
+  @Test
+  void testHigherVersionSupersedes() {
+    OverlapResolver resolver = new OverlapResolver();
+    List<DataRecord> resolved =
+        resolver.apply(Stream.of(m_record1, m_record1Modified, m_record2)).toList();
+    assertThat(resolved, contains(m_record1Modified, m_record2));
+    assertThat(resolver.duplicates(), is(0L));
+    assertThat(resolver.superseded(), is(1L));
+  }
+
+  @Test
+  void testLowerVersionDropped() {
+    OverlapResolver resolver = new OverlapResolver();
+    List<DataRecord> resolved =
+        resolver.apply(Stream.of(m_record1Modified, m_record1, m_record2)).toList();
+    assertThat(resolved, contains(m_record1Modified, m_record2));
+    assertThat(resolver.superseded(), is(1L));
+  }
+
+  @Test
+  void testRecordsReleasedOnceTheyCannotOverlap() {
+    OverlapResolver resolver = new OverlapResolver();
+    assertThat(resolver.accept(m_record1), is(List.of()));
+    assertThat(resolver.accept(m_record2), contains(m_record1));
+    assertThat(resolver.flush(), contains(m_record2));
+  }
+
+  @Test
+  void testFingerprintWindowIsBounded() {
+    OverlapResolver resolver = new OverlapResolver(Duration.ZERO, 1);
+    resolver.accept(m_record1);
+    resolver.accept(m_record2);
+    resolver.flush();
+    // the fingerprint of record 1 has been evicted, so it is no longer recognized as a duplicate
+    assertThat(resolver.accept(m_record1), is(List.of()));
+    assertThat(resolver.duplicates(), is(0L));
+    assertThat(resolver.flush(), contains(m_record1));
+  }
+
+  @Test
+  void testLowerVersionTrimmedToSamplesOutsideOverlap() throws IOException {
+    // record 2, republished one second earlier, overlaps the last 100 samples of record 1
+    DataRecord2 earlier = shifted(m_record2Bytes, Duration.ofSeconds(-1), 'M');
+    OverlapResolver resolver = new OverlapResolver();
+    List<DataRecord> resolved = resolver.apply(Stream.of(m_record1, earlier)).toList();
+
+    assertThat(resolved.size(), is(2));
+    DataRecord trimmed = resolved.get(0);
+    assertThat(trimmed.header().recordStartTime(), is(m_record1.header().recordStartTime()));
+    assertThat(
+        trimmed.samples().intSamples(), is(Arrays.copyOf(m_record1.samples().intSamples(), 119)));
+    assertThat(resolved.get(1), is(earlier));
+    assertThat(resolver.trimmed(), is(1L));
+    assertThat(resolver.superseded(), is(0L));
+  }
+
+  @Test
+  void testIncomingLowerVersionTrimmed() throws IOException {
+    // the higher version is seen first, so the overlapping start of the later record is dropped
+    DataRecord2 earlier = shifted(m_record2Bytes, Duration.ofSeconds(-1), 'D');
+    OverlapResolver resolver = new OverlapResolver();
+    List<DataRecord> resolved = resolver.apply(Stream.of(m_record1Modified, earlier)).toList();
+
+    assertThat(resolved.size(), is(2));
+    assertThat(resolved.get(0), is(m_record1Modified));
+    DataRecord trimmed = resolved.get(1);
+    assertThat(trimmed.header().recordStartTime(), is(m_record2.header().recordStartTime()));
+    int[] samples = earlier.samples().intSamples();
+    assertThat(
+        trimmed.samples().intSamples(), is(Arrays.copyOfRange(samples, 100, samples.length)));
+    assertThat(resolver.trimmed(), is(1L));
+  }
+
+  @Test
+  void testOverlapWithinHalfSamplePeriodIgnored() throws IOException {
+    // 4 ms early, within half the 10 ms sample period
+    DataRecord2 jittered = shifted(m_record2Bytes, Duration.ofMillis(-4), 'M');
+    OverlapResolver resolver = new OverlapResolver();
+    assertThat(
+        resolver.apply(Stream.of(m_record1, jittered)).toList(), contains(m_record1, jittered));
+    assertThat(resolver.trimmed(), is(0L));
+
+    // 6 ms early overlaps the last sample of record 1
+    DataRecord2 overlapping = shifted(m_record2Bytes, Duration.ofMillis(-6), 'M');
+    resolver = new OverlapResolver();
+    List<DataRecord> resolved = resolver.apply(Stream.of(m_record1, overlapping)).toList();
+    assertThat(resolved.get(0).header().numberOfSamples(), is(218));
+    assertThat(resolver.trimmed(), is(1L));
+  }
+
+  @Test
+  void testSupersededSourceNotHeld() {
+    OverlapResolver resolver = new OverlapResolver();
+    resolver.accept(m_record1Modified);
+    assertThat(resolver.accept(m_record2), contains(m_record1Modified));
+    assertThat(resolver.flush(), contains(m_record2));
+    assertThat(resolver.accept(m_record1), is(List.of()));
+    assertThat(resolver.flush(), contains(m_record1));
+    assertThat(resolver.flush(), is(List.of()));
+  }
+
+  /** The given v2 record, with its start time moved by the given offset and a quality indicator. */
+  private static DataRecord2 shifted(byte[] bytes, Duration offset, char quality)
+      throws IOException {
+    byte[] copy = bytes.clone();
+    ByteBuffer buffer = ByteBuffer.wrap(copy);
+    OffsetDateTime start =
+        OffsetDateTime.of(
+                LocalDate.ofYearDay(buffer.getShort(START_TIME_OFFSET), buffer.getShort(22)),
+                LocalTime.of(copy[24], copy[25], copy[26], buffer.getShort(28) * 100_000),
+                ZoneOffset.UTC)
+            .plus(offset);
+    buffer.putShort(START_TIME_OFFSET, (short) start.getYear());
+    buffer.putShort(22, (short) start.getDayOfYear());
+    copy[24] = (byte) start.getHour();
+    copy[25] = (byte) start.getMinute();
+    copy[26] = (byte) start.getSecond();
+    buffer.putShort(28, (short) (start.getNano() / 100_000));
+    copy[QUALITY_INDICATOR_OFFSET] = (byte) quality;
+    return read(copy);
+  }
+
+  private static DataRecord2 read(byte[] bytes) throws IOException {
+    return DataRecord2.read(new ByteArrayInputStream(bytes));
+  }
+}
@@ -0,0 +1,231 @@
+package ca.nanometrics.miniseed;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RecordPublisherTest {
+  /** Runs each task on the calling thread, so that signals are delivered before request returns. */
+  private static final Executor DIRECT = Runnable::run;
+
+  @TempDir Path m_directory;
+  private byte[] m_bytes;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    try (InputStream input =
+        getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+      m_bytes = input.readAllBytes();
+    }
+  }
+
+  @Test
+  void testRecordsOnlySentWhenRequested() {
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    MiniSeed.publisher(new ByteArrayInputStream(m_bytes), DIRECT).subscribe(subscriber);
+    assertThat(subscriber.m_sequenceNumbers.isEmpty(), is(true));
+
+    subscriber.m_subscription.request(1);
+    assertThat(subscriber.m_sequenceNumbers, contains(1));
+    assertThat(subscriber.m_complete, is(false));
+
+    subscriber.m_subscription.request(1);
+    assertThat(subscriber.m_sequenceNumbers, contains(1, 2));
+    assertThat(subscriber.m_complete, is(false));
+
+    subscriber.m_subscription.request(1);
+    assertThat(subscriber.m_complete, is(true));
+    assertThat(subscriber.m_error, is(nullValue()));
+  }
+
+  @Test
+  void testTruncatedRecordPassedToSubscriber() {
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    MiniSeed.publisher(new ByteArrayInputStream(Arrays.copyOf(m_bytes, 700)), DIRECT)
+        .subscribe(subscriber);
+    subscriber.m_subscription.request(Long.MAX_VALUE);
+
+    assertThat(subscriber.m_sequenceNumbers, contains(1));
+    assertThat(subscriber.m_error, instanceOf(EOFException.class));
+    assertThat(subscriber.m_complete, is(false));
+  }
+
+  @Test
+  void testMissingFilePassedToSubscriber() {
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    MiniSeed.publisher(m_directory.resolve("missing.mseed"), DIRECT).subscribe(subscriber);
+    subscriber.m_subscription.request(1);
+
+    assertThat(subscriber.m_error, instanceOf(IOException.class));
+  }
+
+  @Test
+  void testInvalidRequest() {
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    MiniSeed.publisher(new ByteArrayInputStream(m_bytes), DIRECT).subscribe(subscriber);
+    subscriber.m_subscription.request(0);
+
+    assertThat(subscriber.m_error, instanceOf(IllegalArgumentException.class));
+  }
+
+  @Test
+  void testCancelClosesInput() {
+    AtomicBoolean closed = new AtomicBoolean();
+    InputStream input =
+        new ByteArrayInputStream(m_bytes) {
+          @Override
+          public void close() {
+            closed.set(true);
+          }
+        };
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    MiniSeed.publisher(input, DIRECT).subscribe(subscriber);
+    subscriber.m_subscription.request(1);
+    subscriber.m_subscription.cancel();
+    subscriber.m_subscription.request(1);
+
+    assertThat(closed.get(), is(true));
+    assertThat(subscriber.m_sequenceNumbers, contains(1));
+    assertThat(subscriber.m_complete, is(false));
+    assertThat(subscriber.m_error, is(nullValue()));
+  }
+
+  @Test
+  void testInputStreamOnlySubscribedOnce() {
+    Flow.Publisher<DataRecord> publisher =
+        MiniSeed.publisher(new ByteArrayInputStream(m_bytes), DIRECT);
+    publisher.subscribe(new RecordingSubscriber());
+    RecordingSubscriber second = new RecordingSubscriber();
+    publisher.subscribe(second);
+
+    assertThat(second.m_error, instanceOf(IllegalStateException.class));
+  }
+
+  @Test
+  void testFileSubscribersShareExecutor() throws Exception {
+    Path file = m_directory.resolve("records.mseed");
+    byte[] manyRecords = new byte[m_bytes.length * 100];
+    for (int i = 0; i < 100; i++) {
+      System.arraycopy(m_bytes, 0, manyRecords, i * m_bytes.length, m_bytes.length);
+    }
+    Files.write(file, manyRecords);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Flow.Publisher<DataRecord> publisher = MiniSeed.publisher(file, executor);
+      List<CompletableFuture<Integer>> counts = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        CompletableFuture<Integer> count = new CompletableFuture<>();
+        publisher.subscribe(new CountingSubscriber(count));
+        counts.add(count);
+      }
+      for (CompletableFuture<Integer> count : counts) {
+        assertThat(count.get(10, TimeUnit.SECONDS), is(200));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static class RecordingSubscriber implements Flow.Subscriber<DataRecord> {
+    private final List<Integer> m_sequenceNumbers = new ArrayList<>();
+    private Flow.Subscription m_subscription;
+    private Throwable m_error;
+    private boolean m_complete;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      m_subscription = subscription;
+    }
+
+    @Override
+    public void onNext(DataRecord item) {
+      m_sequenceNumbers.add(((DataRecord2) item).header().sequenceNumber());
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      m_error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+      m_complete = true;
+    }
+  }
+
+  /** Requests one record at a time, as a slow consumer would. */
+  private static class CountingSubscriber implements Flow.Subscriber<DataRecord> {
+    private final CompletableFuture<Integer> m_count;
+    private Flow.Subscription m_subscription;
+    private int m_received;
+
+    CountingSubscriber(CompletableFuture<Integer> count) {
+      m_count = count;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      m_subscription = subscription;
+      subscription.request(1);
+    }
+
+    @Override
+    public void onNext(DataRecord item) {
+      m_received++;
+      m_subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      m_count.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      m_count.complete(m_received);
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package ca.nanometrics.miniseed;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.SamplesCache.Content;
+import ca.nanometrics.miniseed.SamplesCache.Statistics;
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SamplesCacheTest {
+  private DataRecord2 m_record1;
+  private DataRecord2 m_record2;
+  private long m_record1Bytes;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    try (InputStream input =
+        getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+      byte[] bytes = input.readAllBytes();
+      m_record1 = DataRecord2.read(new ByteArrayInputStream(Arrays.copyOfRange(bytes, 0, 512)));
+      m_record2 = DataRecord2.read(new ByteArrayInputStream(Arrays.copyOfRange(bytes, 512, 1024)));
+      m_record1Bytes = m_record1.header().numberOfSamples() * 4L;
+    }
+  }
+
+  @Test
+  void testHitReturnsCachedSamples() {
+    SamplesCache cache = new SamplesCache(1 << 20);
+    Samples first = cache.samples(m_record1);
+    Samples second = cache.samples(m_record1);
+    assertThat(second, is(sameInstance(first)));
+    assertThat(second.intSamples(), is(m_record1.samples().intSamples()));
+    assertThat(cache.samples(m_record2), is(not(sameInstance(first))));
+
+    Statistics statistics = cache.statistics();
+    assertThat(statistics.hits(), is(1L));
+    assertThat(statistics.misses(), is(2L));
+    assertThat(statistics.entries(), is(2));
+    assertThat(statistics.bytes(), is(m_record1Bytes + m_record2.header().numberOfSamples() * 4L));
+  }
+
+  @Test
+  void testLocationKeys() {
+    SamplesCache cache = new SamplesCache(1 << 20);
+    Path file = Path.of("test.mseed");
+    Samples first = cache.samples(file, 0, m_record1);
+    assertThat(cache.samples(file, 0, m_record1), is(sameInstance(first)));
+    assertThat(cache.samples(file, 512, m_record1), is(not(sameInstance(first))));
+    cache.invalidate(new SamplesCache.Location(file, 0));
+    assertThat(cache.samples(file, 0, m_record1), is(not(sameInstance(first))));
+    assertThat(cache.statistics().hits(), is(1L));
+  }
+
+  @Test
+  void testLeastRecentlyUsedEvictedWhenFull() {
+    SamplesCache cache = new SamplesCache(m_record1Bytes * 2 - 1, 1);
+    Samples first = cache.samples(m_record1);
+    cache.samples(m_record2);
+    assertThat(cache.statistics().evictions(), is(1L));
+    assertThat(cache.statistics().entries(), is(1));
+    assertThat(cache.samples(m_record1), is(not(sameInstance(first))));
+    assertThat(cache.statistics().hits(), is(0L));
+  }
+
+  @Test
+  void testSamplesLargerThanSegmentShareNotCached() {
+    SamplesCache fits = new SamplesCache(m_record1Bytes * 2, 2);
+    assertThat(fits.maxEntryBytes(), is(m_record1Bytes));
+    Samples first = fits.samples(m_record1);
+    assertThat(fits.samples(m_record1), is(sameInstance(first)));
+    assertThat(fits.statistics().entries(), is(1));
+
+    // smaller than the whole cache, but larger than the share of its segment
+    SamplesCache tooLarge = new SamplesCache(m_record1Bytes * 2 - 2, 2);
+    assertThat(tooLarge.maxEntryBytes(), is(m_record1Bytes - 1));
+    first = tooLarge.samples(m_record1);
+    assertThat(tooLarge.samples(m_record1), is(not(sameInstance(first))));
+    assertThat(tooLarge.statistics().entries(), is(0));
+    assertThat(tooLarge.statistics().misses(), is(2L));
+  }
+
+  @Test
+  void testContentKeyDependsOnBytes() {
+    assertThat(Content.of(m_record1), is(Content.of(m_record1)));
+    assertThat(Content.of(m_record1), is(not(Content.of(m_record2))));
+  }
+
+  @Test
+  void testConcurrentAccess() throws Exception {
+    SamplesCache cache = new SamplesCache(1 << 20);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Samples>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        DataRecord record = i % 2 == 0 ? m_record1 : m_record2;
+        futures.add(executor.submit(() -> cache.samples(record)));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        DataRecord record = i % 2 == 0 ? m_record1 : m_record2;
+        assertThat(futures.get(i).get().intSamples(), is(record.samples().intSamples()));
+      }
+    } finally {
+      executor.shutdown();
+    }
+    Statistics statistics = cache.statistics();
+    assertThat(statistics.hits() + statistics.misses(), is(100L));
+    assertThat(statistics.entries(), is(2));
+  }
+
+  @Test
+  void testInvalidSize() {
+    assertThrows(IllegalArgumentException.class, () -> new SamplesCache(0));
+  }
+}
@@ -0,0 +1,270 @@
+package ca.nanometrics.miniseed.compression;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import io.airlift.compress.zstd.ZstdCompressor;
+import io.airlift.compress.zstd.ZstdOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+class CompressionTest {
+  private byte[] m_bytes;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    try (InputStream input =
+        getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+      m_bytes = input.readAllBytes();
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(Compression.class)
+  void testDetect(Compression compression) throws IOException {
+    InputStream input = new ByteArrayInputStream(compress(compression, m_bytes));
+    assertThat(Compression.detect(input), is(compression));
+    assertThat(input.readAllBytes(), is(compress(compression, m_bytes)));
+  }
+
+  @ParameterizedTest
+  @EnumSource(Compression.class)
+  void testDecompress(Compression compression) throws IOException {
+    try (InputStream input =
+        Compression.decompress(new ByteArrayInputStream(compress(compression, m_bytes)))) {
+      assertThat(input.readAllBytes(), is(m_bytes));
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(Compression.class)
+  void testStreamCompressedFileInMembers(Compression compression) throws IOException {
+    int half = m_bytes.length / 2;
+    File file = Files.createTempFile("records", ".mseed" + compression.extension()).toFile();
+    file.deleteOnExit();
+    try (OutputStream output = Files.newOutputStream(file.toPath())) {
+      // concatenated members or frames, as written by parallel compressors
+      output.write(compress(compression, Arrays.copyOfRange(m_bytes, 0, half)));
+      output.write(compress(compression, Arrays.copyOfRange(m_bytes, half, m_bytes.length)));
+    }
+
+    List<DataRecord> expected;
+    try (Stream<DataRecord> records = MiniSeed.stream(new ByteArrayInputStream(m_bytes))) {
+      expected = records.toList();
+    }
+    try (Stream<DataRecord> records = MiniSeed.stream(file)) {
+      List<DataRecord> actual = records.toList();
+      assertThat(actual.size(), is(expected.size()));
+      for (int i = 0; i < expected.size(); i++) {
+        assertThat(actual.get(i).toByteArray(), is(expected.get(i).toByteArray()));
+      }
+    }
+  }
+
+  @Test
+  void testLargeInputReadAhead() throws IOException {
+    byte[] large =
+        new byte[ReadAheadInputStream.CHUNK_SIZE * (ReadAheadInputStream.CHUNKS_AHEAD + 3) + 17];
+    for (int i = 0; i < large.length; i++) {
+      large[i] = (byte) (i * 31);
+    }
+    try (InputStream input =
+        Compression.decompress(new ByteArrayInputStream(compress(Compression.GZIP, large)))) {
+      assertThat(input.readAllBytes(), is(large));
+      assertThat(input.available(), is(0));
+    }
+  }
+
+  @Test
+  void testFailureRethrownToReader() {
+    InputStream failing =
+        new InputStream() {
+          @Override
+          public int read() throws IOException {
+            throw new IOException("corrupt");
+          }
+        };
+    ReadAheadInputStream input = new ReadAheadInputStream(failing, "test");
+    IOException e = assertThrows(IOException.class, input::read);
+    assertThat(e.getMessage(), is("corrupt"));
+  }
+
+  @Test
+  void testZstdFramesDecompressedSeparately() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (int frame = 0; frame < 20; frame++) {
+      byte[] content = content(ReadAheadInputStream.CHUNK_SIZE + frame * 1000, frame);
+      expected.write(content);
+      // frames with and without the content size in the header
+      compressed.write(frame % 2 == 0 ? zstdFrame(content) : rawZstdFrame(content));
+      if (frame == 10) {
+        // a skippable frame, with 3 bytes of user data
+        compressed.write(new byte[] {0x5a, 0x2a, 0x4d, 0x18, 3, 0, 0, 0, 1, 2, 3});
+      }
+    }
+
+    ZstdFrameSplitter splitter =
+        new ZstdFrameSplitter(new ByteArrayInputStream(compressed.toByteArray()));
+    for (int frame = 0; frame < 20; frame++) {
+      ZstdFrameSplitter.Frame next = splitter.next(ZstdDecompression.MAX_FRAME_SIZE);
+      assertThat(next.complete(), is(true));
+      assertThat(
+          next.contentSize(),
+          is(frame % 2 == 0 ? ReadAheadInputStream.CHUNK_SIZE + frame * 1000L : -1L));
+    }
+    assertThat(splitter.next(ZstdDecompression.MAX_FRAME_SIZE), is(nullValue()));
+
+    try (InputStream input =
+        Compression.decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertThat(input.readAllBytes(), is(expected.toByteArray()));
+    }
+  }
+
+  @Test
+  void testLargeZstdFrameDecompressedAsStream() throws IOException {
+    byte[] small = content(1000, 1);
+    byte[] large = content(ZstdDecompression.MAX_FRAME_SIZE + 1, 2);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    compressed.write(zstdFrame(small));
+    compressed.write(zstdFrame(large));
+    compressed.write(zstdFrame(small));
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.write(small);
+    expected.write(large);
+    expected.write(small);
+
+    try (InputStream input =
+        Compression.decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertThat(input.readAllBytes(), is(expected.toByteArray()));
+    }
+  }
+
+  @Test
+  void testTruncatedZstdFrameRethrownToReader() throws IOException {
+    byte[] compressed = zstdFrame(content(10_000, 3));
+    try (InputStream input =
+        Compression.decompress(
+            new ByteArrayInputStream(Arrays.copyOf(compressed, compressed.length - 5)))) {
+      assertThrows(IOException.class, input::readAllBytes);
+    }
+  }
+
+  @Test
+  void testIterableDoesNotReadAhead() throws IOException {
+    long before = readAheadThreads();
+    Iterator<DataRecord> records =
+        MiniSeed.iterable(new ByteArrayInputStream(compress(Compression.GZIP, m_bytes))).iterator();
+    assertThat(records.hasNext(), is(true));
+    records.next();
+    // abandoned without reading to the end, so a read-ahead thread would never end
+    assertThat(readAheadThreads(), is(before));
+
+    int count = 0;
+    for (DataRecord record :
+        MiniSeed.iterable(new ByteArrayInputStream(compress(Compression.ZSTD, m_bytes)))) {
+      count++;
+    }
+    assertThat(count, is(2));
+  }
+
+  @Test
+  void testStripExtension() {
+    assertThat(Compression.stripAnyExtension("data.mseed.gz"), is("data.mseed"));
+    assertThat(Compression.stripAnyExtension("data.mseed.zst"), is("data.mseed"));
+    assertThat(Compression.stripAnyExtension("data.mseed.xz"), is("data.mseed"));
+    assertThat(Compression.stripAnyExtension("data.mseed"), is("data.mseed"));
+    assertThat(Compression.GZIP.stripExtension("data.xz"), is("data.xz"));
+  }
+
+  private static long readAheadThreads() {
+    return Thread.getAllStackTraces().keySet().stream()
+        .filter(thread -> thread.getName().contains("-read-ahead-"))
+        .count();
+  }
+
+  private static byte[] content(int length, int seed) {
+    byte[] content = new byte[length];
+    for (int i = 0; i < length; i++) {
+      content[i] = (byte) ((i / 7) * seed);
+    }
+    return content;
+  }
+
+  /** A single zstd frame, with the content size in its header. */
+  private static byte[] zstdFrame(byte[] content) {
+    ZstdCompressor compressor = new ZstdCompressor();
+    byte[] compressed = new byte[compressor.maxCompressedLength(content.length)];
+    int length = compressor.compress(content, 0, content.length, compressed, 0, compressed.length);
+    return Arrays.copyOf(compressed, length);
+  }
+
+  /** A zstd frame of uncompressed blocks, without the content size in its header. */
+  private static byte[] rawZstdFrame(byte[] content) {
+    int maxBlockSize = 1 << 17;
+    ByteArrayOutputStream frame = new ByteArrayOutputStream();
+    // magic number, no content size or checksum, and a 1 MiB window
+    frame.writeBytes(new byte[] {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd, 0, 0x50});
+    for (int offset = 0; offset < content.length; offset += maxBlockSize) {
+      int size = Math.min(maxBlockSize, content.length - offset);
+      int header = (size << 3) | (offset + size == content.length ? 1 : 0);
+      frame.writeBytes(new byte[] {(byte) header, (byte) (header >>> 8), (byte) (header >>> 16)});
+      frame.write(content, offset, size);
+    }
+    return frame.toByteArray();
+  }
+
+  private static byte[] compress(Compression compression, byte[] bytes) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream output =
+        switch (compression) {
+          case NONE -> compressed;
+          case GZIP -> new GZIPOutputStream(compressed);
+          case XZ -> new XZOutputStream(compressed, new LZMA2Options());
+          case ZSTD -> new ZstdOutputStream(compressed);
+        }) {
+      output.write(bytes);
+    }
+    return compressed.toByteArray();
+  }
+}
@@ -0,0 +1,151 @@
+package ca.nanometrics.miniseed.encoder;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+
+import ca.nanometrics.miniseed.Sample;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.endian.BigEndianReader;
+import ca.nanometrics.miniseed.endian.LittleEndianReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveEncoderTest {
+  private static final int NUM_FRAMES = 7;
+
+  @Test
+  public void testSmoothSignalUsesSteim1() {
+    int[] samples = IntStream.range(0, 5000).map(i -> (int) (100 * Math.sin(i / 50.0))).toArray();
+    List<EncodedBlock> blocks = encode(samples);
+    assertThat(encodings(blocks), everyItem(is(DataEncoding.STEIM1)));
+    assertThat(decode(blocks), is(samples));
+  }
+
+  @Test
+  public void testLargeDifferencesInShortRangeUse16BitIntegers() {
+    int[] samples = IntStream.range(0, 1000).map(i -> i % 2 == 0 ? 30000 : -30000).toArray();
+    List<EncodedBlock> blocks = encode(samples);
+    assertThat(encodings(blocks), everyItem(is(DataEncoding.INTEGER_16BIT)));
+    assertThat(blocks.get(0).numberOfSamples(), is(NUM_FRAMES * 64 / 2));
+    assertThat(decode(blocks), is(samples));
+  }
+
+  @Test
+  public void testNoiseUses32BitIntegers() {
+    Random random = new Random(17);
+    int[] samples = IntStream.range(0, 1000).map(i -> random.nextInt()).toArray();
+    List<EncodedBlock> blocks = encode(samples);
+    assertThat(encodings(blocks), everyItem(is(DataEncoding.INTEGER_32BIT)));
+    assertThat(blocks.get(0).numberOfSamples(), is(NUM_FRAMES * 64 / 4));
+    assertThat(decode(blocks), is(samples));
+  }
+
+  @Test
+  public void testEncodingChangesWithSignal() {
+    Random random = new Random(3);
+    int[] quiet = IntStream.range(0, 2000).map(i -> 1_000_000 + random.nextInt(50)).toArray();
+    int[] noisy = IntStream.range(0, 2000).map(i -> random.nextInt()).toArray();
+    int[] samples = IntStream.concat(IntStream.of(quiet), IntStream.of(noisy)).toArray();
+    samples = IntStream.concat(IntStream.of(samples), IntStream.of(quiet)).toArray();
+    List<EncodedBlock> blocks = encode(samples);
+    List<DataEncoding> encodings = encodings(blocks);
+    assertThat(encodings.get(0), is(DataEncoding.STEIM1));
+    assertThat(encodings.contains(DataEncoding.INTEGER_32BIT), is(true));
+    assertThat(encodings.get(encodings.size() - 1), is(DataEncoding.STEIM1));
+    assertThat(decode(blocks), is(samples));
+  }
+
+  @Test
+  public void testMixedDifferenceWidthsFillSteim1Blocks() {
+    Random random = new Random(11);
+    int[] samples = new int[20000];
+    int value = 1_000_000;
+    for (int i = 0; i < samples.length; i++) {
+      int width = random.nextInt(20);
+      value +=
+          width == 0
+              ? random.nextInt(200_000) - 100_000
+              : width < 4 ? random.nextInt(2000) - 1000 : random.nextInt(100) - 50;
+      samples[i] = value;
+    }
+    // throws if the estimated number of samples does not fill exactly one Steim1 block
+    List<EncodedBlock> blocks = encode(samples);
+    assertThat(encodings(blocks), everyItem(is(DataEncoding.STEIM1)));
+    assertThat(decode(blocks), is(samples));
+  }
+
+  @Test
+  public void testFlushWithNoSamples() {
+    List<EncodedBlock> blocks = new ArrayList<>();
+    AdaptiveEncoder encoder = new AdaptiveEncoder("test", NUM_FRAMES, Set.of(blocks::add));
+    assertThat(encoder.flush(), is(false));
+    encoder.addSample(new Sample(5));
+    assertThat(encoder.flush(), is(true));
+    assertThat(blocks.size(), is(1));
+    assertThat(encodings(blocks), contains(DataEncoding.STEIM1));
+  }
+
+  private static List<EncodedBlock> encode(int[] samples) {
+    List<EncodedBlock> blocks = new ArrayList<>();
+    AdaptiveEncoder encoder = new AdaptiveEncoder("test", NUM_FRAMES, Set.of(blocks::add));
+    for (int sample : samples) {
+      encoder.addSample(new Sample(sample));
+    }
+    encoder.flush();
+    for (EncodedBlock block : blocks) {
+      assertThat(block.bytes().length, is(NUM_FRAMES * 64));
+    }
+    return blocks;
+  }
+
+  private static List<DataEncoding> encodings(List<EncodedBlock> blocks) {
+    return blocks.stream().map(EncodedBlock::encoding).toList();
+  }
+
+  private static int[] decode(List<EncodedBlock> blocks) {
+    return blocks.stream()
+        .flatMapToInt(
+            block ->
+                Arrays.stream(
+                    block
+                        .encoding()
+                        .decoder(
+                            (encoding, bytes) ->
+                                encoding == DataEncoding.STEIM1
+                                    ? new BigEndianReader(bytes)
+                                    : new LittleEndianReader(bytes),
+                            block.bytes(),
+                            block.numberOfSamples(),
+                            block.bytes().length)
+                        .decode()
+                        .intSamples()))
+        .toArray();
+  }
+}
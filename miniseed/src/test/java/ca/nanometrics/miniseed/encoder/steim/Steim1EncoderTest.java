@@ -21,7 +21,10 @@ package ca.nanometrics.miniseed.encoder.steim;
  */
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
@@ -36,10 +39,13 @@ import static org.mockito.Mockito.when;
 import ca.nanometrics.miniseed.Sample;
 import ca.nanometrics.miniseed.encoding.steim.DecodeSteim1;
 import ca.nanometrics.miniseed.endian.BigEndianReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 
@@ -229,6 +235,52 @@ public class Steim1EncoderTest {
     assertSteimBlockDecodesProperly(completedBlock.getValue());
   }
 
+  @Test
+  public void testMiniSeed3BlocksLargerThanMiniSeed2AndNotPadded() {
+    int numFrames = 1000;
+    List<SteimBlock> blocks = new ArrayList<>();
+    Steim1Encoder encoder =
+        new Steim1Encoder(
+            DESCRIPTION, Steim1BlockProvider.forMiniSeed3(numFrames), List.of(blocks::add));
+    Random random = new Random(42);
+    int[] samples = new int[50_000];
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = random.nextInt(1 << 12);
+      encoder.addSample(new Sample(samples[i]));
+    }
+    encoder.flush(null);
+
+    assertThat(blocks.size(), greaterThan(1));
+    assertThat(blocks.get(0).getBytes().length, is(numFrames * Steim1Block.NUMBER_BYTES_PER_FRAME));
+    SteimBlock last = blocks.get(blocks.size() - 1);
+    assertThat(last.getNumFrames(), lessThan(numFrames));
+    assertThat(
+        last.getBytes().length, is(last.getNumFrames() * Steim1Block.NUMBER_BYTES_PER_FRAME));
+    int[] decoded =
+        blocks.stream()
+            .flatMapToInt(
+                block ->
+                    IntStream.of(
+                        new DecodeSteim1(
+                                new BigEndianReader(block.getBytes(), 0),
+                                block.getNumSamples(),
+                                block.getBytes().length)
+                            .decode()
+                            .intSamples()))
+            .toArray();
+    assertThat(decoded, is(samples));
+  }
+
+  @Test
+  public void testMiniSeed2BlocksLimitedTo63Frames() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new Steim1BlockProvider(Steim1Block.MAX_NUM_FRAMES + 1));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> Steim1BlockProvider.forMiniSeed3(Steim1Block.MAX_NUM_FRAMES_MINISEED3 + 1));
+  }
+
   void assertSteimBlockDecodesProperly(SteimBlock steimBlock) {
     BigEndianReader bigEndianReader = new BigEndianReader(steimBlock.getBytes(), 0);
     DecodeSteim1 decodeSteim1 =
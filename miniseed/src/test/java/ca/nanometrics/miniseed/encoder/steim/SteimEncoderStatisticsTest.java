@@ -0,0 +1,172 @@
+package ca.nanometrics.miniseed.encoder.steim;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import ca.nanometrics.miniseed.Sample;
+import ca.nanometrics.miniseed.encoder.steim.SteimEncoderStatistics.Completion;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class SteimEncoderStatisticsTest {
+  private static final String DESCRIPTION = "testencoder";
+  private static final int SAMPLES_PER_FRAME_OF_ONE_BYTE_DIFFERENCES =
+      Steim1FirstDataFrame.NUM_DATA_WORDS * 4;
+
+  @Test
+  public void testStatisticsOfFullAndFlushedBlocks() {
+    SteimStatisticsObserver observer = new SteimStatisticsObserver();
+    Steim1Encoder encoder =
+        new Steim1Encoder(DESCRIPTION, new Steim1BlockProvider(1), Set.of(observer));
+    int numSamples = SAMPLES_PER_FRAME_OF_ONE_BYTE_DIFFERENCES * 3 + 10;
+    for (int i = 0; i < numSamples; i++) {
+      encoder.addSample(new Sample(i));
+    }
+    encoder.flush(null);
+
+    SteimEncoderStatistics statistics = observer.statistics();
+    assertThat(statistics.blocks(), is(4L));
+    assertThat(statistics.frames(), is(4L));
+    assertThat(statistics.samples(), is((long) numSamples));
+    assertThat(statistics.bytesIn(), is(numSamples * 4L));
+    assertThat(statistics.bytesOut(), is(4L * 64));
+    assertThat(statistics.compressionRatio(), is(numSamples * 4.0 / (4 * 64)));
+    assertThat(statistics.samplesPerFrame(), is(numSamples / 4.0));
+    // the last 10 samples are 2 words of 4 one byte differences and a word of 2 differences
+    assertThat(statistics.words(Steim1ControlCode.ONE_BYTE_DATA), is(3L * 13 + 2));
+    assertThat(statistics.words(Steim1ControlCode.TWO_BYTE_DATA), is(1L));
+    assertThat(statistics.words(Steim1ControlCode.FOUR_BYTE_DATA), is(0L));
+    assertThat(statistics.words(Steim1ControlCode.NO_DATA), is(10L));
+    assertThat(statistics.differences(Steim1ControlCode.ONE_BYTE_DATA), is((3L * 13 + 2) * 4));
+    assertThat(statistics.differences(Steim1ControlCode.TWO_BYTE_DATA), is(2L));
+    assertThat(statistics.completions(Completion.FULL), is(3L));
+    assertThat(statistics.completions(Completion.FLUSH), is(1L));
+
+    SteimEncoderStatistics encoderStatistics = encoder.statistics();
+    assertThat(encoderStatistics.blocks(), is(4L));
+    assertThat(encoderStatistics.samples(), is((long) numSamples));
+    assertThat(encoderStatistics.bytesOut(), is(4L * 64));
+    assertThat(encoderStatistics.completions(Completion.FULL), is(3L));
+    assertThat(encoderStatistics.completions(Completion.FLUSH), is(1L));
+    assertThat(encoderStatistics.overflowSamples(), is(0L));
+    for (Steim1ControlCode controlCode : Steim1ControlCode.values()) {
+      assertThat(encoderStatistics.words(controlCode), is(statistics.words(controlCode)));
+    }
+  }
+
+  @Test
+  public void testOverflowAndFramesPerBlockChanged() {
+    SteimStatisticsObserver observer = new SteimStatisticsObserver();
+    List<SteimBlock> blocks = new ArrayList<>();
+    Steim1Encoder encoder =
+        new Steim1Encoder(DESCRIPTION, new Steim1BlockProvider(1), List.of(observer, blocks::add));
+    int sample = 0;
+    for (int i = 0; i < SAMPLES_PER_FRAME_OF_ONE_BYTE_DIFFERENCES - 1; i++) {
+      encoder.addSample(new Sample(sample++));
+    }
+    // a two byte difference after three one byte differences overflows the last word
+    encoder.addSample(new Sample(sample + 1000));
+    encoder.setNumFramesPerBlockAndFlush(2);
+
+    SteimEncoderStatistics statistics = encoder.statistics();
+    assertThat(statistics.blocks(), is(2L));
+    assertThat(statistics.frames(), is(2L));
+    assertThat(statistics.samples(), is((long) SAMPLES_PER_FRAME_OF_ONE_BYTE_DIFFERENCES));
+    assertThat(statistics.overflowSamples(), is(2L));
+    assertThat(statistics.completions(Completion.FULL), is(1L));
+    assertThat(statistics.completions(Completion.FRAMES_PER_BLOCK_CHANGED), is(1L));
+    assertThat(statistics.completions(Completion.FLUSH), is(0L));
+    for (Steim1ControlCode controlCode : Steim1ControlCode.values()) {
+      assertThat(statistics.words(controlCode), is(wordsInBytes(blocks, controlCode)));
+    }
+
+    SteimEncoderStatistics observed = observer.statistics();
+    assertThat(observed.blocks(), is(2L));
+    assertThat(observed.overflowSamples(), is(2L));
+    assertThat(observed.completions(Completion.FULL), is(1L));
+    assertThat(observed.completions(Completion.FRAMES_PER_BLOCK_CHANGED), is(1L));
+  }
+
+  @Test
+  public void testSnapshotIsNotUpdated() {
+    Steim1Encoder encoder = new Steim1Encoder(DESCRIPTION, new Steim1BlockProvider(1), null);
+    SteimEncoderStatistics before = encoder.statistics();
+    encoder.addSample(new Sample(1));
+    encoder.flush(null);
+    assertThat(before.blocks(), is(0L));
+    assertThat(before.compressionRatio(), is(0.0));
+    assertThat(encoder.statistics().blocks(), is(1L));
+  }
+
+  @Test
+  public void testReadWhileEncodingOnAnotherThread() throws Exception {
+    SteimStatisticsObserver observer = new SteimStatisticsObserver();
+    Steim1Encoder encoder =
+        new Steim1Encoder(DESCRIPTION, new Steim1BlockProvider(1), Set.of(observer));
+    int numSamples = SAMPLES_PER_FRAME_OF_ONE_BYTE_DIFFERENCES * 1000;
+    Thread encoding =
+        new Thread(
+            () -> {
+              for (int i = 0; i < numSamples; i++) {
+                encoder.addSample(new Sample(i));
+              }
+              encoder.flush(null);
+            });
+    encoding.start();
+    long blocks = 0;
+    while (encoding.isAlive()) {
+      long read = observer.statistics().blocks();
+      assertThat(read >= blocks, is(true));
+      blocks = read;
+    }
+    encoding.join();
+
+    assertThat(observer.statistics().samples(), is((long) numSamples));
+    assertThat(observer.statistics().blocks(), is(encoder.statistics().blocks()));
+  }
+
+  /** The control codes of the data words, read from the control word of each encoded frame. */
+  private static long wordsInBytes(List<SteimBlock> blocks, Steim1ControlCode controlCode) {
+    long words = 0;
+    for (SteimBlock block : blocks) {
+      byte[] bytes = block.getBytes();
+      for (int offset = 0; offset < bytes.length; offset += Steim1Block.NUMBER_BYTES_PER_FRAME) {
+        int controlWord = ByteBuffer.wrap(bytes, offset, 4).getInt();
+        int firstDataWord =
+            offset == 0
+                ? Steim1Block.NUMBER_ELEMENTS_PER_FRAME - Steim1FirstDataFrame.NUM_DATA_WORDS
+                : Steim1Block.NUMBER_ELEMENTS_PER_FRAME - Steim1DataFrame.NUM_DATA_WORDS;
+        for (int word = firstDataWord; word < Steim1Block.NUMBER_ELEMENTS_PER_FRAME; word++) {
+          int code = (controlWord >>> (2 * (Steim1Block.NUMBER_ELEMENTS_PER_FRAME - 1 - word))) & 3;
+          if (code == controlCode.getTwoBitControlCodeValue()) {
+            words++;
+          }
+        }
+      }
+    }
+    return words;
+  }
+}
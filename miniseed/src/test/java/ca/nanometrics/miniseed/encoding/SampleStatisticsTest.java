@@ -0,0 +1,90 @@
+package ca.nanometrics.miniseed.encoding;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class SampleStatisticsTest {
+
+  @Test
+  void testStatistics() {
+    SampleStatistics statistics = new SampleStatistics(-4, 4);
+    for (int sample : new int[] {1, -2, 3, -4, 4, 0}) {
+      statistics.add(sample);
+    }
+    assertThat(statistics.count(), is(6L));
+    assertThat(statistics.minimum(), is(-4.0));
+    assertThat(statistics.maximum(), is(4.0));
+    assertThat(statistics.sum(), is(2.0));
+    assertThat(statistics.sumOfSquares(), is(46.0));
+    assertThat(statistics.mean(), closeTo(1 / 3.0, 1e-12));
+    assertThat(statistics.rms(), closeTo(Math.sqrt(46 / 6.0), 1e-12));
+    assertThat(statistics.clipped(), is(2L));
+  }
+
+  @Test
+  void testEmpty() {
+    SampleStatistics statistics = new SampleStatistics();
+    assertThat(statistics.count(), is(0L));
+    assertThat(Double.isNaN(statistics.minimum()), is(true));
+    assertThat(Double.isNaN(statistics.maximum()), is(true));
+    assertThat(Double.isNaN(statistics.mean()), is(true));
+    assertThat(Double.isNaN(statistics.rms()), is(true));
+  }
+
+  @Test
+  void testInvalidClipLimits() {
+    assertThrows(IllegalArgumentException.class, () -> new SampleStatistics(1, 1));
+    assertThrows(IllegalArgumentException.class, () -> new SampleStatistics(2, 1));
+  }
+
+  @Test
+  void testRecordsSameAsSamples() throws IOException {
+    List<DataRecord> records;
+    try (InputStream input =
+            getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed");
+        Stream<DataRecord> stream = MiniSeed.stream(input)) {
+      records = stream.toList();
+    }
+    SampleStatistics total = new SampleStatistics();
+    for (DataRecord record : records) {
+      SampleStatistics expected = new SampleStatistics();
+      for (int sample : record.samples().intSamples()) {
+        expected.add(sample);
+      }
+      SampleStatistics actual = record.samples(new SampleStatistics());
+      assertThat(actual.toString(), is(expected.toString()));
+      total.add(actual);
+    }
+    assertThat(total.count(), is(219L + 412L));
+  }
+}
@@ -0,0 +1,199 @@
+package ca.nanometrics.miniseed.encoding.steim;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import ca.nanometrics.miniseed.Sample;
+import ca.nanometrics.miniseed.encoder.steim.Steim1BlockProvider;
+import ca.nanometrics.miniseed.encoder.steim.Steim1Encoder;
+import ca.nanometrics.miniseed.encoder.steim.SteimBlock;
+import ca.nanometrics.miniseed.encoding.SampleAccumulator;
+import ca.nanometrics.miniseed.encoding.SampleStatistics;
+import ca.nanometrics.miniseed.encoding.integers.Decode32BitIntegers;
+import ca.nanometrics.miniseed.endian.BigEndianReader;
+import ca.nanometrics.miniseed.endian.LittleEndian;
+import ca.nanometrics.miniseed.endian.LittleEndianReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DecodeSteimTest {
+  private static final int NUM_FRAMES = 7;
+
+  private int[] m_samples;
+  private byte[] m_bytes;
+
+  @BeforeEach
+  void setUp() {
+    List<SteimBlock> blocks = new ArrayList<>();
+    Steim1Encoder encoder =
+        new Steim1Encoder("test", new Steim1BlockProvider(NUM_FRAMES), Set.of(blocks::add));
+    List<Integer> samples = new ArrayList<>();
+    for (int i = 0; blocks.isEmpty(); i++) {
+      int sample = (int) (1000 * Math.sin(i / 10.0)) + (i % 5 == 0 ? 100_000 : 0);
+      samples.add(sample);
+      encoder.addSample(new Sample(sample));
+    }
+    SteimBlock block = blocks.get(0);
+    m_samples = samples.stream().mapToInt(Integer::intValue).limit(block.getNumSamples()).toArray();
+    m_bytes = block.getBytes();
+  }
+
+  @Test
+  void testDecodeRange() {
+    assertThat(decoder().decode().intSamples(), is(m_samples));
+    assertThat(decoder().decode(0, 5).intSamples(), is(Arrays.copyOfRange(m_samples, 0, 5)));
+    assertThat(decoder().decode(30, 20).intSamples(), is(Arrays.copyOfRange(m_samples, 30, 50)));
+    int last = m_samples.length - 3;
+    assertThat(
+        decoder().decode(last, 3).intSamples(),
+        is(Arrays.copyOfRange(m_samples, last, m_samples.length)));
+    assertThat(decoder().decode(10, 0).intSamples().length, is(0));
+  }
+
+  @Test
+  void testDecodeRangeWithoutVerification() {
+    assertThat(
+        decoder().decode(30, 20, false).intSamples(), is(Arrays.copyOfRange(m_samples, 30, 50)));
+    assertThat(decoder().decode(0, m_samples.length, false).intSamples(), is(m_samples));
+  }
+
+  @Test
+  void testDecodingStopsAfterRangeWithoutVerification() {
+    // only the first frame is available, so decoding any further would fail
+    byte[] firstFrame = Arrays.copyOf(m_bytes, 64);
+    DecodeSteim1 decoder =
+        new DecodeSteim1(new BigEndianReader(firstFrame), m_samples.length, m_bytes.length);
+    assertThat(decoder.decode(0, 5, false).intSamples(), is(Arrays.copyOfRange(m_samples, 0, 5)));
+  }
+
+  @Test
+  void testVerificationOnlySkippedWhenRequested() {
+    // corrupt the last sample of the record, in the first frame after the initial sample
+    m_bytes[8] ^= 0x40;
+    assertThrows(IllegalStateException.class, () -> decoder().decode(0, 5));
+    assertThrows(IllegalStateException.class, () -> decoder().decode(0, 5, true));
+    assertThat(decoder().decode(0, 5, false).intSamples(), is(Arrays.copyOfRange(m_samples, 0, 5)));
+  }
+
+  @Test
+  void testVerificationReportsExpectedNumberOfSamples() {
+    int expected = m_samples.length + 1;
+    DecodeSteim1 decoder = new DecodeSteim1(new BigEndianReader(m_bytes), expected, m_bytes.length);
+    IllegalStateException e = assertThrows(IllegalStateException.class, () -> decoder.decode(0, 5));
+    assertThat(e.getMessage().endsWith("expected was " + expected), is(true));
+  }
+
+  @Test
+  void testInvalidRange() {
+    assertThrows(IllegalArgumentException.class, () -> decoder().decode(-1, 5));
+    assertThrows(IllegalArgumentException.class, () -> decoder().decode(0, -1));
+    assertThrows(
+        IllegalArgumentException.class, () -> decoder().decode(m_samples.length - 1, 2, false));
+  }
+
+  @Test
+  void testDecodeIntegerRange() {
+    byte[] bytes = new byte[m_samples.length * 4];
+    for (int i = 0; i < m_samples.length; i++) {
+      LittleEndian.get().writeInt(bytes, i * 4, m_samples[i]);
+    }
+    Decode32BitIntegers decoder =
+        new Decode32BitIntegers(new LittleEndianReader(bytes), m_samples.length, bytes.length);
+    assertThat(decoder.decode(7, 9).intSamples(), is(Arrays.copyOfRange(m_samples, 7, 16)));
+  }
+
+  @Test
+  void testDecodeToAccumulator() {
+    SampleStatistics expected = new SampleStatistics(-1000, 100_000);
+    for (int sample : m_samples) {
+      expected.add(sample);
+    }
+    SampleStatistics actual = decoder().decode(new SampleStatistics(-1000, 100_000));
+    assertThat(actual.toString(), is(expected.toString()));
+    assertThat(actual.count(), is((long) m_samples.length));
+    assertThat(actual.clipped(), is(expected.clipped()));
+
+    List<Integer> added = new ArrayList<>();
+    decoder()
+        .decode(
+            new SampleAccumulator() {
+              @Override
+              public void add(int sample) {
+                added.add(sample);
+              }
+
+              @Override
+              public void add(double sample) {
+                throw new AssertionError("Steim samples are integers");
+              }
+            });
+    assertThat(added.stream().mapToInt(Integer::intValue).toArray(), is(m_samples));
+  }
+
+  @Test
+  void testDecodeToAccumulatorIsVerified() {
+    m_bytes[8] ^= 0x40;
+    SampleStatistics statistics = new SampleStatistics();
+    assertThrows(IllegalStateException.class, () -> decoder().decode(statistics));
+    assertThat(statistics.count(), is(0L));
+  }
+
+  @Test
+  void testDecodeToAccumulatorDoesNotBuildSamples() {
+    DecodeSteim1 decoder = spy(decoder());
+    SampleStatistics statistics = decoder.decode(new SampleStatistics());
+    assertThat(statistics.count(), is((long) m_samples.length));
+    verify(decoder, never()).decode();
+    verify(decoder, never()).decode(anyInt(), anyInt());
+    verify(decoder, never()).decode(anyInt(), anyInt(), anyBoolean());
+  }
+
+  @Test
+  void testDecodeIntegersToAccumulator() {
+    byte[] bytes = new byte[m_samples.length * 4];
+    for (int i = 0; i < m_samples.length; i++) {
+      LittleEndian.get().writeInt(bytes, i * 4, m_samples[i]);
+    }
+    Decode32BitIntegers decoder =
+        new Decode32BitIntegers(new LittleEndianReader(bytes), m_samples.length, bytes.length);
+    SampleStatistics statistics = decoder.decode(new SampleStatistics());
+    assertThat(statistics.count(), is((long) m_samples.length));
+    assertThat(statistics.maximum(), is((double) Arrays.stream(m_samples).max().getAsInt()));
+    assertThat(statistics.minimum(), is((double) Arrays.stream(m_samples).min().getAsInt()));
+    assertThat(statistics.sum(), is((double) Arrays.stream(m_samples).asLongStream().sum()));
+  }
+
+  private DecodeSteim1 decoder() {
+    return new DecodeSteim1(new BigEndianReader(m_bytes), m_samples.length, m_bytes.length);
+  }
+}
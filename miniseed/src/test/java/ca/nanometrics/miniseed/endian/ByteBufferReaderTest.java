@@ -0,0 +1,111 @@
+package ca.nanometrics.miniseed.endian;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ByteBufferReaderTest {
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void testReadsSameAsByteArrayReaders(boolean direct) {
+    byte[] bytes = new byte[256];
+    new Random(42).nextBytes(bytes);
+    ByteBuffer buffer =
+        direct
+            ? ByteBuffer.allocateDirect(bytes.length + 3)
+            : ByteBuffer.allocate(bytes.length + 3);
+    buffer.position(3);
+    buffer.put(bytes).position(3);
+
+    assertSameValues(
+        new ByteBufferReader(buffer, ByteOrder.BIG_ENDIAN), new BigEndianReader(bytes));
+    assertSameValues(
+        new ByteBufferReader(buffer, ByteOrder.LITTLE_ENDIAN), new LittleEndianReader(bytes));
+    assertThat(buffer.position(), is(3));
+  }
+
+  private static void assertSameValues(EndianReader actual, EndianReader expected) {
+    for (int i = 0; i < 4; i++) {
+      assertThat(actual.readByte(), is(expected.readByte()));
+      assertThat(actual.readUByte(), is(expected.readUByte()));
+      assertThat(actual.readShort(), is(expected.readShort()));
+      assertThat(actual.readUShort(), is(expected.readUShort()));
+      assertThat(actual.readInt24(), is(expected.readInt24()));
+      assertThat(actual.readInt(), is(expected.readInt()));
+      assertThat(actual.readUInt(), is(expected.readUInt()));
+      assertThat(actual.readLong(), is(expected.readLong()));
+      assertThat(actual.readFloat(), is(expected.readFloat()));
+      assertThat(actual.readDouble(), is(expected.readDouble()));
+      assertThat(actual.getOffset(), is(expected.getOffset()));
+    }
+    actual.setOffset(7);
+    expected.setOffset(7);
+    assertThat(actual.readInt(), is(expected.readInt()));
+  }
+
+  @Test
+  void testReadBytesFromOffset() {
+    byte[] bytes = {1, 2, 3, 4, 5, 6, 7, 8};
+    ByteBufferReader reader = new ByteBufferReader(ByteBuffer.wrap(bytes), ByteOrder.BIG_ENDIAN);
+    reader.setOffset(2);
+    byte[] read = new byte[5];
+
+    assertThat(reader.read(read, 1, 3), is(3));
+    assertThat(read, is(new byte[] {0, 3, 4, 5, 0}));
+    assertThat(reader.getOffset(), is(5));
+  }
+
+  @Test
+  void testDecodeSteimFromDirectBuffer() throws IOException {
+    try (InputStream input =
+            getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed");
+        Stream<DataRecord> records = MiniSeed.stream(input)) {
+      DataRecord2 record = (DataRecord2) records.findFirst().orElseThrow();
+      byte[] payload = record.payload();
+      ByteBuffer buffer = ByteBuffer.allocateDirect(payload.length);
+      buffer.put(payload).flip();
+
+      int[] samples =
+          DataEncoding.STEIM1
+              .decoder(buffer, record.header().numberOfSamples())
+              .decode()
+              .intSamples();
+
+      assertThat(samples, is(record.samples().intSamples()));
+    }
+  }
+}
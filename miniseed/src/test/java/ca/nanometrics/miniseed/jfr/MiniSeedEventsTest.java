@@ -0,0 +1,126 @@
+package ca.nanometrics.miniseed.jfr;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.Sample;
+import ca.nanometrics.miniseed.encoder.steim.Steim1BlockProvider;
+import ca.nanometrics.miniseed.encoder.steim.Steim1Encoder;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import ca.nanometrics.miniseed.v3.DataRecord2To3;
+import ca.nanometrics.miniseed.v3.DataRecord3;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.List;
+import java.util.stream.Stream;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+class MiniSeedEventsTest {
+  private static final List<String> EVENTS =
+      List.of(
+          "ca.nanometrics.miniseed.RecordRead",
+          "ca.nanometrics.miniseed.Decode",
+          "ca.nanometrics.miniseed.SteimBlock",
+          "ca.nanometrics.miniseed.CrcValidation");
+
+  @Test
+  void testEventsRecordedWhenEnabled() throws IOException {
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      EVENTS.forEach(recording::enable);
+      events = record(recording);
+    }
+    List<RecordedEvent> reads = named(events, "ca.nanometrics.miniseed.RecordRead");
+    assertThat(reads.size(), is(3));
+    assertThat(reads.get(0).getInt("formatVersion"), is(2));
+    assertThat(reads.get(0).getInt("bytes"), is(512));
+    assertThat(reads.get(0).getString("sourceIdentifier"), is("XX.S0001.HHX"));
+    assertThat(reads.get(2).getInt("formatVersion"), is(3));
+
+    List<RecordedEvent> decodes = named(events, "ca.nanometrics.miniseed.Decode");
+    assertThat(decodes.size(), is(2));
+    assertThat(decodes.get(0).getString("encoding"), is("STEIM1"));
+
+    List<RecordedEvent> crcs = named(events, "ca.nanometrics.miniseed.CrcValidation");
+    assertThat(crcs.size(), is(1));
+    assertThat(crcs.get(0).getBoolean("valid"), is(true));
+
+    List<RecordedEvent> blocks = named(events, "ca.nanometrics.miniseed.SteimBlock");
+    assertThat(blocks.size(), is(1));
+    assertThat(blocks.get(0).getInt("samples"), is(10));
+    assertThat(blocks.get(0).getInt("frames"), is(1));
+  }
+
+  @Test
+  void testEventsDisabledByDefault() throws IOException, ParseException {
+    try (Recording recording = new Recording(Configuration.getConfiguration("default"))) {
+      List<RecordedEvent> events = record(recording);
+      for (String event : EVENTS) {
+        assertThat(event, named(events, event).isEmpty(), is(true));
+      }
+    }
+  }
+
+  private List<RecordedEvent> record(Recording recording) throws IOException {
+    recording.start();
+    List<DataRecord> records;
+    try (InputStream input =
+            getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed");
+        Stream<DataRecord> stream = MiniSeed.stream(input)) {
+      records = stream.toList();
+    }
+    records.forEach(DataRecord::samples);
+    DataRecord2 v2Record = (DataRecord2) records.get(0);
+    DataRecord3.read(
+        new ByteArrayInputStream(
+            DataRecord2To3.toRecord(v2Record.header(), DataEncoding.STEIM1, v2Record.payload())));
+    Steim1Encoder encoder = new Steim1Encoder("test", new Steim1BlockProvider(1), null);
+    for (int i = 0; i < 10; i++) {
+      encoder.addSample(new Sample(i));
+    }
+    encoder.flush(null);
+    recording.stop();
+    Path file = Files.createTempFile("miniseed", ".jfr");
+    try {
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file);
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+    return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+  }
+}
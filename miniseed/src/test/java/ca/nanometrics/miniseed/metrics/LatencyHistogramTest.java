@@ -0,0 +1,124 @@
+package ca.nanometrics.miniseed.metrics;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void testBuckets() {
+    for (long value = 0; value < 1 << 16; value++) {
+      int bucket = LatencyHistogram.bucket(value);
+      assertThat(LatencyHistogram.highestInBucket(bucket), greaterThanOrEqualTo(value));
+      if (bucket > 0) {
+        assertThat(LatencyHistogram.highestInBucket(bucket - 1), lessThanOrEqualTo(value - 1));
+      }
+    }
+    assertThat(LatencyHistogram.bucket(31), is(31));
+    assertThat(LatencyHistogram.bucket(32), is(32));
+    assertThat(LatencyHistogram.bucket(64), is(64));
+    assertThat(
+        LatencyHistogram.highestInBucket(LatencyHistogram.bucket(Long.MAX_VALUE)),
+        is(Long.MAX_VALUE));
+  }
+
+  @Test
+  void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 10_000; value++) {
+      histogram.record(value * 1000);
+    }
+    assertThat(histogram.count(), is(10_000L));
+    assertThat(histogram.maximumNanos(), is(10_000_000L));
+    assertThat(histogram.meanNanos(), is(5_000_500.0));
+    assertWithinError(histogram.percentileNanos(50), 5_000_000);
+    assertWithinError(histogram.percentileNanos(99), 9_900_000);
+    assertThat(histogram.percentileNanos(100), is(10_000_000L));
+    assertThat(histogram.percentileNanos(0), is(lessThanOrEqualTo(1031L)));
+  }
+
+  @Test
+  void testRandomValuesWithinError() {
+    Random random = new Random(42);
+    LatencyHistogram histogram = new LatencyHistogram();
+    long[] values = new long[1001];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextInt(1 << 30);
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+    assertWithinError(histogram.percentileNanos(50), values[500]);
+    assertWithinError(histogram.percentileNanos(90), values[900]);
+  }
+
+  @Test
+  void testEmptyAndReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertThat(histogram.percentileNanos(99), is(0L));
+    assertThat(histogram.meanNanos(), is(0.0));
+    histogram.record(-5);
+    histogram.record(100);
+    assertThat(histogram.count(), is(2L));
+    assertThat(histogram.percentileNanos(50), is(0L));
+    histogram.reset();
+    assertThat(histogram.snapshot(), is(new LatencyHistogram.Snapshot(0, 0, 0, 0, 0, 0)));
+    assertThrows(IllegalArgumentException.class, () -> histogram.percentileNanos(101));
+    assertThrows(IllegalArgumentException.class, () -> histogram.percentileNanos(Double.NaN));
+  }
+
+  @Test
+  void testRecordedFromManyThreads() throws InterruptedException {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Thread[] threads = new Thread[LatencyHistogram.MAXIMUM_STRIPES * 2];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] =
+          new Thread(
+              () -> {
+                for (long value = 1; value <= 10_000; value++) {
+                  histogram.record(value);
+                }
+              });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(histogram.count(), is(threads.length * 10_000L));
+    assertThat(histogram.maximumNanos(), is(10_000L));
+    assertWithinError(histogram.percentileNanos(50), 5_000);
+    histogram.reset();
+    assertThat(histogram.percentileNanos(100), is(0L));
+  }
+
+  private static void assertWithinError(long actual, long expected) {
+    assertThat(actual, greaterThanOrEqualTo(expected));
+    assertThat(actual, lessThanOrEqualTo(expected + expected / LatencyHistogram.SUB_BUCKETS));
+  }
+}
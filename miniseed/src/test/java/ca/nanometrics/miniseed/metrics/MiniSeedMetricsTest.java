@@ -0,0 +1,166 @@
+package ca.nanometrics.miniseed.metrics;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.Sample;
+import ca.nanometrics.miniseed.encoder.steim.Steim1BlockProvider;
+import ca.nanometrics.miniseed.encoder.steim.Steim1Encoder;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import ca.nanometrics.miniseed.v3.DataRecord2To3;
+import ca.nanometrics.miniseed.v3.DataRecord3;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import org.junit.jupiter.api.Test;
+
+class MiniSeedMetricsTest {
+
+  @Test
+  void testGlobalMetricsUpdated() throws IOException {
+    MiniSeedMetrics metrics = MiniSeedMetrics.global();
+    long recordsRead = metrics.recordsRead();
+    long bytesRead = metrics.bytesRead();
+    long decoded = metrics.decodeTime(DataEncoding.STEIM1).count();
+    long samplesDecoded = metrics.samplesDecoded(DataEncoding.STEIM1);
+    long crcValidations = metrics.crcValidations();
+    long crcFailures = metrics.crcFailures();
+    long blocks = metrics.encoderBlocksCompleted();
+    long encoderSamples = metrics.encoderSamples();
+
+    List<DataRecord> records;
+    try (InputStream input =
+            getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed");
+        Stream<DataRecord> stream = MiniSeed.stream(input)) {
+      records = stream.toList();
+    }
+    records.forEach(DataRecord::samples);
+    assertThat(metrics.recordsRead() - recordsRead, is(2L));
+    assertThat(metrics.bytesRead() - bytesRead, is(1024L));
+    assertThat(metrics.decodeTime(DataEncoding.STEIM1).count() - decoded, is(2L));
+    assertThat(metrics.samplesDecoded(DataEncoding.STEIM1) - samplesDecoded, is(219L + 412L));
+    assertThat(metrics.decodeTime(DataEncoding.STEIM1).maximumNanos(), greaterThan(0L));
+
+    DataRecord2 v2Record = (DataRecord2) records.get(0);
+    byte[] v3Record =
+        DataRecord2To3.toRecord(v2Record.header(), DataEncoding.STEIM1, v2Record.payload());
+    DataRecord3.read(new ByteArrayInputStream(v3Record));
+    v3Record[v3Record.length - 1] ^= 1;
+    assertThrows(
+        IllegalArgumentException.class, () -> DataRecord3.read(new ByteArrayInputStream(v3Record)));
+    assertThat(metrics.crcValidations() - crcValidations, is(2L));
+    assertThat(metrics.crcFailures() - crcFailures, is(1L));
+
+    Steim1Encoder encoder = new Steim1Encoder("test", new Steim1BlockProvider(1), null);
+    for (int i = 0; i < 10; i++) {
+      encoder.addSample(new Sample(i));
+    }
+    encoder.flush(null);
+    assertThat(metrics.encoderBlocksCompleted() - blocks, is(1L));
+    assertThat(metrics.encoderSamples() - encoderSamples, is(10L));
+  }
+
+  @Test
+  void testSnapshot() {
+    MiniSeedMetrics metrics = new MiniSeedMetrics();
+    metrics.recordRead(512);
+    metrics.decoded(DataEncoding.STEIM2, 400, 20_000);
+    metrics.crcValidated(false);
+    Map<String, Long> snapshot = metrics.snapshot();
+    assertThat(snapshot.get("records.read"), is(1L));
+    assertThat(snapshot.get("bytes.read"), is(512L));
+    assertThat(snapshot.get("crc.failures"), is(1L));
+    assertThat(snapshot.get("decode.STEIM2.records"), is(1L));
+    assertThat(snapshot.get("decode.STEIM2.samples"), is(400L));
+    assertThat(snapshot.get("decode.STEIM2.max"), is(20_000L));
+    assertThat(snapshot.containsKey("decode.STEIM1.records"), is(false));
+
+    assertThat(metrics.samplesDecoded(DataEncoding.STEIM1), is(0L));
+    assertThat(metrics.decodeTime(DataEncoding.STEIM1).count(), is(0L));
+    assertThat(metrics.snapshot().containsKey("decode.STEIM1.records"), is(false));
+
+    LatencyHistogram steim2 = metrics.decodeTime(DataEncoding.STEIM2);
+    metrics.reset();
+    assertThat(metrics.snapshot().get("records.read"), is(0L));
+    assertThat(metrics.snapshot().containsKey("decode.STEIM2.records"), is(false));
+    metrics.decoded(DataEncoding.STEIM2, 10, 1000);
+    assertThat(steim2.count(), is(1L));
+    assertThat(metrics.snapshot().get("decode.STEIM2.samples"), is(10L));
+  }
+
+  @Test
+  void testMBean() throws Exception {
+    MiniSeedMetrics metrics = new MiniSeedMetrics();
+    String objectName = "ca.nanometrics.miniseed:type=Metrics,name=test";
+    ObjectName name = metrics.registerMBean(objectName);
+    assertThat(metrics.registerMBean(objectName), is(name));
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      metrics.recordRead(100);
+      metrics.decoded(DataEncoding.INTEGER_32BIT, 10, 500);
+      assertThat(server.getAttribute(name, "RecordsRead"), is(1L));
+      assertThat(server.getAttribute(name, "BytesRead"), is(100L));
+      TabularData table = (TabularData) server.getAttribute(name, "Metrics");
+      assertThat(table.get(new Object[] {"decode.INTEGER_32BIT.samples"}).get("value"), is(10L));
+      server.invoke(name, "reset", null, null);
+      assertThat(server.getAttribute(name, "RecordsRead"), is(0L));
+    } finally {
+      server.unregisterMBean(name);
+    }
+    assertThrows(IllegalArgumentException.class, () -> metrics.registerMBean("not a name"));
+  }
+
+  @Test
+  void testExportEvery() throws Exception {
+    MiniSeedMetrics metrics = new MiniSeedMetrics();
+    List<Map<String, Long>> exported = new CopyOnWriteArrayList<>();
+    try (Closeable export = metrics.exportEvery(exported::add, Duration.ofMillis(10))) {
+      metrics.recordRead(10);
+      for (int i = 0; i < 500 && exported.isEmpty(); i++) {
+        Thread.sleep(10);
+      }
+    }
+    assertThat(exported.isEmpty(), is(false));
+    int count = exported.size();
+    Thread.sleep(50);
+    assertThat(exported.size(), is(count));
+    assertThat(exported.get(count - 1).get("bytes.read"), is(10L));
+    assertThrows(
+        IllegalArgumentException.class, () -> metrics.exportEvery(exported::add, Duration.ZERO));
+  }
+}
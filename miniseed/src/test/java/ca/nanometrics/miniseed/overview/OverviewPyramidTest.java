@@ -0,0 +1,274 @@
+package ca.nanometrics.miniseed.overview;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.SourceIdentifier;
+import ca.nanometrics.miniseed.util.NanoTime;
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OverviewPyramidTest {
+  // 128 base buckets per second, so the buckets of level 7 are one second wide
+  private static final Duration BUCKET_WIDTH = Duration.ofNanos(NanoTime.NS_PER_SEC / 128);
+  private static final int STATION_OFFSET = 8;
+  private static final int START_YEAR_OFFSET = 20;
+
+  private List<DataRecord> m_records;
+  private List<Long> m_times;
+  private List<Integer> m_samples;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    try (InputStream input =
+            getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed");
+        Stream<DataRecord> stream = MiniSeed.stream(input)) {
+      m_records = stream.toList();
+    }
+    m_times = new ArrayList<>();
+    m_samples = new ArrayList<>();
+    for (DataRecord record : m_records) {
+      long start = NanoTime.toEpochNanos(record.header().recordStartTime());
+      long period = record.header().sampleRate().samplePeriodNanos();
+      int[] samples = record.samples().intSamples();
+      for (int i = 0; i < samples.length; i++) {
+        m_times.add(start + i * period);
+        m_samples.add(samples[i]);
+      }
+    }
+  }
+
+  @Test
+  void testLevels() {
+    OverviewPyramid pyramid = build(m_records);
+    assertThat(
+        pyramid.sourceIdentifier(), is(m_records.get(0).header().sourceIdentifier().toString()));
+    assertThat(pyramid.bucketWidth(0), is(BUCKET_WIDTH));
+    assertThat(pyramid.bucketWidth(7), is(Duration.ofSeconds(1)));
+    assertThat(pyramid.bucketCount(pyramid.levels() - 1), is(1));
+    for (int level = 1; level < pyramid.levels(); level++) {
+      assertThat(pyramid.bucketWidth(level), is(pyramid.bucketWidth(level - 1).multipliedBy(2)));
+    }
+  }
+
+  @Test
+  void testQueryWholeSpan() {
+    OverviewPyramid pyramid = build(m_records);
+    List<Envelope> envelopes = pyramid.query(pyramid.startTime(), pyramid.endTime(), 1);
+    assertThat(envelopes.size(), is(1));
+    Envelope envelope = envelopes.get(0);
+    assertThat(envelope.count(), is((long) m_samples.size()));
+    assertThat(envelope.minimum(), is((double) min(m_samples)));
+    assertThat(envelope.maximum(), is((double) max(m_samples)));
+    assertThat(
+        envelope.mean(),
+        closeTo(m_samples.stream().mapToInt(Integer::intValue).average().getAsDouble(), 0.5));
+  }
+
+  @Test
+  void testQuerySeconds() {
+    OverviewPyramid pyramid = build(m_records);
+    OffsetDateTime start = pyramid.startTime().truncatedTo(ChronoUnit.SECONDS);
+    int seconds = 8;
+    List<Envelope> envelopes = pyramid.query(start, start.plusSeconds(seconds), seconds);
+    assertThat(envelopes.size(), is(seconds));
+    long total = 0;
+    for (int second = 0; second < seconds; second++) {
+      long from = NanoTime.toEpochNanos(start.plusSeconds(second));
+      long to = from + NanoTime.NS_PER_SEC;
+      List<Integer> samples = new ArrayList<>();
+      for (int i = 0; i < m_times.size(); i++) {
+        if (m_times.get(i) >= from && m_times.get(i) < to) {
+          samples.add(m_samples.get(i));
+        }
+      }
+      Envelope envelope = envelopes.get(second);
+      assertThat(envelope.count(), is((long) samples.size()));
+      if (samples.isEmpty()) {
+        assertThat(envelope.isEmpty(), is(true));
+      } else {
+        assertThat(envelope.minimum(), is((double) min(samples)));
+        assertThat(envelope.maximum(), is((double) max(samples)));
+      }
+      total += envelope.count();
+    }
+    assertThat(total, is((long) m_samples.size()));
+  }
+
+  @Test
+  void testQueryUsesBaseLevelWhenZoomedIn() {
+    OverviewPyramid pyramid = build(m_records);
+    assertThat(pyramid.level(BUCKET_WIDTH.toNanos() / 2.0), is(0));
+    assertThat(pyramid.level(BUCKET_WIDTH.toNanos() * 2.5), is(1));
+    assertThat(pyramid.level(Double.MAX_VALUE), is(pyramid.levels() - 1));
+    OffsetDateTime start = pyramid.startTime();
+    List<Envelope> envelopes = pyramid.query(start, start.plus(BUCKET_WIDTH), 4);
+    assertThat(envelopes.stream().mapToLong(Envelope::count).max().getAsLong(), is(1L));
+  }
+
+  @Test
+  void testQueryOutsideData() {
+    OverviewPyramid pyramid = build(m_records);
+    OffsetDateTime before = pyramid.startTime().minusDays(1);
+    assertThat(
+        pyramid.query(before, before.plusHours(1), 10).stream().allMatch(Envelope::isEmpty),
+        is(true));
+  }
+
+  @Test
+  void testRecordsInAnyOrder() {
+    OverviewPyramid inOrder = build(m_records);
+    OverviewPyramid reversed = build(List.of(m_records.get(1), m_records.get(0)));
+    assertThat(reversed.toString(), is(inOrder.toString()));
+    assertThat(
+        reversed.query(inOrder.startTime(), inOrder.endTime(), 100),
+        is(inOrder.query(inOrder.startTime(), inOrder.endTime(), 100)));
+  }
+
+  @Test
+  void testSidecarHoldsEveryChannel(@TempDir Path directory) throws IOException {
+    List<DataRecord> records = new ArrayList<>(m_records);
+    records.addAll(withStation("S0002"));
+    Map<SourceIdentifier, OverviewPyramid> pyramids =
+        OverviewBuilder.build(records.stream(), BUCKET_WIDTH);
+    assertThat(pyramids.size(), is(2));
+
+    Path dataFile = directory.resolve("XX.S0001..HHX.D.2018.083");
+    Path sidecar = OverviewPyramid.sidecar(dataFile);
+    assertThat(sidecar.getFileName().toString(), is("XX.S0001..HHX.D.2018.083.overview"));
+    OverviewPyramid.write(pyramids.values(), sidecar);
+    // 20 bytes per bucket
+    int buckets = 0;
+    for (OverviewPyramid pyramid : pyramids.values()) {
+      for (int level = 0; level < pyramid.levels(); level++) {
+        buckets += pyramid.bucketCount(level);
+      }
+    }
+    assertThat(Files.size(sidecar) > buckets * 20L, is(true));
+
+    Map<String, OverviewPyramid> read = OverviewPyramid.read(sidecar);
+    assertThat(read.size(), is(2));
+    for (OverviewPyramid pyramid : pyramids.values()) {
+      OverviewPyramid readPyramid = read.get(pyramid.sourceIdentifier());
+      assertThat(readPyramid.toString(), is(pyramid.toString()));
+      List<Envelope> expected = pyramid.query(pyramid.startTime(), pyramid.endTime(), 37);
+      List<Envelope> actual = readPyramid.query(pyramid.startTime(), pyramid.endTime(), 37);
+      assertThat(actual.size(), is(expected.size()));
+      for (int i = 0; i < expected.size(); i++) {
+        // the sidecar stores values as floats
+        assertThat(actual.get(i).count(), is(expected.get(i).count()));
+        assertThat(actual.get(i).minimum(), is(expected.get(i).minimum()));
+        assertThat(actual.get(i).maximum(), is(expected.get(i).maximum()));
+        assertThat(actual.get(i).mean(), closeTo(expected.get(i).mean(), 1e-4));
+      }
+    }
+  }
+
+  @Test
+  void testReadInvalid() throws IOException {
+    assertThrows(
+        IOException.class, () -> OverviewPyramid.read(new ByteArrayInputStream(new byte[8])));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    OverviewPyramid.write(List.of(build(m_records)), output);
+    byte[] bytes = output.toByteArray();
+    assertThrows(
+        IOException.class,
+        () -> OverviewPyramid.read(new ByteArrayInputStream(bytes, 0, bytes.length - 1)));
+  }
+
+  @Test
+  void testStrayStartTimeDoesNotAllocateTheSpan() throws IOException {
+    // a record 80 years late, which would be 3e11 base buckets after the others
+    List<DataRecord> records = new ArrayList<>(m_records);
+    byte[] bytes = m_records.get(0).toByteArray();
+    ByteBuffer.wrap(bytes).putShort(START_YEAR_OFFSET, (short) (2018 + 80));
+    records.add(DataRecord2.read(new ByteArrayInputStream(bytes)));
+
+    OverviewPyramid pyramid = build(records);
+    OverviewPyramid expected = build(m_records);
+    assertThat(
+        pyramid.bucketCount(0),
+        is(expected.bucketCount(0) + m_records.get(0).header().numberOfSamples()));
+    assertThat(pyramid.startTime(), is(expected.startTime()));
+    assertThat(
+        pyramid.query(expected.startTime(), expected.endTime(), 100),
+        is(expected.query(expected.startTime(), expected.endTime(), 100)));
+  }
+
+  @Test
+  void testInvalidQuery() {
+    OverviewPyramid pyramid = build(m_records);
+    OffsetDateTime start = pyramid.startTime();
+    assertThrows(IllegalArgumentException.class, () -> pyramid.query(start, start, 10));
+    assertThrows(
+        IllegalArgumentException.class, () -> pyramid.query(start, start.plusSeconds(1), 0));
+    assertThrows(IllegalArgumentException.class, () -> new OverviewBuilder(Duration.ZERO));
+  }
+
+  private List<DataRecord> withStation(String station) throws IOException {
+    List<DataRecord> records = new ArrayList<>();
+    for (DataRecord record : m_records) {
+      byte[] bytes = record.toByteArray();
+      System.arraycopy(
+          station.getBytes(StandardCharsets.US_ASCII), 0, bytes, STATION_OFFSET, station.length());
+      records.add(DataRecord2.read(new ByteArrayInputStream(bytes)));
+    }
+    return records;
+  }
+
+  private static OverviewPyramid build(List<DataRecord> records) {
+    Map<SourceIdentifier, OverviewPyramid> pyramids =
+        OverviewBuilder.build(records.stream(), BUCKET_WIDTH);
+    assertThat(pyramids.size(), is(1));
+    return pyramids.values().iterator().next();
+  }
+
+  private static int min(List<Integer> samples) {
+    return samples.stream().mapToInt(Integer::intValue).min().getAsInt();
+  }
+
+  private static int max(List<Integer> samples) {
+    return samples.stream().mapToInt(Integer::intValue).max().getAsInt();
+  }
+}
@@ -0,0 +1,171 @@
+package ca.nanometrics.miniseed.realtime;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.SourceIdentifier;
+import ca.nanometrics.miniseed.util.NanoTime;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RealTimeStoreTest {
+  private List<DataRecord> m_records;
+  private SourceIdentifier m_sourceIdentifier;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    try (InputStream input =
+            getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed");
+        Stream<DataRecord> records = MiniSeed.stream(input)) {
+      m_records = records.toList();
+    }
+    m_sourceIdentifier = m_records.get(0).header().sourceIdentifier();
+  }
+
+  @Test
+  void testSnapshotHasAllSamplesWithTimes() {
+    RealTimeStore store = new RealTimeStore(Duration.ofHours(1));
+    assertThat(store.snapshot(m_sourceIdentifier), is(Optional.empty()));
+    m_records.forEach(store::add);
+
+    Snapshot snapshot = store.snapshot(m_sourceIdentifier).orElseThrow();
+    double[] expected =
+        m_records.stream()
+            .flatMapToInt(record -> IntStream.of(record.samples().intSamples()))
+            .asDoubleStream()
+            .toArray();
+    assertThat(snapshot.values(), is(expected));
+    DataRecord first = m_records.get(0);
+    long start = NanoTime.toEpochNanos(first.header().recordStartTime());
+    assertThat(snapshot.times()[0], is(start));
+    assertThat(snapshot.times()[1], is(start + first.header().sampleRate().samplePeriodNanos()));
+    assertThat(store.sourceIdentifiers(), is(Set.of(m_sourceIdentifier)));
+  }
+
+  @Test
+  void testOnlyRetentionPeriodKept() {
+    DataRecord first = m_records.get(0);
+    double sampleRate = first.header().sampleRate().sampleRateDouble();
+    int retained = 10;
+    RealTimeStore store =
+        new RealTimeStore(Duration.ofNanos(Math.round(retained * 1e9 / sampleRate)));
+    m_records.forEach(store::add);
+
+    Snapshot snapshot = store.snapshot(m_sourceIdentifier).orElseThrow();
+    int[] last = m_records.get(1).samples().intSamples();
+    double[] expected =
+        Arrays.stream(Arrays.copyOfRange(last, last.length - retained, last.length))
+            .asDoubleStream()
+            .toArray();
+    assertThat(snapshot.values(), is(expected));
+  }
+
+  @Test
+  void testLatest() {
+    RealTimeStore store = new RealTimeStore(Duration.ofHours(1));
+    m_records.forEach(store::add);
+    long period = m_records.get(0).header().sampleRate().samplePeriodNanos();
+    Snapshot latest =
+        store.latest(m_sourceIdentifier, Duration.ofNanos(4 * period + period / 2)).orElseThrow();
+    assertThat(latest.size(), is(5));
+    Snapshot all = store.snapshot(m_sourceIdentifier).orElseThrow();
+    assertThat(latest.endTimeNanos(), is(all.endTimeNanos()));
+  }
+
+  @Test
+  void testReadFromTimeAcrossWrap() {
+    SampleRing ring = new SampleRing(10);
+    // one sample per nanosecond, so each time is its value; the ring wraps at 20
+    for (int start = 0; start < 25; start += 5) {
+      ring.write(start, 1e9, new double[] {start, start + 1, start + 2, start + 3, start + 4});
+    }
+    assertThat(ring.read(Long.MIN_VALUE).values(), is(range(15, 25)));
+    assertThat(ring.read(18).values(), is(range(18, 25)));
+    assertThat(ring.read(18).times()[0], is(18L));
+    assertThat(ring.read(22).values(), is(range(22, 25)));
+    assertThat(ring.read(25).isEmpty(), is(true));
+    assertThat(ring.latest(3).values(), is(range(21, 25)));
+    assertThat(new SampleRing(4).read(0).isEmpty(), is(true));
+  }
+
+  @Test
+  void testReadersSeeConsistentSnapshotsWhileWriting() throws Exception {
+    SampleRing ring = new SampleRing(1000);
+    double sampleRate = 100;
+    long periodNanos = 10_000_000L;
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicReference<String> failure = new AtomicReference<>();
+    Thread[] readers = new Thread[3];
+    for (int r = 0; r < readers.length; r++) {
+      readers[r] =
+          new Thread(
+              () -> {
+                while (!done.get() && failure.get() == null) {
+                  Snapshot snapshot = ring.read(Long.MIN_VALUE);
+                  for (int i = 0; i < snapshot.size(); i++) {
+                    // each value is its sample number, and its time follows from that
+                    if (snapshot.times()[i] != (long) snapshot.values()[i] * periodNanos
+                        || (i > 0 && snapshot.values()[i] != snapshot.values()[i - 1] + 1)) {
+                      failure.set("Inconsistent snapshot at " + i);
+                    }
+                  }
+                }
+              });
+      readers[r].start();
+    }
+    int written = 0;
+    for (int block = 0; block < 20_000; block++) {
+      double[] values = new double[1 + block % 37];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = written + i;
+      }
+      ring.write(written * periodNanos, sampleRate, values);
+      written += values.length;
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    assertThat(failure.get(), is((String) null));
+    Snapshot last = ring.read(Long.MIN_VALUE);
+    assertThat(last.size(), is(1000));
+    assertThat(last.values()[999], is((double) written - 1));
+  }
+
+  private static double[] range(int from, int to) {
+    return IntStream.range(from, to).asDoubleStream().toArray();
+  }
+}
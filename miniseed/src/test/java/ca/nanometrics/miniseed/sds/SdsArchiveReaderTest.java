@@ -0,0 +1,198 @@
+package ca.nanometrics.miniseed.sds;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import ca.nanometrics.miniseed.v3.DataRecord2To3;
+import ca.nanometrics.miniseed.v3.DataRecord3;
+import ca.nanometrics.miniseed.v3.UriSourceIdentifier;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SdsArchiveReaderTest {
+  private static final OffsetDateTime DAY =
+      OffsetDateTime.of(2023, 3, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+  @TempDir Path m_root;
+  private DataRecord3 m_template;
+  private SdsArchiveReader m_reader;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    try (InputStream input =
+            getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed");
+        Stream<DataRecord> records = MiniSeed.stream(input)) {
+      DataRecord2 v2Record = (DataRecord2) records.findFirst().orElseThrow();
+      m_template =
+          DataRecord3.read(
+              new ByteArrayInputStream(
+                  DataRecord2To3.toRecord(
+                      v2Record.header(), DataEncoding.STEIM1, v2Record.payload())));
+    }
+    m_reader = new SdsArchiveReader(m_root, 2);
+  }
+
+  @AfterEach
+  void tearDown() {
+    m_reader.close();
+  }
+
+  @Test
+  void testMergedByTimeAcrossChannels() throws IOException {
+    // written out of order across three days and two channels
+    write(
+        record("HHZ", DAY.plusHours(25)),
+        record("HHN", DAY.plusHours(1)),
+        record("HHZ", DAY.plusHours(1)),
+        record("HHZ", DAY.plusHours(2)),
+        record("HHN", DAY.plusHours(26)),
+        record("HHN", DAY.plusHours(49)),
+        record("HHZ", DAY.plusHours(48)));
+
+    assertThat(
+        query("XX.S0001.*.HH?", DAY, DAY.plusDays(3)),
+        contains(
+            "HHN " + DAY.plusHours(1),
+            "HHZ " + DAY.plusHours(1),
+            "HHZ " + DAY.plusHours(2),
+            "HHZ " + DAY.plusHours(25),
+            "HHN " + DAY.plusHours(26),
+            "HHZ " + DAY.plusHours(48),
+            "HHN " + DAY.plusHours(49)));
+  }
+
+  @Test
+  void testDayFileWrittenOutOfOrder() throws IOException {
+    write(
+        record("HHZ", DAY.plusHours(3)),
+        record("HHZ", DAY.plusHours(1)),
+        record("HHZ", DAY.plusHours(2)));
+
+    assertThat(
+        query("XX.S0001..HHZ", DAY, DAY.plusDays(1)),
+        contains("HHZ " + DAY.plusHours(1), "HHZ " + DAY.plusHours(2), "HHZ " + DAY.plusHours(3)));
+  }
+
+  @Test
+  void testTrimmedToWindow() throws IOException {
+    write(
+        record("HHZ", DAY.plusMinutes(50)),
+        record("HHZ", DAY.plusMinutes(59).plusSeconds(59)),
+        record("HHZ", DAY.plusMinutes(90)),
+        record("HHZ", DAY.plusMinutes(120)),
+        record("HHZ", DAY.plusMinutes(130)));
+
+    assertThat(
+        query("XX.S0001..HHZ", DAY.plusHours(1), DAY.plusHours(2)),
+        contains("HHZ " + DAY.plusMinutes(59).plusSeconds(59), "HHZ " + DAY.plusMinutes(90)));
+  }
+
+  @Test
+  void testRecordFromPreviousDayFile() throws IOException {
+    OffsetDateTime beforeMidnight = DAY.minusSeconds(1);
+    DataRecord3 overlapping = record("HHZ", beforeMidnight);
+    write(overlapping, record("HHZ", DAY.minusHours(1)));
+
+    assertThat(query("XX.*.*.*", DAY, DAY.plusHours(1)), contains("HHZ " + beforeMidnight));
+    assertThat(
+        m_reader.dayFiles("XX.*.*.*", DAY, DAY.plusHours(1)),
+        is(
+            List.of(
+                SdsPaths.dayFile(
+                    m_root, overlapping.header().sourceIdentifier(), beforeMidnight))));
+  }
+
+  @Test
+  void testNoMatchingChannels() throws IOException {
+    write(record("HHZ", DAY));
+
+    assertThat(query("XX.S0001.*.BH?", DAY, DAY.plusDays(1)), is(empty()));
+    assertThat(query("YY.*.*.*", DAY, DAY.plusDays(1)), is(empty()));
+    assertThat(query("XX.S0001.00.HHZ", DAY, DAY.plusDays(1)), is(empty()));
+    assertThat(query("XX.S0001.*.HHZ", DAY.plusDays(3), DAY.plusDays(4)), is(empty()));
+  }
+
+  @Test
+  void testInvalidQuery() {
+    assertThrows(
+        IllegalArgumentException.class, () -> m_reader.query("XX.S0001.HHZ", DAY, DAY.plusDays(1)));
+    assertThrows(IllegalArgumentException.class, () -> m_reader.query("XX.*.*.*", DAY, DAY));
+  }
+
+  private List<String> query(String glob, OffsetDateTime start, OffsetDateTime end)
+      throws IOException {
+    try (Stream<DataRecord> records = m_reader.query(glob, start, end)) {
+      return records
+          .map(
+              record ->
+                  record.header().sourceIdentifier().channel().replace("_", "")
+                      + " "
+                      + record.header().recordStartTime())
+          .toList();
+    }
+  }
+
+  private void write(DataRecord... records) throws IOException {
+    try (SdsArchiveWriter writer = new SdsArchiveWriter(m_root)) {
+      for (DataRecord record : records) {
+        writer.write(record);
+      }
+    }
+  }
+
+  private DataRecord3 record(String channel, OffsetDateTime start) {
+    UriSourceIdentifier source = (UriSourceIdentifier) m_template.header().sourceIdentifier();
+    return DataRecord3.builder()
+        .header(
+            m_template.header().toBuilder()
+                .crc(0)
+                .sourceIdentifier(
+                    UriSourceIdentifier.builder()
+                        .network(source.network())
+                        .station(source.station())
+                        .location(source.location())
+                        .channel(channel)
+                        .build())
+                .recordStartTime(start)
+                .build())
+        .payload(m_template.payload())
+        .build();
+  }
+}
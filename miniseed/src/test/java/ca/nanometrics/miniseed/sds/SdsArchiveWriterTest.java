@@ -0,0 +1,219 @@
+package ca.nanometrics.miniseed.sds;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import ca.nanometrics.miniseed.v3.DataRecord2To3;
+import ca.nanometrics.miniseed.v3.DataRecord3;
+import ca.nanometrics.miniseed.v3.UriSourceIdentifier;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SdsArchiveWriterTest {
+  @TempDir Path m_root;
+  private DataRecord3 m_record;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    try (InputStream input =
+            getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed");
+        Stream<DataRecord> records = MiniSeed.stream(input)) {
+      DataRecord2 v2Record = (DataRecord2) records.findFirst().orElseThrow();
+      m_record =
+          DataRecord3.read(
+              new ByteArrayInputStream(
+                  DataRecord2To3.toRecord(
+                      v2Record.header(), DataEncoding.STEIM1, v2Record.payload())));
+    }
+  }
+
+  @Test
+  void testDayFilePath() {
+    UriSourceIdentifier source =
+        UriSourceIdentifier.builder()
+            .network("NX")
+            .station("STN")
+            .location("")
+            .channel("HHZ")
+            .build();
+    assertThat(
+        SdsPaths.dayFile(Path.of("/sds"), source, LocalDate.of(2023, 2, 3)),
+        is(Path.of("/sds/2023/NX/STN/HHZ.D/NX.STN..HHZ.D.2023.034")));
+  }
+
+  @Test
+  void testRecordsRoutedByChannelAndDay() throws IOException {
+    DataRecord3 otherChannel = withChannel(m_record, "HHN");
+    DataRecord3 nextDay = nextDay(m_record);
+    try (SdsArchiveWriter writer = new SdsArchiveWriter(m_root)) {
+      writer.write(m_record);
+      writer.write(otherChannel);
+      writer.write(nextDay);
+      writer.write(m_record);
+      assertThat(writer.openFiles(), is(3));
+      assertThat(writer.recordsWritten(), is(4L));
+    }
+
+    assertThat(bytesOf(dayFile(m_record)), is(concat(m_record, m_record)));
+    assertThat(bytesOf(dayFile(otherChannel)), is(concat(otherChannel)));
+    assertThat(bytesOf(dayFile(nextDay)), is(concat(nextDay)));
+  }
+
+  @Test
+  void testLeastRecentlyUsedFileClosed() throws IOException {
+    DataRecord3 north = withChannel(m_record, "HHN");
+    DataRecord3 east = withChannel(m_record, "HHE");
+    try (SdsArchiveWriter writer =
+        new SdsArchiveWriter(m_root, 2, SdsArchiveWriter.DEFAULT_BUFFER_SIZE)) {
+      writer.write(m_record);
+      writer.write(north);
+      writer.write(m_record);
+      writer.write(east);
+      assertThat(writer.openFiles(), is(2));
+      assertThat(writer.filesOpened(), is(3L));
+      // evicted and flushed
+      assertThat(bytesOf(dayFile(north)), is(concat(north)));
+      writer.write(north);
+      assertThat(writer.filesOpened(), is(4L));
+    }
+    assertThat(bytesOf(dayFile(m_record)), is(concat(m_record, m_record)));
+    assertThat(bytesOf(dayFile(north)), is(concat(north, north)));
+    assertThat(bytesOf(dayFile(east)), is(concat(east)));
+  }
+
+  @Test
+  void testAppendsToExistingFile() throws IOException {
+    try (SdsArchiveWriter writer = new SdsArchiveWriter(m_root)) {
+      writer.write(m_record);
+    }
+    try (SdsArchiveWriter writer = new SdsArchiveWriter(m_root)) {
+      writer.write(m_record);
+    }
+    assertThat(bytesOf(dayFile(m_record)), is(concat(m_record, m_record)));
+  }
+
+  @Test
+  void testDayFileOutsideArchiveRejected() throws IOException {
+    byte[] bytes;
+    try (InputStream input =
+        getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+      bytes = Arrays.copyOf(input.readAllBytes(), 512);
+    }
+    // station and network codes, at offsets 8 and 18 of the fixed header, so the day file would
+    // be two directories above the year directory, outside the archive
+    System.arraycopy("..   ".getBytes(StandardCharsets.US_ASCII), 0, bytes, 8, 5);
+    System.arraycopy("..".getBytes(StandardCharsets.US_ASCII), 0, bytes, 18, 2);
+    DataRecord2 record = DataRecord2.read(new ByteArrayInputStream(bytes));
+    assertThat(record.header().sourceIdentifier().station(), is(".."));
+    assertThat(record.header().sourceIdentifier().network(), is(".."));
+
+    Path archive = m_root.resolve("archive");
+    try (SdsArchiveWriter writer = new SdsArchiveWriter(archive)) {
+      assertThrows(IllegalArgumentException.class, () -> writer.write(record));
+      assertThat(writer.recordsWritten(), is(0L));
+    }
+    try (Stream<Path> files = Files.walk(m_root)) {
+      assertThat(files.filter(Files::isRegularFile).count(), is(0L));
+    }
+    assertThat(Files.exists(m_root.resolve("HHX.D")), is(false));
+  }
+
+  @Test
+  void testInvalidCodesRejected() {
+    for (String station : new String[] {".", "..", "A/B", "A\\B"}) {
+      UriSourceIdentifier source =
+          UriSourceIdentifier.builder()
+              .network("NX")
+              .station(station)
+              .location("")
+              .channel("HHZ")
+              .build();
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> SdsPaths.dayFile(Path.of("/sds"), source, LocalDate.of(2023, 2, 3)),
+          station);
+    }
+  }
+
+  private Path dayFile(DataRecord3 record) {
+    return SdsPaths.dayFile(
+        m_root, record.header().sourceIdentifier(), record.header().recordStartTime());
+  }
+
+  private static DataRecord3 withChannel(DataRecord3 record, String channel) {
+    UriSourceIdentifier source = (UriSourceIdentifier) record.header().sourceIdentifier();
+    return DataRecord3.builder()
+        .header(
+            record.header().toBuilder()
+                .crc(0)
+                .sourceIdentifier(
+                    UriSourceIdentifier.builder()
+                        .network(source.network())
+                        .station(source.station())
+                        .location(source.location())
+                        .channel(channel)
+                        .build())
+                .build())
+        .payload(record.payload())
+        .build();
+  }
+
+  private static DataRecord3 nextDay(DataRecord3 record) {
+    return DataRecord3.builder()
+        .header(
+            record.header().toBuilder()
+                .crc(0)
+                .recordStartTime(record.header().recordStartTime().plusDays(1))
+                .build())
+        .payload(record.payload())
+        .build();
+  }
+
+  private static byte[] bytesOf(Path file) throws IOException {
+    return Files.readAllBytes(file);
+  }
+
+  private static byte[] concat(DataRecord... records) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (DataRecord record : records) {
+      bytes.write(record.toByteArray());
+    }
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,135 @@
+package ca.nanometrics.miniseed.util;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.util.BatchProcessor.BatchResult;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class BatchProcessorTest {
+
+  @Test
+  void testAllItemsProcessed() throws InterruptedException {
+    BatchResult<Integer, Integer> result =
+        new BatchProcessor(4).process(IntStream.range(0, 100).boxed(), item -> item * 2);
+
+    assertThat(result.succeeded(), is(100L));
+    assertThat(result.failed(), is(0L));
+    assertThat(
+        result.values(),
+        containsInAnyOrder(IntStream.range(0, 100).map(i -> i * 2).boxed().toArray()));
+  }
+
+  @Test
+  void testFailuresRecordedWithoutStoppingOthers() throws InterruptedException {
+    BatchResult<Integer, Integer> result =
+        new BatchProcessor(4)
+            .process(
+                Stream.of(1, 2, 3, 4),
+                item -> {
+                  if (item % 2 == 0) {
+                    throw new IOException("Could not read " + item);
+                  }
+                  return item;
+                });
+
+    assertThat(result.values(), containsInAnyOrder(1, 3));
+    assertThat(result.failed(), is(2L));
+    assertThat(
+        result.failures().stream().map(BatchProcessor.Outcome::item).toList(),
+        containsInAnyOrder(2, 4));
+    assertThat(result.failures().get(0).failure(), instanceOf(IOException.class));
+  }
+
+  @Test
+  void testItemsProcessedConcurrentlyUpToLimit() throws InterruptedException {
+    int maxConcurrency = 8;
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch allStarted = new CountDownLatch(maxConcurrency);
+    BatchResult<Integer, Integer> result =
+        new BatchProcessor(maxConcurrency)
+            .process(
+                IntStream.range(0, 64).boxed(),
+                item -> {
+                  maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                  allStarted.countDown();
+                  // the first items only finish once the limit has been reached
+                  allStarted.await(10, TimeUnit.SECONDS);
+                  running.decrementAndGet();
+                  return item;
+                });
+
+    assertThat(result.succeeded(), is(64L));
+    assertThat(maxRunning.get(), is(maxConcurrency));
+  }
+
+  @Test
+  void testStartedItemsCompleteWhenStreamFails() {
+    AtomicInteger completed = new AtomicInteger();
+    AtomicInteger interrupted = new AtomicInteger();
+    Stream<Integer> items =
+        IntStream.range(0, 10)
+            .boxed()
+            .map(
+                item -> {
+                  if (item == 3) {
+                    throw new IllegalStateException("Could not list directory");
+                  }
+                  return item;
+                });
+    IllegalStateException e =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                new BatchProcessor(4)
+                    .process(
+                        items,
+                        item -> {
+                          try {
+                            Thread.sleep(50);
+                          } catch (InterruptedException ex) {
+                            interrupted.incrementAndGet();
+                            throw ex;
+                          }
+                          return completed.incrementAndGet();
+                        }));
+    assertThat(e.getMessage(), is("Could not list directory"));
+    assertThat(completed.get(), is(3));
+    assertThat(interrupted.get(), is(0));
+  }
+
+  @Test
+  void testInvalidConcurrency() {
+    assertThrows(IllegalArgumentException.class, () -> new BatchProcessor(0));
+  }
+}
@@ -0,0 +1,139 @@
+package ca.nanometrics.miniseed.v2;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.endian.LittleEndian;
+import ca.nanometrics.miniseed.endian.WordOrder;
+import ca.nanometrics.miniseed.util.NanoTime;
+import ca.nanometrics.miniseed.v2.DataRecord2Header.ActivityFlags;
+import ca.nanometrics.miniseed.v2.DataRecord2Header.DataQualityFlags;
+import ca.nanometrics.miniseed.v2.DataRecord2Header.IOFlags;
+import ca.nanometrics.miniseed.v2.DataRecord2Header.QualityIndicator;
+import ca.nanometrics.miniseed.v2.blockettes.Blockette;
+import ca.nanometrics.miniseed.v2.blockettes.DataOnlyBlockette_1000;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class DataRecord2HeaderViewTest {
+
+  @Test
+  void testScanRecordsWithOneView() throws IOException {
+    byte[] bytes;
+    try (InputStream input =
+        getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+      bytes = input.readAllBytes();
+    }
+    List<DataRecord> records;
+    try (Stream<DataRecord> stream = MiniSeed.stream(new ByteArrayInputStream(bytes))) {
+      records = stream.toList();
+    }
+
+    DataRecord2HeaderView view = new DataRecord2HeaderView();
+    int offset = 0;
+    for (DataRecord record : records) {
+      view.wrap(bytes, offset);
+      assertSameFields(view, ((DataRecord2) record).header());
+      assertThat(view.recordLength(), is(record.length()));
+      offset += view.recordLength();
+    }
+    assertThat(offset, is(bytes.length));
+  }
+
+  @Test
+  void testLittleEndian() {
+    Map<Integer, Blockette> blockettes = new LinkedHashMap<>();
+    blockettes.put(
+        DataOnlyBlockette_1000.TYPE,
+        new DataOnlyBlockette_1000(0, DataEncoding.INTEGER_32BIT, WordOrder.LITTLE_ENDIAN, 4096));
+    DataRecord2Header header =
+        DataRecord2Header.builder()
+            .sequenceNumber(42)
+            .endian(LittleEndian.get())
+            .sourceIdentifier(Scnl.build("NX.STN.00.HHZ"))
+            .offsetToBeginningOfData(64)
+            .offsetToFirstDataBlockette(48)
+            .numberOfBlockettesThatFollow(1)
+            .qualityIndicator(QualityIndicator.MODIFIED)
+            .activityFlags(ActivityFlags.fromByte((byte) 0x05))
+            .ioFlags(IOFlags.fromByte((byte) 0x20))
+            .dataQualityFlags(DataQualityFlags.fromByte((byte) 0x80))
+            .numberOfSamples(1000)
+            .sampleRate(FractionalSampleRate.get(40))
+            .year(2022)
+            .dayOfYear(123)
+            .hour((byte) 1)
+            .minute((byte) 2)
+            .second((byte) 3)
+            .hundredMicroseconds((short) 4567)
+            .timeCorrection(12)
+            .blockettes(blockettes)
+            .build();
+
+    DataRecord2HeaderView view = DataRecord2HeaderView.of(header.toByteArray(), 0);
+    assertThat(view.endian(), is(LittleEndian.get()));
+    assertSameFields(view, header);
+    assertThat(view.encoding(), is(DataEncoding.INTEGER_32BIT));
+    assertThat(view.recordLength(), is(4096));
+    assertThat(view.toHeader().toByteArray(), is(header.toByteArray()));
+  }
+
+  @Test
+  void testTooFewBytes() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> DataRecord2HeaderView.of(new byte[DataRecord2Header.FIXED_HEADER_SIZE], 1));
+  }
+
+  private static void assertSameFields(DataRecord2HeaderView view, DataRecord2Header header) {
+    assertThat(view.endian(), is(header.endian()));
+    assertThat(view.sequenceNumber(), is(header.sequenceNumber()));
+    assertThat(view.qualityIndicator(), is(header.qualityIndicator()));
+    assertThat(view.sourceIdentifier(), is(header.sourceIdentifier()));
+    assertThat(view.recordStartTime(), is(header.recordStartTime()));
+    assertThat(view.recordStartTimeNanos(), is(NanoTime.toEpochNanos(header.recordStartTime())));
+    assertThat(view.numberOfSamples(), is(header.numberOfSamples()));
+    assertThat(view.sampleRate(), is(header.sampleRate()));
+    assertThat(view.activityFlags(), is(header.activityFlags()));
+    assertThat(view.ioFlags(), is(header.ioFlags()));
+    assertThat(view.dataQualityFlags(), is(header.dataQualityFlags()));
+    assertThat(view.numberOfBlockettesThatFollow(), is(header.numberOfBlockettesThatFollow()));
+    assertThat(view.timeCorrection(), is(header.timeCorrection()));
+    assertThat(view.offsetToBeginningOfData(), is(header.offsetToBeginningOfData()));
+    assertThat(view.offsetToFirstDataBlockette(), is(header.offsetToFirstDataBlockette()));
+    assertThat(view.dataPublicationVersion(), is(header.dataPublicationVersion()));
+    assertThat(view.encoding(), is(header.dataOnlyBlockette().encodingFormat()));
+    assertThat(view.recordLength(), is(header.dataOnlyBlockette().dataRecordLength()));
+    assertThat(view.length(), is(header.length()));
+  }
+}
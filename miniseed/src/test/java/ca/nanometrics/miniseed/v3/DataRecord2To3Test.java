@@ -0,0 +1,152 @@
+package ca.nanometrics.miniseed.v3;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.endian.BigEndian;
+import ca.nanometrics.miniseed.v2.DataRecord2Header;
+import ca.nanometrics.miniseed.v2.DataRecord2Header.ActivityFlags;
+import ca.nanometrics.miniseed.v2.DataRecord2Header.DataQualityFlags;
+import ca.nanometrics.miniseed.v2.DataRecord2Header.IOFlags;
+import ca.nanometrics.miniseed.v2.DataRecord2Header.QualityIndicator;
+import ca.nanometrics.miniseed.v2.FractionalSampleRate;
+import ca.nanometrics.miniseed.v2.Scnl;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.json.JSONObject;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class DataRecord2To3Test {
+
+  public static Stream<Arguments> provideFlags() {
+    List<Arguments> arguments = new ArrayList<>();
+    arguments.add(Arguments.of(0, 0, 0, 0L));
+    arguments.add(Arguments.of(0xFF, 0xFF, 0xFF, 4_000_000_000L));
+    for (int bit = 0; bit < 8; bit++) {
+      arguments.add(Arguments.of(1 << bit, 0, 0, 0L));
+      arguments.add(Arguments.of(0, 1 << bit, 0, 0L));
+      arguments.add(Arguments.of(0, 0, 1 << bit, 0L));
+    }
+    Random random = new Random(42);
+    for (int i = 0; i < 32; i++) {
+      arguments.add(
+          Arguments.of(
+              random.nextInt(256), random.nextInt(256), random.nextInt(256), random.nextInt(1000)));
+    }
+    return arguments.stream();
+  }
+
+  @ParameterizedTest
+  @MethodSource("provideFlags")
+  public void testSameAsHeaderBuilder(int activity, int io, int quality, long timeCorrection)
+      throws IOException {
+    DataRecord2Header v2Header =
+        DataRecord2Header.builder()
+            .sequenceNumber(123456)
+            .endian(BigEndian.get())
+            .sourceIdentifier(Scnl.build("NX.STN.00.HHZ"))
+            .offsetToBeginningOfData(64)
+            .offsetToFirstDataBlockette(0)
+            .numberOfBlockettesThatFollow(0)
+            .qualityIndicator(QualityIndicator.QUALITY_CONTROLLED)
+            .activityFlags(ActivityFlags.fromByte((byte) activity))
+            .ioFlags(IOFlags.fromByte((byte) io))
+            .dataQualityFlags(DataQualityFlags.fromByte((byte) quality))
+            .numberOfSamples(100)
+            .sampleRate(FractionalSampleRate.get(40))
+            .year(2022)
+            .dayOfYear(123)
+            .hour((byte) 1)
+            .minute((byte) 2)
+            .second((byte) 3)
+            .hundredMicroseconds((short) 4567)
+            .timeCorrection(timeCorrection)
+            .blockettes(Map.of())
+            .build();
+    byte[] payload = new byte[64];
+    payload[3] = 7;
+
+    DataRecord3 expected = viaHeaderBuilder(v2Header, payload);
+    byte[] translated = DataRecord2To3.toRecord(v2Header, DataEncoding.STEIM1, payload);
+    DataRecord3 actual = DataRecord3.read(new ByteArrayInputStream(translated));
+
+    DataRecord3Header expectedHeader = expected.header();
+    DataRecord3Header actualHeader = actual.header();
+    assertThat(actualHeader.flags(), is(expectedHeader.flags()));
+    assertThat(actualHeader.recordStartTime(), is(expectedHeader.recordStartTime()));
+    assertThat(actualHeader.dataPayloadEncoding(), is(expectedHeader.dataPayloadEncoding()));
+    assertThat(actualHeader.sampleRate(), is(expectedHeader.sampleRate()));
+    assertThat(actualHeader.numberOfSamples(), is(expectedHeader.numberOfSamples()));
+    assertThat(actualHeader.dataPublicationVersion(), is(expectedHeader.dataPublicationVersion()));
+    assertThat(actualHeader.sourceIdentifier(), is(expectedHeader.sourceIdentifier()));
+    assertThat(actualHeader.lengthOfDataPayload(), is(expectedHeader.lengthOfDataPayload()));
+    assertThat(
+        actualHeader.extraHeaderFields().toString(),
+        actualHeader.extraHeaderFields().similar(expectedHeader.extraHeaderFields()),
+        is(true));
+    assertThat(actualHeader.lengthOfExtraHeaders(), is(expectedHeader.lengthOfExtraHeaders()));
+    assertThat(actual.payload(), is(payload));
+    assertThat(translated.length, is(expected.toByteArray().length));
+  }
+
+  private static DataRecord3 viaHeaderBuilder(DataRecord2Header v2Header, byte[] payload) {
+    Scnl scnl = v2Header.sourceIdentifier();
+    JSONObject extraHeaders = new JSONObject();
+    for (ExtraHeader<?> header : ExtraHeader.FDSN_RESERVED_HEADERS) {
+      header.add(v2Header, extraHeaders);
+    }
+    DataRecord3Header v3Header =
+        DataRecord3Header.builder()
+            .sourceIdentifier(
+                UriSourceIdentifier.builder()
+                    .network(scnl.network())
+                    .station(scnl.station())
+                    .location(scnl.location())
+                    .channel(scnl.channel())
+                    .build())
+            .recordStartTime(v2Header.recordStartTime())
+            .numberOfSamples(v2Header.numberOfSamples())
+            .sampleRate(
+                new DataRecord3Header.Float64SampleRate(v2Header.sampleRate().sampleRateDouble()))
+            .dataPayloadEncoding(DataEncoding.STEIM1)
+            .lengthOfDataPayload(payload.length)
+            .dataPublicationVersion(v2Header.dataPublicationVersion())
+            .flags(
+                DataRecord3Header.Flags.builder()
+                    .calibrationSignalPresent(v2Header.activityFlags().calibrationSignalsPresent())
+                    .timeTagIsQuestionable(v2Header.dataQualityFlags().timeTagIsQuestionable())
+                    .clockLocked(v2Header.ioFlags().clockLocked())
+                    .build())
+            .extraHeaderFields(extraHeaders)
+            .build();
+    return DataRecord3.builder().header(v3Header).payload(payload).build();
+  }
+}
@@ -0,0 +1,200 @@
+package ca.nanometrics.miniseed.v3;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import ca.nanometrics.miniseed.v3.RecordChannelWriter.FlushPolicy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RecordChannelWriterTest {
+  private List<DataRecord3> m_records;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    m_records = new ArrayList<>();
+    try (InputStream input =
+            getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed");
+        Stream<DataRecord> records = MiniSeed.stream(input)) {
+      for (DataRecord record : records.toList()) {
+        DataRecord2 v2Record = (DataRecord2) record;
+        m_records.add(
+            DataRecord3.read(
+                new ByteArrayInputStream(
+                    DataRecord2To3.toRecord(
+                        v2Record.header(), DataEncoding.STEIM1, v2Record.payload()))));
+      }
+    }
+  }
+
+  @Test
+  void testRecordsBatchedIntoOneWrite() throws IOException {
+    CapturingChannel channel = new CapturingChannel(Integer.MAX_VALUE);
+    try (RecordChannelWriter writer = new RecordChannelWriter(channel)) {
+      for (int i = 0; i < 10; i++) {
+        writer.write(m_records.get(i % 2));
+      }
+      assertThat(writer.writes(), is(0L));
+      writer.flush();
+      assertThat(writer.writes(), is(1L));
+      assertThat(writer.recordsWritten(), is(10L));
+      assertThat(writer.bytesWritten(), is((long) channel.bytes().length));
+    }
+    assertThat(channel.bytes(), is(expected(10)));
+    assertThat(channel.isOpen(), is(false));
+  }
+
+  @Test
+  void testPartialWritesCompleted() throws IOException {
+    CapturingChannel channel = new CapturingChannel(100);
+    try (RecordChannelWriter writer = new RecordChannelWriter(channel)) {
+      for (int i = 0; i < 4; i++) {
+        writer.write(m_records.get(i % 2).toByteArray());
+      }
+    }
+    assertThat(channel.bytes(), is(expected(4)));
+  }
+
+  @Test
+  void testWrittenWhenBufferFull() throws IOException {
+    CapturingChannel channel = new CapturingChannel(Integer.MAX_VALUE);
+    int recordLength = m_records.get(0).length();
+    RecordChannelWriter writer =
+        new RecordChannelWriter(channel, 3 * recordLength, FlushPolicy.WHEN_FULL);
+    writer.write(m_records.get(0));
+    writer.write(m_records.get(1));
+    assertThat(writer.writes(), is(0L));
+    writer.write(m_records.get(0));
+    assertThat(writer.writes(), is(1L));
+    assertThat(channel.bytes(), is(expected(3)));
+  }
+
+  @Test
+  void testEveryRecordPolicy() throws IOException {
+    CapturingChannel channel = new CapturingChannel(Integer.MAX_VALUE);
+    RecordChannelWriter writer =
+        new RecordChannelWriter(
+            channel, RecordChannelWriter.DEFAULT_BUFFER_SIZE, FlushPolicy.EVERY_RECORD);
+    writer.write(m_records.get(0));
+    assertThat(channel.bytes(), is(expected(1)));
+    writer.write(m_records.get(1));
+    assertThat(writer.writes(), is(2L));
+    assertThat(channel.bytes(), is(expected(2)));
+  }
+
+  @Test
+  void testMaxBuffersPerWrite() throws IOException {
+    CapturingChannel channel = new CapturingChannel(Integer.MAX_VALUE);
+    try (RecordChannelWriter writer =
+        new RecordChannelWriter(channel, Integer.MAX_VALUE, FlushPolicy.WHEN_FULL)) {
+      for (int i = 0; i < RecordChannelWriter.MAX_BUFFERS; i++) {
+        writer.write(m_records.get(i % 2));
+      }
+      assertThat(writer.writes(), is(1L));
+    }
+    assertThat(channel.maxBuffers(), is(RecordChannelWriter.MAX_BUFFERS));
+    assertThat(channel.bytes(), is(expected(RecordChannelWriter.MAX_BUFFERS)));
+  }
+
+  @Test
+  void testInvalidBufferSize() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new RecordChannelWriter(new CapturingChannel(1), 0, FlushPolicy.WHEN_FULL));
+  }
+
+  private byte[] expected(int numRecords) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (int i = 0; i < numRecords; i++) {
+      bytes.writeBytes(m_records.get(i % 2).toByteArray());
+    }
+    return bytes.toByteArray();
+  }
+
+  /** Captures the bytes written, writing at most the given number of bytes per call. */
+  private static final class CapturingChannel implements GatheringByteChannel {
+    private final ByteArrayOutputStream m_bytes = new ByteArrayOutputStream();
+    private final int m_maxBytesPerWrite;
+    private int m_maxBuffers;
+    private boolean m_open = true;
+
+    CapturingChannel(int maxBytesPerWrite) {
+      m_maxBytesPerWrite = maxBytesPerWrite;
+    }
+
+    @Override
+    public long write(ByteBuffer[] sources, int offset, int length) {
+      m_maxBuffers = Math.max(m_maxBuffers, length);
+      long written = 0;
+      for (int i = offset; i < offset + length && written < m_maxBytesPerWrite; i++) {
+        while (sources[i].hasRemaining() && written < m_maxBytesPerWrite) {
+          m_bytes.write(sources[i].get());
+          written++;
+        }
+      }
+      return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] sources) {
+      return write(sources, 0, sources.length);
+    }
+
+    @Override
+    public int write(ByteBuffer source) {
+      return (int) write(new ByteBuffer[] {source});
+    }
+
+    @Override
+    public boolean isOpen() {
+      return m_open;
+    }
+
+    @Override
+    public void close() {
+      m_open = false;
+    }
+
+    byte[] bytes() {
+      return m_bytes.toByteArray();
+    }
+
+    int maxBuffers() {
+      return m_maxBuffers;
+    }
+  }
+}
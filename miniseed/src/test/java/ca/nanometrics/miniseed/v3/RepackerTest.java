@@ -0,0 +1,231 @@
+package ca.nanometrics.miniseed.v3;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.endian.LittleEndian;
+import ca.nanometrics.miniseed.util.NanoTime;
+import ca.nanometrics.miniseed.v2.DataRecord2;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RepackerTest {
+  private List<DataRecord> m_records;
+  private int[] m_samples;
+  private long m_startNanos;
+  private long m_periodNanos;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    try (InputStream input =
+            getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed");
+        Stream<DataRecord> records = MiniSeed.stream(input)) {
+      m_records = records.toList();
+    }
+    m_samples = samples(m_records);
+    m_startNanos = NanoTime.toEpochNanos(m_records.get(0).header().recordStartTime());
+    m_periodNanos = m_records.get(0).header().sampleRate().samplePeriodNanos();
+  }
+
+  @Test
+  void testContiguousRecordsMergedIntoOne() {
+    List<DataRecord3> repacked = repack(new Repacker(), m_records);
+
+    assertThat(repacked.size(), is(1));
+    DataRecord3Header header = repacked.get(0).header();
+    assertThat(header.dataPayloadEncoding(), is(DataEncoding.STEIM1));
+    assertThat(NanoTime.toEpochNanos(header.recordStartTime()), is(m_startNanos));
+    assertThat(header.numberOfSamples(), is(m_samples.length));
+    assertThat(header.extraHeaderFields().getJSONObject("FDSN").has("Sequence"), is(false));
+    assertThat(samples(repacked), is(m_samples));
+    assertThat(
+        repacked.get(0).length(),
+        lessThanOrEqualTo(m_records.get(0).length() + m_records.get(1).length()));
+  }
+
+  @Test
+  void testRecordsNoLongerThanTargetLength() {
+    int recordLength = Repacker.MIN_RECORD_LENGTH + 64;
+    List<DataRecord3> repacked = repack(new Repacker(recordLength, Duration.ofDays(1)), m_records);
+
+    assertThat(repacked.size(), greaterThan(2));
+    assertThat(
+        repacked.stream().map(DataRecord3::length).toList(),
+        everyItem(lessThanOrEqualTo(recordLength)));
+    assertThat(samples(repacked), is(m_samples));
+    assertContiguous(repacked);
+  }
+
+  @Test
+  void testRecordsNoLongerThanMaxDuration() {
+    int maxSamples = 50;
+    List<DataRecord3> repacked =
+        repack(
+            new Repacker(
+                Repacker.DEFAULT_RECORD_LENGTH, Duration.ofNanos(maxSamples * m_periodNanos)),
+            m_records);
+
+    assertThat(
+        repacked.stream().map(record -> record.header().numberOfSamples()).toList(),
+        everyItem(lessThanOrEqualTo(maxSamples)));
+    assertThat(samples(repacked), is(m_samples));
+    assertContiguous(repacked);
+  }
+
+  @Test
+  void testGapStartsNewRecord() {
+    DataRecord3 first = toMiniSeed3(m_records.get(0));
+    DataRecord3 second = toMiniSeed3(m_records.get(1));
+    DataRecord3 late =
+        withHeader(
+            second,
+            second.header().toBuilder()
+                .crc(0)
+                .recordStartTime(second.header().recordStartTime().plusSeconds(10))
+                .build());
+
+    assertThat(repack(new Repacker(), List.of(first, second)).size(), is(1));
+    List<DataRecord3> repacked = repack(new Repacker(), List.of(first, late));
+    assertThat(repacked.size(), is(2));
+    assertThat(repacked.get(1).header().recordStartTime(), is(late.header().recordStartTime()));
+    assertThat(samples(repacked), is(m_samples));
+  }
+
+  @Test
+  void testFlagChangeStartsNewRecord() {
+    DataRecord3 first = toMiniSeed3(m_records.get(0));
+    DataRecord3 second = toMiniSeed3(m_records.get(1));
+    DataRecord3 flagged =
+        withHeader(
+            second,
+            second.header().toBuilder()
+                .crc(0)
+                .flags(DataRecord3Header.Flags.builder().timeTagIsQuestionable(true).build())
+                .build());
+
+    List<DataRecord3> repacked = repack(new Repacker(), List.of(first, flagged));
+    assertThat(repacked.size(), is(2));
+    assertThat(repacked.get(0).header().flags().timeTagIsQuestionable(), is(false));
+    assertThat(repacked.get(1).header().flags().timeTagIsQuestionable(), is(true));
+    assertThat(samples(repacked), is(m_samples));
+  }
+
+  @Test
+  void testFloatSamplesKeepEncoding() {
+    DataRecord3 steim = toMiniSeed3(m_records.get(0));
+    byte[] payload = new byte[4 * 10];
+    for (int i = 0; i < 10; i++) {
+      LittleEndian.get().writeFloat(payload, i * 4, i + 0.5f);
+    }
+    DataRecord3 floats =
+        DataRecord3.builder()
+            .header(
+                steim.header().toBuilder()
+                    .crc(0)
+                    .dataPayloadEncoding(DataEncoding.FLOAT_32BIT)
+                    .numberOfSamples(10)
+                    .lengthOfDataPayload(payload.length)
+                    .build())
+            .payload(payload)
+            .build();
+
+    DataRecord3 next =
+        withHeader(
+            floats,
+            floats.header().toBuilder()
+                .crc(0)
+                .recordStartTime(floats.header().recordStartTime().plusNanos(10 * m_periodNanos))
+                .build());
+
+    List<DataRecord3> repacked = repack(new Repacker(), List.of(floats, next));
+    assertThat(repacked.size(), is(1));
+    assertThat(repacked.get(0).header().dataPayloadEncoding(), is(DataEncoding.FLOAT_32BIT));
+    assertThat(repacked.get(0).header().numberOfSamples(), is(20));
+    float[] expected = new float[20];
+    for (int i = 0; i < expected.length; i++) {
+      expected[i] = i % 10 + 0.5f;
+    }
+    assertThat(repacked.get(0).samples().floatSamples(), is(expected));
+  }
+
+  @Test
+  void testInvalidArguments() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new Repacker(Repacker.MIN_RECORD_LENGTH - 1, Duration.ofHours(1)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new Repacker(Repacker.DEFAULT_RECORD_LENGTH, Duration.ZERO));
+  }
+
+  private void assertContiguous(List<DataRecord3> records) {
+    long expected = m_startNanos;
+    for (DataRecord3 record : records) {
+      long start = NanoTime.toEpochNanos(record.header().recordStartTime());
+      assertThat(Math.abs(start - expected), lessThanOrEqualTo(1L));
+      expected = start + record.header().numberOfSamples() * m_periodNanos;
+    }
+  }
+
+  private static List<DataRecord3> repack(Repacker repacker, List<? extends DataRecord> records) {
+    try (Stream<DataRecord3> repacked =
+        repacker.apply(records.stream().map(DataRecord.class::cast))) {
+      return repacked.toList();
+    }
+  }
+
+  private static int[] samples(List<? extends DataRecord> records) {
+    return records.stream()
+        .flatMapToInt(record -> IntStream.of(record.samples().intSamples()))
+        .toArray();
+  }
+
+  private static DataRecord3 toMiniSeed3(DataRecord record) {
+    DataRecord2 v2Record = (DataRecord2) record;
+    try {
+      return DataRecord3.read(
+          new ByteArrayInputStream(
+              DataRecord2To3.toRecord(v2Record.header(), DataEncoding.STEIM1, v2Record.payload())));
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static DataRecord3 withHeader(DataRecord3 record, DataRecord3Header header) {
+    return DataRecord3.builder().header(header).payload(record.payload()).build();
+  }
+}
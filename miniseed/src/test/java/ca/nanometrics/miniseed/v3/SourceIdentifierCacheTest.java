@@ -0,0 +1,117 @@
+package ca.nanometrics.miniseed.v3;
+
+/*-
+ * #%L
+ * miniseed
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.SourceIdentifier;
+import ca.nanometrics.miniseed.encoding.DataEncoding;
+import ca.nanometrics.miniseed.endian.LittleEndian;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.Test;
+
+class SourceIdentifierCacheTest {
+
+  @Test
+  public void testInternSharesInstances() {
+    byte[] bytes = "xxFDSN:NX_STN1_00_B_H_Zxx".getBytes(StandardCharsets.US_ASCII);
+    SourceIdentifier first = SourceIdentifierCache.intern(bytes, 2, 21);
+    SourceIdentifier second =
+        SourceIdentifierCache.intern(
+            "FDSN:NX_STN1_00_B_H_Z".getBytes(StandardCharsets.US_ASCII), 0, 21);
+    assertThat(second, is(sameInstance(first)));
+    assertThat(first.toString(), is("FDSN:NX_STN1_00_B_H_Z"));
+    assertThat(first.channel(), is("B_H_Z"));
+
+    SourceIdentifier other =
+        SourceIdentifierCache.intern(
+            "FDSN:NX_STN1_00_B_H_N".getBytes(StandardCharsets.US_ASCII), 0, 21);
+    assertThat(other, is(not(first)));
+  }
+
+  @Test
+  public void testInternInvalid() {
+    byte[] bytes = "FDSN:NX".getBytes(StandardCharsets.US_ASCII);
+    assertThrows(
+        IllegalArgumentException.class, () -> SourceIdentifierCache.intern(bytes, 0, bytes.length));
+  }
+
+  @Test
+  public void testEquality() {
+    UriSourceIdentifier identifier =
+        UriSourceIdentifier.builder().network("NX").station("STN1").channel("BHZ").build();
+    UriSourceIdentifier same =
+        UriSourceIdentifier.builder().network("NX").station("STN1").channel("BHZ").build();
+    assertThat(identifier, is(same));
+    assertThat(identifier.hashCode(), is(same.hashCode()));
+    assertThat(
+        identifier,
+        is(
+            not(
+                UriSourceIdentifier.builder()
+                    .network("NX")
+                    .station("STN2")
+                    .channel("BHZ")
+                    .build())));
+  }
+
+  @Test
+  public void testReadSharesIdentifier() throws IOException {
+    int[] samples = {1, 2, 3, 4};
+    DataRecord3Header header =
+        DataRecord3Header.builder()
+            .flags(DataRecord3Header.Flags.builder().build())
+            .recordStartTime(OffsetDateTime.of(2023, 1, 2, 3, 4, 5, 6, ZoneOffset.UTC))
+            .dataPayloadEncoding(DataEncoding.INTEGER_32BIT)
+            .sampleRate(100)
+            .numberOfSamples(samples.length)
+            .dataPublicationVersion((short) 1)
+            .sourceIdentifier(
+                UriSourceIdentifier.builder().network("NX").station("STN1").channel("BHZ").build())
+            .lengthOfDataPayload(4 * samples.length)
+            .build();
+    byte[] payload = new byte[4 * samples.length];
+    for (int i = 0; i < samples.length; i++) {
+      LittleEndian.get().writeInt(payload, 4 * i, samples[i]);
+    }
+    byte[] bytes = DataRecord3.builder().header(header).payload(payload).build().toByteArray();
+
+    DataRecord3 first = DataRecord3.read(new ByteArrayInputStream(bytes));
+    DataRecord3 second = DataRecord3.read(new ByteArrayInputStream(bytes));
+    assertThat(
+        second.header().sourceIdentifier(), is(sameInstance(first.header().sourceIdentifier())));
+    assertThat(first.header().lengthOfIdentifier(), is("FDSN:NX_STN1__B_H_Z".length()));
+    assertThat(first.samples().intSamples(), is(samples));
+
+    // corrupt a sample, which must fail the CRC check
+    bytes[bytes.length - 1]++;
+    assertThrows(
+        IllegalArgumentException.class, () -> DataRecord3.read(new ByteArrayInputStream(bytes)));
+  }
+}
@@ -21,6 +21,8 @@ package ca.nanometrics.miniseed.msx;
  */
 
 import ca.nanometrics.miniseed.msx.convert.MiniSeed2To3;
+import ca.nanometrics.miniseed.msx.convert.MiniSeedRepack;
+import ca.nanometrics.miniseed.msx.convert.MiniSeedToArrow;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.logging.Handler;
@@ -38,7 +40,7 @@ import picocli.CommandLine.Option;
     mixinStandardHelpOptions = true,
     sortOptions = false,
     versionProvider = MsxVersionProvider.class,
-    subcommands = {MiniSeed2To3.class})
+    subcommands = {MiniSeed2To3.class, MiniSeedToArrow.class, MiniSeedRepack.class})
 public class Msx {
 
   @Option(
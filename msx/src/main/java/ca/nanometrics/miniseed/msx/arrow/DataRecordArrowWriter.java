@@ -0,0 +1,264 @@
+package ca.nanometrics.miniseed.msx.arrow;
+
+/*-
+ * #%L
+ * msx
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.msx.arrow.DataRecordBatch.Column;
+import ca.nanometrics.miniseed.msx.arrow.FlatBuffer.Str;
+import ca.nanometrics.miniseed.msx.arrow.FlatBuffer.StructVector;
+import ca.nanometrics.miniseed.msx.arrow.FlatBuffer.Table;
+import ca.nanometrics.miniseed.msx.arrow.FlatBuffer.TableVector;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes data records to an <a href="https://arrow.apache.org/docs/format/Columnar.html">Apache
+ * Arrow IPC file</a>, one row per record, with the schema:
+ *
+ * <pre>
+ * sid:             utf8
+ * start_time:      timestamp[ns, tz=UTC]
+ * sample_rate:     float64
+ * sample_count:    int32
+ * encoding:        int8
+ * samples_int:     list&lt;int32&gt;    (null unless samples are integers)
+ * samples_float64: list&lt;float64&gt;  (null unless samples are floating point)
+ * </pre>
+ *
+ * <p>Records are grouped into one record batch per source identifier. A channel's batch is written
+ * once it holds {@link #DEFAULT_RECORDS_PER_BATCH} records, and any partial batches are written on
+ * {@link #close()}, after which the file footer is written.
+ */
+public class DataRecordArrowWriter implements Closeable {
+  public static final int DEFAULT_RECORDS_PER_BATCH = 1024;
+
+  private static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+  private static final int CONTINUATION = 0xFFFFFFFF;
+  private static final short METADATA_VERSION_V5 = 4;
+  private static final byte HEADER_SCHEMA = 1;
+  private static final byte HEADER_RECORD_BATCH = 3;
+  private static final byte TYPE_INT = 2;
+  private static final byte TYPE_FLOATING_POINT = 3;
+  private static final byte TYPE_UTF8 = 5;
+  private static final byte TYPE_TIMESTAMP = 10;
+  private static final byte TYPE_LIST = 12;
+  private static final short PRECISION_DOUBLE = 2;
+  private static final short TIME_UNIT_NANOSECOND = 3;
+
+  private final WritableByteChannel m_channel;
+  private final int m_recordsPerBatch;
+  private final Map<String, DataRecordBatch> m_batches = new LinkedHashMap<>();
+  private final List<Block> m_blocks = new ArrayList<>();
+  private long m_position;
+  private boolean m_closed;
+
+  public DataRecordArrowWriter(Path path) throws IOException {
+    this(
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE),
+        DEFAULT_RECORDS_PER_BATCH);
+  }
+
+  public DataRecordArrowWriter(WritableByteChannel channel, int recordsPerBatch)
+      throws IOException {
+    if (recordsPerBatch < 1) {
+      throw new IllegalArgumentException("Records per batch must be positive: " + recordsPerBatch);
+    }
+    m_channel = channel;
+    m_recordsPerBatch = recordsPerBatch;
+    write(ByteBuffer.wrap(MAGIC));
+    write(ByteBuffer.allocate(2)); // pad to 8 bytes
+    writeMessage(HEADER_SCHEMA, schema(), 0);
+  }
+
+  /** Add a record to its channel's batch, writing the batch out if it is full. */
+  public void write(DataRecord record) throws IOException {
+    if (m_closed) {
+      throw new IllegalStateException("Writer is closed");
+    }
+    String sid = record.header().sourceIdentifier().toString();
+    DataRecordBatch batch = m_batches.computeIfAbsent(sid, key -> new DataRecordBatch());
+    batch.add(record);
+    if (batch.rows() >= m_recordsPerBatch) {
+      writeBatch(batch);
+      m_batches.remove(sid);
+    }
+  }
+
+  /** Write all partially filled batches. */
+  public void flush() throws IOException {
+    for (DataRecordBatch batch : m_batches.values()) {
+      writeBatch(batch);
+    }
+    m_batches.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (m_closed) {
+      return;
+    }
+    try {
+      flush();
+      // end of stream marker, then the footer
+      write(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putInt(CONTINUATION).flip());
+      byte[] footer = FlatBuffer.serialize(footer());
+      write(ByteBuffer.wrap(footer));
+      write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(footer.length).flip());
+      write(ByteBuffer.wrap(MAGIC));
+    } finally {
+      m_closed = true;
+      m_channel.close();
+    }
+  }
+
+  private void writeBatch(DataRecordBatch batch) throws IOException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    List<Column> buffers = batch.buffers();
+    ByteBuffer bufferStructs =
+        ByteBuffer.allocate(16 * buffers.size()).order(ByteOrder.LITTLE_ENDIAN);
+    long bodyLength = 0;
+    for (Column buffer : buffers) {
+      bufferStructs.putLong(bodyLength).putLong(buffer.size());
+      bodyLength += FlatBuffer.alignUp(buffer.size(), 8);
+    }
+    long[][] fieldNodes = batch.fieldNodes();
+    ByteBuffer nodeStructs =
+        ByteBuffer.allocate(16 * fieldNodes.length).order(ByteOrder.LITTLE_ENDIAN);
+    for (long[] node : fieldNodes) {
+      nodeStructs.putLong(node[0]).putLong(node[1]);
+    }
+    Table recordBatch =
+        new Table()
+            .addLong(0, batch.rows())
+            .addOffset(1, new StructVector(fieldNodes.length, 8, nodeStructs.array()))
+            .addOffset(2, new StructVector(buffers.size(), 8, bufferStructs.array()));
+    writeMessage(HEADER_RECORD_BATCH, recordBatch, bodyLength);
+    byte[] padding = new byte[8];
+    for (Column buffer : buffers) {
+      write(buffer.contents());
+      write(ByteBuffer.wrap(padding, 0, FlatBuffer.alignUp(buffer.size(), 8) - buffer.size()));
+    }
+  }
+
+  private void writeMessage(byte headerType, Table header, long bodyLength) throws IOException {
+    Table message =
+        new Table()
+            .addShort(0, METADATA_VERSION_V5)
+            .addByte(1, headerType)
+            .addOffset(2, header)
+            .addLong(3, bodyLength);
+    byte[] metadata = FlatBuffer.serialize(message);
+    long offset = m_position;
+    write(
+        ByteBuffer.allocate(8)
+            .order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(CONTINUATION)
+            .putInt(metadata.length)
+            .flip());
+    write(ByteBuffer.wrap(metadata));
+    if (headerType == HEADER_RECORD_BATCH) {
+      m_blocks.add(new Block(offset, 8 + metadata.length, bodyLength));
+    }
+  }
+
+  private void write(ByteBuffer buffer) throws IOException {
+    m_position += buffer.remaining();
+    while (buffer.hasRemaining()) {
+      m_channel.write(buffer);
+    }
+  }
+
+  private Table footer() {
+    ByteBuffer blocks = ByteBuffer.allocate(24 * m_blocks.size()).order(ByteOrder.LITTLE_ENDIAN);
+    for (Block block : m_blocks) {
+      blocks.putLong(block.offset()).putInt(block.metadataLength()).putInt(0);
+      blocks.putLong(block.bodyLength());
+    }
+    return new Table()
+        .addShort(0, METADATA_VERSION_V5)
+        .addOffset(1, schema())
+        .addOffset(3, new StructVector(m_blocks.size(), 8, blocks.array()));
+  }
+
+  private static Table schema() {
+    Table timestamp = new Table().addShort(0, TIME_UNIT_NANOSECOND).addOffset(1, new Str("UTC"));
+    return new Table()
+        .addShort(0, 0) // little endian
+        .addOffset(
+            1,
+            new TableVector(
+                List.of(
+                    field("sid", false, TYPE_UTF8, new Table()),
+                    field("start_time", false, TYPE_TIMESTAMP, timestamp),
+                    field("sample_rate", false, TYPE_FLOATING_POINT, float64()),
+                    field("sample_count", false, TYPE_INT, integer(32)),
+                    field("encoding", false, TYPE_INT, integer(8)),
+                    field(
+                        "samples_int",
+                        true,
+                        TYPE_LIST,
+                        new Table(),
+                        field("item", false, TYPE_INT, integer(32))),
+                    field(
+                        "samples_float64",
+                        true,
+                        TYPE_LIST,
+                        new Table(),
+                        field("item", false, TYPE_FLOATING_POINT, float64())))));
+  }
+
+  private static Table field(
+      String name, boolean nullable, byte typeType, Table type, Table... children) {
+    return new Table()
+        .addOffset(0, new Str(name))
+        .addBool(1, nullable)
+        .addByte(2, typeType)
+        .addOffset(3, type)
+        .addOffset(5, new TableVector(List.of(children)));
+  }
+
+  private static Table integer(int bitWidth) {
+    return new Table().addInt(0, bitWidth).addBool(1, true);
+  }
+
+  private static Table float64() {
+    return new Table().addShort(0, PRECISION_DOUBLE);
+  }
+
+  private record Block(long offset, int metadataLength, long bodyLength) {}
+}
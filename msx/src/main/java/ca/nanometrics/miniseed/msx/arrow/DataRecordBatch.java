@@ -0,0 +1,229 @@
+package ca.nanometrics.miniseed.msx.arrow;
+
+/*-
+ * #%L
+ * msx
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.DataRecordHeader;
+import ca.nanometrics.miniseed.Samples;
+import ca.nanometrics.miniseed.util.NanoTime;
+import ca.nanometrics.miniseed.v2.DataRecord2Header;
+import ca.nanometrics.miniseed.v3.DataRecord3Header;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accumulates the columns of one Arrow record batch. Each data record becomes one row; decoded
+ * samples are copied straight from the {@link Samples} arrays into the list child vectors.
+ */
+final class DataRecordBatch {
+  private final Column m_sid = new Column();
+  private final Column m_sidOffsets = new Column();
+  private final Column m_startTimes = new Column();
+  private final Column m_sampleRates = new Column();
+  private final Column m_sampleCounts = new Column();
+  private final Column m_encodings = new Column();
+  private final Column m_intValidity = new Column();
+  private final Column m_intOffsets = new Column();
+  private final Column m_intValues = new Column();
+  private final Column m_doubleValidity = new Column();
+  private final Column m_doubleOffsets = new Column();
+  private final Column m_doubleValues = new Column();
+  private int m_rows;
+  private int m_intNulls;
+  private int m_doubleNulls;
+  private int m_numIntValues;
+  private int m_numDoubleValues;
+
+  DataRecordBatch() {
+    m_sidOffsets.putInt(0);
+    m_intOffsets.putInt(0);
+    m_doubleOffsets.putInt(0);
+  }
+
+  void add(DataRecord record) {
+    DataRecordHeader header = record.header();
+    m_sid.putBytes(header.sourceIdentifier().toString().getBytes(StandardCharsets.UTF_8));
+    m_sidOffsets.putInt(m_sid.size());
+    m_startTimes.putLong(NanoTime.toEpochNanos(header.recordStartTime()));
+    m_sampleRates.putDouble(header.sampleRate().sampleRateDouble());
+    m_sampleCounts.putInt(header.numberOfSamples());
+    m_encodings.putByte(encodingCode(header));
+
+    Samples samples = record.samples();
+    switch (samples.type()) {
+      case INTEGER -> {
+        int[] values = samples.intSamples();
+        m_intValues.putInts(values);
+        m_numIntValues += values.length;
+        setValid(m_intValidity, true);
+        setValid(m_doubleValidity, false);
+        m_doubleNulls++;
+      }
+      case FLOAT -> {
+        float[] values = samples.floatSamples();
+        for (float value : values) {
+          m_doubleValues.putDouble(value);
+        }
+        m_numDoubleValues += values.length;
+        setValid(m_intValidity, false);
+        m_intNulls++;
+        setValid(m_doubleValidity, true);
+      }
+      case DOUBLE -> {
+        double[] values = samples.doubleSamples();
+        m_doubleValues.putDoubles(values);
+        m_numDoubleValues += values.length;
+        setValid(m_intValidity, false);
+        m_intNulls++;
+        setValid(m_doubleValidity, true);
+      }
+      default -> {
+        setValid(m_intValidity, false);
+        m_intNulls++;
+        setValid(m_doubleValidity, false);
+        m_doubleNulls++;
+      }
+    }
+    m_intOffsets.putInt(m_numIntValues);
+    m_doubleOffsets.putInt(m_numDoubleValues);
+    m_rows++;
+  }
+
+  private void setValid(Column validity, boolean valid) {
+    int index = m_rows;
+    if (index % 8 == 0) {
+      validity.putByte(0);
+    }
+    if (valid) {
+      validity.orByte(index / 8, 1 << (index % 8));
+    }
+  }
+
+  private static int encodingCode(DataRecordHeader header) {
+    if (header instanceof DataRecord3Header v3) {
+      return v3.dataPayloadEncoding().code();
+    } else if (header instanceof DataRecord2Header v2 && v2.dataOnlyBlockette() != null) {
+      return v2.dataOnlyBlockette().encodingFormat().code();
+    }
+    return -1;
+  }
+
+  int rows() {
+    return m_rows;
+  }
+
+  boolean isEmpty() {
+    return m_rows == 0;
+  }
+
+  /** The field nodes, as (length, null count) pairs, in schema depth-first order. */
+  long[][] fieldNodes() {
+    return new long[][] {
+      {m_rows, 0}, // sid
+      {m_rows, 0}, // start_time
+      {m_rows, 0}, // sample_rate
+      {m_rows, 0}, // sample_count
+      {m_rows, 0}, // encoding
+      {m_rows, m_intNulls}, // samples_int
+      {m_numIntValues, 0}, // samples_int.item
+      {m_rows, m_doubleNulls}, // samples_float64
+      {m_numDoubleValues, 0}, // samples_float64.item
+    };
+  }
+
+  /** The buffers making up the batch body, in schema depth-first order. */
+  List<Column> buffers() {
+    Column none = new Column();
+    List<Column> buffers = new ArrayList<>();
+    buffers.addAll(List.of(none, m_sidOffsets, m_sid));
+    buffers.addAll(List.of(none, m_startTimes));
+    buffers.addAll(List.of(none, m_sampleRates));
+    buffers.addAll(List.of(none, m_sampleCounts));
+    buffers.addAll(List.of(none, m_encodings));
+    buffers.addAll(List.of(m_intValidity, m_intOffsets, none, m_intValues));
+    buffers.addAll(List.of(m_doubleValidity, m_doubleOffsets, none, m_doubleValues));
+    return buffers;
+  }
+
+  /** A growable little endian byte buffer holding the contents of one Arrow buffer. */
+  static final class Column {
+    private ByteBuffer m_buffer = ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+
+    int size() {
+      return m_buffer.position();
+    }
+
+    ByteBuffer contents() {
+      return ByteBuffer.wrap(m_buffer.array(), 0, size());
+    }
+
+    void putByte(int value) {
+      ensureRemaining(1).put((byte) value);
+    }
+
+    void orByte(int index, int mask) {
+      m_buffer.put(index, (byte) (m_buffer.get(index) | mask));
+    }
+
+    void putInt(int value) {
+      ensureRemaining(4).putInt(value);
+    }
+
+    void putLong(long value) {
+      ensureRemaining(8).putLong(value);
+    }
+
+    void putDouble(double value) {
+      ensureRemaining(8).putDouble(value);
+    }
+
+    void putBytes(byte[] values) {
+      ensureRemaining(values.length).put(values);
+    }
+
+    void putInts(int[] values) {
+      ByteBuffer buffer = ensureRemaining(4 * values.length);
+      buffer.asIntBuffer().put(values);
+      buffer.position(buffer.position() + 4 * values.length);
+    }
+
+    void putDoubles(double[] values) {
+      ByteBuffer buffer = ensureRemaining(8 * values.length);
+      buffer.asDoubleBuffer().put(values);
+      buffer.position(buffer.position() + 8 * values.length);
+    }
+
+    private ByteBuffer ensureRemaining(int length) {
+      if (m_buffer.remaining() < length) {
+        int capacity = Math.max(m_buffer.capacity() * 2, m_buffer.position() + length);
+        m_buffer =
+            ByteBuffer.wrap(Arrays.copyOf(m_buffer.array(), Math.max(capacity, 64)))
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .position(m_buffer.position());
+      }
+      return m_buffer;
+    }
+  }
+}
@@ -0,0 +1,254 @@
+package ca.nanometrics.miniseed.msx.arrow;
+
+/*-
+ * #%L
+ * msx
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A minimal <a href="https://flatbuffers.dev/flatbuffers_internals.html">FlatBuffers</a> writer,
+ * sufficient for the Arrow IPC metadata (Schema, Message and Footer tables).
+ *
+ * <p>Unlike the reference builder, which serializes back to front, objects are laid out front to
+ * back: a table is written first, followed by the objects it references, so every unsigned offset
+ * points forward as the format requires.
+ */
+final class FlatBuffer {
+
+  private FlatBuffer() {
+    // static methods only
+  }
+
+  sealed interface Node permits Table, TableVector, StructVector, Str {}
+
+  static final class Table implements Node {
+    private final List<Field> m_fields = new ArrayList<>();
+
+    Table addBool(int slot, boolean value) {
+      return add(slot, 1, value ? 1 : 0, null);
+    }
+
+    Table addByte(int slot, int value) {
+      return add(slot, 1, value, null);
+    }
+
+    Table addShort(int slot, int value) {
+      return add(slot, 2, value, null);
+    }
+
+    Table addInt(int slot, int value) {
+      return add(slot, 4, value, null);
+    }
+
+    Table addLong(int slot, long value) {
+      return add(slot, 8, value, null);
+    }
+
+    Table addOffset(int slot, Node node) {
+      return add(slot, 4, 0, node);
+    }
+
+    private Table add(int slot, int size, long value, Node reference) {
+      m_fields.add(new Field(slot, size, value, reference));
+      return this;
+    }
+  }
+
+  record TableVector(List<? extends Node> elements) implements Node {}
+
+  /** A vector of fixed size structs, already encoded as little endian bytes. */
+  record StructVector(int count, int alignment, byte[] bytes) implements Node {}
+
+  record Str(String value) implements Node {}
+
+  private record Field(int slot, int size, long value, Node reference) {}
+
+  /** Serialize the given root table, padding the result to a multiple of 8 bytes. */
+  static byte[] serialize(Table root) {
+    Writer writer = new Writer();
+    writer.putInt(0); // placeholder for root offset
+    int rootPosition = writer.write(root);
+    writer.patchInt(0, rootPosition);
+    writer.align(8);
+    return writer.toByteArray();
+  }
+
+  private static final class Writer {
+    private ByteBuffer m_buffer = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+
+    int write(Node node) {
+      if (node instanceof Table table) {
+        return writeTable(table);
+      } else if (node instanceof TableVector vector) {
+        return writeTableVector(vector);
+      } else if (node instanceof StructVector vector) {
+        return writeStructVector(vector);
+      } else {
+        return writeString((Str) node);
+      }
+    }
+
+    private int writeTable(Table table) {
+      List<Field> fields = new ArrayList<>(table.m_fields);
+      // largest first, so each field is naturally aligned within the table
+      fields.sort(Comparator.comparingInt(Field::size).reversed());
+      int numSlots = fields.stream().mapToInt(Field::slot).max().orElse(-1) + 1;
+      int[] slotOffsets = new int[numSlots];
+      int[] fieldOffsets = new int[fields.size()];
+      int tableAlignment = 4;
+      int tableSize = 4; // soffset to vtable
+      for (int i = 0; i < fields.size(); i++) {
+        Field field = fields.get(i);
+        tableSize = alignUp(tableSize, field.size());
+        fieldOffsets[i] = tableSize;
+        slotOffsets[field.slot()] = tableSize;
+        tableSize += field.size();
+        tableAlignment = Math.max(tableAlignment, field.size());
+      }
+
+      align(2);
+      int vtablePosition = position();
+      putShort(4 + 2 * numSlots);
+      putShort(tableSize);
+      for (int slotOffset : slotOffsets) {
+        putShort(slotOffset);
+      }
+      align(tableAlignment);
+      int tablePosition = position();
+      putInt(tablePosition - vtablePosition);
+      ensureCapacity(tablePosition + tableSize);
+      for (int i = 0; i < fields.size(); i++) {
+        Field field = fields.get(i);
+        int fieldPosition = tablePosition + fieldOffsets[i];
+        switch (field.size()) {
+          case 1 -> m_buffer.put(fieldPosition, (byte) field.value());
+          case 2 -> m_buffer.putShort(fieldPosition, (short) field.value());
+          case 4 -> m_buffer.putInt(fieldPosition, (int) field.value());
+          case 8 -> m_buffer.putLong(fieldPosition, field.value());
+          default -> throw new IllegalStateException("Unexpected field size " + field.size());
+        }
+      }
+      m_buffer.position(tablePosition + tableSize);
+      for (int i = 0; i < fields.size(); i++) {
+        Field field = fields.get(i);
+        if (field.reference() != null) {
+          int fieldPosition = tablePosition + fieldOffsets[i];
+          patchInt(fieldPosition, write(field.reference()) - fieldPosition);
+        }
+      }
+      return tablePosition;
+    }
+
+    private int writeTableVector(TableVector vector) {
+      align(4);
+      int vectorPosition = position();
+      putInt(vector.elements().size());
+      int firstElement = position();
+      for (int i = 0; i < vector.elements().size(); i++) {
+        putInt(0); // placeholder
+      }
+      for (int i = 0; i < vector.elements().size(); i++) {
+        int elementPosition = firstElement + 4 * i;
+        patchInt(elementPosition, write(vector.elements().get(i)) - elementPosition);
+      }
+      return vectorPosition;
+    }
+
+    private int writeStructVector(StructVector vector) {
+      // the elements, not the length prefix, must be aligned
+      while ((position() + 4) % vector.alignment() != 0) {
+        putByte(0);
+      }
+      int vectorPosition = position();
+      putInt(vector.count());
+      putBytes(vector.bytes());
+      return vectorPosition;
+    }
+
+    private int writeString(Str string) {
+      byte[] bytes = string.value().getBytes(StandardCharsets.UTF_8);
+      align(4);
+      int stringPosition = position();
+      putInt(bytes.length);
+      putBytes(bytes);
+      putByte(0);
+      return stringPosition;
+    }
+
+    int position() {
+      return m_buffer.position();
+    }
+
+    void align(int alignment) {
+      while (position() % alignment != 0) {
+        putByte(0);
+      }
+    }
+
+    void putByte(int value) {
+      ensureCapacity(position() + 1);
+      m_buffer.put((byte) value);
+    }
+
+    void putShort(int value) {
+      ensureCapacity(position() + 2);
+      m_buffer.putShort((short) value);
+    }
+
+    void putInt(int value) {
+      ensureCapacity(position() + 4);
+      m_buffer.putInt(value);
+    }
+
+    void putBytes(byte[] bytes) {
+      ensureCapacity(position() + bytes.length);
+      m_buffer.put(bytes);
+    }
+
+    void patchInt(int position, int value) {
+      m_buffer.putInt(position, value);
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > m_buffer.capacity()) {
+        ByteBuffer buffer =
+            ByteBuffer.allocate(Math.max(capacity, m_buffer.capacity() * 2))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int position = m_buffer.position();
+        buffer.put(m_buffer.array(), 0, position);
+        m_buffer = buffer;
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(m_buffer.array(), position());
+    }
+  }
+
+  static int alignUp(int value, int alignment) {
+    return (value + alignment - 1) / alignment * alignment;
+  }
+}
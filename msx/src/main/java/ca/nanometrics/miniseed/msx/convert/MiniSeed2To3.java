@@ -24,26 +24,26 @@ import ca.nanometrics.miniseed.DataRecord;
 import ca.nanometrics.miniseed.MiniSeed;
 import ca.nanometrics.miniseed.Sample;
 import ca.nanometrics.miniseed.Samples;
+import ca.nanometrics.miniseed.compression.Compression;
 import ca.nanometrics.miniseed.encoder.steim.Steim1Block;
 import ca.nanometrics.miniseed.encoder.steim.Steim1BlockProvider;
 import ca.nanometrics.miniseed.encoder.steim.Steim1Encoder;
 import ca.nanometrics.miniseed.encoder.steim.SteimBlockObserver;
 import ca.nanometrics.miniseed.encoding.DataEncoding;
 import ca.nanometrics.miniseed.endian.Endian;
+import ca.nanometrics.miniseed.util.BatchProcessor;
+import ca.nanometrics.miniseed.util.BatchProcessor.BatchResult;
+import ca.nanometrics.miniseed.util.BatchProcessor.Outcome;
 import ca.nanometrics.miniseed.v2.DataRecord2;
 import ca.nanometrics.miniseed.v2.DataRecord2Header;
-import ca.nanometrics.miniseed.v2.DataRecord2Header.QualityIndicator;
-import ca.nanometrics.miniseed.v2.Scnl;
-import ca.nanometrics.miniseed.v3.DataRecord3;
-import ca.nanometrics.miniseed.v3.DataRecord3Header;
-import ca.nanometrics.miniseed.v3.DataRecord3Header.Flags;
-import ca.nanometrics.miniseed.v3.DataRecord3Header.Float64SampleRate;
-import ca.nanometrics.miniseed.v3.ExtraHeader;
-import ca.nanometrics.miniseed.v3.UriSourceIdentifier;
+import ca.nanometrics.miniseed.v3.DataRecord2To3;
+import ca.nanometrics.miniseed.v3.RecordChannelWriter;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
@@ -54,7 +54,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.LongConsumer;
 import java.util.stream.Stream;
 import me.tongfei.progressbar.ProgressBar;
-import org.json.JSONObject;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
@@ -67,6 +66,9 @@ import picocli.CommandLine.Option;
 public class MiniSeed2To3 implements Runnable {
   static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(MiniSeed2To3.class);
 
+  /** Number of records each conversion thread may have in flight ahead of the writer. */
+  private static final int RECORDS_PER_THREAD = 16;
+
   @Option(
       paramLabel = "input",
       names = {"-i", "--input"},
@@ -86,40 +88,118 @@ public class MiniSeed2To3 implements Runnable {
       description = "Show progress of the conversion for each file.")
   private boolean showProgress;
 
+  @Option(
+      names = {"-t", "--threads"},
+      description =
+          "Number of threads converting records within each file, shared by all files"
+              + " (default: number of processors). With 1, records are converted as they are"
+              + " read. Records are always written in input order.")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  @Option(
+      names = {"-p", "--parallel-files"},
+      description =
+          "Number of files converted at once, each on its own thread (virtual threads where the"
+              + " runtime supports them), while directories are still being searched (default:"
+              + " 1). When more than 1, the records of each file are converted on the thread of"
+              + " the file, and --threads is ignored.")
+  private int parallelFiles = 1;
+
   @Override
   public void run() {
     createDirectories(outputDirectory);
-    for (File file : files) {
-      if (file.isFile()) {
-
-        convertFile(file, new File(outputDirectory, file.getName()));
-      } else if (file.isDirectory()) {
-        try {
-          Files.walk(file.toPath())
-              .filter(Files::isRegularFile)
-              .map(Path::toFile)
-              .forEach(
-                  f -> {
-                    File directory =
-                        new File(
-                            outputDirectory,
-                            file.toPath()
-                                .relativize(f.getParentFile().toPath())
-                                .toFile()
-                                .toString());
-                    createDirectories(directory);
-                    convertFile(f, new File(directory, f.getName()));
-                  });
-        } catch (IOException e) {
-          LOG.error("Could not search for files in " + file, e);
-        }
+    // one pool of conversion threads for all files, or none with a single thread; files converted
+    // in parallel each convert their own records, so the number of threads is bounded by the
+    // number of files
+    int recordThreads = parallelFiles <= 1 ? threads : 1;
+    try (Stream<Conversion> conversions = files.stream().flatMap(this::conversions);
+        OrderedPipeline<DataRecord, ConvertedRecord> pipeline =
+            new OrderedPipeline<>(recordThreads, recordThreads * RECORDS_PER_THREAD)) {
+      if (parallelFiles <= 1) {
+        conversions.forEach(conversion -> convertFileOrLog(conversion, pipeline));
       } else {
-        LOG.error("Unknown file type: {}", file);
+        convertInParallel(conversions, pipeline);
       }
     }
   }
 
-  private void createDirectories(File file) {
+  private void convertInParallel(
+      Stream<Conversion> conversions, OrderedPipeline<DataRecord, ConvertedRecord> pipeline) {
+    try {
+      BatchResult<Conversion, Integer> result =
+          new BatchProcessor(parallelFiles)
+              .process(
+                  conversions,
+                  conversion -> convertFile(conversion.input(), conversion.output(), pipeline));
+      LOG.info(
+          "Converted {} file{} ({} data records)",
+          result.succeeded(),
+          result.succeeded() != 1 ? "s" : "",
+          result.values().stream().mapToLong(Integer::longValue).sum());
+      for (Outcome<Conversion, Integer> failure : result.failures()) {
+        LOG.error("Could not convert " + failure.item().input(), failure.failure());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.error("Interrupted while converting files");
+    }
+  }
+
+  private record Conversion(File input, File output) {}
+
+  private void convertFileOrLog(
+      Conversion conversion, OrderedPipeline<DataRecord, ConvertedRecord> pipeline) {
+    try {
+      convertFile(conversion.input(), conversion.output(), pipeline);
+    } catch (IOException e) {
+      LOG.error("Error occurred while processing file " + conversion.input(), e);
+    }
+  }
+
+  /**
+   * @return the conversion of the file, or of each file under the directory, to the same relative
+   *     path under the output directory.
+   */
+  private Stream<Conversion> conversions(File file) {
+    if (file.isFile()) {
+      return Stream.of(new Conversion(file, new File(outputDirectory, outputName(file))));
+    }
+    if (file.isDirectory()) {
+      return regularFiles(file.toPath())
+          .map(Path::toFile)
+          .map(
+              f ->
+                  new Conversion(
+                      f, new File(outputDirectory(outputDirectory, file, f), outputName(f))));
+    }
+    LOG.error("Unknown file type: {}", file);
+    return Stream.empty();
+  }
+
+  /** The name of the converted file, which is not compressed even if the input was. */
+  static String outputName(File input) {
+    return Compression.stripAnyExtension(input.getName());
+  }
+
+  /**
+   * @param input a file given as input, or found under a directory given as input.
+   * @return the directory under the output directory for the output of the input file: the output
+   *     directory itself for a file given as input, otherwise the path of the input's directory
+   *     relative to the input directory, created if needed.
+   */
+  static File outputDirectory(File outputDirectory, File inputFileOrDirectory, File input) {
+    if (!inputFileOrDirectory.isDirectory()) {
+      return outputDirectory;
+    }
+    File directory =
+        new File(
+            outputDirectory,
+            inputFileOrDirectory.toPath().relativize(input.getParentFile().toPath()).toString());
+    createDirectories(directory);
+    return directory;
+  }
+
+  private static void createDirectories(File file) {
     try {
       Files.createDirectories(file.toPath());
     } catch (IOException e) {
@@ -127,73 +207,36 @@ public class MiniSeed2To3 implements Runnable {
     }
   }
 
-  private void convertFile(File input, File output) {
+  /**
+   * @return the number of records converted.
+   * @throws IOException if the input cannot be read or the output cannot be written.
+   */
+  private int convertFile(
+      File input, File output, OrderedPipeline<DataRecord, ConvertedRecord> pipeline)
+      throws IOException {
     AtomicInteger numDataRecords = new AtomicInteger(0);
     AtomicInteger totalBytes = new AtomicInteger(0);
 
     LOG.info("Processing file {} to {}", input, output);
 
-    try (Progress progressBar = getProgressBar(input)) {
-      MiniSeed.stream(input)
-          .forEach(
-              record -> {
-                DataRecord2 v2Record = (DataRecord2) record;
-                DataRecord2Header v2Header = v2Record.header();
-                Scnl scnl = v2Header.sourceIdentifier();
-                DataEncoding dataEncoding = v2Header.dataOnlyBlockette().encodingFormat();
-                byte[] payload = v2Record.payload();
-
-                if (v2Header.endian().type() == Endian.Type.LITTLE) {
-                  if (dataEncoding == DataEncoding.STEIM1) {
-                    payload = recodeToSteim1BigEndian(record);
-                  } else if (dataEncoding == DataEncoding.STEIM2) {
-                    // TODO: support either converting directly from Little to Big Endian in place,
-                    // or decoding and re-encoding the samples (as with Steim1 above)
-                    throw new IllegalStateException(
-                        String.format(
-                            "Miniseed v3 only supports Big Endian in %s, but cannot convert from"
-                                + " Little Endian to Big Endian here yet.",
-                            dataEncoding));
-                  }
-                }
-
-                DataRecord3Header v3Header =
-                    DataRecord3Header.builder()
-                        .sourceIdentifier(
-                            UriSourceIdentifier.builder()
-                                .network(scnl.network())
-                                .station(scnl.station())
-                                .location(scnl.location())
-                                .channel(scnl.channel())
-                                .build())
-                        .recordStartTime(v2Header.recordStartTime())
-                        .numberOfSamples(v2Header.numberOfSamples())
-                        .sampleRate(new Float64SampleRate(v2Header.sampleRate().sampleRateDouble()))
-                        .dataPayloadEncoding(dataEncoding)
-                        .lengthOfDataPayload(payload.length)
-                        .dataPublicationVersion(
-                            toDataPublicationVersion(v2Header.qualityIndicator()))
-                        .flags(toFlags(v2Header))
-                        .extraHeaderFields(toExtraHeaders(v2Header))
-                        .build();
-
-                DataRecord3 v3Record =
-                    DataRecord3.builder().header(v3Header).payload(payload).build();
-                try {
-                  if (!output.exists()) {
-                    Files.createFile(output.toPath());
-                  }
-                  Files.write(output.toPath(), v3Record.toByteArray(), StandardOpenOption.APPEND);
-                } catch (IOException e) {
-                  throw new RuntimeException(e);
-                }
-                progressBar.accept(v2Record.length());
-                totalBytes.addAndGet(v2Record.length());
-                numDataRecords.incrementAndGet();
-              });
-    } catch (IOException e) {
-      LOG.info("Error occurred while processing file {}: {}", input, e);
-      e.printStackTrace();
+    try (Progress progressBar = getProgressBar(input);
+        Stream<DataRecord> records = MiniSeed.stream(input);
+        RecordChannelWriter out =
+            new RecordChannelWriter(
+                FileChannel.open(
+                    output.toPath(),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND))) {
+      pipeline.run(
+          records.iterator(),
+          this::convertRecord,
+          converted -> {
+            out.write(converted.v3Record());
+            progressBar.accept(converted.v2Length());
+            totalBytes.addAndGet(converted.v2Length());
+            numDataRecords.incrementAndGet();
+          });
     }
 
     LOG.info(
@@ -202,8 +245,35 @@ public class MiniSeed2To3 implements Runnable {
         numDataRecords.get(),
         (numDataRecords.get() != 1 ? "s" : ""),
         totalBytes);
+    return numDataRecords.get();
   }
 
+  private ConvertedRecord convertRecord(DataRecord record) {
+    DataRecord2 v2Record = (DataRecord2) record;
+    DataRecord2Header v2Header = v2Record.header();
+    DataEncoding dataEncoding = v2Header.dataOnlyBlockette().encodingFormat();
+    byte[] payload = v2Record.payload();
+
+    if (v2Header.endian().type() == Endian.Type.LITTLE) {
+      if (dataEncoding == DataEncoding.STEIM1) {
+        payload = recodeToSteim1BigEndian(record);
+      } else if (dataEncoding == DataEncoding.STEIM2) {
+        // TODO: support either converting directly from Little to Big Endian in place,
+        // or decoding and re-encoding the samples (as with Steim1 above)
+        throw new IllegalStateException(
+            String.format(
+                "Miniseed v3 only supports Big Endian in %s, but cannot convert from"
+                    + " Little Endian to Big Endian here yet.",
+                dataEncoding));
+      }
+    }
+
+    return new ConvertedRecord(
+        DataRecord2To3.toRecord(v2Header, dataEncoding, payload), v2Record.length());
+  }
+
+  private record ConvertedRecord(byte[] v3Record, int v2Length) {}
+
   private byte[] recodeToSteim1BigEndian(DataRecord record) {
     Samples samples = record.samples();
     if (samples.type() != Samples.Type.INTEGER) {
@@ -232,50 +302,43 @@ public class MiniSeed2To3 implements Runnable {
     return result.get(0);
   }
 
-  private Flags toFlags(DataRecord2Header v2header) {
-    return Flags.builder()
-        .calibrationSignalPresent(v2header.activityFlags().calibrationSignalsPresent())
-        .timeTagIsQuestionable(v2header.dataQualityFlags().timeTagIsQuestionable())
-        .clockLocked(v2header.ioFlags().clockLocked())
-        .build();
-  }
-
-  private static short toDataPublicationVersion(QualityIndicator qualityIndicator) {
-    return switch (qualityIndicator) {
-      case RAW -> (short) 1;
-      case UNKNOWN -> (short) 2;
-      case QUALITY_CONTROLLED -> (short) 3;
-      case MODIFIED -> (short) 4;
-    };
-  }
-
-  private static JSONObject toExtraHeaders(DataRecord2Header v2header) {
-    JSONObject extraHeaders = new JSONObject();
-    for (ExtraHeader<?> header : ExtraHeader.FDSN_RESERVED_HEADERS) {
-      header.add(v2header, extraHeaders);
-    }
-    return extraHeaders;
-  }
-
   /**
-   * @return the file, or expand the directory to a list of files.
+   * @return the file, or expand the directory to a list of files. The stream holds the directories
+   *     open while they are listed, so must be closed.
    */
   static Stream<File> getInputFiles(File file) {
     if (file.isFile()) {
       return Stream.of(file);
     }
     if (file.isDirectory()) {
-      try {
-        return Files.walk(file.toPath()).filter(Files::isRegularFile).map(Path::toFile);
-      } catch (IOException e) {
-        LOG.error("Could not search for files in " + file, e);
-        return Stream.empty();
-      }
+      return regularFiles(file.toPath()).map(Path::toFile);
     }
     LOG.error("Unknown file type: {}", file);
     return Stream.empty();
   }
 
+  /**
+   * @return the regular files under the directory, found lazily as the directories are listed. A
+   *     directory that cannot be listed is logged and skipped, rather than ending the search.
+   *     Closing the stream closes the directories still open.
+   */
+  static Stream<Path> regularFiles(Path directory) {
+    Stream<Path> entries;
+    try {
+      entries = Files.list(directory);
+    } catch (IOException e) {
+      LOG.error("Could not search for files in " + directory, e);
+      return Stream.empty();
+    }
+    return entries.flatMap(
+        path -> {
+          if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            return regularFiles(path);
+          }
+          return Files.isRegularFile(path) ? Stream.of(path) : Stream.empty();
+        });
+  }
+
   private Progress getProgressBar(File file) {
     if (showProgress) {
       ProgressBar progressBar = new ProgressBar(file.getName(), file.length());
@@ -0,0 +1,125 @@
+package ca.nanometrics.miniseed.msx.convert;
+
+/*-
+ * #%L
+ * msx
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.v3.DataRecord3;
+import ca.nanometrics.miniseed.v3.RecordChannelWriter;
+import ca.nanometrics.miniseed.v3.Repacker;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(
+    name = "repack",
+    description = {
+      "Repack miniseed records into miniseed 3 records of a target length, merging contiguous"
+          + " records of the same channel.%n"
+    },
+    optionListHeading = "Options:%n",
+    mixinStandardHelpOptions = true,
+    sortOptions = false)
+public class MiniSeedRepack implements Runnable {
+  static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(MiniSeedRepack.class);
+
+  @Option(
+      paramLabel = "input",
+      names = {"-i", "--input"},
+      required = true,
+      description = "Input directory or file(s)")
+  private List<File> files;
+
+  @Option(
+      paramLabel = "output",
+      names = {"-o", "--output"},
+      required = true,
+      description = "Output directory")
+  private File outputDirectory;
+
+  @Option(
+      paramLabel = "bytes",
+      names = {"-r", "--record-length"},
+      description = "Target length in bytes of each output record.",
+      defaultValue = "" + Repacker.DEFAULT_RECORD_LENGTH)
+  private int recordLength;
+
+  @Option(
+      paramLabel = "duration",
+      names = {"-d", "--max-duration"},
+      description = "Maximum time spanned by each output record, as an ISO-8601 duration.",
+      defaultValue = "PT1H")
+  private Duration maxDuration;
+
+  @Override
+  public void run() {
+    try {
+      Files.createDirectories(outputDirectory.toPath());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    for (File file : files) {
+      try (Stream<File> inputs = MiniSeed2To3.getInputFiles(file)) {
+        inputs.forEach(
+            input ->
+                repackFile(
+                    input,
+                    new File(
+                        MiniSeed2To3.outputDirectory(outputDirectory, file, input),
+                        MiniSeed2To3.outputName(input))));
+      }
+    }
+  }
+
+  private void repackFile(File input, File output) {
+    LOG.info("Repacking file {} to {}", input, output);
+    Repacker repacker = new Repacker(recordLength, maxDuration);
+    try (Stream<DataRecord> records = MiniSeed.stream(input);
+        Stream<DataRecord3> repacked = repacker.apply(records);
+        RecordChannelWriter out =
+            new RecordChannelWriter(
+                FileChannel.open(
+                    output.toPath(),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE))) {
+      for (Iterator<DataRecord3> iterator = repacked.iterator(); iterator.hasNext(); ) {
+        out.write(iterator.next());
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Error occurred while repacking file " + input, e);
+    }
+    LOG.info(
+        "{} Repacked {} data record{} into {}",
+        input,
+        repacker.recordsRead(),
+        (repacker.recordsRead() != 1 ? "s" : ""),
+        repacker.recordsWritten());
+  }
+}
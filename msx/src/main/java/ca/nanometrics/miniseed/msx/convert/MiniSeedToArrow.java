@@ -0,0 +1,111 @@
+package ca.nanometrics.miniseed.msx.convert;
+
+/*-
+ * #%L
+ * msx
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.msx.arrow.DataRecordArrowWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+@Command(
+    name = "arrow",
+    description = {
+      "Export miniseed records and their decoded samples to Apache Arrow IPC files.%n"
+    },
+    optionListHeading = "Options:%n",
+    mixinStandardHelpOptions = true,
+    sortOptions = false)
+public class MiniSeedToArrow implements Runnable {
+  static final org.slf4j.Logger LOG = org.slf4j.LoggerFactory.getLogger(MiniSeedToArrow.class);
+
+  @Option(
+      paramLabel = "input",
+      names = {"-i", "--input"},
+      required = true,
+      description = "Input directory or file(s)")
+  private List<File> files;
+
+  @Option(
+      paramLabel = "output",
+      names = {"-o", "--output"},
+      required = true,
+      description = "Output directory")
+  private File outputDirectory;
+
+  @Option(
+      paramLabel = "records",
+      names = {"-b", "--batch-size"},
+      description = "Maximum number of records per channel in each record batch.",
+      defaultValue = "" + DataRecordArrowWriter.DEFAULT_RECORDS_PER_BATCH)
+  private int recordsPerBatch;
+
+  @Override
+  public void run() {
+    try {
+      Files.createDirectories(outputDirectory.toPath());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    for (File file : files) {
+      try (Stream<File> inputs = MiniSeed2To3.getInputFiles(file)) {
+        inputs.forEach(
+            input ->
+                exportFile(
+                    input,
+                    new File(
+                        MiniSeed2To3.outputDirectory(outputDirectory, file, input),
+                        input.getName() + ".arrow")));
+      }
+    }
+  }
+
+  private void exportFile(File input, File output) {
+    LOG.info("Exporting file {} to {}", input, output);
+    int numDataRecords = 0;
+    try (DataRecordArrowWriter writer =
+            new DataRecordArrowWriter(
+                FileChannel.open(
+                    output.toPath(),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE),
+                recordsPerBatch);
+        Stream<DataRecord> records = MiniSeed.stream(input)) {
+      for (Iterator<DataRecord> iterator = records.iterator(); iterator.hasNext(); ) {
+        writer.write(iterator.next());
+        numDataRecords++;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Error occurred while exporting file " + input, e);
+    }
+    LOG.info(
+        "{} Exported {} data record{}", input, numDataRecords, (numDataRecords != 1 ? "s" : ""));
+  }
+}
@@ -0,0 +1,156 @@
+package ca.nanometrics.miniseed.msx.convert;
+
+/*-
+ * #%L
+ * msx
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A three stage pipeline: a reader thread pulls items from the source and submits each to a pool of
+ * conversion workers, and the calling thread writes the converted items in source order.
+ *
+ * <p>The stages are connected by a bounded queue of pending conversions, in source order, so the
+ * reader stays at most {@code queueCapacity} items ahead of the writer, and memory use is bounded
+ * regardless of the size of the input.
+ *
+ * <p>The worker and reader threads are created once and reused by every {@link #run}, so one
+ * pipeline can convert many small files without starting threads for each. With a single thread
+ * there are no worker or reader threads at all: each item is read, converted and written in turn on
+ * the calling thread.
+ *
+ * <p>If a conversion or the source fails, the run stops, its pending conversions are cancelled, and
+ * the failure is rethrown from {@link #run}.
+ */
+final class OrderedPipeline<I, O> implements Closeable {
+  private static final AtomicInteger PIPELINE_NUMBER = new AtomicInteger();
+
+  private final int m_queueCapacity;
+  // both null when items are converted on the calling thread
+  private final ExecutorService m_workers;
+  private final ExecutorService m_readers;
+
+  interface Sink<O> {
+    void accept(O output) throws IOException;
+  }
+
+  OrderedPipeline(int threads, int queueCapacity) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+    }
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+    }
+    m_queueCapacity = queueCapacity;
+    if (threads == 1) {
+      m_workers = null;
+      m_readers = null;
+    } else {
+      int pipeline = PIPELINE_NUMBER.incrementAndGet();
+      m_workers =
+          Executors.newFixedThreadPool(threads, daemonThreads("pipeline-" + pipeline + "-worker-"));
+      m_readers = Executors.newCachedThreadPool(daemonThreads("pipeline-" + pipeline + "-reader-"));
+    }
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger threadNumber = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  void run(Iterator<I> source, Function<I, O> converter, Sink<O> sink) throws IOException {
+    if (m_workers == null) {
+      while (source.hasNext()) {
+        sink.accept(converter.apply(source.next()));
+      }
+      return;
+    }
+    BlockingQueue<Future<O>> pending = new ArrayBlockingQueue<>(m_queueCapacity);
+    CompletableFuture<O> end = new CompletableFuture<>();
+    Future<?> reader =
+        m_readers.submit(
+            () -> {
+              try {
+                while (source.hasNext()) {
+                  I item = source.next();
+                  pending.put(m_workers.submit(() -> converter.apply(item)));
+                }
+                pending.put(end);
+              } catch (InterruptedException e) {
+                // the writer has stopped
+              } catch (RuntimeException e) {
+                try {
+                  pending.put(CompletableFuture.failedFuture(e));
+                } catch (InterruptedException e1) {
+                  // the writer has stopped
+                }
+              }
+            });
+    try {
+      for (Future<O> next = pending.take(); next != end; next = pending.take()) {
+        sink.accept(next.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while writing", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      if (cause instanceof Error error) {
+        throw error;
+      }
+      if (cause instanceof IOException ioException) {
+        throw new UncheckedIOException(ioException);
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      reader.cancel(true);
+      for (Future<O> next = pending.poll(); next != null; next = pending.poll()) {
+        next.cancel(true);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    if (m_workers != null) {
+      m_readers.shutdownNow();
+      m_workers.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package ca.nanometrics.miniseed.msx.arrow;
+
+/*-
+ * #%L
+ * msx
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.util.NanoTime;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampNanoTZVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.message.ArrowBlock;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class DataRecordArrowWriterTest {
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, DataRecordArrowWriter.DEFAULT_RECORDS_PER_BATCH})
+  void testWriteReadBack(int recordsPerBatch) throws IOException {
+    List<DataRecord> records = readRecords();
+    Path output = Files.createTempFile("miniseed", ".arrow");
+    try (DataRecordArrowWriter writer =
+        new DataRecordArrowWriter(
+            FileChannel.open(output, StandardOpenOption.WRITE), recordsPerBatch)) {
+      for (DataRecord record : records) {
+        writer.write(record);
+      }
+    }
+
+    try (BufferAllocator allocator = new RootAllocator();
+        ArrowFileReader reader =
+            new ArrowFileReader(FileChannel.open(output, StandardOpenOption.READ), allocator)) {
+      VectorSchemaRoot root = reader.getVectorSchemaRoot();
+      assertThat(
+          root.getSchema().getFields().stream().map(Field::getName).toList(),
+          contains(
+              "sid",
+              "start_time",
+              "sample_rate",
+              "sample_count",
+              "encoding",
+              "samples_int",
+              "samples_float64"));
+      List<ArrowBlock> blocks = reader.getRecordBlocks();
+      assertThat(
+          blocks.size(), is(records.size() / recordsPerBatch + (recordsPerBatch > 1 ? 1 : 0)));
+
+      int row = 0;
+      for (ArrowBlock block : blocks) {
+        reader.loadRecordBatch(block);
+        for (int i = 0; i < root.getRowCount(); i++, row++) {
+          DataRecord record = records.get(row);
+          assertThat(
+              ((VarCharVector) root.getVector("sid")).getObject(i).toString(),
+              is(record.header().sourceIdentifier().toString()));
+          assertThat(
+              ((TimeStampNanoTZVector) root.getVector("start_time")).get(i),
+              is(NanoTime.toEpochNanos(record.header().recordStartTime())));
+          assertThat(
+              ((Float8Vector) root.getVector("sample_rate")).get(i),
+              is(record.header().sampleRate().sampleRateDouble()));
+          assertThat(
+              ((IntVector) root.getVector("sample_count")).get(i),
+              is(record.header().numberOfSamples()));
+          assertThat(((TinyIntVector) root.getVector("encoding")).get(i), is((byte) 10));
+          assertThat(
+              ((ListVector) root.getVector("samples_int")).getObject(i),
+              is(IntStream.of(record.samples().intSamples()).boxed().toList()));
+          assertThat(
+              ((ListVector) root.getVector("samples_float64")).getObject(i), is(nullValue()));
+        }
+      }
+      assertThat(row, is(records.size()));
+    }
+  }
+
+  @Test
+  void testInterleavedChannelsBatchedPerChannel() throws IOException {
+    List<DataRecord> records = readRecords();
+    DataRecord a1 = withStation(records.get(0), "AAAAA", 0);
+    DataRecord b1 = withStation(records.get(0), "BBBBB", 0);
+    DataRecord a2 = withStation(records.get(1), "AAAAA", 0);
+    DataRecord c1 = withStation(records.get(0), "CCCCC", 0);
+    DataRecord b2 = withStation(records.get(1), "BBBBB", 0);
+    DataRecord a3 = withStation(records.get(1), "AAAAA", 10);
+    DataRecord c2 = withStation(records.get(1), "CCCCC", 0);
+    List<DataRecord> interleaved = List.of(a1, b1, a2, c1, b2, a3, c2);
+
+    assertThat(
+        writeAndReadBatches(interleaved, 1),
+        is(
+            rows(
+                List.of(a1),
+                List.of(b1),
+                List.of(a2),
+                List.of(c1),
+                List.of(b2),
+                List.of(a3),
+                List.of(c2))));
+    // a channel's batch is written when full, the partial batches on close
+    assertThat(
+        writeAndReadBatches(interleaved, 2),
+        is(rows(List.of(a1, a2), List.of(b1, b2), List.of(c1, c2), List.of(a3))));
+    assertThat(
+        writeAndReadBatches(interleaved, 3),
+        is(rows(List.of(a1, a2, a3), List.of(b1, b2), List.of(c1, c2))));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {0, -1})
+  void testInvalidBatchSize(int recordsPerBatch) throws IOException {
+    Path output = Files.createTempFile("miniseed", ".arrow");
+    try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> new DataRecordArrowWriter(channel, recordsPerBatch));
+    }
+  }
+
+  /**
+   * @return the rows of each record batch in the file, as their source identifier, start time and
+   *     sum of samples.
+   */
+  private static List<List<String>> writeAndReadBatches(
+      List<DataRecord> records, int recordsPerBatch) throws IOException {
+    Path output = Files.createTempFile("miniseed", ".arrow");
+    try (DataRecordArrowWriter writer =
+        new DataRecordArrowWriter(
+            FileChannel.open(output, StandardOpenOption.WRITE), recordsPerBatch)) {
+      for (DataRecord record : records) {
+        writer.write(record);
+      }
+    }
+    List<List<String>> batches = new ArrayList<>();
+    try (BufferAllocator allocator = new RootAllocator();
+        ArrowFileReader reader =
+            new ArrowFileReader(FileChannel.open(output, StandardOpenOption.READ), allocator)) {
+      VectorSchemaRoot root = reader.getVectorSchemaRoot();
+      for (ArrowBlock block : reader.getRecordBlocks()) {
+        reader.loadRecordBatch(block);
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < root.getRowCount(); i++) {
+          rows.add(
+              ((VarCharVector) root.getVector("sid")).getObject(i)
+                  + " "
+                  + ((TimeStampNanoTZVector) root.getVector("start_time")).get(i)
+                  + " "
+                  + ((ListVector) root.getVector("samples_int"))
+                      .getObject(i).stream().mapToInt(sample -> (Integer) sample).sum());
+        }
+        batches.add(rows);
+      }
+    }
+    return batches;
+  }
+
+  @SafeVarargs
+  private static List<List<String>> rows(List<DataRecord>... batches) {
+    return Stream.of(batches)
+        .map(
+            batch ->
+                batch.stream()
+                    .map(
+                        record ->
+                            record.header().sourceIdentifier()
+                                + " "
+                                + NanoTime.toEpochNanos(record.header().recordStartTime())
+                                + " "
+                                + IntStream.of(record.samples().intSamples()).sum())
+                    .toList())
+        .toList();
+  }
+
+  /** A copy of the v2 record with another station, starting the given seconds later. */
+  private static DataRecord withStation(DataRecord record, String station, int seconds)
+      throws IOException {
+    byte[] bytes = record.toByteArray();
+    System.arraycopy(station.getBytes(StandardCharsets.US_ASCII), 0, bytes, 8, 5);
+    bytes[26] += (byte) seconds;
+    try (Stream<DataRecord> stream = MiniSeed.stream(new ByteArrayInputStream(bytes))) {
+      return stream.findFirst().orElseThrow();
+    }
+  }
+
+  private List<DataRecord> readRecords() throws IOException {
+    try (Stream<DataRecord> stream =
+        MiniSeed.stream(
+            new BufferedInputStream(
+                getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")))) {
+      return new ArrayList<>(stream.toList());
+    }
+  }
+}
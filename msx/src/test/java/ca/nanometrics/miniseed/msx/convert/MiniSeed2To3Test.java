@@ -36,10 +36,15 @@ import ca.nanometrics.miniseed.v2.DataRecord2Test;
 import ca.nanometrics.miniseed.v3.DataRecord3;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.List;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -111,4 +116,113 @@ class MiniSeed2To3Test {
               }
             });
   }
+
+  @Test
+  public void testRecordOrderPreservedWithThreads() throws IOException {
+    File inputDirectory = Files.createTempDirectory("miniseedV2").toFile();
+    File inputFile = new File(inputDirectory, "2records.mseed");
+    try (InputStream input =
+        getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+      Files.copy(input, inputFile.toPath());
+    }
+    File outputDirectory = Files.createTempDirectory("miniseedV3").toFile();
+    MiniSeed2To3 converter = new MiniSeed2To3();
+    new CommandLine(converter)
+        .parseArgs("-i", inputFile.getPath(), "-o", outputDirectory.getPath(), "-t", "3");
+    converter.run();
+
+    List<DataRecord> inputRecords = MiniSeed.stream(inputFile).toList();
+    List<DataRecord> outputRecords =
+        MiniSeed.stream(new File(outputDirectory, inputFile.getName())).toList();
+    assertThat(outputRecords.size(), is(inputRecords.size()));
+    for (int i = 0; i < inputRecords.size(); i++) {
+      DataRecord record = outputRecords.get(i);
+      assertThat(record, isA(DataRecord3.class));
+      assertThat(
+          record.header().recordStartTime(), is(inputRecords.get(i).header().recordStartTime()));
+      assertThat(record.samples().intSamples(), is(inputRecords.get(i).samples().intSamples()));
+    }
+  }
+
+  @Test
+  public void testParallelFiles() throws IOException {
+    File inputDirectory = Files.createTempDirectory("miniseedV2").toFile();
+    List<String> names = List.of("a.mseed", "b/b.mseed", "b/c/c.mseed", "d.mseed", "e.mseed");
+    for (String name : names) {
+      File inputFile = new File(inputDirectory, name);
+      Files.createDirectories(inputFile.getParentFile().toPath());
+      try (InputStream input =
+          getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+        Files.copy(input, inputFile.toPath());
+      }
+    }
+    File outputDirectory = Files.createTempDirectory("miniseedV3").toFile();
+    MiniSeed2To3 converter = new MiniSeed2To3();
+    new CommandLine(converter)
+        .parseArgs(
+            "-i", inputDirectory.getPath(), "-o", outputDirectory.getPath(), "-p", "3", "-t", "1");
+    converter.run();
+
+    for (String name : names) {
+      List<DataRecord> inputRecords = MiniSeed.stream(new File(inputDirectory, name)).toList();
+      List<DataRecord> outputRecords = MiniSeed.stream(new File(outputDirectory, name)).toList();
+      assertThat(outputRecords.size(), is(inputRecords.size()));
+      for (int i = 0; i < inputRecords.size(); i++) {
+        assertThat(outputRecords.get(i), isA(DataRecord3.class));
+        assertThat(
+            outputRecords.get(i).samples().intSamples(),
+            is(inputRecords.get(i).samples().intSamples()));
+      }
+    }
+  }
+
+  @Test
+  public void testParallelFileFailureDoesNotStopOthers() throws IOException {
+    File inputDirectory = Files.createTempDirectory("miniseedV2").toFile();
+    List<String> names = List.of("a.mseed", "b.mseed", "c.mseed");
+    for (String name : names) {
+      try (InputStream input =
+          getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+        Files.copy(input, new File(inputDirectory, name).toPath());
+      }
+    }
+    File outputDirectory = Files.createTempDirectory("miniseedV3").toFile();
+    // the output of b cannot be opened as a file
+    Files.createDirectories(new File(outputDirectory, "b.mseed").toPath());
+    MiniSeed2To3 converter = new MiniSeed2To3();
+    new CommandLine(converter)
+        .parseArgs("-i", inputDirectory.getPath(), "-o", outputDirectory.getPath(), "-p", "3");
+    converter.run();
+
+    assertThat(MiniSeed.stream(new File(outputDirectory, "a.mseed")).count(), is(2L));
+    assertThat(MiniSeed.stream(new File(outputDirectory, "c.mseed")).count(), is(2L));
+  }
+
+  @Test
+  public void testGzipInput() throws IOException {
+    File inputDirectory = Files.createTempDirectory("miniseedV2").toFile();
+    File inputFile = new File(inputDirectory, "2records.mseed.gz");
+    try (InputStream input =
+            getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed");
+        OutputStream output = new GZIPOutputStream(Files.newOutputStream(inputFile.toPath()))) {
+      input.transferTo(output);
+    }
+    File outputDirectory = Files.createTempDirectory("miniseedV3").toFile();
+    MiniSeed2To3 converter = new MiniSeed2To3();
+    new CommandLine(converter)
+        .parseArgs("-i", inputFile.getPath(), "-o", outputDirectory.getPath());
+    converter.run();
+
+    List<DataRecord> inputRecords = MiniSeed.stream(inputFile).toList();
+    List<DataRecord> outputRecords =
+        MiniSeed.stream(new File(outputDirectory, "2records.mseed")).toList();
+    assertThat(inputRecords.size(), is(2));
+    assertThat(outputRecords.size(), is(inputRecords.size()));
+    for (int i = 0; i < inputRecords.size(); i++) {
+      assertThat(outputRecords.get(i), isA(DataRecord3.class));
+      assertThat(
+          outputRecords.get(i).samples().intSamples(),
+          is(inputRecords.get(i).samples().intSamples()));
+    }
+  }
 }
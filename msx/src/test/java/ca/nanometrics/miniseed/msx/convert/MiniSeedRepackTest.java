@@ -0,0 +1,104 @@
+package ca.nanometrics.miniseed.msx.convert;
+
+/*-
+ * #%L
+ * msx
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.isA;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import ca.nanometrics.miniseed.DataRecord;
+import ca.nanometrics.miniseed.MiniSeed;
+import ca.nanometrics.miniseed.v3.DataRecord3;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+
+class MiniSeedRepackTest {
+
+  @Test
+  public void testRepackToRecordLength() throws IOException {
+    File inputDirectory = Files.createTempDirectory("miniseedV2").toFile();
+    File inputFile = new File(inputDirectory, "2records.mseed");
+    try (InputStream input =
+        getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+      Files.copy(input, inputFile.toPath());
+    }
+    File outputDirectory = Files.createTempDirectory("repacked").toFile();
+    MiniSeedRepack repack = new MiniSeedRepack();
+    new CommandLine(repack)
+        .parseArgs("-i", inputFile.getPath(), "-o", outputDirectory.getPath(), "-r", "256");
+    repack.run();
+
+    List<DataRecord> inputRecords = MiniSeed.stream(inputFile).toList();
+    List<DataRecord> outputRecords =
+        MiniSeed.stream(new File(outputDirectory, inputFile.getName())).toList();
+    assertThat(outputRecords, everyItem(isA(DataRecord3.class)));
+    assertThat(
+        outputRecords.stream().map(DataRecord::length).toList(), everyItem(lessThanOrEqualTo(256)));
+    assertThat(
+        outputRecords.get(0).header().recordStartTime(),
+        is(inputRecords.get(0).header().recordStartTime()));
+    assertThat(samples(outputRecords), is(samples(inputRecords)));
+  }
+
+  @Test
+  public void testSameNameInSubdirectoriesKeepsRelativePaths() throws IOException {
+    byte[] twoRecords;
+    try (InputStream input =
+        getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+      twoRecords = input.readAllBytes();
+    }
+    File inputDirectory = Files.createTempDirectory("miniseedV2").toFile();
+    File a = new File(inputDirectory, "a/XX.STA.mseed");
+    File b = new File(inputDirectory, "b/XX.STA.mseed");
+    Files.createDirectories(a.getParentFile().toPath());
+    Files.createDirectories(b.getParentFile().toPath());
+    Files.write(a.toPath(), twoRecords);
+    Files.write(b.toPath(), Arrays.copyOf(twoRecords, 512));
+    File outputDirectory = Files.createTempDirectory("repacked").toFile();
+    MiniSeedRepack repack = new MiniSeedRepack();
+    new CommandLine(repack)
+        .parseArgs("-i", inputDirectory.getPath(), "-o", outputDirectory.getPath());
+    repack.run();
+
+    assertThat(
+        samples(MiniSeed.stream(new File(outputDirectory, "a/XX.STA.mseed")).toList()),
+        is(samples(MiniSeed.stream(a).toList())));
+    assertThat(
+        samples(MiniSeed.stream(new File(outputDirectory, "b/XX.STA.mseed")).toList()),
+        is(samples(MiniSeed.stream(b).toList())));
+    assertThat(new File(outputDirectory, "XX.STA.mseed").exists(), is(false));
+  }
+
+  private static int[] samples(List<DataRecord> records) {
+    return records.stream()
+        .flatMapToInt(record -> IntStream.of(record.samples().intSamples()))
+        .toArray();
+  }
+}
@@ -0,0 +1,77 @@
+package ca.nanometrics.miniseed.msx.convert;
+
+/*-
+ * #%L
+ * msx
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.message.ArrowBlock;
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+
+class MiniSeedToArrowTest {
+
+  @Test
+  public void testSameNameInSubdirectoriesKeepsRelativePaths() throws IOException {
+    byte[] twoRecords;
+    try (InputStream input =
+        getClass().getClassLoader().getResourceAsStream("miniseed2-2records.mseed")) {
+      twoRecords = input.readAllBytes();
+    }
+    File inputDirectory = Files.createTempDirectory("miniseedV2").toFile();
+    File a = new File(inputDirectory, "a/XX.STA.mseed");
+    File b = new File(inputDirectory, "b/XX.STA.mseed");
+    Files.createDirectories(a.getParentFile().toPath());
+    Files.createDirectories(b.getParentFile().toPath());
+    Files.write(a.toPath(), twoRecords);
+    Files.write(b.toPath(), Arrays.copyOf(twoRecords, 512));
+    File outputDirectory = Files.createTempDirectory("arrow").toFile();
+    MiniSeedToArrow export = new MiniSeedToArrow();
+    new CommandLine(export)
+        .parseArgs("-i", inputDirectory.getPath(), "-o", outputDirectory.getPath());
+    export.run();
+
+    assertThat(rows(new File(outputDirectory, "a/XX.STA.mseed.arrow")), is(2));
+    assertThat(rows(new File(outputDirectory, "b/XX.STA.mseed.arrow")), is(1));
+    assertThat(new File(outputDirectory, "XX.STA.mseed.arrow").exists(), is(false));
+  }
+
+  private static int rows(File file) throws IOException {
+    int rows = 0;
+    try (BufferAllocator allocator = new RootAllocator();
+        ArrowFileReader reader =
+            new ArrowFileReader(Files.newByteChannel(file.toPath()), allocator)) {
+      for (ArrowBlock block : reader.getRecordBlocks()) {
+        reader.loadRecordBatch(block);
+        rows += reader.getVectorSchemaRoot().getRowCount();
+      }
+    }
+    return rows;
+  }
+}
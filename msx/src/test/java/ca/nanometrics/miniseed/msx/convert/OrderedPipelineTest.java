@@ -0,0 +1,118 @@
+package ca.nanometrics.miniseed.msx.convert;
+
+/*-
+ * #%L
+ * msx
+ * %%
+ * Copyright (C) 2022 - 2023 Nanometrics Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class OrderedPipelineTest {
+
+  @Test
+  void testOutputInSourceOrder() throws Exception {
+    List<Integer> source = IntStream.range(0, 1000).boxed().toList();
+    List<Integer> written = new ArrayList<>();
+    try (OrderedPipeline<Integer, Integer> pipeline = new OrderedPipeline<>(4, 8)) {
+      pipeline.run(
+          source.iterator(),
+          value -> {
+            // later items finish first, so workers complete out of order
+            LockSupport.parkNanos((1000 - value) % 7 * 10_000L);
+            return value * 2;
+          },
+          written::add);
+    }
+    assertThat(written, is(source.stream().map(value -> value * 2).toList()));
+  }
+
+  @Test
+  void testThreadsReusedAcrossRuns() throws Exception {
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    try (OrderedPipeline<Integer, Integer> pipeline = new OrderedPipeline<>(3, 4)) {
+      for (int run = 0; run < 20; run++) {
+        List<Integer> written = new ArrayList<>();
+        pipeline.run(
+            IntStream.range(0, 50).iterator(),
+            value -> {
+              threads.add(Thread.currentThread());
+              return value;
+            },
+            written::add);
+        assertThat(written, is(IntStream.range(0, 50).boxed().toList()));
+      }
+    }
+    assertThat(threads.size() <= 3, is(true));
+  }
+
+  @Test
+  void testSingleThreadConvertsOnCallingThread() throws Exception {
+    Thread caller = Thread.currentThread();
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    List<Integer> written = new ArrayList<>();
+    try (OrderedPipeline<Integer, Integer> pipeline = new OrderedPipeline<>(1, 1)) {
+      pipeline.run(
+          IntStream.range(0, 10).iterator(),
+          value -> {
+            threads.add(Thread.currentThread());
+            return value + 1;
+          },
+          written::add);
+    }
+    assertThat(written, is(IntStream.range(1, 11).boxed().toList()));
+    assertThat(threads, is(Set.of(caller)));
+  }
+
+  @Test
+  void testConversionFailureIsRethrown() {
+    List<Integer> written = new ArrayList<>();
+    IllegalStateException e;
+    try (OrderedPipeline<Integer, Integer> pipeline = new OrderedPipeline<>(2, 2)) {
+      e =
+          assertThrows(
+              IllegalStateException.class,
+              () ->
+                  pipeline.run(
+                      IntStream.range(0, 100).iterator(),
+                      value -> {
+                        if (value == 10) {
+                          throw new IllegalStateException("bad record " + value);
+                        }
+                        return value;
+                      },
+                      written::add));
+    }
+    assertThat(e.getMessage(), is("bad record 10"));
+    assertThat(written, is(IntStream.range(0, 10).boxed().toList()));
+  }
+
+  @Test
+  void testInvalidThreads() {
+    assertThrows(IllegalArgumentException.class, () -> new OrderedPipeline<>(0, 1));
+  }
+}